@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
+import de.jakop.ngcalsync.settings.NotesHelper;
+import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.sink.CalendarSinkFactory;
+import de.jakop.ngcalsync.sink.CalendarSinkType;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+import de.jakop.ngcalsync.util.file.IFileAccessor;
+
+/**
+ * Settings for the synthetic calendars of {@link SyntheticCalendar}, without a configuration file.
+ *
+ * @author fjakop
+ */
+@SuppressWarnings("nls")
+public class BenchmarkSettings extends Settings {
+
+	/** name of the benchmarked Google calendar */
+	public static final String CALENDAR_NAME = "benchmark";
+
+	private final com.google.api.services.calendar.Calendar calendarService;
+
+	/**
+	 *
+	 * @param calendarService the Google calendar service, may be <code>null</code> if not used
+	 */
+	public BenchmarkSettings(final com.google.api.services.calendar.Calendar calendarService) {
+		super(new IFileAccessor() {
+
+			// e.g. the cache of the calendar id, written to a directory of its own
+			private final File directory = createDirectory();
+
+			@Override
+			public File getFile(final String name) {
+				return new File(directory, name);
+			}
+		}, LogFactory.getLog(BenchmarkSettings.class), new NotesHelper());
+		this.calendarService = calendarService;
+	}
+
+	/**
+	 * Creates an in-memory sink holding the events, answering without latency
+	 *
+	 * @param events
+	 * @return a new sink
+	 */
+	public ICalendarSink createMemorySink(final List<CalendarEvent> events) {
+		final ICalendarSink sink = new CalendarSinkFactory(new GoogleCalendarDaoFactory()).createCalendarSink(this);
+		for (final CalendarEvent event : events) {
+			sink.insert(event);
+		}
+		sink.flush();
+		return sink;
+	}
+
+	@Override
+	public com.google.api.services.calendar.Calendar getGoogleCalendarService() {
+		return calendarService;
+	}
+
+	@Override
+	public String getGoogleAccountName() {
+		return CALENDAR_NAME;
+	}
+
+	@Override
+	public String getGoogleCalendarName() {
+		return CALENDAR_NAME;
+	}
+
+	@Override
+	public Calendar getSyncStartDate() {
+		return SyntheticCalendar.getStart();
+	}
+
+	@Override
+	public Calendar getSyncEndDate() {
+		return SyntheticCalendar.getEnd();
+	}
+
+	@Override
+	public Calendar getSyncLastDateTime() {
+		final Calendar syncLastDateTime = Calendar.getInstance();
+		syncLastDateTime.setTimeInMillis(SyntheticCalendar.SYNC_LAST_DATE_TIME);
+		return syncLastDateTime;
+	}
+
+	@Override
+	public int getReminderMinutes() {
+		return 15;
+	}
+
+	@Override
+	public int getGoogleBatchSize() {
+		return 0;
+	}
+
+	@Override
+	public int getGooglePageSize() {
+		return 250;
+	}
+
+	@Override
+	public boolean isGoogleSyncIncremental() {
+		return false;
+	}
+
+	@Override
+	public int getGoogleMutationThreads() {
+		return 1;
+	}
+
+	@Override
+	public int getGoogleRequestsPerSecond() {
+		return 0;
+	}
+
+	@Override
+	public boolean isSyncStreaming() {
+		return false;
+	}
+
+	@Override
+	public int getSyncSliceDays() {
+		return 0;
+	}
+
+	@Override
+	public int getSyncSliceThreads() {
+		return 1;
+	}
+
+	@Override
+	public CalendarSinkType getSinkType() {
+		return CalendarSinkType.MEMORY;
+	}
+
+	@Override
+	public int getSinkLatencyMillis() {
+		return 0;
+	}
+
+	private static File createDirectory() {
+		try {
+			final File directory = Files.createTempDirectory("ngcalsync-benchmark").toFile();
+			directory.deleteOnExit();
+			return directory;
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
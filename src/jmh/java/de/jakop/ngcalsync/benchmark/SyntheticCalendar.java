@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+
+/**
+ * Reproducible synthetic Notes and Google event sets for benchmarks.
+ * <p>
+ * Notes events are spread over the year 2012. A share of them are occurrences of weekly recurring series,
+ * which share the id and title, another share are duplicates as they appear for documents shown more
+ * than once in the Calendar view. Google holds a counterpart for the overlapping share of the Notes events
+ * and is filled up with events unknown to Notes to the same size.
+ *
+ * @author fjakop
+ */
+@SuppressWarnings("nls")
+public final class SyntheticCalendar {
+
+	/** the events are modified after this time with a probability of one half */
+	public static final long SYNC_LAST_DATE_TIME = createDate(2012, Calendar.JUNE, 1).getTimeInMillis();
+
+	private static final int SERIES_LENGTH = 5;
+	private static final int DAYS = 365;
+	private static final long MINUTE = 60 * 1000L;
+	private static final int[] DURATIONS = { 30, 45, 60, 90, 120 };
+
+	private final List<CalendarEvent> notesEvents = new ArrayList<CalendarEvent>();
+	private final List<CalendarEvent> googleEvents = new ArrayList<CalendarEvent>();
+
+	/**
+	 *
+	 * @param size number of events on each side
+	 * @param overlap share of Notes events already present in Google
+	 * @param duplicates share of Notes events appearing twice
+	 * @param allDayShare share of all day events
+	 * @param recurrence share of Notes events being occurrences of a recurring series
+	 * @param seed
+	 */
+	public SyntheticCalendar(final int size, final double overlap, final double duplicates, final double allDayShare, final double recurrence, final long seed) {
+		Validate.isTrue(size > 0);
+		final Random random = new Random(seed);
+
+		// Google must not hold two events matching the same Notes event, so each key is given to Google only once
+		final Set<String> usedKeys = new HashSet<String>();
+		int id = 0;
+		while (notesEvents.size() < size) {
+			final boolean recurring = random.nextDouble() < recurrence;
+			final int occurrences = recurring ? Math.min(SERIES_LENGTH, size - notesEvents.size()) : 1;
+			final boolean allDay = random.nextDouble() < allDayShare;
+			final long lastUpdated = SYNC_LAST_DATE_TIME + (random.nextBoolean() ? 1 : -1) * (1 + random.nextInt(DAYS)) * 24 * 60 * MINUTE;
+			final String notesId = "unid-" + id++;
+
+			int day;
+			int minuteOfDay;
+			int duration;
+			// all day events on the same day are common, timed ones at the same time are not
+			do {
+				day = random.nextInt(DAYS);
+				minuteOfDay = allDay ? 0 : 8 * 60 + random.nextInt(12 * 60);
+				duration = allDay ? 24 * 60 : DURATIONS[random.nextInt(DURATIONS.length)];
+			} while (!allDay && !isFree(usedKeys, day, minuteOfDay, duration, occurrences));
+
+			for (int i = 0; i < occurrences; i++) {
+				final boolean unique = usedKeys.add(key(day + 7 * i, minuteOfDay, duration));
+				final CalendarEvent event = createEvent(notesId, "event " + notesId, day + 7 * i, minuteOfDay, duration, lastUpdated);
+				notesEvents.add(event);
+				if (unique && random.nextDouble() < overlap && googleEvents.size() < size) {
+					googleEvents.add(createEvent("google-" + googleEvents.size(), event.getTitle(), day + 7 * i, minuteOfDay, duration, lastUpdated));
+				}
+				if (random.nextDouble() < duplicates && notesEvents.size() < size) {
+					notesEvents.add(createEvent(notesId, event.getTitle(), day + 7 * i, minuteOfDay, duration, lastUpdated));
+				}
+			}
+		}
+
+		// events deleted in Notes
+		while (googleEvents.size() < size) {
+			final int day = random.nextInt(DAYS);
+			final int minuteOfDay = 8 * 60 + random.nextInt(12 * 60);
+			final int duration = DURATIONS[random.nextInt(DURATIONS.length)];
+			if (usedKeys.add(key(day, minuteOfDay, duration))) {
+				googleEvents.add(createEvent("google-" + googleEvents.size(), "deleted", day, minuteOfDay, duration, SYNC_LAST_DATE_TIME));
+			}
+		}
+		Collections.shuffle(googleEvents, random);
+	}
+
+	/**
+	 * @return the Notes events, which must not be modified
+	 */
+	public List<CalendarEvent> getNotesEvents() {
+		return notesEvents;
+	}
+
+	/**
+	 * @return the Google events, which must not be modified
+	 */
+	public List<CalendarEvent> getGoogleEvents() {
+		return googleEvents;
+	}
+
+	/**
+	 * @return first day of the events
+	 */
+	public static Calendar getStart() {
+		return createDate(2012, Calendar.JANUARY, 1);
+	}
+
+	/**
+	 * @return a day after the last event
+	 */
+	public static Calendar getEnd() {
+		return createDate(2013, Calendar.FEBRUARY, 1);
+	}
+
+	private static boolean isFree(final Set<String> usedKeys, final int day, final int minuteOfDay, final int duration, final int occurrences) {
+		for (int i = 0; i < occurrences; i++) {
+			if (usedKeys.contains(key(day + 7 * i, minuteOfDay, duration))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String key(final int day, final int minuteOfDay, final int duration) {
+		// all day events are matched by their day
+		return duration == 24 * 60 ? String.valueOf(day) : day + "/" + minuteOfDay + "/" + duration;
+	}
+
+	private static CalendarEvent createEvent(final String id, final String title, final int day, final int minuteOfDay, final int duration, final long lastUpdated) {
+		final boolean allDay = duration == 24 * 60;
+		final Calendar start = getStart();
+		start.add(Calendar.DAY_OF_YEAR, day);
+		start.add(Calendar.MINUTE, minuteOfDay);
+		final Calendar end = (Calendar) start.clone();
+		end.add(Calendar.MINUTE, duration);
+		final Calendar updated = Calendar.getInstance();
+		updated.setTimeInMillis(lastUpdated);
+
+		final CalendarEvent event = new CalendarEvent();
+		event.setId(id);
+		event.setTitle(title);
+		event.setContent("content of " + title);
+		event.setLocation("room " + day % 10);
+		event.setEventType(allDay ? EventType.ALL_DAY_EVENT : EventType.MEETING);
+		event.setStartDateTime(start);
+		event.setEndDateTime(end);
+		event.setLastUpdated(updated);
+		return event;
+	}
+
+	private static Calendar createDate(final int year, final int month, final int day) {
+		final Calendar date = Calendar.getInstance();
+		date.clear();
+		date.set(year, month, day);
+		return date;
+	}
+
+}
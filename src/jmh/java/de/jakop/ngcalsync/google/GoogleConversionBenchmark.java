@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.Events;
+
+import de.jakop.ngcalsync.benchmark.BenchmarkSettings;
+import de.jakop.ngcalsync.benchmark.SyntheticCalendar;
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+
+/**
+ * Measures reading and converting the pages of a Google calendar. The pages are read once from the in-memory sink
+ * and answered as Google's JSON, so reading measures parsing and converting without network.
+ *
+ * @author fjakop
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("nls")
+public class GoogleConversionBenchmark {
+
+	private static final String CALENDAR_ID = "benchmark-id";
+	private static final String PAGE_TOKEN = "pageToken=";
+
+	/** number of events in the calendar */
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	/** share of all day events */
+	@Param({ "0.1" })
+	public double allDayShare;
+
+	private IGoogleCalendarDAO dao;
+
+	/**
+	 * @throws IOException
+	 */
+	@Setup
+	public void setup() throws IOException {
+		Logger.getRootLogger().setLevel(Level.WARN);
+		final BenchmarkSettings settings = new BenchmarkSettings(null);
+		final List<CalendarEvent> events = new SyntheticCalendar(size, 1, 0, allDayShare, 0, 42).getGoogleEvents();
+
+		final List<List<Event>> pageItems = new ArrayList<List<Event>>();
+		settings.createMemorySink(events).getEvents(new ICalendarEventFilter[0], new ICalendarEventConsumer() {
+
+			@Override
+			public void consume(final Collection<CalendarEvent> page) {
+				final List<Event> items = new ArrayList<Event>();
+				for (final CalendarEvent event : page) {
+					items.add(createEvent(event));
+				}
+				pageItems.add(items);
+			}
+		});
+
+		final JsonFactory jsonFactory = new JacksonFactory();
+		final List<String> pages = new ArrayList<String>();
+		for (int i = 0; i < pageItems.size(); i++) {
+			final Events page = new Events().setItems(pageItems.get(i));
+			if (i + 1 < pageItems.size()) {
+				page.setNextPageToken(String.valueOf(i + 1));
+			}
+			pages.add(jsonFactory.toString(page));
+		}
+
+		final String calendarList = jsonFactory.toString(new CalendarList().setItems(Arrays.asList(new CalendarListEntry().setId(CALENDAR_ID).setSummary(
+				BenchmarkSettings.CALENDAR_NAME))));
+		final String calendar = jsonFactory.toString(new com.google.api.services.calendar.model.Calendar().setId(CALENDAR_ID).setSummary(BenchmarkSettings.CALENDAR_NAME));
+		final MockHttpTransport transport = new MockHttpTransport() {
+
+			@Override
+			public LowLevelHttpRequest buildRequest(final String method, final String url) {
+				return new MockLowLevelHttpRequest(url) {
+
+					@Override
+					public MockLowLevelHttpResponse execute() {
+						return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(getContent(url, calendarList, calendar, pages));
+					}
+				};
+			}
+		};
+		dao = new GoogleCalendarDAO(new BenchmarkSettings(new com.google.api.services.calendar.Calendar.Builder(transport, jsonFactory, null).setApplicationName(
+				"benchmark").build()));
+	}
+
+	/**
+	 * Reads all pages
+	 *
+	 * @return the events
+	 */
+	@Benchmark
+	public List<CalendarEvent> readEvents() {
+		return dao.getEvents(new ICalendarEventFilter[0]);
+	}
+
+	private static String getContent(final String url, final String calendarList, final String calendar, final List<String> pages) {
+		if (url.contains("/calendarList")) {
+			return calendarList;
+		}
+		if (!url.contains("/events")) {
+			return calendar;
+		}
+		final int tokenIndex = url.indexOf(PAGE_TOKEN);
+		if (tokenIndex < 0) {
+			return pages.get(0);
+		}
+		final int tokenEnd = url.indexOf('&', tokenIndex);
+		return pages.get(Integer.parseInt(url.substring(tokenIndex + PAGE_TOKEN.length(), tokenEnd < 0 ? url.length() : tokenEnd)));
+	}
+
+	private static Event createEvent(final CalendarEvent event) {
+		final Event googleEvent = new Event();
+		googleEvent.setId(event.getId());
+		googleEvent.setSummary(event.getTitle());
+		googleEvent.setDescription(event.getContent());
+		googleEvent.setLocation(event.getLocation());
+		googleEvent.setUpdated(new DateTime(event.getLastUpdatedMillis()));
+		if (event.getEventType() == EventType.ALL_DAY_EVENT) {
+			googleEvent.setStart(new EventDateTime().setDate(new DateTime(true, event.getStartMillis(), Integer.valueOf(0))));
+			googleEvent.setEnd(new EventDateTime().setDate(new DateTime(true, event.getEndMillis(), Integer.valueOf(0))));
+		} else {
+			googleEvent.setStart(new EventDateTime().setDateTime(new DateTime(event.getStartMillis())));
+			googleEvent.setEnd(new EventDateTime().setDateTime(new DateTime(event.getEndMillis())));
+		}
+		return googleEvent;
+	}
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.jakop.lotus.domingo.DDatabase;
+import de.jakop.lotus.domingo.DDocument;
+import de.jakop.lotus.domingo.DView;
+import de.jakop.lotus.domingo.DViewColumn;
+import de.jakop.lotus.domingo.DViewEntry;
+import de.jakop.lotus.domingo.util.GregorianDateTime;
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+
+/**
+ * A mail database held in memory, showing calendar documents for synthetic events in its Calendar view.
+ * Events sharing an id are occurrences of one recurring document. Only the methods used when reading
+ * the Calendar view are implemented, the view selects its entries by their start like Lotus Notes.
+ *
+ * @author fjakop
+ */
+@SuppressWarnings("nls")
+public class InMemoryNotesDatabase implements IOpenDatabaseStrategy {
+
+	private static final String[] COLUMN_ITEMS = { "Form", "Subject", "Location", "Room", "OrgConfidential", "AppointmentType", "StartDateTime", "EndDateTime",
+			"Repeats", "CalendarDateTime", NotesViewColumns.LAST_MODIFIED };
+
+	private final Map<String, DDocument> documents = new LinkedHashMap<String, DDocument>();
+	private final List<DViewEntry> viewEntries = new ArrayList<DViewEntry>();
+	private final List<Long> viewEntryStarts = new ArrayList<Long>();
+	private final List<DViewColumn> viewColumns = new ArrayList<DViewColumn>();
+	private final DDatabase database;
+
+	/**
+	 *
+	 * @param events one view entry per event
+	 */
+	public InMemoryNotesDatabase(final List<CalendarEvent> events) {
+		final Map<String, List<CalendarEvent>> occurrences = new LinkedHashMap<String, List<CalendarEvent>>();
+		for (final CalendarEvent event : events) {
+			List<CalendarEvent> list = occurrences.get(event.getId());
+			if (list == null) {
+				list = new ArrayList<CalendarEvent>();
+				occurrences.put(event.getId(), list);
+			}
+			list.add(event);
+		}
+		final Map<String, Map<String, Object>> items = new HashMap<String, Map<String, Object>>();
+		for (final Map.Entry<String, List<CalendarEvent>> entry : occurrences.entrySet()) {
+			items.put(entry.getKey(), createItems(entry.getValue()));
+			documents.put(entry.getKey(), createDocument(entry.getKey(), items.get(entry.getKey())));
+		}
+		for (final CalendarEvent event : events) {
+			viewEntries.add(createViewEntry(documents.get(event.getId()), items.get(event.getId())));
+			viewEntryStarts.add(Long.valueOf(event.getStartMillis()));
+		}
+		for (final String item : COLUMN_ITEMS) {
+			viewColumns.add(createViewColumn(item));
+		}
+		database = createDatabase();
+	}
+
+	/**
+	 * Creates a DAO reading the view columns of this database, like a synchronisation without descriptions
+	 *
+	 * @param start
+	 * @param end
+	 * @return a new DAO
+	 */
+	public INotesCalendarDAO createNotesCalendarDao(final Calendar start, final Calendar end) {
+		return new NotesCalendarDAO(this, "", "", start, end, null, 1, true, false);
+	}
+
+	@Override
+	public DDatabase openDatabase(final String dominoServer, final String databaseName) {
+		return database;
+	}
+
+	@Override
+	public DDatabase openExclusiveDatabase(final String dominoServer, final String databaseName) {
+		return database;
+	}
+
+	private static Map<String, Object> createItems(final List<CalendarEvent> occurrences) {
+		final CalendarEvent event = occurrences.get(0);
+		final Map<String, Object> items = new HashMap<String, Object>();
+		items.put("Form", "Appointment");
+		items.put("Subject", event.getTitle());
+		items.put("Body", event.getContent());
+		items.put("Location", event.getLocation());
+		items.put("Room", "");
+		items.put("OrgConfidential", "0");
+		items.put("AppointmentType", String.valueOf(event.getEventType().getIntegerValue()));
+		items.put("StartDateTime", Arrays.asList(new GregorianDateTime(event.getStartDateTime())));
+		items.put("EndDateTime", Arrays.asList(new GregorianDateTime(event.getEndDateTime())));
+		items.put(NotesViewColumns.LAST_MODIFIED, event.getLastUpdated());
+
+		final List<GregorianDateTime> dates = new ArrayList<GregorianDateTime>();
+		for (final CalendarEvent occurrence : occurrences) {
+			final GregorianDateTime date = new GregorianDateTime(occurrence.getStartDateTime());
+			if (!dates.contains(date)) {
+				dates.add(date);
+			}
+		}
+		items.put("CalendarDateTime", dates);
+		// duplicates of a single event do not make it recurring
+		items.put("Repeats", dates.size() > 1 ? "1" : "");
+		return items;
+	}
+
+	private static DDocument createDocument(final String unid, final Map<String, Object> items) {
+		return proxy(DDocument.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if ("getUniversalID".equals(name)) {
+					return unid;
+				}
+				if ("getLastModified".equals(name)) {
+					return items.get(NotesViewColumns.LAST_MODIFIED);
+				}
+				if ("hasItem".equals(name)) {
+					final Object value = items.get(args[0]);
+					return Boolean.valueOf(value != null && !"".equals(value));
+				}
+				if ("getItemValueString".equals(name)) {
+					final Object value = items.get(args[0]);
+					return value == null ? "" : value.toString();
+				}
+				if ("getItemValue".equals(name)) {
+					return items.get(args[0]);
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private static DViewEntry createViewEntry(final DDocument document, final Map<String, Object> items) {
+		final List<Object> columnValues = new ArrayList<Object>();
+		for (final String item : COLUMN_ITEMS) {
+			columnValues.add(items.get(item));
+		}
+		return proxy(DViewEntry.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if ("getDocument".equals(name)) {
+					return document;
+				}
+				if ("getUniversalID".equals(name)) {
+					return document.getUniversalID();
+				}
+				if ("getColumnValues".equals(name)) {
+					return columnValues;
+				}
+				if ("isConflict".equals(name)) {
+					return Boolean.FALSE;
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private static DViewColumn createViewColumn(final String item) {
+		return proxy(DViewColumn.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if ("getItemName".equals(name)) {
+					return item.startsWith("@") ? "" : item;
+				}
+				if ("getFormula".equals(name)) {
+					return item.startsWith("@") ? item : "";
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private DDatabase createDatabase() {
+		final DView view = proxy(DView.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if ("getAllEntriesByKey".equals(name)) {
+					return getViewEntries((Calendar) args[0], (Calendar) args[1]).iterator();
+				}
+				if ("getColumns".equals(name)) {
+					return viewColumns;
+				}
+				if ("getName".equals(name)) {
+					return "Calendar";
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+		return proxy(DDatabase.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if ("getView".equals(name)) {
+					return view;
+				}
+				if ("getDocumentByUNID".equals(name)) {
+					return documents.get(args[0]);
+				}
+				if ("getFilePath".equals(name)) {
+					return "benchmark.nsf";
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private List<DViewEntry> getViewEntries(final Calendar start, final Calendar end) {
+		final List<DViewEntry> selected = new ArrayList<DViewEntry>();
+		for (int i = 0; i < viewEntries.size(); i++) {
+			final long entryStart = viewEntryStarts.get(i).longValue();
+			if (entryStart >= start.getTimeInMillis() && entryStart <= end.getTimeInMillis()) {
+				selected.add(viewEntries.get(i));
+			}
+		}
+		return selected;
+	}
+
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(InMemoryNotesDatabase.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+}
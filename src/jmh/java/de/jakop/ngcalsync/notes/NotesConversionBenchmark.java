@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.jakop.ngcalsync.benchmark.SyntheticCalendar;
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+
+/**
+ * Measures reading the Calendar view of a mail database held in memory, by converting the documents and by
+ * reading the view columns.
+ *
+ * @author fjakop
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("nls")
+public class NotesConversionBenchmark {
+
+	/** number of view entries */
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	/** share of documents shown twice in the Calendar view */
+	@Param({ "0.01" })
+	public double duplicates;
+
+	/** share of all day events */
+	@Param({ "0.1" })
+	public double allDayShare;
+
+	/** share of view entries being occurrences of a recurring document */
+	@Param({ "0.2" })
+	public double recurrence;
+
+	private InMemoryNotesDatabase database;
+
+	/** */
+	@Setup
+	public void setup() {
+		Logger.getRootLogger().setLevel(Level.WARN);
+		database = new InMemoryNotesDatabase(new SyntheticCalendar(size, 0, duplicates, allDayShare, recurrence, 42).getNotesEvents());
+	}
+
+	/**
+	 * Opens and converts each document
+	 *
+	 * @return the events
+	 */
+	@Benchmark
+	public List<CalendarEvent> convertDocuments() {
+		return new NotesCalendarDAO(database, "", "", SyntheticCalendar.getStart(), SyntheticCalendar.getEnd()).getEntries(new ICalendarEventFilter[0]);
+	}
+
+	/**
+	 * Reads the view columns without opening the documents
+	 *
+	 * @return the events
+	 */
+	@Benchmark
+	public List<CalendarEvent> convertViewColumns() {
+		return new NotesCalendarDAO(database, "", "", SyntheticCalendar.getStart(), SyntheticCalendar.getEnd(), null, 1, true, false)
+				.getEntries(new ICalendarEventFilter[0]);
+	}
+
+}
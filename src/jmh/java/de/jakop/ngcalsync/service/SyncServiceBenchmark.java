@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.jakop.ngcalsync.benchmark.BenchmarkSettings;
+import de.jakop.ngcalsync.benchmark.SyntheticCalendar;
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+import de.jakop.ngcalsync.notes.InMemoryNotesDatabase;
+import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+
+/**
+ * Measures matching Notes against Google events, alone and as part of a complete synchronisation of a Lotus Notes
+ * database held in memory into the in-memory sink.
+ *
+ * @author fjakop
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncServiceBenchmark {
+
+	/** number of events on each side */
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	/** share of Notes events already present in Google */
+	@Param({ "0.9" })
+	public double overlap;
+
+	/** share of Notes events appearing twice in the Calendar view */
+	@Param({ "0.01" })
+	public double duplicates;
+
+	/** share of all day events */
+	@Param({ "0.1" })
+	public double allDayShare;
+
+	/** share of Notes events being occurrences of a recurring series */
+	@Param({ "0.2" })
+	public double recurrence;
+
+	private List<CalendarEvent> notesEvents;
+	private List<CalendarEvent> googleEvents;
+	private CalendarEvent sampleEvent;
+	private BenchmarkSettings settings;
+	private InMemoryNotesDatabase notesDatabase;
+	private ICalendarSink sink;
+
+	/** */
+	@Setup
+	public void setup() {
+		Logger.getRootLogger().setLevel(Level.WARN);
+		final SyntheticCalendar calendar = new SyntheticCalendar(size, overlap, duplicates, allDayShare, recurrence, 42);
+		notesEvents = calendar.getNotesEvents();
+		googleEvents = calendar.getGoogleEvents();
+		sampleEvent = notesEvents.get(notesEvents.size() / 2);
+		settings = new BenchmarkSettings(null);
+		notesDatabase = new InMemoryNotesDatabase(notesEvents);
+		sink = settings.createMemorySink(googleEvents);
+	}
+
+	/**
+	 * Indexing and matching both sides
+	 *
+	 * @return the diff
+	 */
+	@Benchmark
+	public CalendarEventDiff diff() {
+		return new CalendarEventDiff(notesEvents, googleEvents, settings.getSyncLastDateTime());
+	}
+
+	/**
+	 * Reading and matching both sides in slices of a week, four at the same time
+	 *
+	 * @return the merged diff
+	 */
+	@Benchmark
+	public CalendarEventDiff diffPartitioned() {
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDatabase.createNotesCalendarDao(settings.getSyncStartDate(), settings.getSyncEndDate()), sink,
+				new ICalendarEventFilter[0], settings.getSyncLastDateTime(), settings.getSyncMetrics());
+		return partitionedDiff.diff(settings.getSyncStartDate(), settings.getSyncEndDate(), 7, 4);
+	}
+
+	/**
+	 * Searching the matches of a single Notes event by {@link CalendarEventEqualsPredicate}, as done for each
+	 * Notes event before indexing
+	 *
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void equalsPredicateScan(final Blackhole blackhole) {
+		final CalendarEventEqualsPredicate predicate = new CalendarEventEqualsPredicate(sampleEvent);
+		for (final CalendarEvent googleEvent : googleEvents) {
+			blackhole.consume(predicate.evaluate(googleEvent));
+		}
+	}
+
+	/**
+	 * A complete synchronisation
+	 *
+	 * @param target a sink in the same state for every synchronisation
+	 */
+	@Benchmark
+	public void executeSync(final SinkState target) {
+		new SyncService().executeSync(notesDatabase.createNotesCalendarDao(settings.getSyncStartDate(), settings.getSyncEndDate()), target.sink,
+				new ICalendarEventFilter[0], new ICalendarEventObfuscator[0], settings);
+	}
+
+	/**
+	 * A sink filled with the Google events before each synchronisation, which changes it
+	 */
+	@State(Scope.Thread)
+	public static class SinkState {
+
+		private ICalendarSink sink;
+
+		/**
+		 * @param benchmark
+		 */
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setup(final SyncServiceBenchmark benchmark) {
+			sink = benchmark.settings.createMemorySink(benchmark.googleEvents);
+		}
+	}
+
+}
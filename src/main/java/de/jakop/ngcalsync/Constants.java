@@ -44,6 +44,20 @@ public interface Constants {
 	public static final String FILENAME_USER_SECRETS = "user.secrets"; //$NON-NLS-1$
 	/** */
 	public static final String FILENAME_LAST_SYNC_TIME = "LastSyncTime"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_GOOGLE_SYNC_TOKEN = "GoogleSyncToken"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_GOOGLE_EVENTS = "GoogleEvents.json"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_GOOGLE_EVENTS_JOURNAL = "GoogleEvents.journal"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_GOOGLE_CALENDAR_IDS = "GoogleCalendarIds.properties"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_NOTES_STATE = "NotesState.dat"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_SYNC_METRICS = "SyncMetrics.jsonl"; //$NON-NLS-1$
+	/** */
+	public static final String FILENAME_SINK_ICS = "Calendar.ics"; //$NON-NLS-1$
 
 	/* global */
 	/** */
@@ -27,6 +27,7 @@
 package de.jakop.ngcalsync;
 
 import java.awt.SystemTray;
+import java.io.File;
 import java.io.IOException;
 
 import org.apache.commons.cli.BasicParser;
@@ -36,6 +37,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.quartz.SchedulerException;
 
 import com.github.rodionmoiseev.c10n.C10N;
 import com.github.rodionmoiseev.c10n.C10NConfigBase;
@@ -45,14 +47,16 @@ import com.github.rodionmoiseev.c10n.annotations.En;
 import de.jakop.ngcalsync.application.Application;
 import de.jakop.ngcalsync.application.ConsoleDirectStarter;
 import de.jakop.ngcalsync.application.IApplicationStarter;
+import de.jakop.ngcalsync.application.SyncServer;
 import de.jakop.ngcalsync.application.TrayStarter;
 import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
 import de.jakop.ngcalsync.notes.NotesCalendarDaoFactory;
-import de.jakop.ngcalsync.notes.NotesClientOpenDatabaseStrategy;
+import de.jakop.ngcalsync.notes.PooledOpenDatabaseStrategy;
 import de.jakop.ngcalsync.service.SyncService;
 import de.jakop.ngcalsync.settings.NotesHelper;
 import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.sink.CalendarSinkFactory;
 import de.jakop.ngcalsync.util.file.DefaultFileAccessor;
 
 /**
@@ -66,6 +70,10 @@ public final class StartApplication {
 
 	private static final Log log = LogFactory.getLog(StartApplication.class);
 	private static final String COMMAND_OPTION_CONSOLE = "console"; //$NON-NLS-1$
+	private static final String COMMAND_OPTION_SERVER = "server"; //$NON-NLS-1$
+	private static final String COMMAND_OPTION_THREADS = "threads"; //$NON-NLS-1$
+
+	private final PooledOpenDatabaseStrategy openDatabaseStrategy = new PooledOpenDatabaseStrategy();
 
 	StartApplication() {
 		// this starter class is not meant to be instantiated from outside
@@ -88,7 +96,14 @@ public final class StartApplication {
 
 
 	Application initApplication(final Settings settings) {
-		return new Application(settings, new SyncService(), new NotesCalendarDaoFactory(new NotesClientOpenDatabaseStrategy()), new GoogleCalendarDaoFactory());
+		return new Application(settings, new SyncService(), new NotesCalendarDaoFactory(openDatabaseStrategy), new CalendarSinkFactory(new GoogleCalendarDaoFactory()));
+	}
+
+
+	SyncServer initServer(final CommandLine commandLine) {
+		final int threads = commandLine.hasOption(COMMAND_OPTION_THREADS) ? Integer.parseInt(commandLine.getOptionValue(COMMAND_OPTION_THREADS))
+				: SyncServer.DEFAULT_THREADS;
+		return new SyncServer(new File(commandLine.getOptionValue(COMMAND_OPTION_SERVER)), threads, new NotesHelper());
 	}
 
 
@@ -103,21 +118,41 @@ public final class StartApplication {
 	 * @throws IOException
 	 * @throws ConfigurationException
 	 * @throws ParseException
+	 * @throws SchedulerException
 	 */
-	public static void main(final String[] args) throws IOException, ConfigurationException, ParseException {
+	public static void main(final String[] args) throws IOException, ConfigurationException, ParseException, SchedulerException {
 
 		final StartApplication main = new StartApplication();
 
 		main.i18n();
 
+		final CommandLine commandLine = main.parseCommandLine(args);
+		if (commandLine.hasOption(COMMAND_OPTION_SERVER)) {
+			main.initServer(commandLine).start();
+			return;
+		}
+
 		final Settings settings = main.initSettings(new DefaultFileAccessor(), new NotesHelper());
+		settings.getSyncMetrics().register(null);
 		final Application application = main.initApplication(settings);
-		final CommandLine commandLine = main.parseCommandLine(args);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				main.releaseNotesSession();
+			}
+		});
 		final IApplicationStarter starter = main.createStarter(commandLine);
 		starter.startApplication(application, settings);
 
 	}
 
+	/**
+	 * Releases the Lotus Notes session kept between the synchronisations.
+	 */
+	void releaseNotesSession() {
+		openDatabaseStrategy.release();
+	}
+
 	void i18n() {
 		C10N.configure(new C10NConfigBase() {
 			@Override
@@ -131,6 +166,8 @@ public final class StartApplication {
 	CommandLine parseCommandLine(final String[] args) throws ParseException {
 		final Options options = new Options()//
 				.addOption(COMMAND_OPTION_CONSOLE, false, UserMessage.get().MSG_COMMAND_OPTION_DESCRIPTION_CONSOLE())//
+				.addOption(COMMAND_OPTION_SERVER, true, UserMessage.get().MSG_COMMAND_OPTION_DESCRIPTION_SERVER())//
+				.addOption(COMMAND_OPTION_THREADS, true, UserMessage.get().MSG_COMMAND_OPTION_DESCRIPTION_THREADS())//
 		;
 		final CommandLine commandLine = new BasicParser().parse(options, args);
 		return commandLine;
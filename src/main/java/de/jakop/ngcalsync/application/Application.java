@@ -35,19 +35,25 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 
+import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.EventTypeFilter;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
-import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
-import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.notes.INotesCalendarDAO;
 import de.jakop.ngcalsync.notes.NotesCalendarDaoFactory;
 import de.jakop.ngcalsync.obfuscator.DefaultCalendarEventObfuscator;
 import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
 import de.jakop.ngcalsync.service.SyncService;
 import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.settings.SyncTier;
+import de.jakop.ngcalsync.sink.CalendarSinkFactory;
+import de.jakop.ngcalsync.sink.ICalendarSink;
 import de.jakop.ngcalsync.tray.SynchronizeState;
 
 /**
@@ -64,28 +70,47 @@ public class Application extends Observable {
 	private final SyncService service;
 	private final SchedulerFacade scheduler;
 	private final NotesCalendarDaoFactory notesCalendarDaoFactory;
-	private final GoogleCalendarDaoFactory googleCalendarDaoFactory;
+	private final CalendarSinkFactory calendarSinkFactory;
 
 	/**
 	 *
 	 * @param settings
 	 * @param service
 	 * @param notesCalendarDaoFactory
-	 * @param googleCalendarDaoFactory
+	 * @param calendarSinkFactory
 	 */
 	public Application(final Settings settings, final SyncService service, final NotesCalendarDaoFactory notesCalendarDaoFactory,
-			final GoogleCalendarDaoFactory googleCalendarDaoFactory) {
+			final CalendarSinkFactory calendarSinkFactory) {
+		this(settings, service, notesCalendarDaoFactory, calendarSinkFactory, null, null);
+	}
+
+	/**
+	 * Creates an application scheduled by a scheduler shared with other applications, see {@link SyncServer}.
+	 *
+	 * @param settings
+	 * @param service
+	 * @param notesCalendarDaoFactory
+	 * @param calendarSinkFactory
+	 * @param sharedScheduler the shared scheduler, <code>null</code> for an own one
+	 * @param name distinguishes the application in the shared scheduler
+	 */
+	Application(final Settings settings, final SyncService service, final NotesCalendarDaoFactory notesCalendarDaoFactory,
+			final CalendarSinkFactory calendarSinkFactory, final Scheduler sharedScheduler, final String name) {
 		Validate.notNull(settings);
 		Validate.notNull(service);
 		Validate.notNull(notesCalendarDaoFactory);
-		Validate.notNull(googleCalendarDaoFactory);
+		Validate.notNull(calendarSinkFactory);
 		this.settings = settings;
 		this.service = service;
 		this.notesCalendarDaoFactory = notesCalendarDaoFactory;
-		this.googleCalendarDaoFactory = googleCalendarDaoFactory;
+		this.calendarSinkFactory = calendarSinkFactory;
 
 		try {
-			scheduler = new SchedulerFacade(this);
+			if (sharedScheduler == null) {
+				scheduler = new SchedulerFacade(this);
+			} else {
+				scheduler = new SchedulerFacade(this, sharedScheduler, name);
+			}
 		} catch (final ParseException e) {
 			throw new RuntimeException(e);
 		} catch (final SchedulerException e) {
@@ -100,11 +125,30 @@ public class Application extends Observable {
 	}
 
 	/**
-	 * Starts synchronisation.
+	 * @return the metrics of this application's synchronisations
+	 */
+	SyncMetrics getSyncMetrics() {
+		return settings.getSyncMetrics();
+	}
+
+	/**
+	 * Starts synchronisation of the whole sync period.
 	 */
 	void synchronize() {
+		synchronize(true);
+	}
 
+	/**
+	 * Starts synchronisation.
+	 *
+	 * @param allTiers <code>true</code> to synchronise all tiers of the sync period, <code>false</code> for the due ones only
+	 */
+	void synchronize(final boolean allTiers) {
+
+		final SyncMetrics metrics = settings.getSyncMetrics();
+		boolean successful = false;
 		try {
+			metrics.start();
 			setChanged();
 			notifyObservers(SynchronizeState.RUNNING);
 
@@ -117,22 +161,65 @@ public class Application extends Observable {
 			final ICalendarEventObfuscator[] obfuscators = new ICalendarEventObfuscator[] { typeObfuscator };
 
 			final INotesCalendarDAO notesCalendarDao = notesCalendarDaoFactory.createNotesCalendarDao(settings);
-			final IGoogleCalendarDAO googleCalendarDao = googleCalendarDaoFactory.createGoogleCalendarDao(settings);
-
-			service.executeSync(notesCalendarDao, googleCalendarDao, filters, obfuscators, settings);
-
-			// Update Last Sync Execution Date & Time
-			settings.setSyncLastDateTime(Calendar.getInstance());
-			settings.saveLastSyncDateTime();
+			try {
+				final ICalendarSink calendarSink = calendarSinkFactory.createCalendarSink(settings);
+
+				if (settings.getSyncTiers().isEmpty()) {
+					service.executeSync(notesCalendarDao, calendarSink, filters, obfuscators, settings);
+
+					// Update Last Sync Execution Date & Time
+					settings.setSyncLastDateTime(Calendar.getInstance());
+					settings.saveLastSyncDateTime();
+				} else {
+					synchronizeTiers(notesCalendarDao, calendarSink, filters, obfuscators, allTiers);
+				}
+			} finally {
+				notesCalendarDao.close();
+			}
 
 			log.info(UserMessage.get().MSG_SYNC_ENDED());
+			successful = true;
 		} finally {
+			metrics.finish(successful);
+			metrics.append(settings.getSettingsFile(Constants.FILENAME_SYNC_METRICS));
 			setChanged();
 			notifyObservers(SynchronizeState.IDLE);
 		}
 
 	}
 
+	/**
+	 * A failing tier does not stop the others, its failure is thrown after all tiers are done, so the time of its
+	 * last synchronisation is not advanced.
+	 */
+	private void synchronizeTiers(final INotesCalendarDAO notesCalendarDao, final ICalendarSink calendarSink, final ICalendarEventFilter[] filters,
+			final ICalendarEventObfuscator[] obfuscators, final boolean allTiers) {
+
+		SynchronisationException failure = null;
+		for (final SyncTier tier : settings.getSyncTiers()) {
+			final Calendar now = Calendar.getInstance();
+			if (!allTiers && !tier.isDue(now)) {
+				continue;
+			}
+
+			log.info(UserMessage.get().MSG_SYNC_TIER_STARTED(CalendarEvent.format(tier.getStart().getTimeInMillis()), CalendarEvent.format(tier.getEnd().getTimeInMillis())));
+			try {
+				service.executeSync(notesCalendarDao, calendarSink, filters, obfuscators, settings, tier);
+
+				// events modified while synchronising are updated by the tier's next synchronisation
+				tier.setSyncLastDateTime(now);
+				settings.saveLastSyncDateTime(tier);
+			} catch (final SynchronisationException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
 	/**
 	 * @return <code>true</code>, if a restart is supposed
 	 */
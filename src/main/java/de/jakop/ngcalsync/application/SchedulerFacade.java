@@ -60,6 +60,8 @@ public class SchedulerFacade {
 	public static final String DEFAULT_CRON_EXPRESSION = "0 */15 * * * ?"; //$NON-NLS-1$
 
 	private final Application application;
+	private final String jobName;
+	private final String triggerName;
 
 	private boolean started = false;
 	private final Scheduler scheduler;
@@ -73,11 +75,27 @@ public class SchedulerFacade {
 	 * @throws SchedulerException
 	 */
 	public SchedulerFacade(final Application application) throws ParseException, SchedulerException {
+		this(application, new StdSchedulerFactory().getScheduler(), null);
+		scheduler.start();
+	}
+
+	/**
+	 * Schedules the application with a scheduler shared by several applications, e.g. one per user in server
+	 * mode. The shared scheduler is started by its owner.
+	 *
+	 * @param application
+	 * @param scheduler
+	 * @param name distinguishes the application's job from the others, <code>null</code> if not shared
+	 * @throws ParseException
+	 */
+	SchedulerFacade(final Application application, final Scheduler scheduler, final String name) throws ParseException {
 		Validate.notNull(application);
+		Validate.notNull(scheduler);
 		this.application = application;
+		this.scheduler = scheduler;
+		jobName = name == null ? SYNC_JOB_NAME : SYNC_JOB_NAME + "." + name; //$NON-NLS-1$
+		triggerName = name == null ? SYNC_TRIGGER_NAME : SYNC_TRIGGER_NAME + "." + name; //$NON-NLS-1$
 		cronTimerExpression = new CronExpression(DEFAULT_CRON_EXPRESSION);
-		scheduler = new StdSchedulerFactory().getScheduler();
-		scheduler.start();
 	}
 
 	/**
@@ -101,7 +119,7 @@ public class SchedulerFacade {
 	}
 
 	/**
-	 * Triggers synchronisation right now, if not already running.
+	 * Triggers synchronisation of all tiers of the sync period right now, if not already running.
 	 *
 	 * @throws SchedulerException
 	 */
@@ -115,7 +133,9 @@ public class SchedulerFacade {
 			scheduler.pauseJob(jobKey);
 		}
 
-		scheduler.triggerJob(jobKey);
+		final JobDataMap triggerDataMap = new JobDataMap();
+		triggerDataMap.put(SynchronizeJob.ALL_TIERS, Boolean.TRUE);
+		scheduler.triggerJob(jobKey, triggerDataMap);
 
 		if (started) {
 			scheduler.resumeJob(jobKey);
@@ -123,7 +143,8 @@ public class SchedulerFacade {
 	}
 
 	/**
-	 * Reschedules the synchronizin job with the given cron expression.
+	 * Reschedules the synchronizin job with the given cron expression. If the sync period is divided into tiers,
+	 * each run synchronises the tiers due.
 	 * <p>Some examples:
 	 * <table>
 	 * <tr><td>Every 15 min. (default)</td><td>0 *&frasl;15 * * * ?</td><tr>
@@ -145,14 +166,14 @@ public class SchedulerFacade {
 		syncDataMap.put(SynchronizeJob.APPLICATION, application);
 
 		final JobDetail job = JobBuilder.newJob(SynchronizeJob.class) //
-				.withIdentity(SYNC_JOB_NAME, SYNC_GROUP_NAME) //
+				.withIdentity(jobName, SYNC_GROUP_NAME) //
 				.setJobData(syncDataMap)//
 				.build();
 
 		jobKey = job.getKey();
 
 		final Trigger trigger = TriggerBuilder.newTrigger() //
-				.withIdentity(SYNC_TRIGGER_NAME, SYNC_GROUP_NAME) //
+				.withIdentity(triggerName, SYNC_GROUP_NAME) //
 				.withSchedule(CronScheduleBuilder.cronSchedule(cronTimerExpression)) //
 				.forJob(job) //
 				.build();
@@ -167,7 +188,7 @@ public class SchedulerFacade {
 	private boolean isJobRunning() throws SchedulerException {
 		final List<JobExecutionContext> jobs = scheduler.getCurrentlyExecutingJobs();
 		for (final JobExecutionContext job : jobs) {
-			if (job.getJobDetail().getKey() == jobKey) {
+			if (job.getJobDetail().getKey().equals(jobKey)) {
 				return true;
 			}
 		}
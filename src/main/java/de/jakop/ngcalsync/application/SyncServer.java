@@ -0,0 +1,216 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.application;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+
+import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
+import de.jakop.ngcalsync.google.HttpTransportFactory;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.notes.NotesCalendarDaoFactory;
+import de.jakop.ngcalsync.notes.PooledOpenDatabaseStrategy;
+import de.jakop.ngcalsync.oauth.UserInputReceiverFactory;
+import de.jakop.ngcalsync.service.SyncService;
+import de.jakop.ngcalsync.settings.NotesHelper;
+import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.sink.CalendarSinkFactory;
+import de.jakop.ngcalsync.util.file.DefaultFileAccessor;
+
+/**
+ * Synchronises the calendars of many users in one process. Each subdirectory of the server's directory containing
+ * a {@link Constants#FILENAME_SYNC_PROPERTIES} is the profile of a user and is synchronised by its own
+ * {@link Application} with the user's settings and schedule.
+ * <p>
+ * All users share one scheduler, whose fixed number of threads bounds the number of users synchronised at the
+ * same time. Each user records its own metrics, exposed through JMX by the name of its profile. Users with the
+ * same transport configuration share the transport to Google, so its connections are
+ * reused across the users, and users of the same Google account share its rate limit. A user is never
+ * synchronised by more than one thread at a time, a slow user delays its own next synchronisation only.
+ *
+ * @author fjakop
+ */
+public class SyncServer {
+
+	/** default number of users synchronised at the same time */
+	public static final int DEFAULT_THREADS = 10;
+
+	private static final String SCHEDULER_NAME = "ngcalsync.server"; //$NON-NLS-1$
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final File directory;
+	private final int threads;
+	private final NotesHelper notesHelper;
+	private final SyncService service = new SyncService();
+	private final HttpTransportFactory httpTransportFactory = new HttpTransportFactory();
+	private final GoogleCalendarDaoFactory googleCalendarDaoFactory = new GoogleCalendarDaoFactory();
+	private final JsonFactory jsonFactory = new JacksonFactory();
+	private final List<Application> applications = new ArrayList<Application>();
+	private final List<PooledOpenDatabaseStrategy> openDatabaseStrategies = new ArrayList<PooledOpenDatabaseStrategy>();
+
+	private Scheduler scheduler;
+
+	/**
+	 *
+	 * @param directory contains the profiles of the users
+	 * @param threads number of users synchronised at the same time
+	 * @param notesHelper
+	 */
+	public SyncServer(final File directory, final int threads, final NotesHelper notesHelper) {
+		Validate.notNull(directory);
+		Validate.isTrue(threads > 0);
+		Validate.notNull(notesHelper);
+		this.directory = directory;
+		this.threads = threads;
+		this.notesHelper = notesHelper;
+	}
+
+	/**
+	 * Schedules the synchronisation of all profiles. Profiles which cannot be started are logged and skipped.
+	 *
+	 * @throws SchedulerException
+	 */
+	public void start() throws SchedulerException {
+		log.debug(TechMessage.get().MSG_START_IN_SERVER_MODE(directory.getAbsolutePath()));
+
+		scheduler = new StdSchedulerFactory(createSchedulerProperties()).getScheduler();
+
+		for (final File profile : getProfiles()) {
+			try {
+				applications.add(startProfile(profile));
+			} catch (final Exception e) {
+				log.error(UserMessage.get().MSG_PROFILE_NOT_STARTED(profile.getName()), e);
+			}
+		}
+
+		scheduler.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				shutdown();
+			}
+		});
+		log.info(UserMessage.get().MSG_SERVER_STARTED(applications.size(), threads));
+	}
+
+	/**
+	 * Stops the scheduling, waits for running synchronisations to finish and releases the Lotus Notes sessions.
+	 */
+	public void shutdown() {
+		try {
+			if (scheduler != null && !scheduler.isShutdown()) {
+				scheduler.shutdown(true);
+			}
+			for (final Application application : applications) {
+				application.getSyncMetrics().unregister();
+			}
+			for (final PooledOpenDatabaseStrategy openDatabaseStrategy : openDatabaseStrategies) {
+				openDatabaseStrategy.release();
+			}
+			httpTransportFactory.shutdown();
+		} catch (final SchedulerException e) {
+			throw new RuntimeException(e);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the applications of the profiles started
+	 */
+	List<Application> getApplications() {
+		return applications;
+	}
+
+	Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * @return the subdirectories containing a profile, sorted by name
+	 */
+	List<File> getProfiles() {
+		final File[] profiles = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(final File file) {
+				return new File(file, Constants.FILENAME_SYNC_PROPERTIES).isFile();
+			}
+		});
+		if (profiles == null) {
+			return new ArrayList<File>();
+		}
+		Arrays.sort(profiles);
+		return Arrays.asList(profiles);
+	}
+
+	private Application startProfile(final File profile) throws Exception {
+		final Settings settings = new Settings(new DefaultFileAccessor(profile), LogFactory.getLog(Settings.class), notesHelper);
+		settings.setUserInputReceiver(UserInputReceiverFactory.createUnattendedReceiver());
+
+		final PooledOpenDatabaseStrategy openDatabaseStrategy = new PooledOpenDatabaseStrategy();
+		final Application application = new Application(settings, service, new NotesCalendarDaoFactory(openDatabaseStrategy),
+				new CalendarSinkFactory(googleCalendarDaoFactory), scheduler, profile.getName());
+		settings.loadUpgraded();
+		settings.setHttpTransport(httpTransportFactory.getHttpTransport(settings), jsonFactory);
+		settings.getSyncMetrics().register(profile.getName());
+
+		final SchedulerFacade facade = application.getScheduler();
+		facade.schedule(settings.getSyncRecurrenceExpression());
+		facade.start();
+		openDatabaseStrategies.add(openDatabaseStrategy);
+		return application;
+	}
+
+	private Properties createSchedulerProperties() {
+		final Properties properties = new Properties();
+		properties.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, SCHEDULER_NAME);
+		properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, "org.quartz.simpl.SimpleThreadPool"); //$NON-NLS-1$
+		properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(threads)); //$NON-NLS-1$
+		properties.setProperty(StdSchedulerFactory.PROP_JOB_STORE_CLASS, "org.quartz.simpl.RAMJobStore"); //$NON-NLS-1$
+		properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+		return properties;
+	}
+
+}
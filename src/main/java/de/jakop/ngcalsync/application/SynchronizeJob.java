@@ -26,25 +26,31 @@
  */
 package de.jakop.ngcalsync.application;
 
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 /**
- * Job for actually executing the synchronisation. Triggered by the {@link SchedulerFacade}
+ * Job for actually executing the synchronisation. Triggered by the {@link SchedulerFacade}. A synchronisation
+ * taking longer than the schedule's interval delays the next one instead of running twice, so with a shared
+ * scheduler a user never occupies more than one worker.
  *
  * @author fjakop
  */
+@DisallowConcurrentExecution
 public class SynchronizeJob implements Job {
 
 	static final String APPLICATION = "application"; //$NON-NLS-1$
+	static final String ALL_TIERS = "allTiers"; //$NON-NLS-1$
 
 	@Override
 	public void execute(final JobExecutionContext context) throws JobExecutionException {
 
 		final Application application = (Application) context.getJobDetail().getJobDataMap().get(APPLICATION);
 		if (!application.reloadSettings()) {
-			application.synchronize();
+			// scheduled synchronisations are limited to the due tiers of the sync period
+			application.synchronize(Boolean.TRUE.equals(context.getMergedJobDataMap().get(ALL_TIERS)));
 		}
 	}
 
@@ -29,9 +29,15 @@ package de.jakop.ngcalsync.calendar;
 import de.jakop.ngcalsync.util.Dates;
 
 import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
 
 /**
  * Value object for calendar events
+ * <p>
+ * Times are kept as milliseconds since the epoch together with the id of the event's time zone. The
+ * {@link Calendar} accessors are for convenience, they create a new {@link Calendar} on each call, so
+ * modifying a returned {@link Calendar} does not change the event.
  */
 public class CalendarEvent {
 
@@ -45,13 +51,22 @@ public class CalendarEvent {
             "LastUpdated    : %s%n" + // //$NON-NLS-1$
             "EventType      : %s"; //$NON-NLS-1$
 
+    /** value of a time not set */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private String id;
+    private String sourceId;
+    private String fingerprint;
     private String title;
     private String content;
-    private Calendar startDateTime;
-    private Calendar endDateTime;
+    private long startMillis = NO_TIME;
+    private long endMillis = NO_TIME;
+    private String timeZoneId;
     private String location;
-    private Calendar lastUpdated;
+    private long lastUpdatedMillis = NO_TIME;
     private EventType eventType = EventType.NORMAL_EVENT;
     private boolean _private;
 
@@ -64,18 +79,22 @@ public class CalendarEvent {
                 id, //
                 title, //
                 content, //
-                format(startDateTime), //
-                format(endDateTime), //
+                format(startMillis), //
+                format(endMillis), //
                 location, //
-                format(lastUpdated), //
+                format(lastUpdatedMillis), //
                 eventType);
     }
 
-    private static String format(final Calendar date) {
-        if (date == null) {
+    /**
+     * @param millis
+     * @return the formatted time or <code>null</code>, if the time is {@link #NO_TIME}
+     */
+    public static String format(final long millis) {
+        if (millis == NO_TIME) {
             return null;
         }
-        return Dates.DATE_FORMAT.format(date.getTime());
+        return Dates.DATE_FORMAT.format(new Date(millis));
     }
 
     /**
@@ -92,6 +111,76 @@ public class CalendarEvent {
         this.id = id;
     }
 
+    /**
+     * @return stable identity of the Lotus Notes event this event originates from, <code>null</code> if
+     *         unknown
+     */
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    /**
+     * @param sourceId stable identity of the Lotus Notes event this event originates from
+     */
+    public void setSourceId(final String sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    /**
+     * @return fingerprint of the content the event has been written to Google with, <code>null</code> if
+     *         unknown
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param fingerprint fingerprint of the content the event has been written to Google with
+     */
+    public void setFingerprint(final String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Computes a 64 bit FNV-1a hash of the content written to Google - title, description, location, times,
+     * time zone, all day flag and source id. Equal fingerprints mean that writing the event again would not
+     * change it.
+     *
+     * @return the fingerprint as 16 hexadecimal digits
+     */
+    public String computeFingerprint() {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, title);
+        hash = hash(hash, content);
+        hash = hash(hash, location);
+        hash = hash(hash, timeZoneId);
+        hash = hash(hash, sourceId);
+        hash = hash(hash, startMillis);
+        hash = hash(hash, endMillis);
+        hash = hash(hash, isAllDay() ? 1 : 0);
+        return String.format("%016x", Long.valueOf(hash)); //$NON-NLS-1$
+    }
+
+    private static long hash(final long hash, final String value) {
+        if (value == null) {
+            // distinguishes null from the empty string
+            return hash(hash, -1);
+        }
+        long result = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            result = (result ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return result;
+    }
+
+    private static long hash(final long hash, final long value) {
+        long result = hash;
+        for (int shift = 0; shift < 64; shift += 8) {
+            result = (result ^ (value >>> shift & 0xff)) * FNV_PRIME;
+        }
+        return result;
+    }
+
     /**
      * @return event's title
      */
@@ -121,31 +210,83 @@ public class CalendarEvent {
     }
 
     /**
-     * @return event's starting time
+     * @return a new {@link Calendar} of the event's starting time or <code>null</code>, if not set
      */
     public Calendar getStartDateTime() {
-        return startDateTime;
+        return toCalendar(startMillis);
     }
 
     /**
+     * Sets the starting time and the event's time zone
+     *
      * @param startDateTime event's starting time
      */
     public void setStartDateTime(final Calendar startDateTime) {
-        this.startDateTime = startDateTime;
+        startMillis = toMillis(startDateTime);
+        timeZoneId = startDateTime == null ? null : startDateTime.getTimeZone().getID();
+    }
+
+    /**
+     * @return event's starting time in milliseconds or {@link #NO_TIME}
+     */
+    public long getStartMillis() {
+        return startMillis;
     }
 
     /**
-     * @return event's ending time
+     * @param startMillis event's starting time in milliseconds or {@link #NO_TIME}
+     */
+    public void setStartMillis(final long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * @return a new {@link Calendar} of the event's ending time or <code>null</code>, if not set
      */
     public Calendar getEndDateTime() {
-        return endDateTime;
+        return toCalendar(endMillis);
     }
 
     /**
      * @param endDateTime event's ending time
      */
     public void setEndDateTime(final Calendar endDateTime) {
-        this.endDateTime = endDateTime;
+        endMillis = toMillis(endDateTime);
+    }
+
+    /**
+     * @return event's ending time in milliseconds or {@link #NO_TIME}
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @param endMillis event's ending time in milliseconds or {@link #NO_TIME}
+     */
+    public void setEndMillis(final long endMillis) {
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * @return id of the event's time zone, <code>null</code> for the default time zone
+     */
+    public String getTimeZoneId() {
+        return timeZoneId;
+    }
+
+    /**
+     * @param timeZoneId id of the event's time zone, <code>null</code> for the default time zone
+     */
+    public void setTimeZoneId(final String timeZoneId) {
+        this.timeZoneId = timeZoneId;
+    }
+
+    /**
+     * @return the event's time zone
+     */
+    public TimeZone getTimeZone() {
+        return timeZoneId == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZoneId);
     }
 
     /**
@@ -166,14 +307,28 @@ public class CalendarEvent {
      * @param lastupdated last update of this event
      */
     public void setLastUpdated(final Calendar lastupdated) {
-        lastUpdated = lastupdated;
+        lastUpdatedMillis = toMillis(lastupdated);
     }
 
     /**
-     * @return last update of this event
+     * @return a new {@link Calendar} of the last update of this event or <code>null</code>, if not set
      */
     public Calendar getLastUpdated() {
-        return lastUpdated;
+        return toCalendar(lastUpdatedMillis);
+    }
+
+    /**
+     * @return last update of this event in milliseconds or {@link #NO_TIME}
+     */
+    public long getLastUpdatedMillis() {
+        return lastUpdatedMillis;
+    }
+
+    /**
+     * @param lastUpdatedMillis last update of this event in milliseconds or {@link #NO_TIME}
+     */
+    public void setLastUpdatedMillis(final long lastUpdatedMillis) {
+        this.lastUpdatedMillis = lastUpdatedMillis;
     }
 
     /**
@@ -212,4 +367,17 @@ public class CalendarEvent {
         return getEventType() == EventType.ALL_DAY_EVENT || getEventType() == EventType.ANNIVERSARY;
     }
 
+    private Calendar toCalendar(final long millis) {
+        if (millis == NO_TIME) {
+            return null;
+        }
+        final Calendar calendar = Calendar.getInstance(getTimeZone());
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    private static long toMillis(final Calendar calendar) {
+        return calendar == null ? NO_TIME : calendar.getTimeInMillis();
+    }
+
 }
@@ -30,23 +30,44 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.Calendar.Events.Insert;
+import com.google.api.services.calendar.Calendar.Events.Patch;
 import com.google.api.services.calendar.model.CalendarList;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Event.ExtendedProperties;
 import com.google.api.services.calendar.model.Event.Reminders;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.EventReminder;
 import com.google.api.services.calendar.model.Events;
 
+import de.jakop.ngcalsync.Constants;
 import de.jakop.ngcalsync.calendar.CalendarEvent;
 import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
 import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
 import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
@@ -61,6 +82,34 @@ import de.jakop.ngcalsync.settings.Settings;
  */
 class GoogleCalendarDAO implements IGoogleCalendarDAO {
 
+	/** answer to an expired sync token */
+	private static final int STATUS_CODE_GONE = 410;
+	/** answer to an unknown calendar id */
+	private static final int STATUS_CODE_NOT_FOUND = 404;
+	/** largest page of the calendar list the server delivers */
+	private static final int CALENDAR_LIST_PAGE_SIZE = 250;
+	/** fields of a page of the calendar list needed to find a calendar by its name */
+	static final String CALENDAR_LIST_FIELDS = "items(id,summary),nextPageToken"; //$NON-NLS-1$
+
+	/** number of events per page, if not configured */
+	private static final int DEFAULT_PAGE_SIZE = 250;
+	/** largest page the server delivers */
+	private static final int MAX_PAGE_SIZE = 2500;
+	/** delay before retrying a rate limited or failed mutation */
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+	/** private extended property holding the source id of an event */
+	static final String PROPERTY_SOURCE_ID = "ngcalsync.sourceId"; //$NON-NLS-1$
+	/** private extended property holding the fingerprint of the content an event has been written with */
+	static final String PROPERTY_FINGERPRINT = "ngcalsync.fingerprint"; //$NON-NLS-1$
+	/**
+	 * fields of an event read from Google: the converted ones, the ones compared when patching and the status of
+	 * incrementally fetched events
+	 */
+	static final String EVENT_FIELDS = "id,status,summary,description,location,updated,start,end,reminders,extendedProperties/private"; //$NON-NLS-1$
+	/** fields of a page of events read from Google */
+	static final String EVENTS_FIELDS = "items(" + EVENT_FIELDS + "),nextPageToken,nextSyncToken"; //$NON-NLS-1$ //$NON-NLS-2$
+	/** fields of the event answered to a mutation, only the id of an inserted event is used */
+	static final String MUTATION_FIELDS = "id"; //$NON-NLS-1$
 
 	private final Log log = LogFactory.getLog(getClass());
 
@@ -68,15 +117,59 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 
 	private final Settings settings;
 
-	private com.google.api.services.calendar.model.Calendar calendar;
+	private GoogleCalendarIdCache calendarIdCache;
+	private String calendarId;
+	/** <code>true</code>, if the calendar id has been taken from the cache and may be stale */
+	private boolean calendarIdCached;
+
+	private final int batchSize;
+	private final List<BatchedMutation<?>> batched = new ArrayList<BatchedMutation<?>>();
+	private final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+	/** sends the mutations, in its threads if they are sent in parallel */
+	private final GoogleMutationExecutor mutationExecutor;
+	private final boolean parallelMutations;
+
+	/** the events read by the last {@link #getEvents(ICalendarEventFilter[], ICalendarEventConsumer)} or the reads of parts of the sync period, by id */
+	private final Map<String, Event> knownEvents = Collections.synchronizedMap(new HashMap<String, Event>());
+
+	/** the mirror shared by the reads of parts of the sync period, brought up to date by the first of them */
+	private GoogleEventMirror sharedMirror;
 
 	/**
 	 *
 	 * @param settings
 	 */
 	GoogleCalendarDAO(final Settings settings) {
+		this(settings, GoogleMutationExecutor.createRateLimit(settings.getGoogleRequestsPerSecond()));
+	}
+
+	/**
+	 *
+	 * @param settings
+	 * @param rateLimit limits the requests of all DAOs of the account, <code>null</code> for no limit
+	 */
+	GoogleCalendarDAO(final Settings settings, final TokenBucket rateLimit) {
 		this.settings = settings;
 		service = settings.getGoogleCalendarService();
+		batchSize = settings.getGoogleBatchSize();
+
+		final int mutationThreads = settings.getGoogleMutationThreads();
+		parallelMutations = !isBatchMode() && mutationThreads > 1;
+		if (parallelMutations) {
+			log.debug(TechMessage.get().MSG_SENDING_CHANGES_PARALLEL(mutationThreads, settings.getGoogleRequestsPerSecond()));
+		}
+		mutationExecutor = new GoogleMutationExecutor(Math.max(1, mutationThreads), rateLimit, INITIAL_BACKOFF_MILLIS, settings.getSyncMetrics());
+	}
+
+	private boolean isBatchMode() {
+		return batchSize > 1;
+	}
+
+	/**
+	 * @return <code>true</code>, if mutations are sent in the background and their results are collected by {@link #flush()}
+	 */
+	private boolean isDeferred() {
+		return isBatchMode() || parallelMutations;
 	}
 
 
@@ -89,8 +182,12 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 
 		Event insertedEvent;
 		try {
-			final Insert insert = settings.getGoogleCalendarService().events().insert(getCalendar().getId(), myEvent);
-			insertedEvent = insert.execute();
+			final Insert insert = settings.getGoogleCalendarService().events().insert(getCalendarId(), myEvent).setFields(MUTATION_FIELDS);
+			if (isDeferred()) {
+				queue(insert, event);
+				return null;
+			}
+			insertedEvent = mutationExecutor.send(insert, event);
 
 			final String id = insertedEvent.getId();
 			return id;
@@ -101,12 +198,47 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 
 	@Override
 	public void update(final String id, final CalendarEvent event) {
+		final Event myEvent = new Event();
+		updateCalendarEventData(event, myEvent);
+
+		final Event knownEvent = knownEvents.get(id);
+		if (knownEvent != null) {
+			patch(id, event, GoogleEventPatch.of(knownEvent, myEvent));
+			return;
+		}
+
 		log.debug(TechMessage.get().MSG_EXECUTING_UPDATE(event.getTitle()));
+		try {
+			if (isDeferred()) {
+				// patching all our fields has the same effect as reading and updating the whole event
+				queue(service.events().patch(getCalendarId(), id, GoogleEventPatch.all(myEvent)).setFields(MUTATION_FIELDS), event);
+				return;
+			}
+			final Event googleEvent = mutationExecutor.send(service.events().get(getCalendarId(), id), event);
+			updateCalendarEventData(event, googleEvent);
+			mutationExecutor.send(service.events().update(getCalendarId(), id, googleEvent), event);
+		} catch (final IOException e) {
+			throw new SynchronisationException(e);
+		}
+	}
+
+	/**
+	 * Sends only the changed fields of an event already read, which saves reading it again
+	 */
+	private void patch(final String id, final CalendarEvent event, final Event patch) {
+		if (patch == null) {
+			log.debug(TechMessage.get().MSG_SKIPPING_UNCHANGED_UPDATE(event.getTitle()));
+			return;
+		}
 
+		log.debug(TechMessage.get().MSG_EXECUTING_UPDATE(event.getTitle()));
 		try {
-			final Event myEvent = service.events().get(getCalendar().getId(), id).execute();
-			updateCalendarEventData(event, myEvent);
-			service.events().update(getCalendar().getId(), id, myEvent).execute();
+			final Patch request = service.events().patch(getCalendarId(), id, patch).setFields(MUTATION_FIELDS);
+			if (isDeferred()) {
+				queue(request, event);
+				return;
+			}
+			mutationExecutor.send(request, event);
 		} catch (final IOException e) {
 			throw new SynchronisationException(e);
 		}
@@ -117,7 +249,13 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 		log.debug(TechMessage.get().MSG_EXECUTING_DELETE(id));
 
 		try {
-			service.events().delete(getCalendar().getId(), id).execute();
+			final CalendarEvent event = new CalendarEvent();
+			event.setId(id);
+			if (isDeferred()) {
+				queue(service.events().delete(getCalendarId(), id), event);
+				return;
+			}
+			mutationExecutor.send(service.events().delete(getCalendarId(), id), event);
 		} catch (final IOException e) {
 			throw new SynchronisationException(e);
 		}
@@ -125,92 +263,365 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 	}
 
 	@Override
-	public List<CalendarEvent> getEvents(final ICalendarEventFilter[] filters) throws SynchronisationException {
-		log.info(UserMessage.get().MSG_READING_GOOGLE_EVENTS(getCalendar().getSummary()));
+	public Map<CalendarEvent, SynchronisationException> flush() {
+		if (!batched.isEmpty()) {
+			executeBatch();
+		}
+		if (parallelMutations) {
+			failures.putAll(mutationExecutor.await());
+		}
+		final Map<CalendarEvent, SynchronisationException> result = new LinkedHashMap<CalendarEvent, SynchronisationException>(failures);
+		failures.clear();
+		return result;
+	}
+
+	private <T> void queue(final AbstractGoogleJsonClientRequest<T> request, final CalendarEvent event) {
+		if (parallelMutations) {
+			mutationExecutor.submit(request, event);
+			return;
+		}
+		batched.add(new BatchedMutation<T>(request, event));
+
+		if (batched.size() >= batchSize) {
+			executeBatch();
+		}
+	}
 
+	/**
+	 * Sends the queued mutations. Mutations Google answers with a rate limit or a temporary failure are sent again
+	 * in a batch of their own after a backoff, until they succeed or run out of attempts.
+	 */
+	private void executeBatch() {
+		List<BatchedMutation<?>> mutations = new ArrayList<BatchedMutation<?>>(batched);
+		batched.clear();
+		try {
+			while (!mutations.isEmpty()) {
+				final List<BatchedMutation<?>> retries = sendBatch(mutations);
+				if (!retries.isEmpty()) {
+					int attempts = 0;
+					for (final BatchedMutation<?> retry : retries) {
+						attempts = Math.max(attempts, retry.attempts);
+					}
+					final long delay = mutationExecutor.getBackoff(attempts);
+					for (final BatchedMutation<?> retry : retries) {
+						mutationExecutor.retrying(retry.event, retry.attempts + 1, delay, retry.failure);
+					}
+					TimeUnit.MILLISECONDS.sleep(delay);
+				}
+				mutations = retries;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (final BatchedMutation<?> mutation : mutations) {
+				failures.put(mutation.event, new SynchronisationException(e));
+			}
+		} catch (final IOException e) {
+			for (final BatchedMutation<?> mutation : mutations) {
+				failures.put(mutation.event, new SynchronisationException(e));
+			}
+		}
+	}
+
+	/**
+	 * @return the mutations to be sent again
+	 */
+	private List<BatchedMutation<?>> sendBatch(final List<BatchedMutation<?>> mutations) throws IOException, InterruptedException {
+		final List<BatchedMutation<?>> retries = new ArrayList<BatchedMutation<?>>();
+		final Set<BatchedMutation<?>> unanswered = new LinkedHashSet<BatchedMutation<?>>(mutations);
+		final BatchRequest batch = service.batch();
+		for (final BatchedMutation<?> mutation : mutations) {
+			mutation.queue(batch, retries, unanswered);
+		}
+
+		// Google counts each mutation of a batch as a request
+		mutationExecutor.acquire(mutations.size());
+		log.debug(TechMessage.get().MSG_EXECUTING_BATCH(batch.size()));
+		try {
+			batch.execute();
+		} catch (final IOException e) {
+			// the whole request failed, so did every mutation without an answer
+			for (final BatchedMutation<?> mutation : unanswered) {
+				mutation.failed(GoogleMutationExecutor.isRetryable(e), e.getMessage(), new SynchronisationException(e), retries);
+			}
+		}
+		return retries;
+	}
+
+	@Override
+	public void release(final Collection<CalendarEvent> events) {
+		for (final CalendarEvent event : events) {
+			knownEvents.remove(event.getId());
+		}
+	}
+
+	@Override
+	public List<CalendarEvent> getEvents(final ICalendarEventFilter[] filters) throws SynchronisationException {
 		final List<CalendarEvent> events = new ArrayList<CalendarEvent>();
+		getEvents(filters, new ICalendarEventConsumer() {
+
+			@Override
+			public void consume(final Collection<CalendarEvent> page) {
+				events.addAll(page);
+			}
+		});
+		return events;
+	}
+
+	@Override
+	public void getEvents(final ICalendarEventFilter[] filters, final ICalendarEventConsumer consumer) throws SynchronisationException {
+		knownEvents.clear();
+		getEvents(settings.getSyncStartDate(), settings.getSyncEndDate(), true, consumer);
+	}
+
+	@Override
+	public void getEvents(final ICalendarEventFilter[] filters, final Calendar start, final Calendar end, final ICalendarEventConsumer consumer) throws SynchronisationException {
+		getEvents(start, end, false, consumer);
+	}
+
+	private void getEvents(final Calendar sdt, final Calendar edt, final boolean wholePeriod, final ICalendarEventConsumer consumer) {
+		log.info(UserMessage.get().MSG_READING_GOOGLE_EVENTS(settings.getGoogleCalendarName()));
+
 		try {
+			try {
+				readEvents(sdt, edt, wholePeriod, consumer);
+			} catch (final GoogleJsonResponseException e) {
+				// the first request fails on a stale calendar id, so nothing has been consumed yet
+				if (!forgetStaleCalendarId(e)) {
+					throw e;
+				}
+				readEvents(sdt, edt, wholePeriod, consumer);
+			}
+		} catch (final IOException e) {
+			throw new SynchronisationException(e);
+		}
+	}
 
-			final Calendar sdt = settings.getSyncStartDate();
-			final Calendar edt = settings.getSyncEndDate();
+	private void readEvents(final Calendar sdt, final Calendar edt, final boolean wholePeriod, final ICalendarEventConsumer consumer) throws IOException {
+		final int pageSize = getPageSize();
+		final DateTime startDateTime = new DateTime(sdt.getTime(), sdt.getTimeZone());
+		final DateTime endDateTime = new DateTime(edt.getTime(), edt.getTimeZone());
 
-			final DateTime startDateTime = new DateTime(sdt.getTime(), sdt.getTimeZone());
-			final DateTime endDateTime = new DateTime(edt.getTime(), edt.getTimeZone());
+		if (settings.isGoogleSyncIncremental()) {
+			final List<Event> mirroredEvents = (wholePeriod ? refreshMirror() : getSharedMirror()).getEvents(startDateTime, endDateTime);
+			for (int i = 0; i < mirroredEvents.size(); i += pageSize) {
+				consumer.consume(convGoogleEvents(mirroredEvents.subList(i, Math.min(i + pageSize, mirroredEvents.size()))));
+			}
+			return;
+		}
 
-			final Events googleEvents = service.events().list(getCalendar().getId())//
+		int pageNumber = 0;
+		String pageToken = null;
+		do {
+			final Events googleEvents = service.events().list(getCalendarId())//
 					.setTimeMin(startDateTime).setTimeMax(endDateTime)//
-					.setMaxResults(new Integer(65535))//
+					.setMaxResults(Integer.valueOf(pageSize))//
+					.setPageToken(pageToken)//
 					.setOrderBy("starttime")// //$NON-NLS-1$
 					// handling recurrence is not necessary, since Lotus Notes recurrence is a pain in the a..
 					.setSingleEvents(Boolean.TRUE)//
+					.setFields(EVENTS_FIELDS)//
 					.execute();
 
 			// if no entry is present in the Google calendar, the list is null
-			if (googleEvents.getItems() == null) {
-				return new ArrayList<CalendarEvent>();
-			}
-			for (final Event googleEvent : googleEvents.getItems()) {
-				events.add(convGoogleEvent(googleEvent));
-			}
-		} catch (final IOException e) {
-			throw new SynchronisationException(e);
+			final List<CalendarEvent> page = convGoogleEvents(googleEvents.getItems());
+			log.debug(TechMessage.get().MSG_READ_GOOGLE_PAGE(++pageNumber, page.size()));
+			pageToken = googleEvents.getNextPageToken();
+			consumer.consume(page);
+		} while (pageToken != null);
+
+	}
+
+	private int getPageSize() {
+		final int pageSize = settings.getGooglePageSize();
+		if (pageSize < 1) {
+			return DEFAULT_PAGE_SIZE;
 		}
+		return Math.min(pageSize, MAX_PAGE_SIZE);
+	}
 
+	private List<CalendarEvent> convGoogleEvents(final List<Event> googleEvents) {
+		if (googleEvents == null) {
+			return new ArrayList<CalendarEvent>();
+		}
+		final List<CalendarEvent> events = new ArrayList<CalendarEvent>(googleEvents.size());
+		for (final Event googleEvent : googleEvents) {
+			knownEvents.put(googleEvent.getId(), googleEvent);
+			events.add(convGoogleEvent(googleEvent));
+		}
 		return events;
+	}
 
+	private synchronized GoogleEventMirror getSharedMirror() throws IOException {
+		if (sharedMirror == null) {
+			sharedMirror = refreshMirror();
+		}
+		return sharedMirror;
 	}
 
 	/**
-	 * retrieves the calendar for the given name (summary)
+	 * Brings the local mirror of the calendar up to date by fetching the changes since the last sync token.
+	 * <p>
+	 * A listing by sync token cannot be limited to the sync period and reports every instance of repeating events,
+	 * so the first listing transfers the whole calendar. The mirror keeps only the events of the sync period and of
+	 * as many days after it, the period moves through this window for that long until the calendar is listed
+	 * completely once more.
+	 */
+	private GoogleEventMirror refreshMirror() throws IOException {
+		final GoogleEventMirror mirror = new GoogleEventMirror(settings.getSettingsFile(Constants.FILENAME_GOOGLE_EVENTS),
+				settings.getSettingsFile(Constants.FILENAME_GOOGLE_SYNC_TOKEN), settings.getSettingsFile(Constants.FILENAME_GOOGLE_EVENTS_JOURNAL), service.getJsonFactory());
+		mirror.load();
+
+		final long start = settings.getSyncStartDate().getTimeInMillis();
+		final long end = settings.getSyncEndDate().getTimeInMillis();
+		final String mirroredCalendarId = getCalendarId();
+		if (mirror.getSyncToken() != null && !mirroredCalendarId.equals(mirror.getCalendarId())) {
+			// e.g. another calendar is synchronised or the calendar has been created again
+			log.debug(TechMessage.get().MSG_GOOGLE_MIRROR_OTHER_CALENDAR(mirroredCalendarId));
+			mirror.clear();
+		}
+		if (mirror.getSyncToken() != null && !mirror.covers(start, end)) {
+			log.debug(TechMessage.get().MSG_GOOGLE_MIRROR_WINDOW_PASSED());
+			mirror.clear();
+		}
+		if (mirror.getSyncToken() == null) {
+			mirror.setWindow(start, end + (end - start));
+			mirror.setCalendarId(mirroredCalendarId);
+		}
+
+		try {
+			fetchChanges(mirror);
+		} catch (final GoogleJsonResponseException e) {
+			if (e.getStatusCode() != STATUS_CODE_GONE || mirror.getSyncToken() == null) {
+				throw e;
+			}
+			// the sync token has expired, start over with a full listing
+			log.info(UserMessage.get().MSG_GOOGLE_SYNC_TOKEN_EXPIRED());
+			mirror.clear();
+			mirror.setWindow(start, end + (end - start));
+			mirror.setCalendarId(mirroredCalendarId);
+			fetchChanges(mirror);
+		}
+
+		mirror.save();
+		return mirror;
+	}
+
+	private void fetchChanges(final GoogleEventMirror mirror) throws IOException {
+		log.debug(TechMessage.get().MSG_FETCHING_GOOGLE_CHANGES(mirror.getSyncToken()));
+		String pageToken = null;
+		do {
+			final Events googleEvents = service.events().list(getCalendarId())//
+					.setSyncToken(mirror.getSyncToken())//
+					.setPageToken(pageToken)//
+					.setSingleEvents(Boolean.TRUE)//
+					.setFields(EVENTS_FIELDS)//
+					.execute();
+			mirror.merge(googleEvents.getItems());
+			pageToken = googleEvents.getNextPageToken();
+			if (pageToken == null) {
+				// the last page carries the token for the next run
+				mirror.setSyncToken(googleEvents.getNextSyncToken());
+			}
+		} while (pageToken != null);
+	}
+
+	/**
+	 * Gets the id of the calendar with the configured name (summary), from the cache or by paging through the
+	 * calendar list.
 	 *
-	 * @return den Kalender
+	 * @return the id of the calendar
 	 */
-	private com.google.api.services.calendar.model.Calendar getCalendar() {
-		if (calendar == null) {
-			final com.google.api.services.calendar.Calendar myService = settings.getGoogleCalendarService();
-			try {
-				final CalendarList list = myService.calendarList().list().execute();
-				for (final CalendarListEntry entry : list.getItems()) {
-					if (settings.getGoogleCalendarName().equals(entry.getSummary())) {
-						final String id = entry.getId();
-						calendar = myService.calendars().get(id).execute();
-						break;
+	private synchronized String getCalendarId() {
+		if (calendarId == null) {
+			final String key = getCalendarKey();
+			calendarId = getCalendarIdCache().get(key);
+			calendarIdCached = calendarId != null;
+			if (calendarId == null) {
+				calendarId = findCalendarId();
+				log.debug(TechMessage.get().MSG_GOOGLE_CALENDAR_ID_RESOLVED(settings.getGoogleCalendarName(), calendarId));
+				getCalendarIdCache().put(key, calendarId);
+			}
+		}
+		return calendarId;
+	}
+
+	private String findCalendarId() {
+		final com.google.api.services.calendar.Calendar myService = settings.getGoogleCalendarService();
+		try {
+			String pageToken = null;
+			do {
+				final CalendarList list = myService.calendarList().list()//
+						.setMaxResults(Integer.valueOf(CALENDAR_LIST_PAGE_SIZE))//
+						.setPageToken(pageToken)//
+						.setFields(CALENDAR_LIST_FIELDS)//
+						.execute();
+				if (list.getItems() != null) {
+					for (final CalendarListEntry entry : list.getItems()) {
+						if (settings.getGoogleCalendarName().equals(entry.getSummary())) {
+							return entry.getId();
+						}
 					}
 				}
-			} catch (final IOException e) {
-				throw new SynchronisationException(e);
-			}
+				pageToken = list.getNextPageToken();
+			} while (pageToken != null);
+		} catch (final IOException e) {
+			throw new SynchronisationException(e);
+		}
 
-			if (calendar == null) {
-				// calendar with given name does not exist
-				throw new SynchronisationException(UserMessage.get().GOOGLE_CALENDAR_S_DOES_NOT_EXIST_CHECK_CONFIG(settings.getGoogleCalendarName()));
-			}
+		// calendar with given name does not exist
+		throw new SynchronisationException(UserMessage.get().GOOGLE_CALENDAR_S_DOES_NOT_EXIST_CHECK_CONFIG(settings.getGoogleCalendarName()));
+	}
+
+	/**
+	 * Forgets a cached calendar id Google does not know (any more), e.g. of a calendar deleted and created again.
+	 *
+	 * @param e
+	 * @return <code>true</code>, if the id has been forgotten and the request may be repeated with a new one
+	 */
+	private synchronized boolean forgetStaleCalendarId(final GoogleJsonResponseException e) {
+		if (e.getStatusCode() != STATUS_CODE_NOT_FOUND || !calendarIdCached) {
+			return false;
+		}
+		log.info(TechMessage.get().MSG_GOOGLE_CALENDAR_ID_STALE(settings.getGoogleCalendarName()));
+		getCalendarIdCache().remove(getCalendarKey());
+		calendarId = null;
+		calendarIdCached = false;
+		return true;
+	}
+
+	private String getCalendarKey() {
+		// the same name may denote different calendars of different accounts
+		return StringUtils.defaultString(settings.getGoogleAccountName()) + "/" + settings.getGoogleCalendarName(); //$NON-NLS-1$
+	}
+
+	private GoogleCalendarIdCache getCalendarIdCache() {
+		if (calendarIdCache == null) {
+			calendarIdCache = new GoogleCalendarIdCache(settings.getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS));
 		}
-		return calendar;
+		return calendarIdCache;
 	}
 
 	private void updateCalendarEventData(final CalendarEvent event, final Event googleEvent) {
 		googleEvent.setSummary(event.getTitle());
 		googleEvent.setDescription(event.getContent());
 
-		final Calendar sdt = event.getStartDateTime();
+		final TimeZone timeZone = event.getTimeZone();
+		final long sdt = event.getStartMillis();
 		final EventDateTime startTime = new EventDateTime();
-		startTime.setDateTime(new DateTime(sdt.getTime(), sdt.getTimeZone()));
-
-		final Calendar edt = event.getEndDateTime();
+		final long edt = event.getEndMillis();
 		final EventDateTime endTime = new EventDateTime();
-		endTime.setDateTime(new DateTime(edt.getTime(), edt.getTimeZone()));
 
 		if (event.isAllDay()) {
+			// the end of an all day event is the next day, calculated in the event's time zone
+			final Calendar nextDay = Calendar.getInstance(timeZone);
+			nextDay.setTimeInMillis(sdt);
+			nextDay.add(Calendar.DAY_OF_YEAR, 1);
 
-			edt.setTimeInMillis(sdt.getTimeInMillis());
-			edt.add(Calendar.DAY_OF_YEAR, 1);
-
-			startTime.setDate(new DateTime(sdt.getTime()));
-			endTime.setDate(new DateTime(edt.getTime()));
-
-			startTime.setDateTime(null);
-			endTime.setDateTime(null);
+			startTime.setDate(new DateTime(new Date(sdt)));
+			endTime.setDate(new DateTime(nextDay.getTime()));
+		} else {
+			startTime.setDateTime(new DateTime(new Date(sdt), timeZone));
+			endTime.setDateTime(new DateTime(new Date(edt), timeZone));
 		}
 
 		googleEvent.setStart(startTime);
@@ -226,6 +637,21 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 		reminders.setUseDefault(Boolean.FALSE);
 		googleEvent.setReminders(reminders);
 
+		// other private properties of the event are kept
+		ExtendedProperties properties = googleEvent.getExtendedProperties();
+		if (properties == null) {
+			properties = new ExtendedProperties();
+			googleEvent.setExtendedProperties(properties);
+		}
+		Map<String, String> privateProperties = properties.getPrivate();
+		if (privateProperties == null) {
+			privateProperties = new HashMap<String, String>();
+			properties.setPrivate(privateProperties);
+		}
+		if (event.getSourceId() != null) {
+			privateProperties.put(PROPERTY_SOURCE_ID, event.getSourceId());
+		}
+		privateProperties.put(PROPERTY_FINGERPRINT, event.computeFingerprint());
 	}
 
 	private CalendarEvent convGoogleEvent(final Event googleEvent) {
@@ -234,11 +660,14 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 		myEvent.setTitle(googleEvent.getSummary());
 		myEvent.setContent(googleEvent.getDescription());
 		myEvent.setId(googleEvent.getId());
+		final ExtendedProperties properties = googleEvent.getExtendedProperties();
+		if (properties != null && properties.getPrivate() != null) {
+			myEvent.setSourceId(properties.getPrivate().get(PROPERTY_SOURCE_ID));
+			myEvent.setFingerprint(properties.getPrivate().get(PROPERTY_FINGERPRINT));
+		}
 
 		myEvent.setLocation(googleEvent.getLocation());
-		final Calendar u = Calendar.getInstance();
-		u.setTimeInMillis(googleEvent.getUpdated().getValue());
-		myEvent.setLastUpdated(u);
+		myEvent.setLastUpdatedMillis(googleEvent.getUpdated().getValue());
 
 		// Visibility visibility = entry.getVisibility();
 
@@ -261,15 +690,71 @@ class GoogleCalendarDAO implements IGoogleCalendarDAO {
 			}
 		}
 
-		final Calendar sdtCalendar = Calendar.getInstance();
-		sdtCalendar.setTimeInMillis(sdt.getValue());
-		myEvent.setStartDateTime(sdtCalendar);
-
-		final Calendar edtCalendar = Calendar.getInstance();
-		edtCalendar.setTimeInMillis(edt.getValue());
-		myEvent.setEndDateTime(edtCalendar);
+		myEvent.setStartMillis(sdt.getValue());
+		myEvent.setEndMillis(edt.getValue());
 
 		return myEvent;
 	}
 
+	/**
+	 * A mutation sent in a batch, possibly more than once
+	 */
+	private final class BatchedMutation<T> {
+
+		private final AbstractGoogleJsonClientRequest<T> request;
+		private final CalendarEvent event;
+		private int attempts;
+		private String failure;
+
+		BatchedMutation(final AbstractGoogleJsonClientRequest<T> request, final CalendarEvent event) {
+			this.request = request;
+			this.event = event;
+		}
+
+		void queue(final BatchRequest batch, final List<BatchedMutation<?>> retries, final Set<BatchedMutation<?>> unanswered) throws IOException {
+			attempts++;
+			request.queue(batch, new MutationCallback<T>(this, retries, unanswered));
+		}
+
+		/**
+		 * Queues the mutation for another attempt, if the failure is temporary and attempts are left
+		 */
+		void failed(final boolean retryable, final String reason, final SynchronisationException cause, final List<BatchedMutation<?>> retries) {
+			if (retryable && attempts < GoogleMutationExecutor.MAX_ATTEMPTS) {
+				failure = reason;
+				retries.add(this);
+			} else {
+				failures.put(event, cause);
+			}
+		}
+	}
+
+	/**
+	 * Maps the answer of a batched mutation to the originating event.
+	 */
+	private final class MutationCallback<T> extends JsonBatchCallback<T> {
+
+		private final BatchedMutation<T> mutation;
+		private final List<BatchedMutation<?>> retries;
+		private final Set<BatchedMutation<?>> unanswered;
+
+		MutationCallback(final BatchedMutation<T> mutation, final List<BatchedMutation<?>> retries, final Set<BatchedMutation<?>> unanswered) {
+			this.mutation = mutation;
+			this.retries = retries;
+			this.unanswered = unanswered;
+		}
+
+		@Override
+		public void onSuccess(final T result, final HttpHeaders responseHeaders) {
+			unanswered.remove(mutation);
+			log.debug(TechMessage.get().MSG_CHANGE_SENT(mutation.event.getTitle()));
+		}
+
+		@Override
+		public void onFailure(final GoogleJsonError error, final HttpHeaders responseHeaders) {
+			unanswered.remove(mutation);
+			mutation.failed(GoogleMutationExecutor.isRetryable(error.getCode(), error), error.getMessage(), new SynchronisationException(error.getMessage()), retries);
+		}
+	}
+
 }
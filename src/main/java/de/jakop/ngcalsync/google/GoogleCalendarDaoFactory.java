@@ -26,15 +26,25 @@
  */
 package de.jakop.ngcalsync.google;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
 import de.jakop.ngcalsync.settings.Settings;
 
 /**
+ * Creates the DAOs of Google calendars. The DAOs created for the same Google account share the limit of
+ * <code>google.requests.per.second</code>, so it holds across the synchronisations of the account.
  *
  * @author fjakop
  *
  */
 public class GoogleCalendarDaoFactory {
 
+	/** the rate limits by account and rate */
+	private final Map<String, TokenBucket> rateLimits = new HashMap<String, TokenBucket>();
+
 	/**
 	 * Creates a {@link GoogleCalendarDAO}
 	 *
@@ -42,6 +52,24 @@ public class GoogleCalendarDaoFactory {
 	 * @return a new {@link GoogleCalendarDAO}
 	 */
 	public IGoogleCalendarDAO createGoogleCalendarDao(final Settings settings) {
-		return new GoogleCalendarDAO(settings);
+		return new GoogleCalendarDAO(settings, getRateLimit(settings));
+	}
+
+	/**
+	 * @param settings
+	 * @return the rate limit of the account, <code>null</code> if the requests are not limited
+	 */
+	synchronized TokenBucket getRateLimit(final Settings settings) {
+		final int requestsPerSecond = settings.getGoogleRequestsPerSecond();
+		if (requestsPerSecond <= 0) {
+			return null;
+		}
+		final String key = StringUtils.defaultString(settings.getGoogleAccountName()) + "/" + requestsPerSecond; //$NON-NLS-1$
+		TokenBucket rateLimit = rateLimits.get(key);
+		if (rateLimit == null) {
+			rateLimit = GoogleMutationExecutor.createRateLimit(requestsPerSecond);
+			rateLimits.put(key, rateLimit);
+		}
+		return rateLimit;
 	}
 }
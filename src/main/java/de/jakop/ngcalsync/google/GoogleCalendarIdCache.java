@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Keeps the ids of Google calendars by their names in a file, so the calendar list has to be read only once and
+ * not on every synchronisation. An id turning out to be stale is removed by its user. The cache never lets a
+ * synchronisation fail, if it cannot be read or written the calendars are looked up again.
+ *
+ * @author fjakop
+ */
+class GoogleCalendarIdCache {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final File file;
+	private Properties ids;
+
+	/**
+	 *
+	 * @param file
+	 */
+	GoogleCalendarIdCache(final File file) {
+		Validate.notNull(file);
+		this.file = file;
+	}
+
+	/**
+	 * @param name
+	 * @return the cached id of the calendar, <code>null</code> if unknown
+	 */
+	synchronized String get(final String name) {
+		return getIds().getProperty(name);
+	}
+
+	/**
+	 * @param name
+	 * @param id
+	 */
+	synchronized void put(final String name, final String id) {
+		getIds().setProperty(name, id);
+		save();
+	}
+
+	/**
+	 * Removes the stale id of a calendar
+	 *
+	 * @param name
+	 */
+	synchronized void remove(final String name) {
+		if (getIds().remove(name) != null) {
+			save();
+		}
+	}
+
+	private Properties getIds() {
+		if (ids == null) {
+			ids = new Properties();
+			if (file.exists()) {
+				try (InputStream in = FileUtils.openInputStream(file)) {
+					ids.load(in);
+				} catch (final IOException e) {
+					// the ids are looked up again
+					log.warn(TechMessage.get().MSG_GOOGLE_CALENDAR_IDS_NOT_READ(file.getAbsolutePath()), e);
+					ids.clear();
+				}
+			}
+		}
+		return ids;
+	}
+
+	private void save() {
+		// a failing close may leave the file incomplete, so it is reported like a failing write
+		try (OutputStream out = FileUtils.openOutputStream(file)) {
+			ids.store(out, null);
+		} catch (final IOException e) {
+			log.warn(TechMessage.get().MSG_GOOGLE_CALENDAR_IDS_NOT_WRITTEN(file.getAbsolutePath()), e);
+		}
+	}
+
+}
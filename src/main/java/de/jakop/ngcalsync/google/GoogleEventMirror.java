@@ -0,0 +1,403 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.Events;
+
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Local copy of the Google calendar's events, kept up to date with the changes reported by Google
+ * since the last sync token. It is kept only if the changes are read incrementally (google.sync.incremental),
+ * otherwise the events of the sync period are listed from Google on every run and no mirror is written.
+ * <p>
+ * The mirror is stored as a snapshot of all events and an append-only journal. Each save appends the changes
+ * merged since the last one together with their sync token as a single line to the journal, so saving costs
+ * in proportion to the changes instead of the calendar. Loading replays the journal onto the snapshot. A line
+ * torn by a crash is dropped, the mirror then resumes from the last complete line's token. When the journal
+ * gets longer than the snapshot, both are compacted into a new snapshot.
+ * <p>
+ * Listings by sync token cannot be limited in time, Google reports the changes of the whole calendar. Only the
+ * events overlapping the mirror's window are kept, an event moved out of the window is forgotten like a cancelled
+ * one. The window is chosen when the mirror is filled by a full listing and is stored with the sync token, a
+ * period no longer covered by it requires a full listing again. The id of the calendar is stored with them too,
+ * so the mirror of another calendar is recognized, e.g. after the calendar to synchronise has been changed.
+ *
+ * @author fjakop
+ */
+class GoogleEventMirror {
+
+	private static final String STATUS_CANCELLED = "cancelled"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final File eventsFile;
+	private final File syncTokenFile;
+	private final File journalFile;
+	private final JsonFactory jsonFactory;
+
+	private final Map<String, Event> events = new LinkedHashMap<String, Event>();
+	private String syncToken;
+	/** the token of the snapshot or the journal's last line */
+	private String journaledSyncToken;
+	/** start of the time window of the events kept, in millis */
+	private long windowStart = Long.MIN_VALUE;
+	/** end of the time window of the events kept, in millis */
+	private long windowEnd = Long.MAX_VALUE;
+	/** the calendar mirrored, <code>null</code> if unknown */
+	private String calendarId;
+
+	/** changes merged since the last save, in the order of merging */
+	private final List<Event> unsaved = new ArrayList<Event>();
+	/** <code>true</code>, unless the mirror has been loaded from or saved to a snapshot */
+	private boolean snapshotRequired = true;
+
+	/**
+	 *
+	 * @param eventsFile file holding the snapshot of the mirrored events
+	 * @param syncTokenFile file holding the sync token the snapshot belongs to
+	 * @param journalFile file holding the changes since the snapshot
+	 * @param jsonFactory
+	 */
+	GoogleEventMirror(final File eventsFile, final File syncTokenFile, final File journalFile, final JsonFactory jsonFactory) {
+		Validate.notNull(eventsFile);
+		Validate.notNull(syncTokenFile);
+		Validate.notNull(journalFile);
+		Validate.notNull(jsonFactory);
+		this.eventsFile = eventsFile;
+		this.syncTokenFile = syncTokenFile;
+		this.journalFile = journalFile;
+		this.jsonFactory = jsonFactory;
+	}
+
+	/**
+	 * Reads the snapshot and replays the journal. If the snapshot is missing or unreadable, or has been written
+	 * without a window by an earlier version, the mirror is empty and has no sync token, so a full listing is
+	 * necessary.
+	 */
+	void load() {
+		clear();
+		if (!eventsFile.exists() || !syncTokenFile.exists()) {
+			return;
+		}
+		try {
+			final String[] lines = StringUtils.split(FileUtils.readFileToString(syncTokenFile, ENCODING), "\r\n"); //$NON-NLS-1$
+			final Events mirrored = jsonFactory.fromString(FileUtils.readFileToString(eventsFile, ENCODING), Events.class);
+			if (lines.length < 2 || mirrored == null) {
+				return;
+			}
+			final String token = StringUtils.trimToNull(lines[0]);
+			final String[] window = StringUtils.split(lines[1]);
+			if (token == null || window.length != 2) {
+				return;
+			}
+			putAll(mirrored.getItems());
+			windowStart = Long.parseLong(window[0]);
+			windowEnd = Long.parseLong(window[1]);
+			// written by earlier versions without
+			calendarId = lines.length > 2 ? StringUtils.trimToNull(lines[2]) : null;
+			syncToken = token;
+			snapshotRequired = false;
+		} catch (final IOException e) {
+			log.warn(TechMessage.get().MSG_GOOGLE_MIRROR_UNREADABLE(eventsFile.getAbsolutePath()), e);
+			clear();
+			return;
+		} catch (final IllegalArgumentException e) {
+			// thrown by the JSON parser on malformed content
+			log.warn(TechMessage.get().MSG_GOOGLE_MIRROR_UNREADABLE(eventsFile.getAbsolutePath()), e);
+			clear();
+			return;
+		}
+
+		try {
+			replayJournal();
+		} catch (final IOException e) {
+			// the changes of the journal are fetched once again with the snapshot's token
+			log.warn(TechMessage.get().MSG_GOOGLE_MIRROR_UNREADABLE(journalFile.getAbsolutePath()), e);
+			snapshotRequired = true;
+		}
+	}
+
+	/**
+	 * Appends the changes merged since the last save to the journal, or writes a new snapshot, if the mirror has
+	 * been cleared or the journal has grown longer than the snapshot.
+	 *
+	 * @throws IOException
+	 */
+	void save() throws IOException {
+		if (snapshotRequired) {
+			writeSnapshot();
+			return;
+		}
+		if (unsaved.isEmpty() && StringUtils.equals(syncToken, journaledSyncToken)) {
+			return;
+		}
+
+		final Events changes = new Events();
+		changes.setItems(new ArrayList<Event>(unsaved));
+		changes.setNextSyncToken(syncToken);
+		appendToJournal(String.format("%s%n", jsonFactory.toString(changes)).getBytes(ENCODING)); //$NON-NLS-1$
+		unsaved.clear();
+		journaledSyncToken = syncToken;
+
+		if (journalFile.length() > eventsFile.length()) {
+			writeSnapshot();
+		}
+	}
+
+	/**
+	 * Forgets all events, the sync token, the window and the calendar, the next save writes a new snapshot.
+	 */
+	void clear() {
+		events.clear();
+		unsaved.clear();
+		calendarId = null;
+		syncToken = null;
+		journaledSyncToken = null;
+		windowStart = Long.MIN_VALUE;
+		windowEnd = Long.MAX_VALUE;
+		snapshotRequired = true;
+	}
+
+	/**
+	 * Limits the events kept to those overlapping the window, to be set before the mirror is filled by a full
+	 * listing.
+	 *
+	 * @param start in millis
+	 * @param end in millis
+	 */
+	void setWindow(final long start, final long end) {
+		Validate.isTrue(start <= end);
+		windowStart = start;
+		windowEnd = end;
+	}
+
+	/**
+	 * @return the id of the calendar mirrored, <code>null</code> if unknown
+	 */
+	String getCalendarId() {
+		return calendarId;
+	}
+
+	/**
+	 * Sets the calendar mirrored, to be set before the mirror is filled by a full listing.
+	 *
+	 * @param calendarId
+	 */
+	void setCalendarId(final String calendarId) {
+		this.calendarId = calendarId;
+	}
+
+	/**
+	 * @param start in millis
+	 * @param end in millis
+	 * @return <code>true</code>, if the events of the period are all kept by the mirror
+	 */
+	boolean covers(final long start, final long end) {
+		return windowStart <= start && end <= windowEnd;
+	}
+
+	/**
+	 * Merges changed events into the mirror, cancelled events and events outside the window are removed.
+	 *
+	 * @param changes
+	 */
+	void merge(final Collection<Event> changes) {
+		if (changes == null) {
+			return;
+		}
+		for (final Event event : changes) {
+			if (STATUS_CANCELLED.equals(event.getStatus()) || !overlaps(event, windowStart, windowEnd)) {
+				// only the removal of an event kept is journaled
+				if (events.remove(event.getId()) != null) {
+					unsaved.add(new Event().setId(event.getId()).setStatus(STATUS_CANCELLED));
+				}
+			} else {
+				events.put(event.getId(), event);
+				unsaved.add(event);
+			}
+		}
+	}
+
+	private void putAll(final Collection<Event> changes) {
+		if (changes == null) {
+			return;
+		}
+		for (final Event event : changes) {
+			if (STATUS_CANCELLED.equals(event.getStatus())) {
+				events.remove(event.getId());
+			} else {
+				events.put(event.getId(), event);
+			}
+		}
+	}
+
+	/**
+	 * The token is written last, so an interrupted snapshot leads to an outdated token and the changes since are
+	 * merged once again. The journal is removed after the snapshot is complete, so replaying it onto the new
+	 * snapshot merges changes already contained, which does no harm either.
+	 */
+	private void writeSnapshot() throws IOException {
+		final Events mirrored = new Events();
+		mirrored.setItems(new ArrayList<Event>(events.values()));
+		FileUtils.writeStringToFile(eventsFile, jsonFactory.toString(mirrored), ENCODING);
+		FileUtils.writeStringToFile(syncTokenFile, String.format("%s%n%d %d%n%s%n", StringUtils.defaultString(syncToken), Long.valueOf(windowStart), //$NON-NLS-1$
+				Long.valueOf(windowEnd), StringUtils.defaultString(calendarId)), ENCODING);
+		FileUtils.deleteQuietly(journalFile);
+		unsaved.clear();
+		journaledSyncToken = syncToken;
+		snapshotRequired = false;
+	}
+
+	private void appendToJournal(final byte[] line) throws IOException {
+		final FileOutputStream out = new FileOutputStream(journalFile, true);
+		try {
+			out.write(line);
+			// the line is complete on disk before the run continues, so a crash does not lose it
+			out.getChannel().force(false);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Merges the complete lines of the journal, a torn last line is cut off.
+	 */
+	private void replayJournal() throws IOException {
+		journaledSyncToken = syncToken;
+		if (!journalFile.exists()) {
+			return;
+		}
+		final byte[] journal = FileUtils.readFileToByteArray(journalFile);
+		int lineStart = 0;
+		for (int i = 0; i < journal.length; i++) {
+			if (journal[i] != '\n') {
+				continue;
+			}
+			final Events changes = parseJournalLine(journal, lineStart, i);
+			if (changes == null) {
+				break;
+			}
+			putAll(changes.getItems());
+			syncToken = changes.getNextSyncToken();
+			journaledSyncToken = syncToken;
+			lineStart = i + 1;
+		}
+
+		if (lineStart < journal.length) {
+			log.warn(TechMessage.get().MSG_GOOGLE_MIRROR_JOURNAL_TRUNCATED(journalFile.getAbsolutePath(), journal.length - lineStart));
+			final RandomAccessFile file = new RandomAccessFile(journalFile, "rw"); //$NON-NLS-1$
+			try {
+				file.setLength(lineStart);
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	private Events parseJournalLine(final byte[] journal, final int start, final int end) {
+		try {
+			final Events changes = jsonFactory.fromString(new String(journal, start, end - start, ENCODING), Events.class);
+			return changes == null || changes.getNextSyncToken() == null ? null : changes;
+		} catch (final IOException e) {
+			return null;
+		} catch (final IllegalArgumentException e) {
+			// thrown by the JSON parser on malformed content
+			return null;
+		}
+	}
+
+	/**
+	 * @return the token to retrieve changes since the state of the mirror, <code>null</code> if a full listing is needed
+	 */
+	String getSyncToken() {
+		return syncToken;
+	}
+
+	/**
+	 * @param syncToken the token reflecting the state of the mirror
+	 */
+	void setSyncToken(final String syncToken) {
+		this.syncToken = syncToken;
+	}
+
+	/**
+	 * Selects the events like a listing with <code>timeMin</code> and <code>timeMax</code>, i.e. events ending
+	 * after the start and starting before the end of the window.
+	 *
+	 * @param start
+	 * @param end
+	 * @return the mirrored events overlapping the window
+	 */
+	List<Event> getEvents(final DateTime start, final DateTime end) {
+		final List<Event> selected = new ArrayList<Event>();
+		for (final Event event : events.values()) {
+			if (overlaps(event, start.getValue(), end.getValue())) {
+				selected.add(event);
+			}
+		}
+		return selected;
+	}
+
+	private static boolean overlaps(final Event event, final long start, final long end) {
+		final DateTime eventStart = getValue(event.getStart());
+		final DateTime eventEnd = getValue(event.getEnd());
+		if (eventStart == null || eventEnd == null) {
+			return false;
+		}
+		return eventEnd.getValue() > start && eventStart.getValue() < end;
+	}
+
+	private static DateTime getValue(final EventDateTime eventDateTime) {
+		if (eventDateTime == null) {
+			return null;
+		}
+		return eventDateTime.getDateTime() == null ? eventDateTime.getDate() : eventDateTime.getDateTime();
+	}
+
+}
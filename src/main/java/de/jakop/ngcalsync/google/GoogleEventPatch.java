@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.api.client.util.Data;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Event.ExtendedProperties;
+import com.google.api.services.calendar.model.Event.Reminders;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.EventReminder;
+
+/**
+ * Compares the fields maintained by the synchronisation - summary, description, location, start, end,
+ * reminders and the private extended properties set - of an existing Google event with their desired values.
+ *
+ * @author fjakop
+ */
+final class GoogleEventPatch {
+
+	private GoogleEventPatch() {
+		// static helper
+	}
+
+	/**
+	 * @param current the event as read from Google
+	 * @param target the event with the desired values
+	 * @return an event carrying only the changed fields, suitable for a patch request, or <code>null</code>
+	 *         if nothing has changed
+	 */
+	static Event of(final Event current, final Event target) {
+		final Event patch = new Event();
+		boolean changed = false;
+
+		if (!sameText(current.getSummary(), target.getSummary())) {
+			patch.setSummary(text(target.getSummary()));
+			changed = true;
+		}
+		if (!sameText(current.getDescription(), target.getDescription())) {
+			patch.setDescription(text(target.getDescription()));
+			changed = true;
+		}
+		if (!sameText(current.getLocation(), target.getLocation())) {
+			patch.setLocation(text(target.getLocation()));
+			changed = true;
+		}
+		if (!sameTime(current.getStart(), target.getStart())) {
+			patch.setStart(time(target.getStart()));
+			changed = true;
+		}
+		if (!sameTime(current.getEnd(), target.getEnd())) {
+			patch.setEnd(time(target.getEnd()));
+			changed = true;
+		}
+		if (!sameReminders(current.getReminders(), target.getReminders())) {
+			patch.setReminders(target.getReminders());
+			changed = true;
+		}
+		final Map<String, String> privateProperties = changedPrivateProperties(current.getExtendedProperties(), target.getExtendedProperties());
+		if (!privateProperties.isEmpty()) {
+			// a patch merges the properties, others of the event are kept
+			patch.setExtendedProperties(new ExtendedProperties().setPrivate(privateProperties));
+			changed = true;
+		}
+
+		return changed ? patch : null;
+	}
+
+	/**
+	 * @param target the event with the desired values
+	 * @return an event carrying all fields maintained by the synchronisation, suitable for a patch request of
+	 *         an event not read before; cleared fields are sent as explicit null, so their current values are
+	 *         removed
+	 */
+	static Event all(final Event target) {
+		final Event patch = new Event();
+		patch.setSummary(text(target.getSummary()));
+		patch.setDescription(text(target.getDescription()));
+		patch.setLocation(text(target.getLocation()));
+		patch.setStart(time(target.getStart()));
+		patch.setEnd(time(target.getEnd()));
+		patch.setReminders(target.getReminders());
+		// a patch merges the properties, others of the event are kept
+		patch.setExtendedProperties(target.getExtendedProperties());
+		return patch;
+	}
+
+	private static boolean sameText(final String current, final String target) {
+		// Google drops empty texts
+		return StringUtils.defaultString(current).equals(StringUtils.defaultString(target));
+	}
+
+	private static String text(final String value) {
+		// a missing field would leave the current value untouched
+		return value == null ? Data.NULL_STRING : value;
+	}
+
+	private static boolean sameTime(final EventDateTime current, final EventDateTime target) {
+		if (current == null || target == null) {
+			return current == target;
+		}
+		if (current.getDateTime() != null && target.getDateTime() != null) {
+			return current.getDateTime().getValue() == target.getDateTime().getValue();
+		}
+		if (current.getDate() != null && target.getDate() != null) {
+			return day(current.getDate()).equals(day(target.getDate()));
+		}
+		return false;
+	}
+
+	/**
+	 * All day events are read as date only, but written as a point in time of the local time zone
+	 */
+	private static String day(final DateTime date) {
+		return date.toStringRfc3339().substring(0, "yyyy-MM-dd".length()); //$NON-NLS-1$
+	}
+
+	private static EventDateTime time(final EventDateTime target) {
+		// changing between all day and timed events requires removing the other field explicitly
+		final EventDateTime time = target.clone();
+		if (time.getDate() == null) {
+			time.setDate(Data.<DateTime> nullOf(DateTime.class));
+		}
+		if (time.getDateTime() == null) {
+			time.setDateTime(Data.<DateTime> nullOf(DateTime.class));
+		}
+		return time;
+	}
+
+	/**
+	 * @return the private properties of the target differing from the current ones
+	 */
+	private static Map<String, String> changedPrivateProperties(final ExtendedProperties current, final ExtendedProperties target) {
+		final Map<String, String> changed = new HashMap<String, String>();
+		if (target == null || target.getPrivate() == null) {
+			return changed;
+		}
+		final Map<String, String> currentProperties = current == null || current.getPrivate() == null ? new HashMap<String, String>() : current.getPrivate();
+		for (final Map.Entry<String, String> property : target.getPrivate().entrySet()) {
+			if (!Objects.equals(currentProperties.get(property.getKey()), property.getValue())) {
+				changed.put(property.getKey(), property.getValue());
+			}
+		}
+		return changed;
+	}
+
+	private static boolean sameReminders(final Reminders current, final Reminders target) {
+		if (current == null || target == null) {
+			return current == target;
+		}
+		if (!Objects.equals(current.getUseDefault(), target.getUseDefault())) {
+			return false;
+		}
+		final List<EventReminder> currentOverrides = current.getOverrides();
+		final List<EventReminder> targetOverrides = target.getOverrides();
+		if (currentOverrides == null || targetOverrides == null) {
+			return currentOverrides == targetOverrides;
+		}
+		if (currentOverrides.size() != targetOverrides.size()) {
+			return false;
+		}
+		for (int i = 0; i < currentOverrides.size(); i++) {
+			final EventReminder currentOverride = currentOverrides.get(i);
+			final EventReminder targetOverride = targetOverrides.get(i);
+			if (!Objects.equals(currentOverride.getMinutes(), targetOverride.getMinutes())
+					|| !Objects.equals(currentOverride.getMethod(), targetOverride.getMethod())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponseException;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Counter;
+
+/**
+ * Sends mutations of Google events in a bounded pool of threads or in the calling thread. Requests are limited to
+ * a maximum rate and retried with exponential backoff and jitter, if Google answers with a rate limit or a server
+ * error. The result of every mutation submitted is reported per event by {@link #await()}.
+ * <p>
+ * The rate limit may be shared with other executors sending for the same account.
+ *
+ * @author fjakop
+ */
+class GoogleMutationExecutor {
+
+	/** attempts of a single mutation before giving up */
+	static final int MAX_ATTEMPTS = 6;
+
+	private static final int STATUS_CODE_FORBIDDEN = 403;
+	private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+	private static final int STATUS_CODE_SERVER_ERROR = 500;
+	private static final List<String> RATE_LIMIT_REASONS = Arrays.asList("rateLimitExceeded", "userRateLimitExceeded"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final long MAX_BACKOFF_MILLIS = 32000;
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final ThreadPoolExecutor executor;
+	private final TokenBucket rateLimit;
+	private final long initialBackoffMillis;
+	private final SyncMetrics metrics;
+
+	private final Map<CalendarEvent, Future<?>> pending = new LinkedHashMap<CalendarEvent, Future<?>>();
+
+	/**
+	 *
+	 * @param threads number of mutations sent at the same time
+	 * @param requestsPerSecond maximum rate of requests including retries, 0 or less for no limit
+	 * @param initialBackoffMillis delay before the first retry, doubled for every further retry
+	 * @param metrics counts the retries
+	 */
+	GoogleMutationExecutor(final int threads, final int requestsPerSecond, final long initialBackoffMillis, final SyncMetrics metrics) {
+		this(threads, createRateLimit(requestsPerSecond), initialBackoffMillis, metrics);
+	}
+
+	/**
+	 *
+	 * @param threads number of mutations sent at the same time
+	 * @param rateLimit limits the requests including retries, <code>null</code> for no limit
+	 * @param initialBackoffMillis delay before the first retry, doubled for every further retry
+	 * @param metrics counts the retries
+	 */
+	GoogleMutationExecutor(final int threads, final TokenBucket rateLimit, final long initialBackoffMillis, final SyncMetrics metrics) {
+		Validate.isTrue(threads > 0);
+		Validate.notNull(metrics);
+		this.rateLimit = rateLimit;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.metrics = metrics;
+
+		// a full queue makes the caller send the mutation itself, so the queue cannot grow without bounds
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads * 4), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "google-mutation-" + count.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+		// idle threads end, since a DAO is created per synchronisation
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Sends the request in the background
+	 *
+	 * @param request
+	 * @param event the event the request is sent for
+	 */
+	void submit(final AbstractGoogleClientRequest<?> request, final CalendarEvent event) {
+		pending.put(event, executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				send(request, event);
+			}
+		}));
+	}
+
+	/**
+	 * Waits for all submitted mutations
+	 *
+	 * @return the events whose mutation failed, mapped to the cause
+	 */
+	Map<CalendarEvent, SynchronisationException> await() {
+		final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+		try {
+			for (final Map.Entry<CalendarEvent, Future<?>> entry : pending.entrySet()) {
+				try {
+					entry.getValue().get();
+				} catch (final ExecutionException e) {
+					failures.put(entry.getKey(), e.getCause() instanceof SynchronisationException ? (SynchronisationException) e.getCause() : new SynchronisationException(e));
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SynchronisationException(e);
+		} finally {
+			pending.clear();
+		}
+		return failures;
+	}
+
+	/**
+	 * Sends the request in the calling thread
+	 *
+	 * @param request
+	 * @param event the event the request is sent for
+	 * @return the answer of Google
+	 * @throws SynchronisationException if the request failed for good
+	 */
+	<T> T send(final AbstractGoogleClientRequest<T> request, final CalendarEvent event) {
+		try {
+			for (int attempt = 1;; attempt++) {
+				acquire(1);
+				try {
+					final T result = request.execute();
+					log.debug(TechMessage.get().MSG_CHANGE_SENT(event.getTitle()));
+					return result;
+				} catch (final IOException e) {
+					if (attempt >= MAX_ATTEMPTS || !isRetryable(e)) {
+						throw new SynchronisationException(e);
+					}
+					final long delay = getBackoff(attempt);
+					retrying(event, attempt + 1, delay, e.getMessage());
+					TimeUnit.MILLISECONDS.sleep(delay);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SynchronisationException(e);
+		}
+	}
+
+	/**
+	 * Waits until the rate limit allows the requests, e.g. the mutations of a batch
+	 *
+	 * @param requests
+	 * @throws InterruptedException
+	 */
+	void acquire(final int requests) throws InterruptedException {
+		if (rateLimit == null) {
+			return;
+		}
+		for (int i = 0; i < requests; i++) {
+			rateLimit.acquire();
+		}
+	}
+
+	/**
+	 * Records the retry of a mutation
+	 *
+	 * @param event
+	 * @param attempt the attempt to come
+	 * @param delay milliseconds before the attempt
+	 * @param reason the failure of the last attempt
+	 */
+	void retrying(final CalendarEvent event, final int attempt, final long delay, final String reason) {
+		metrics.count(Counter.GOOGLE_RETRIES);
+		log.debug(TechMessage.get().MSG_RETRYING_CHANGE(event.getTitle(), attempt, delay, reason));
+	}
+
+	/**
+	 * Half of the exponentially growing backoff plus a random share of the other half, so the retries of
+	 * concurrent senders spread
+	 *
+	 * @param attempt the failed attempt
+	 * @return milliseconds to wait before the next attempt
+	 */
+	long getBackoff(final int attempt) {
+		final long backoff = Math.min(MAX_BACKOFF_MILLIS, initialBackoffMillis << Math.min(attempt - 1, 30));
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	/**
+	 * @param e
+	 * @return <code>true</code>, if Google asks to slow down or failed temporarily
+	 */
+	static boolean isRetryable(final IOException e) {
+		if (!(e instanceof HttpResponseException)) {
+			return false;
+		}
+		final int statusCode = ((HttpResponseException) e).getStatusCode();
+		return isRetryable(statusCode, e instanceof GoogleJsonResponseException ? ((GoogleJsonResponseException) e).getDetails() : null);
+	}
+
+	/**
+	 * @param statusCode
+	 * @param details the error answered by Google, may be <code>null</code>
+	 * @return <code>true</code>, if Google asks to slow down or failed temporarily
+	 */
+	static boolean isRetryable(final int statusCode, final GoogleJsonError details) {
+		if (statusCode >= STATUS_CODE_SERVER_ERROR || statusCode == STATUS_CODE_TOO_MANY_REQUESTS) {
+			return true;
+		}
+		if (statusCode == STATUS_CODE_FORBIDDEN && details != null && details.getErrors() != null) {
+			for (final ErrorInfo error : details.getErrors()) {
+				if (RATE_LIMIT_REASONS.contains(error.getReason())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param requestsPerSecond
+	 * @return a rate limit of the requests per second, <code>null</code> for 0 or less
+	 */
+	static TokenBucket createRateLimit(final int requestsPerSecond) {
+		return requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, requestsPerSecond) : null;
+	}
+
+}
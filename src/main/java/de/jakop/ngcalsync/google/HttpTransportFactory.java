@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpParams;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ * Creates the transports of the requests to Google as configured by {@link Settings#getGoogleHttpTransport()}. The
+ * proxy is configured per transport instead of by system properties, so applications with different proxies can
+ * run in one process. Applications with the same configuration share the transport and its connections.
+ *
+ * @author fjakop
+ */
+public class HttpTransportFactory {
+
+	private final Map<String, HttpTransport> transports = new HashMap<String, HttpTransport>();
+
+	/**
+	 * Gets the transport for the settings, it is created on first request.
+	 *
+	 * @param settings
+	 * @return the transport
+	 */
+	public synchronized HttpTransport getHttpTransport(final Settings settings) {
+		Validate.notNull(settings);
+		final HttpTransportType type = settings.getGoogleHttpTransport();
+		final String key = StringUtils.join(new Object[] { type, settings.getProxyHost(), settings.getProxyPort(), settings.getProxyUserName(),
+				hash(settings.getProxyPassword()), Integer.valueOf(type == HttpTransportType.POOLED ? settings.getGoogleHttpConnections() : 0) }, ':');
+
+		HttpTransport transport = transports.get(key);
+		if (transport == null) {
+			transport = type == HttpTransportType.POOLED ? createPooledTransport(settings) : createNetTransport(settings);
+			transports.put(key, transport);
+		}
+		return transport;
+	}
+
+	/**
+	 * Closes the connections of all transports created.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void shutdown() throws IOException {
+		for (final HttpTransport transport : transports.values()) {
+			transport.shutdown();
+		}
+		transports.clear();
+	}
+
+	/**
+	 * @return a hash of the password, so transports with other credentials are kept apart without keeping the password
+	 */
+	private static String hash(final String password) {
+		if (password == null) {
+			return StringUtils.EMPTY;
+		}
+		try {
+			final StringBuilder hex = new StringBuilder();
+			for (final byte b : MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8))) { //$NON-NLS-1$
+				hex.append(String.format("%02x", Byte.valueOf(b))); //$NON-NLS-1$
+			}
+			return hex.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private HttpTransport createNetTransport(final Settings settings) {
+		final NetHttpTransport.Builder builder = new NetHttpTransport.Builder();
+		if (hasProxy(settings)) {
+			builder.setProxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(settings.getProxyHost(), getProxyPort(settings))));
+		}
+		return builder.build();
+	}
+
+	private HttpTransport createPooledTransport(final Settings settings) {
+		final ApacheHttpTransport.Builder builder = new ApacheHttpTransport.Builder();
+		final HttpParams params = builder.getHttpParams();
+		final int connections = Math.max(1, settings.getGoogleHttpConnections());
+		// all requests go to the same host, so the pool of its route is the pool of the transport
+		ConnManagerParams.setMaxTotalConnections(params, connections);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(connections));
+		if (hasProxy(settings)) {
+			builder.setProxy(new HttpHost(settings.getProxyHost(), getProxyPort(settings)));
+		}
+
+		final ApacheHttpTransport transport = builder.build();
+		if (hasProxy(settings) && !StringUtils.isBlank(settings.getProxyUserName())) {
+			((DefaultHttpClient) transport.getHttpClient()).getCredentialsProvider().setCredentials(
+					new AuthScope(settings.getProxyHost(), getProxyPort(settings)),
+					new UsernamePasswordCredentials(settings.getProxyUserName(), settings.getProxyPassword()));
+		}
+		return transport;
+	}
+
+	private boolean hasProxy(final Settings settings) {
+		return !StringUtils.isBlank(settings.getProxyHost()) && !StringUtils.isBlank(settings.getProxyPort());
+	}
+
+	private int getProxyPort(final Settings settings) {
+		return Integer.parseInt(settings.getProxyPort().trim());
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Limits the rate of requests. Tokens are added at a fixed rate up to the capacity of the bucket, each request
+ * takes one token and waits for it, if the bucket is empty. Waiting requests reserve their token in advance,
+ * so they are served in the order of arrival.
+ *
+ * @author fjakop
+ */
+class TokenBucket {
+
+	private final double tokensPerNano;
+	private final double capacity;
+
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 *
+	 * @param tokensPerSecond
+	 * @param capacity maximum number of requests passing without delay
+	 */
+	TokenBucket(final double tokensPerSecond, final int capacity) {
+		Validate.isTrue(tokensPerSecond > 0);
+		Validate.isTrue(capacity > 0);
+		tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = capacity;
+		tokens = capacity;
+		lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Takes a token, waiting until it is available
+	 *
+	 * @throws InterruptedException
+	 */
+	void acquire() throws InterruptedException {
+		final long wait;
+		synchronized (this) {
+			final long now = System.nanoTime();
+			tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+			lastRefill = now;
+			tokens -= 1;
+			if (tokens >= 0) {
+				return;
+			}
+			wait = (long) Math.ceil(-tokens / tokensPerNano);
+		}
+		TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+}
@@ -89,6 +89,22 @@ public interface LocalizedConfigurationStrings {
 	@En("# Number of days (ex. 15d) or month (ex. 2m) back in time, default 14 days")
 	String SYNC_START();
 
+	@SuppressWarnings("javadoc")
+	@En("# Number of days per slice, if the sync period is read and compared in slices at the same time, 0 to process it as a whole")
+	String SYNC_SLICE_DAYS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Number of slices of the sync period processed at the same time")
+	String SYNC_SLICE_THREADS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Tiers of the sync period synchronised in their own intervals, each as <end>:<minutes between synchronisations>, ex. 0d:1440,7d:15,3m:60 synchronises the past daily, the next 7 days every 15 minutes and the rest hourly. The last tier ends with the sync period, empty to synchronise the whole period each time")
+	String SYNC_TIERS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Synchronise the sync period slice by slice, each slice is sent to Google before the next ones are read, so memory does not grow with the sync period (true|false). Slices have sync.slice.days days, 7 if not set")
+	String SYNC_STREAMING();
+
 	@SuppressWarnings("javadoc")
 	@En("# Transfer original event title to Google (true|false)")
 	String SYNC_TRANSFER_TITLE();
@@ -116,6 +132,33 @@ public interface LocalizedConfigurationStrings {
 			"#  Leave blank for local.")
 	String NOTES_DOMINO_SERVER();
 
+	@SuppressWarnings("javadoc")
+	@En("# Keep the converted Lotus Notes documents in a local store and convert only modified ones (true|false)")
+	String NOTES_STATE_STORE();
+
+	@SuppressWarnings("javadoc")
+	@En("# Number of threads converting Lotus Notes documents, each with a session of its own\n" + //
+			"# 1 converts all documents in the synchronisation thread")
+	String NOTES_CONVERSION_THREADS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Read the events from the columns of the Calendar view instead of the documents (true|false)\n" + //
+			"# The view must show all items used, otherwise the documents are read")
+	String NOTES_VIEW_COLUMNS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Calendar to synchronise into (google|ics|memory)\n" + //
+			"# ics writes an iCalendar file, memory keeps the events in the running application, e.g. for load tests")
+	String SINK_TYPE();
+
+	@SuppressWarnings("javadoc")
+	@En("# iCalendar file written by sink.type = ics, Calendar.ics in the settings directory if not set")
+	String SINK_ICS_FILE();
+
+	@SuppressWarnings("javadoc")
+	@En("# Milliseconds each request to sink.type = memory takes, to simulate a calendar server")
+	String SINK_LATENCY_MILLIS();
+
 	@SuppressWarnings("javadoc")
 	@En("# Google default reminder time")
 	String GOOGLE_CALENDAR_REMINDERMINUTES();
@@ -130,6 +173,39 @@ public interface LocalizedConfigurationStrings {
 	@En("# Google account email")
 	String GOOGLE_ACCOUNT_EMAIL();
 
+	@SuppressWarnings("javadoc")
+	@En("# Number of changes sent to Google in one batch request (max. 1000)\n" + //
+			"# 0 or 1 sends every change in a request of its own")
+	String GOOGLE_BATCH_SIZE();
+
+	@SuppressWarnings("javadoc")
+	@En("# Number of events read from Google in one request (max. 2500)")
+	String GOOGLE_PAGE_SIZE();
+
+	@SuppressWarnings("javadoc")
+	@En("# Read only the changes since the last synchronisation from Google (true|false)\n" + //
+			"# The events are kept in a local copy, the first run reads the whole Google calendar\n" + //
+			"# If false, no local copy is kept and the sync period is read from Google on every run")
+	String GOOGLE_SYNC_INCREMENTAL();
+
+	@SuppressWarnings("javadoc")
+	@En("# Number of changes sent to Google at the same time, if not sent in batches (google.batch.size 0 or 1)\n" + //
+			"# Rate limited and server errors are retried")
+	String GOOGLE_MUTATION_THREADS();
+
+	@SuppressWarnings("javadoc")
+	@En("# Maximum number of changes sent to Google per second, shared by all synchronisations of the account, 0 for no limit")
+	String GOOGLE_REQUESTS_PER_SECOND();
+
+	@SuppressWarnings("javadoc")
+	@En("# Transport of the requests to Google (net|pooled)\n" + //
+			"# net: a connection of the Java runtime per request, pooled: keeps connections alive and shares them between the senders")
+	String GOOGLE_HTTP_TRANSPORT();
+
+	@SuppressWarnings("javadoc")
+	@En("# Maximum number of connections to Google kept by the pooled transport")
+	String GOOGLE_HTTP_CONNECTIONS();
+
 	@SuppressWarnings("javadoc")
 	@En("# Hostname or IP of the proxy server, if you are behind a proxy")
 	String PROXY_HOST();
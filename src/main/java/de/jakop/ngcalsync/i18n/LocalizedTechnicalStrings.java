@@ -105,12 +105,150 @@ public interface LocalizedTechnicalStrings {
 	@En("executing update: {0}")
 	String MSG_EXECUTING_UPDATE(String title);
 
+	/**
+	 * @param title {0}
+	 */
+	@En("skipping update, nothing changed: {0}")
+	String MSG_SKIPPING_UNCHANGED_UPDATE(String title);
+
 	/**
 	 * @param id {0}
 	 */
 	@En("executing delete: {0}")
 	String MSG_EXECUTING_DELETE(String id);
 
+	/**
+	 * @param count {0}
+	 */
+	@En("executing batch of {0} changes")
+	String MSG_EXECUTING_BATCH(int count);
+
+	/**
+	 * @param threads {0}
+	 * @param requestsPerSecond {1}
+	 */
+	@En("sending changes in {0} threads, at most {1} per second")
+	String MSG_SENDING_CHANGES_PARALLEL(int threads, int requestsPerSecond);
+
+	/**
+	 * @param slices {0}
+	 * @param threads {1}
+	 */
+	@En("comparing the sync period in {0} slices, {1} at the same time")
+	String MSG_COMPARING_SLICES_PARALLEL(int slices, int threads);
+
+	/**
+	 * @param start {0}
+	 * @param end {1}
+	 */
+	@En("Error comparing the events from {0} to {1}, they are not synchronized")
+	String MSG_SLICE_ERROR(String start, String end);
+
+	/**
+	 * @param title {0}
+	 */
+	@En("change sent: {0}")
+	String MSG_CHANGE_SENT(String title);
+
+	/**
+	 * @param title {0}
+	 * @param attempt {1}
+	 * @param delay {2}
+	 * @param reason {3}
+	 */
+	@En("retrying change of {0} in {2} ms (attempt {1}): {3}")
+	String MSG_RETRYING_CHANGE(String title, int attempt, long delay, String reason);
+
+	/**
+	 * @param syncToken {0}
+	 */
+	@En("fetching Google changes since sync token {0}")
+	String MSG_FETCHING_GOOGLE_CHANGES(String syncToken);
+
+	/**
+	 * @param page {0}
+	 * @param count {1}
+	 */
+	@En("read page {0} with {1} Google events")
+	String MSG_READ_GOOGLE_PAGE(int page, int count);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Local copy of the Google calendar {0} is unreadable and will be rebuilt")
+	String MSG_GOOGLE_MIRROR_UNREADABLE(String file);
+
+	/**
+	 * @param file {0}
+	 * @param bytes {1}
+	 */
+	@En("Cutting off {1} bytes of an incomplete change at the end of {0}")
+	String MSG_GOOGLE_MIRROR_JOURNAL_TRUNCATED(String file, int bytes);
+
+	@SuppressWarnings("javadoc")
+	@En("The sync period has left the window of the local copy of the Google calendar, reading the whole calendar")
+	String MSG_GOOGLE_MIRROR_WINDOW_PASSED();
+
+	/**
+	 * @param calendarId {0}
+	 */
+	@En("The local copy of the Google calendar belongs to another calendar than {0}, reading the whole calendar")
+	String MSG_GOOGLE_MIRROR_OTHER_CALENDAR(String calendarId);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Cached ids of the Google calendars in {0} are unreadable, the calendars are looked up again")
+	String MSG_GOOGLE_CALENDAR_IDS_NOT_READ(String file);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Unable to write the cached ids of the Google calendars to {0}")
+	String MSG_GOOGLE_CALENDAR_IDS_NOT_WRITTEN(String file);
+
+	/**
+	 * @param name {0}
+	 * @param id {1}
+	 */
+	@En("Google calendar {0} has the id {1}")
+	String MSG_GOOGLE_CALENDAR_ID_RESOLVED(String name, String id);
+
+	/**
+	 * @param name {0}
+	 */
+	@En("Cached id of the Google calendar {0} is stale, looking the calendar up again")
+	String MSG_GOOGLE_CALENDAR_ID_STALE(String name);
+
+	/* sinks */
+
+	/**
+	 * @param id {0}
+	 */
+	@En("Event \"{0}\" not found")
+	String MSG_SINK_EVENT_NOT_FOUND(String id);
+
+	/**
+	 * @param file {0}
+	 * @param events {1}
+	 */
+	@En("Read {1} events from {0}")
+	String MSG_READ_ICS_FILE(String file, int events);
+
+	/**
+	 * @param file {0}
+	 * @param events {1}
+	 */
+	@En("Wrote {1} events to {0}")
+	String MSG_WROTE_ICS_FILE(String file, int events);
+
+	/**
+	 * @param file {0}
+	 * @param uid {1}
+	 */
+	@En("Ignoring event \"{1}\" of {0} without id or start")
+	String MSG_ICS_EVENT_IGNORED(String file, String uid);
+
 	/* Notes */
 
 	/**
@@ -132,6 +270,76 @@ public interface LocalizedTechnicalStrings {
 	@En("Processing document with UNID \"{0}\"")
 	String MSG_PROCESSING_DOCUMENT_UNID(String unid);
 
+	/**
+	 * @param unid {0}
+	 */
+	@En("Document with UNID \"{0}\" is unchanged, using stored conversion")
+	String MSG_DOCUMENT_UNCHANGED_UNID(String unid);
+
+	/**
+	 * @param unid {0}
+	 */
+	@En("Document with UNID \"{0}\" does not exist anymore")
+	String MSG_DOCUMENT_WITH_UNID_NOT_FOUND(String unid);
+
+	/**
+	 * @param threads {0}
+	 */
+	@En("Converting documents with {0} threads")
+	String MSG_CONVERTING_DOCUMENTS_PARALLEL(int threads);
+
+	/**
+	 * @param view {0}
+	 * @param items {1}
+	 */
+	@En("View \"{0}\" shows no columns for {1}, reading documents instead")
+	String MSG_VIEW_COLUMNS_MISSING(String view, String items);
+
+	/**
+	 * @param unid {0}
+	 */
+	@En("Converting view entry of document with UNID \"{0}\"")
+	String MSG_CONVERTING_VIEW_ENTRY_UNID(String unid);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Local store of Lotus Notes documents {0} is corrupt, damaged records are dropped")
+	String MSG_NOTES_STATE_CORRUPT(String file);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Local store of Lotus Notes documents {0} has been written by an earlier version or with other privacy settings and will be rebuilt")
+	String MSG_NOTES_STATE_OUTDATED(String file);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Local store of Lotus Notes documents {0} could not be written")
+	String MSG_NOTES_STATE_NOT_WRITTEN(String file);
+
+	/**
+	 * @param live {0}
+	 * @param obsolete {1}
+	 */
+	@En("Compacting local store of Lotus Notes documents: keeping {0} records, dropping {1}")
+	String MSG_COMPACTING_NOTES_STATE(int live, int obsolete);
+
+	/**
+	 * @param server {0}
+	 * @param database {1}
+	 */
+	@En("Reusing open Lotus Notes database {1} on server \"{0}\"")
+	String MSG_REUSING_NOTES_DATABASE(String server, String database);
+
+	/**
+	 * @param server {0}
+	 * @param database {1}
+	 */
+	@En("Lotus Notes database {1} on server \"{0}\" is no longer usable and is opened again")
+	String MSG_REOPENING_NOTES_DATABASE(String server, String database);
+
 	/**
 	 * @param unid {0}
 	 */
@@ -232,7 +440,7 @@ public interface LocalizedTechnicalStrings {
 	 * @param matchCount {0}
 	 * @param event {1}
 	 */
-	@En("Duplicate match ({0}) for {1}")
+	@En("Duplicate match ({0}) for {1}, the event is added again and the matches are removed")
 	String MSG_DUPLICATE_MATCH(int matchCount, String event);
 
 	/**
@@ -245,6 +453,12 @@ public interface LocalizedTechnicalStrings {
 	@En("Starting application in console mode.")
 	String MSG_START_IN_CONSOLE_MODE();
 
+	/**
+	 * @param directory {0}
+	 */
+	@En("Starting application in server mode with the profiles in {0}")
+	String MSG_START_IN_SERVER_MODE(String directory);
+
 	@SuppressWarnings("javadoc")
 	@En("Starting application in tray mode.")
 	String MSG_START_IN_TRAY_MODE();
@@ -273,4 +487,30 @@ public interface LocalizedTechnicalStrings {
 	@En("Error inserting entry")
 	String MSG_INSERT_ERROR();
 
+	@SuppressWarnings("javadoc")
+	@En("Error updating entry")
+	String MSG_UPDATE_ERROR();
+
+	@SuppressWarnings("javadoc")
+	@En("Error deleting entry")
+	String MSG_DELETE_ERROR();
+
+	/**
+	 * @param name {0}
+	 */
+	@En("Unable to expose the synchronisation metrics through JMX as {0}")
+	String MSG_METRICS_NOT_REGISTERED(String name);
+
+	/**
+	 * @param name {0}
+	 */
+	@En("Unable to remove the synchronisation metrics {0} from JMX")
+	String MSG_METRICS_NOT_UNREGISTERED(String name);
+
+	/**
+	 * @param file {0}
+	 */
+	@En("Unable to write the synchronisation metrics to {0}")
+	String MSG_METRICS_NOT_WRITTEN(String file);
+
 }
@@ -122,6 +122,27 @@ public interface LocalizedUserStrings {
 	@En("Unable to parse start date shift \"{0}\".")
 	String MSG_UNABLE_TO_PARSE_DATE_SHIFT(String dateShift);
 
+	/**
+	 * @param tier {0}
+	 */
+	@De("Die Stufe \"{0}\" des Synchronisierungszeitraums konnte nicht interpretiert werden, bitte prüfen Sie die Konfiguration.")
+	@En("Unable to parse sync tier \"{0}\".")
+	String MSG_UNABLE_TO_PARSE_SYNC_TIER(String tier);
+
+	/**
+	 * @param type {0}
+	 */
+	@De("Der Kalender-Typ \"{0}\" ist unbekannt, bitte prüfen Sie die Konfiguration.")
+	@En("Calendar sink type \"{0}\" not recognized.")
+	String MSG_SINK_TYPE_NOT_RECOGNIZED(String type);
+
+	/**
+	 * @param type {0}
+	 */
+	@De("Der HTTP-Transport \"{0}\" ist unbekannt, bitte prüfen Sie die Konfiguration.")
+	@En("HTTP transport \"{0}\" not recognized.")
+	String MSG_HTTP_TRANSPORT_NOT_RECOGNIZED(String type);
+
 	@SuppressWarnings("javadoc")
 	@De("Es konnte kein Browser geöffnet werden.")
 	@En("Failed to open browser.")
@@ -154,6 +175,14 @@ public interface LocalizedUserStrings {
 	@En("Synchronisation from Lotus Notes to Google has ended.")
 	String MSG_SYNC_ENDED();
 
+	/**
+	 * @param start {0}
+	 * @param end {1}
+	 */
+	@De("Der Zeitraum von {0} bis {1} wird synchronisiert.")
+	@En("Synchronising the period from {0} to {1}.")
+	String MSG_SYNC_TIER_STARTED(String start, String end);
+
 	@SuppressWarnings("javadoc")
 	@De("Die Synchronisierung läuft bereits, es wird keine neue gestartet.")
 	@En("Synchronisation is already running, a new one cannot be started.")
@@ -173,6 +202,11 @@ public interface LocalizedUserStrings {
 	@En("Retrieving events from Google calendar \"{0}\"")
 	String MSG_READING_GOOGLE_EVENTS(String calendar);
 
+	@SuppressWarnings("javadoc")
+	@De("Die Änderungen im Google-Kalender sind nicht mehr verfügbar, der Kalender wird vollständig gelesen.")
+	@En("Changes of the Google calendar are no longer available, reading the whole calendar.")
+	String MSG_GOOGLE_SYNC_TOKEN_EXPIRED();
+
 	/**
 	 * @param count {0}
 	 */
@@ -287,6 +321,36 @@ public interface LocalizedUserStrings {
 	@En("Starts the application without GUI (a.k.a. console mode) and with immediate synchronisation")
 	String MSG_COMMAND_OPTION_DESCRIPTION_CONSOLE();
 
+	@SuppressWarnings("javadoc")
+	@De("Synchronisiert die Benutzer der Profile im angegebenen Verzeichnis, jedes Unterverzeichnis mit einer sync.properties ist ein Profil")
+	@En("Synchronises the users of the profiles in the given directory, each subdirectory containing a sync.properties is a profile")
+	String MSG_COMMAND_OPTION_DESCRIPTION_SERVER();
+
+	@SuppressWarnings("javadoc")
+	@De("Anzahl der Benutzer, die im Server-Modus gleichzeitig synchronisiert werden")
+	@En("Number of users synchronised at the same time in server mode")
+	String MSG_COMMAND_OPTION_DESCRIPTION_THREADS();
+
+	/**
+	 * @param profiles {0}
+	 * @param threads {1}
+	 */
+	@De("Server gestartet, {0} Profile werden mit {1} Threads synchronisiert.")
+	@En("Server started, synchronising {0} profiles with {1} threads.")
+	String MSG_SERVER_STARTED(int profiles, int threads);
+
+	/**
+	 * @param profile {0}
+	 */
+	@De("Das Profil \"{0}\" konnte nicht gestartet werden.")
+	@En("Unable to start profile \"{0}\".")
+	String MSG_PROFILE_NOT_STARTED(String profile);
+
+	@SuppressWarnings("javadoc")
+	@De("Der Zugriff auf Google ist nicht autorisiert. Bitte autorisieren Sie ihn im Konsolenmodus und kopieren Sie die user.secrets in das Profil.")
+	@En("Access to Google is not authorized. Please authorize it in console mode and copy the user.secrets into the profile.")
+	String MSG_AUTHORIZATION_REQUIRED();
+
 	@SuppressWarnings("javadoc")
 	@De("Version")
 	@En("Version")
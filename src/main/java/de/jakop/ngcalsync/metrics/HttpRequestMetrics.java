@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.metrics;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.Validate;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+
+import de.jakop.ngcalsync.metrics.SyncMetrics.Counter;
+
+/**
+ * Initializes the requests like the given initializer and counts the requests and the bytes transferred by the
+ * {@link SyncMetrics}.
+ *
+ * @author fjakop
+ */
+public class HttpRequestMetrics implements HttpRequestInitializer, HttpResponseInterceptor {
+
+	private final SyncMetrics metrics;
+	private final HttpRequestInitializer initializer;
+
+	/**
+	 *
+	 * @param metrics
+	 * @param initializer initializes the requests, e.g. with credentials
+	 */
+	public HttpRequestMetrics(final SyncMetrics metrics, final HttpRequestInitializer initializer) {
+		Validate.notNull(metrics);
+		Validate.notNull(initializer);
+		this.metrics = metrics;
+		this.initializer = initializer;
+	}
+
+	@Override
+	public void initialize(final HttpRequest request) throws IOException {
+		initializer.initialize(request);
+		request.setResponseInterceptor(this);
+	}
+
+	@Override
+	public void interceptResponse(final HttpResponse response) throws IOException {
+		metrics.count(Counter.GOOGLE_REQUESTS);
+
+		final HttpContent content = response.getRequest().getContent();
+		if (content != null && content.getLength() > 0) {
+			metrics.count(Counter.GOOGLE_BYTES, content.getLength());
+		}
+		final Long contentLength = response.getHeaders().getContentLength();
+		if (contentLength != null) {
+			metrics.count(Counter.GOOGLE_BYTES, contentLength.longValue());
+		}
+	}
+
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Records the duration and the number of events of each phase of a synchronisation and counts the requests to
+ * Google and Lotus Notes. The metrics of the last synchronisation are exposed through JMX and appended as a JSON
+ * line to a metrics file, which is rolled over when it gets too large.
+ * <p>
+ * There is an instance per profile, kept by its {@link de.jakop.ngcalsync.settings.Settings}, so the profiles
+ * synchronised in one process by a {@link de.jakop.ngcalsync.application.SyncServer} record their own metrics.
+ *
+ * @author fjakop
+ */
+public final class SyncMetrics implements SyncMetricsMXBean {
+
+	/**
+	 * Phases of a synchronisation
+	 */
+	public enum Phase {
+		/** reading the Lotus Notes events */
+		NOTES_READ,
+		/** reading the Google events */
+		GOOGLE_READ,
+		/** comparing the events */
+		DIFF,
+		/** removing events from Google */
+		DELETE,
+		/** adding events to Google */
+		INSERT,
+		/** updating events in Google */
+		UPDATE
+	}
+
+	/**
+	 * Counters of a synchronisation
+	 */
+	public enum Counter {
+		/** HTTP requests sent to Google */
+		GOOGLE_REQUESTS,
+		/** changes sent to Google again after a failure */
+		GOOGLE_RETRIES,
+		/** bytes sent to and received from Google, as far as their length is known */
+		GOOGLE_BYTES,
+		/** Lotus Notes documents opened */
+		NOTES_DOCUMENT_OPENS,
+		/** updates not sent to Google, since the content of the event is unchanged */
+		UNCHANGED_UPDATES
+	}
+
+	/** the metrics file is rolled over when it gets larger */
+	static final long MAX_FILE_BYTES = 1024 * 1024;
+
+	private static final String OBJECT_NAME = "de.jakop.ngcalsync:type=SyncMetrics"; //$NON-NLS-1$
+
+	private final Log log = LogFactory.getLog(getClass());
+	private final JsonFactory jsonFactory = new JacksonFactory();
+	private final AtomicLong runs = new AtomicLong();
+
+	private volatile Run current = new Run();
+	private volatile Run lastRun;
+
+	private String objectName;
+
+	/**
+	 * Exposes the metrics through the platform's MBean server.
+	 *
+	 * @param profile distinguishes the metrics of the profiles of a server, <code>null</code> for the only profile
+	 */
+	public synchronized void register(final String profile) {
+		final String name = getObjectName(profile);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+			objectName = name;
+		} catch (final JMException e) {
+			log.warn(TechMessage.get().MSG_METRICS_NOT_REGISTERED(name), e);
+		}
+	}
+
+	/**
+	 * Removes the metrics from the platform's MBean server, if they have been registered.
+	 */
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(objectName));
+		} catch (final JMException e) {
+			log.warn(TechMessage.get().MSG_METRICS_NOT_UNREGISTERED(objectName), e);
+		}
+		objectName = null;
+	}
+
+	static String getObjectName(final String profile) {
+		if (profile == null) {
+			return OBJECT_NAME;
+		}
+		return OBJECT_NAME + ",profile=" + ObjectName.quote(profile); //$NON-NLS-1$
+	}
+
+	/**
+	 * Starts recording a synchronisation.
+	 */
+	public void start() {
+		current = new Run();
+	}
+
+	/**
+	 * Finishes recording the current synchronisation, its metrics become the last run's.
+	 *
+	 * @param successful <code>true</code>, if the synchronisation has succeeded
+	 */
+	public void finish(final boolean successful) {
+		final Run run = current;
+		run.finish(successful);
+		lastRun = run;
+		runs.incrementAndGet();
+		current = new Run();
+	}
+
+	/**
+	 * @param phase
+	 * @param nanos time spent in the phase
+	 * @param events number of events processed
+	 */
+	public void record(final Phase phase, final long nanos, final int events) {
+		final Run run = current;
+		run.phaseNanos.addAndGet(phase.ordinal(), nanos);
+		run.phaseEvents.addAndGet(phase.ordinal(), events);
+	}
+
+	/**
+	 * @param counter
+	 */
+	public void count(final Counter counter) {
+		count(counter, 1);
+	}
+
+	/**
+	 * @param counter
+	 * @param delta
+	 */
+	public void count(final Counter counter, final long delta) {
+		current.counters.addAndGet(counter.ordinal(), delta);
+	}
+
+	/**
+	 * Appends the last run's metrics as a JSON line to the file. A file larger than {@link #MAX_FILE_BYTES} is
+	 * moved to a backup first, replacing the previous one.
+	 *
+	 * @param file
+	 */
+	public void append(final File file) {
+		Validate.notNull(file);
+		final Run run = lastRun;
+		if (run == null) {
+			return;
+		}
+		try {
+			if (file.length() > MAX_FILE_BYTES) {
+				final File backup = new File(file.getPath() + ".1"); //$NON-NLS-1$
+				FileUtils.deleteQuietly(backup);
+				FileUtils.moveFile(file, backup);
+			}
+			FileUtils.writeStringToFile(file, String.format("%s%n", jsonFactory.toString(run.toMap())), "UTF-8", true); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (final IOException e) {
+			// metrics never let a synchronisation fail
+			log.warn(TechMessage.get().MSG_METRICS_NOT_WRITTEN(file.getAbsolutePath()), e);
+		}
+	}
+
+	@Override
+	public long getRuns() {
+		return runs.get();
+	}
+
+	@Override
+	public Date getLastRunStart() {
+		final Run run = lastRun;
+		return run == null ? null : new Date(run.start);
+	}
+
+	@Override
+	public long getLastRunMillis() {
+		final Run run = lastRun;
+		return run == null ? 0 : run.millis;
+	}
+
+	@Override
+	public boolean isLastRunSuccessful() {
+		final Run run = lastRun;
+		return run != null && run.successful;
+	}
+
+	@Override
+	public Map<String, Long> getLastRunPhaseMillis() {
+		final Run run = lastRun;
+		return run == null ? new LinkedHashMap<String, Long>() : run.getPhaseMillis();
+	}
+
+	@Override
+	public Map<String, Long> getLastRunPhaseEvents() {
+		final Run run = lastRun;
+		return run == null ? new LinkedHashMap<String, Long>() : toMap(Phase.values(), run.phaseEvents);
+	}
+
+	@Override
+	public Map<String, Long> getLastRunCounters() {
+		final Run run = lastRun;
+		return run == null ? new LinkedHashMap<String, Long>() : toMap(Counter.values(), run.counters);
+	}
+
+	private static Map<String, Long> toMap(final Enum<?>[] keys, final AtomicLongArray values) {
+		final Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (final Enum<?> key : keys) {
+			map.put(name(key), Long.valueOf(values.get(key.ordinal())));
+		}
+		return map;
+	}
+
+	private static String name(final Enum<?> key) {
+		return key.name().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * The metrics of a single synchronisation
+	 */
+	private static class Run {
+
+		private final long start = System.currentTimeMillis();
+		private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+		private final AtomicLongArray phaseEvents = new AtomicLongArray(Phase.values().length);
+		private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+		private long millis;
+		private boolean successful;
+
+		void finish(final boolean success) {
+			millis = System.currentTimeMillis() - start;
+			successful = success;
+		}
+
+		Map<String, Long> getPhaseMillis() {
+			final Map<String, Long> map = new LinkedHashMap<String, Long>();
+			for (final Phase phase : Phase.values()) {
+				map.put(name(phase), Long.valueOf(TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase.ordinal()))));
+			}
+			return map;
+		}
+
+		Map<String, Object> toMap() {
+			final Map<String, Object> phases = new LinkedHashMap<String, Object>();
+			final Map<String, Long> phaseMillis = getPhaseMillis();
+			for (final Phase phase : Phase.values()) {
+				final Map<String, Long> values = new LinkedHashMap<String, Long>();
+				values.put("millis", phaseMillis.get(name(phase))); //$NON-NLS-1$
+				values.put("events", Long.valueOf(phaseEvents.get(phase.ordinal()))); //$NON-NLS-1$
+				phases.put(name(phase), values);
+			}
+
+			final Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("start", Long.valueOf(start)); //$NON-NLS-1$
+			map.put("millis", Long.valueOf(millis)); //$NON-NLS-1$
+			map.put("successful", Boolean.valueOf(successful)); //$NON-NLS-1$
+			map.put("phases", phases); //$NON-NLS-1$
+			map.put("counters", SyncMetrics.toMap(Counter.values(), counters)); //$NON-NLS-1$
+			return map;
+		}
+	}
+
+}
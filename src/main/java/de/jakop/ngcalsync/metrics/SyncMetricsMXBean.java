@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.metrics;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * The metrics of the last synchronisation, exposed through JMX.
+ *
+ * @author fjakop
+ */
+public interface SyncMetricsMXBean {
+
+	/**
+	 * @return number of synchronisations finished since the application has started
+	 */
+	long getRuns();
+
+	/**
+	 * @return start of the last synchronisation, <code>null</code> if none has finished yet
+	 */
+	Date getLastRunStart();
+
+	/**
+	 * @return duration of the last synchronisation in milliseconds
+	 */
+	long getLastRunMillis();
+
+	/**
+	 * @return <code>true</code>, if the last synchronisation has succeeded
+	 */
+	boolean isLastRunSuccessful();
+
+	/**
+	 * @return milliseconds spent in each phase of the last synchronisation, summed up over all threads
+	 */
+	Map<String, Long> getLastRunPhaseMillis();
+
+	/**
+	 * @return number of events processed by each phase of the last synchronisation
+	 */
+	Map<String, Long> getLastRunPhaseEvents();
+
+	/**
+	 * @return the counters of the last synchronisation
+	 */
+	Map<String, Long> getLastRunCounters();
+
+}
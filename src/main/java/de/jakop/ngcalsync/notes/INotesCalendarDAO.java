@@ -26,6 +26,7 @@
  */
 package de.jakop.ngcalsync.notes;
 
+import java.util.Calendar;
 import java.util.List;
 
 import de.jakop.ngcalsync.calendar.CalendarEvent;
@@ -48,4 +49,20 @@ public interface INotesCalendarDAO {
 	 */
 	public abstract List<CalendarEvent> getEntries(ICalendarEventFilter[] filters) throws SynchronisationException;
 
+	/**
+	 * Reads the calendar events matched by the filters in a part of the sync period. Different parts may
+	 * be read by different threads, but one after the other.
+	 *
+	 * @param filters
+	 * @param start start of the part
+	 * @param end end of the part
+	 * @return all matching events of the part
+	 */
+	public abstract List<CalendarEvent> getEntries(ICalendarEventFilter[] filters, Calendar start, Calendar end) throws SynchronisationException;
+
+	/**
+	 * Releases the threads and Lotus Notes sessions held for reading the events. The DAO must not be used afterwards.
+	 */
+	public abstract void close();
+
 }
\ No newline at end of file
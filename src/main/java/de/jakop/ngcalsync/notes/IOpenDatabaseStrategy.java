@@ -43,4 +43,14 @@ interface IOpenDatabaseStrategy {
 	 */
 	public DDatabase openDatabase(String dominoServer, String database);
 
+	/**
+	 * Opens the database by a session of its own, which is not handed out to anybody else, e.g. for a thread
+	 * converting documents beside the synchronisation's thread.
+	 *
+	 * @param dominoServer
+	 * @param database
+	 * @return the open database
+	 */
+	public DDatabase openExclusiveDatabase(String dominoServer, String database);
+
 }
@@ -26,6 +26,7 @@
  */
 package de.jakop.ngcalsync.notes;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -35,10 +36,18 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -54,6 +63,9 @@ import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
 import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Counter;
+import de.jakop.ngcalsync.notes.NotesDocumentState.Occurrence;
 
 /**
  * Access to Lotus Notes calendar events
@@ -79,11 +91,38 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 
 	private static final String FLAG_APPOINTMENT = "Appointment"; //$NON-NLS-1$
 
+	/** items read from the columns of the calendar view */
+	private static final String[] COLUMN_ITEMS = { FIELDNAME_FORM, FIELDNAME_SUBJECT, FIELDNAME_LOCATION, FIELDNAME_ROOM, FIELDNAME_PRIVATE, FIELDNAME_APPOINTMENT_TYPE,
+			FIELDNAME_START_DATE_TIME, FIELDNAME_END_DATE_TIME, FIELDNAME_REPEATS, FIELDNAME_CALENDAR_DATE_TIME, NotesViewColumns.LAST_MODIFIED };
+
 	private final Log log = LogFactory.getLog(getClass());
 
+	private final IOpenDatabaseStrategy openDatabaseStrategy;
+	private final String dominoServer;
+	private final String mailDatabase;
 	private final DDatabase mailDb;
 	private final Calendar startDateTime;
 	private final Calendar endDateTime;
+	private final NotesStateStore stateStore;
+	private boolean stateStoreLoaded;
+	private final int conversionThreads;
+	private final boolean readViewColumns;
+	private final boolean readBody;
+	private final SyncMetrics metrics;
+
+	/** the threads converting documents, created on first use and kept until {@link #close()} */
+	private ExecutorService conversionExecutor;
+	/** the mail databases opened by the conversion threads, released on {@link #close()} */
+	private final List<DDatabase> workerDbs = Collections.synchronizedList(new ArrayList<DDatabase>());
+	/** the mail database opened by each conversion thread with a session of its own */
+	private final ThreadLocal<DDatabase> workerDb = new ThreadLocal<DDatabase>() {
+		@Override
+		protected DDatabase initialValue() {
+			final DDatabase db = openDatabaseStrategy.openExclusiveDatabase(dominoServer, mailDatabase);
+			workerDbs.add(db);
+			return db;
+		}
+	};
 
 
 	/**
@@ -96,9 +135,69 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 	 */
 	NotesCalendarDAO(final IOpenDatabaseStrategy openDatabaseStrategy, final String dominoServer, final String mailDatabase, final Calendar startDateTime,
 			final Calendar endDateTime) {
+		this(openDatabaseStrategy, dominoServer, mailDatabase, startDateTime, endDateTime, null, 1);
+	}
+
+	/**
+	 *
+	 * @param dominoServer
+	 * @param mailDatabase
+	 * @param startDateTime
+	 * @param endDateTime
+	 * @param openDatabaseStrategy
+	 * @param stateStore store of converted documents, <code>null</code> to convert all documents
+	 * @param conversionThreads number of threads converting documents, values less than 2 convert in the calling thread
+	 */
+	NotesCalendarDAO(final IOpenDatabaseStrategy openDatabaseStrategy, final String dominoServer, final String mailDatabase, final Calendar startDateTime,
+			final Calendar endDateTime, final NotesStateStore stateStore, final int conversionThreads) {
+		this(openDatabaseStrategy, dominoServer, mailDatabase, startDateTime, endDateTime, stateStore, conversionThreads, false, true);
+	}
+
+	/**
+	 *
+	 * @param dominoServer
+	 * @param mailDatabase
+	 * @param startDateTime
+	 * @param endDateTime
+	 * @param openDatabaseStrategy
+	 * @param stateStore store of converted documents, <code>null</code> to convert all documents
+	 * @param conversionThreads number of threads converting documents, values less than 2 convert in the calling thread
+	 * @param readViewColumns <code>true</code> to read the events from the columns of the calendar view, if it shows all items
+	 * @param readBody <code>false</code>, if the description is not needed, so documents are not opened when reading view columns
+	 */
+	NotesCalendarDAO(final IOpenDatabaseStrategy openDatabaseStrategy, final String dominoServer, final String mailDatabase, final Calendar startDateTime,
+			final Calendar endDateTime, final NotesStateStore stateStore, final int conversionThreads, final boolean readViewColumns, final boolean readBody) {
+		this(openDatabaseStrategy, dominoServer, mailDatabase, startDateTime, endDateTime, stateStore, conversionThreads, readViewColumns, readBody, new SyncMetrics());
+	}
+
+	/**
+	 *
+	 * @param dominoServer
+	 * @param mailDatabase
+	 * @param startDateTime
+	 * @param endDateTime
+	 * @param openDatabaseStrategy
+	 * @param stateStore store of converted documents, <code>null</code> to convert all documents
+	 * @param conversionThreads number of threads converting documents, values less than 2 convert in the calling thread
+	 * @param readViewColumns <code>true</code> to read the events from the columns of the calendar view, if it shows all items
+	 * @param readBody <code>false</code>, if the description is not needed, so documents are not opened when reading view columns
+	 * @param metrics counts the documents opened
+	 */
+	NotesCalendarDAO(final IOpenDatabaseStrategy openDatabaseStrategy, final String dominoServer, final String mailDatabase, final Calendar startDateTime,
+			final Calendar endDateTime, final NotesStateStore stateStore, final int conversionThreads, final boolean readViewColumns, final boolean readBody,
+			final SyncMetrics metrics) {
+		Validate.notNull(metrics);
+		this.openDatabaseStrategy = openDatabaseStrategy;
+		this.dominoServer = dominoServer;
+		this.mailDatabase = mailDatabase;
 		mailDb = openDatabaseStrategy.openDatabase(dominoServer, mailDatabase);
 		this.startDateTime = startDateTime;
 		this.endDateTime = endDateTime;
+		this.stateStore = stateStore;
+		this.conversionThreads = conversionThreads;
+		this.readViewColumns = readViewColumns;
+		this.readBody = readBody;
+		this.metrics = metrics;
 	}
 
 	/* (non-Javadoc)
@@ -106,6 +205,18 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 	 */
 	@Override
 	public List<CalendarEvent> getEntries(final ICalendarEventFilter[] filters) throws SynchronisationException {
+		return getEntries(filters, startDateTime, endDateTime, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jakop.ngcalsync.notes.INotesCalendarDAO#getEntries(de.jakop.ngcalsync.filter.ICalendarEventFilter[], java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public List<CalendarEvent> getEntries(final ICalendarEventFilter[] filters, final Calendar start, final Calendar end) throws SynchronisationException {
+		return getEntries(filters, start, end, false);
+	}
+
+	private List<CalendarEvent> getEntries(final ICalendarEventFilter[] filters, final Calendar start, final Calendar end, final boolean wholePeriod) {
 		log.info(UserMessage.get().MSG_READING_LOTUS_NOTES_EVENTS(mailDb.getFilePath()));
 
 		final Predicate<CalendarEvent> predicate = new Predicate<CalendarEvent>() {
@@ -120,15 +231,15 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 			}
 		};
 
-		final List<CalendarEvent> selected = new ArrayList<CalendarEvent>(CollectionUtils.select(getCalendarEntries(), predicate));
+		final List<CalendarEvent> selected = new ArrayList<CalendarEvent>(CollectionUtils.select(getCalendarEntries(start, end, wholePeriod), predicate));
 
 		Collections.sort(selected, new Comparator<CalendarEvent>() {
 			@Override
 			public int compare(final CalendarEvent o1, final CalendarEvent o2) {
-				if (o1.getStartDateTime().before(o2.getStartDateTime())) {
+				if (o1.getStartMillis() < o2.getStartMillis()) {
 					return -1;
 				}
-				if (o1.getStartDateTime().after(o2.getStartDateTime())) {
+				if (o1.getStartMillis() > o2.getStartMillis()) {
 					return 1;
 				}
 				return 0;
@@ -137,57 +248,367 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 		return selected;
 	}
 
-	private List<CalendarEvent> getCalendarEntries() {
+	/**
+	 * @param start
+	 * @param end
+	 * @param wholePeriod <code>true</code>, if the whole sync period is read, <code>false</code> for a part of it, the other
+	 *            parts are read before or after
+	 */
+	private List<CalendarEvent> getCalendarEntries(final Calendar start, final Calendar end, final boolean wholePeriod) {
 
 		final Set<String> processedNotesDocuments = new HashSet<String>();
-		final List<CalendarEvent> entries = new ArrayList<CalendarEvent>();
 
 		final DView calView = mailDb.getView(VIEWNAME_CALENDAR);
+		final NotesViewColumns columns = readViewColumns ? NotesViewColumns.of(calView, COLUMN_ITEMS) : null;
 
 		@SuppressWarnings("unchecked")
-		final Iterator<DViewEntry> viewEntries = calView.getAllEntriesByKey(startDateTime, endDateTime, false);
+		final Iterator<DViewEntry> viewEntries = calView.getAllEntriesByKey(start, end, false);
+
+		// reading columns is cheap, the state store is only needed when reading documents
+		final boolean useStateStore = stateStore != null && (columns == null || readBody);
+		if (useStateStore) {
+			loadStateStore(wholePeriod);
+		}
+
+		final List<CalendarEvent> entries;
+		if (columns != null) {
+			entries = convViewColumns(viewEntries, processedNotesDocuments, columns, start, end);
+		} else if (conversionThreads > 1) {
+			entries = convViewEntriesParallel(viewEntries, processedNotesDocuments, start, end);
+		} else {
+			entries = convViewEntries(viewEntries, processedNotesDocuments, start, end);
+		}
+
+		if (useStateStore) {
+			// documents not seen anymore are deleted or out of the sync window
+			if (wholePeriod) {
+				stateStore.retain(processedNotesDocuments);
+			} else {
+				stateStore.retain(processedNotesDocuments, start.getTimeInMillis(), end.getTimeInMillis());
+			}
+			try {
+				stateStore.save();
+			} catch (final IOException e) {
+				log.warn(TechMessage.get().MSG_NOTES_STATE_NOT_WRITTEN(stateStore.getFile().getAbsolutePath()), e);
+			}
+		}
+
+		return entries;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jakop.ngcalsync.notes.INotesCalendarDAO#close()
+	 */
+	@Override
+	public synchronized void close() {
+		if (conversionExecutor != null) {
+			conversionExecutor.shutdownNow();
+			conversionExecutor = null;
+		}
+		// domingo recycles the sessions of the conversion threads once they are no longer referenced
+		workerDbs.clear();
+	}
+
+	/**
+	 * @return the threads converting documents, shared by all calls until {@link #close()}
+	 */
+	private synchronized ExecutorService getConversionExecutor() {
+		if (conversionExecutor == null) {
+			log.debug(TechMessage.get().MSG_CONVERTING_DOCUMENTS_PARALLEL(conversionThreads));
+			conversionExecutor = Executors.newFixedThreadPool(conversionThreads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "notes-conversion-" + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return conversionExecutor;
+	}
 
+	/**
+	 * Loads the state store before reading the whole sync period, but only once for all parts of it
+	 */
+	private synchronized void loadStateStore(final boolean wholePeriod) {
+		if (wholePeriod || !stateStoreLoaded) {
+			stateStore.load();
+			stateStoreLoaded = true;
+		}
+	}
+
+	private List<CalendarEvent> convViewEntries(final Iterator<DViewEntry> viewEntries, final Set<String> processedNotesDocuments, final Calendar start, final Calendar end) {
+		final List<CalendarEvent> entries = new ArrayList<CalendarEvent>();
 		while (viewEntries.hasNext()) {
 			final DViewEntry viewEntry = viewEntries.next();
-			final DDocument currentWorkDoc = viewEntry.getDocument();
+			final DDocument currentWorkDoc = openDocument(viewEntry);
 
 			if (currentWorkDoc != null) {
 				log.debug(TechMessage.get().MSG_PROCESSING_DOCUMENT_UNID(currentWorkDoc.getUniversalID()));
 
 				// ist es schon prozessiert worden (ein Notes-Dokument kann mehrfach auftreten, wenn es wiederholend ist)
 				if (!processedNotesDocuments.contains(currentWorkDoc.getUniversalID())) {
-
-					if (FLAG_APPOINTMENT.equals(currentWorkDoc.getItemValueString(FIELDNAME_FORM))) {
-						// If this is a conflict document, skip to next document.
-						if (currentWorkDoc.hasItem(FIELDNAME_CONFLICT)) {
-							log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_CONFLICT_DOCUMENT(currentWorkDoc.getUniversalID()));
-							continue;
-						}
-
-						final Collection<CalendarEvent> convDocs = convDoc(currentWorkDoc);
+					final Collection<CalendarEvent> convDocs = convAppointment(currentWorkDoc, start, end);
+					if (convDocs != null) {
 						entries.addAll(convDocs);
 						processedNotesDocuments.add(currentWorkDoc.getUniversalID());
-					} else {
-						log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_NOT_AN_APPOINTMENT(currentWorkDoc.getUniversalID()));
 					}
 				} else {
 					log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_ALREADY_PROCESSED(currentWorkDoc.getUniversalID()));
 				}
 			}
 		}
+		return entries;
+	}
+
+	/**
+	 * Converts the view entries from their column values without opening the documents, except for
+	 * reading the description or if the columns of an entry are incomplete.
+	 */
+	private List<CalendarEvent> convViewColumns(final Iterator<DViewEntry> viewEntries, final Set<String> processedNotesDocuments, final NotesViewColumns columns,
+			final Calendar start, final Calendar end) {
+		final List<CalendarEvent> entries = new ArrayList<CalendarEvent>();
+		while (viewEntries.hasNext()) {
+			final DViewEntry viewEntry = viewEntries.next();
+			final String unid = viewEntry.getUniversalID();
+			if (unid == null) {
+				continue;
+			}
+			log.debug(TechMessage.get().MSG_PROCESSING_DOCUMENT_UNID(unid));
+
+			// ist es schon prozessiert worden (ein Notes-Dokument kann mehrfach auftreten, wenn es wiederholend ist)
+			if (!processedNotesDocuments.add(unid)) {
+				log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_ALREADY_PROCESSED(unid));
+				continue;
+			}
 
+			@SuppressWarnings("unchecked")
+			final List<Object> columnValues = viewEntry.getColumnValues();
+			if (!FLAG_APPOINTMENT.equals(columns.getString(columnValues, FIELDNAME_FORM))) {
+				log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_NOT_AN_APPOINTMENT(unid));
+				continue;
+			}
+			// If this is a conflict document, skip to next document.
+			if (viewEntry.isConflict()) {
+				log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_CONFLICT_DOCUMENT(unid));
+				continue;
+			}
+
+			final Calendar sdt = columns.getDate(columnValues, FIELDNAME_START_DATE_TIME);
+			final Calendar edt = columns.getDate(columnValues, FIELDNAME_END_DATE_TIME);
+			if (sdt == null || edt == null) {
+				final DDocument doc = openDocument(viewEntry);
+				if (doc != null) {
+					entries.addAll(convDoc(doc, start, end));
+				}
+				continue;
+			}
+			entries.addAll(convViewEntry(viewEntry, columnValues, columns, sdt, edt, start, end));
+		}
 		return entries;
 	}
 
+	private DDocument openDocument(final DViewEntry viewEntry) {
+		metrics.count(Counter.NOTES_DOCUMENT_OPENS);
+		return viewEntry.getDocument();
+	}
 
-	private Collection<CalendarEvent> convDoc(final DDocument doc) {
-		if (doc.hasItem(FIELDNAME_REPEATS)) {
-			return inflateRecurringEvents(doc);
-		} else {
+	private Collection<CalendarEvent> convViewEntry(final DViewEntry viewEntry, final List<Object> columnValues, final NotesViewColumns columns, final Calendar sdt,
+			final Calendar edt, final Calendar start, final Calendar end) {
+		final String unid = viewEntry.getUniversalID();
+		final Calendar lastModified = columns.getDate(columnValues, NotesViewColumns.LAST_MODIFIED);
+		if (readBody && stateStore != null) {
+			// the description is kept by the store, so an unchanged document is not opened again
+			final NotesDocumentState storedState = stateStore.get(unid, lastModified);
+			if (storedState != null) {
+				log.debug(TechMessage.get().MSG_DOCUMENT_UNCHANGED_UNID(unid));
+				return storedState.createEvents(start, end);
+			}
+		}
+		log.debug(TechMessage.get().MSG_CONVERTING_VIEW_ENTRY_UNID(unid));
+
+		final CalendarEvent bd = new CalendarEvent();
+		bd.setTitle(StringUtils.trimToEmpty(columns.getString(columnValues, FIELDNAME_SUBJECT)));
+		String body = null;
+		if (readBody) {
+			final DDocument doc = openDocument(viewEntry);
+			body = doc == null ? null : doc.getItemValueString(FIELDNAME_BODY);
+		}
+		bd.setContent(StringUtils.trimToEmpty(body));
+		bd.setId(unid);
+		bd.setLocation(formatLocation(columns.getString(columnValues, FIELDNAME_LOCATION), columns.getString(columnValues, FIELDNAME_ROOM)));
+
+		// "OrgConfidential" == 1 Private
+		bd.setPrivate(StringUtils.trimToEmpty(columns.getString(columnValues, FIELDNAME_PRIVATE)).equals("1")); //$NON-NLS-1$
+
+		bd.setLastUpdated(lastModified);
+		final int type = Integer.parseInt(StringUtils.trimToEmpty(columns.getString(columnValues, FIELDNAME_APPOINTMENT_TYPE)));
+		bd.setEventType(EventType.create(type));
+
+		bd.setStartMillis(sdt.getTimeInMillis());
+		bd.setEndMillis(edt.getTimeInMillis());
+		log.debug(TechMessage.get().MSG_CONVERSION_RESULT(unid, bd.format()));
+
+		List<Occurrence> occurrences = null;
+		if (StringUtils.isNotBlank(columns.getString(columnValues, FIELDNAME_REPEATS))) {
+			occurrences = new ArrayList<Occurrence>();
+			for (final Calendar entryStartDateTime : columns.getDates(columnValues, FIELDNAME_CALENDAR_DATE_TIME)) {
+				occurrences.add(new Occurrence(entryStartDateTime.getTimeInMillis(), entryStartDateTime.get(Calendar.YEAR), entryStartDateTime.get(Calendar.MONTH),
+						entryStartDateTime.get(Calendar.DAY_OF_MONTH)));
+			}
+		}
+
+		final long lastUpdated = bd.getLastUpdatedMillis();
+		final NotesDocumentState state = new NotesDocumentState(unid, lastUpdated == CalendarEvent.NO_TIME ? 0 : lastUpdated, bd, occurrences);
+		if (readBody && stateStore != null && lastModified != null) {
+			stateStore.put(state);
+		}
+		return state.createEvents(start, end);
+	}
+
+	/**
+	 * Iterates the view in the calling thread and converts the documents in the DAO's pool of threads, each reading
+	 * the documents with a session of its own. Duplicates are sorted out by UNID before conversion, the results are
+	 * collected in the order of the view.
+	 */
+	private List<CalendarEvent> convViewEntriesParallel(final Iterator<DViewEntry> viewEntries, final Set<String> processedNotesDocuments, final Calendar start,
+			final Calendar end) {
+		final ExecutorService executor = getConversionExecutor();
+		final List<Future<Collection<CalendarEvent>>> conversions = new ArrayList<Future<Collection<CalendarEvent>>>();
+		try {
+			while (viewEntries.hasNext()) {
+				final String unid = viewEntries.next().getUniversalID();
+				if (unid == null) {
+					continue;
+				}
+				log.debug(TechMessage.get().MSG_PROCESSING_DOCUMENT_UNID(unid));
+
+				// ist es schon prozessiert worden (ein Notes-Dokument kann mehrfach auftreten, wenn es wiederholend ist)
+				if (!processedNotesDocuments.add(unid)) {
+					log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_ALREADY_PROCESSED(unid));
+					continue;
+				}
+
+				conversions.add(executor.submit(new Callable<Collection<CalendarEvent>>() {
+					@Override
+					public Collection<CalendarEvent> call() {
+						final DDocument doc = workerDb.get().getDocumentByUNID(unid);
+						metrics.count(Counter.NOTES_DOCUMENT_OPENS);
+						if (doc == null) {
+							log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_NOT_FOUND(unid));
+							return null;
+						}
+						return convAppointment(doc, start, end);
+					}
+				}));
+			}
+
+			final List<CalendarEvent> entries = new ArrayList<CalendarEvent>();
+			for (final Future<Collection<CalendarEvent>> conversion : conversions) {
+				final Collection<CalendarEvent> convDocs = conversion.get();
+				if (convDocs != null) {
+					entries.addAll(convDocs);
+				}
+			}
+			return entries;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SynchronisationException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new SynchronisationException(e);
+		} finally {
+			// the pool is kept for the next call, only the conversions of a failed call are dropped
+			for (final Future<Collection<CalendarEvent>> conversion : conversions) {
+				conversion.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * @param doc
+	 * @return the converted events or <code>null</code>, if the document is no appointment or a conflict document
+	 */
+	private Collection<CalendarEvent> convAppointment(final DDocument doc, final Calendar start, final Calendar end) {
+		if (!FLAG_APPOINTMENT.equals(doc.getItemValueString(FIELDNAME_FORM))) {
+			log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_NOT_AN_APPOINTMENT(doc.getUniversalID()));
+			return null;
+		}
+		// If this is a conflict document, skip to next document.
+		if (doc.hasItem(FIELDNAME_CONFLICT)) {
+			log.debug(TechMessage.get().MSG_DOCUMENT_WITH_UNID_IS_CONFLICT_DOCUMENT(doc.getUniversalID()));
+			return null;
+		}
+		return convDoc(doc, start, end);
+	}
+
+
+	private Collection<CalendarEvent> convDoc(final DDocument doc, final Calendar start, final Calendar end) {
+		if (stateStore == null) {
+			return convDocState(doc, start, end);
+		}
+
+		final NotesDocumentState storedState = stateStore.get(doc.getUniversalID(), doc.getLastModified());
+		if (storedState != null) {
+			log.debug(TechMessage.get().MSG_DOCUMENT_UNCHANGED_UNID(doc.getUniversalID()));
+			return storedState.createEvents(start, end);
+		}
+		return convDocState(doc, start, end);
+	}
+
+	/**
+	 * Converts the document into a {@link NotesDocumentState} and remembers the state in the store
+	 */
+	private Collection<CalendarEvent> convDocState(final DDocument doc, final Calendar start, final Calendar end) {
+		final CalendarEvent event = convSingleDoc(doc);
+		if (event == null) {
+			// conversion failed and was logged
 			final Collection<CalendarEvent> docs = new ArrayList<CalendarEvent>();
-			docs.add(convSingleDoc(doc));
+			docs.add(event);
 			return docs;
 		}
+
+		List<Occurrence> occurrences = null;
+		if (doc.hasItem(FIELDNAME_REPEATS)) {
+			occurrences = new ArrayList<Occurrence>();
+			@SuppressWarnings("unchecked")
+			final List<GregorianDateTime> recurrenceItemValue = doc.getItemValue(FIELDNAME_CALENDAR_DATE_TIME);
+			for (final GregorianDateTime entryStartDateTime : recurrenceItemValue) {
+				occurrences.add(new Occurrence(entryStartDateTime.getTimeInMillis(), entryStartDateTime.getYear(), entryStartDateTime.getMonth(), entryStartDateTime.getDay()));
+			}
+		}
+
+		final NotesDocumentState state = new NotesDocumentState(StringUtils.defaultString(doc.getUniversalID()), lastModified(doc), event, occurrences);
+		if (stateStore != null && doc.getUniversalID() != null && doc.getLastModified() != null) {
+			stateStore.put(state);
+		}
+		return state.createEvents(start, end);
+	}
+
+	private static String formatLocation(final String location, final String room) {
+		final String initloc = StringUtils.trimToEmpty(location);
+		final String trimmedRoom = StringUtils.trimToEmpty(room);
+
+		String loc = new String();
+		if (initloc.length() != 0 && trimmedRoom.length() != 0) {
+			loc = "L: " + initloc + " R: " + trimmedRoom; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (initloc.length() == 0 && trimmedRoom.length() != 0) {
+			loc = trimmedRoom;
+		}
+		if (initloc.length() != 0 && trimmedRoom.length() == 0) {
+			loc = initloc;
+		}
+		return loc;
+	}
+
+	private static long lastModified(final DDocument doc) {
+		final Calendar lastModified = doc.getLastModified();
+		return lastModified == null ? 0 : lastModified.getTimeInMillis();
 	}
 
 	private CalendarEvent convSingleDoc(final DDocument doc) {
@@ -201,22 +622,7 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 			bd.setContent(StringUtils.trimToEmpty(body));
 
 			bd.setId(doc.getUniversalID());
-			String initloc = doc.getItemValueString(FIELDNAME_LOCATION);
-			initloc = StringUtils.trimToEmpty(initloc);
-			String room = doc.getItemValueString(FIELDNAME_ROOM);
-			room = StringUtils.trimToEmpty(room);
-
-			String loc = new String();
-			if (initloc.length() != 0 && room.length() != 0) {
-				loc = "L: " + initloc + " R: " + room; //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			if (initloc.length() == 0 && room.length() != 0) {
-				loc = room;
-			}
-			if (initloc.length() != 0 && room.length() == 0) {
-				loc = initloc;
-			}
-			bd.setLocation(loc);
+			bd.setLocation(formatLocation(doc.getItemValueString(FIELDNAME_LOCATION), doc.getItemValueString(FIELDNAME_ROOM)));
 
 			// "OrgConfidential" == 1 Private
 			final String markPrivate = doc.getItemValueString(FIELDNAME_PRIVATE);
@@ -235,14 +641,8 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 			final List<GregorianDateTime> currentEndDateTime = doc.getItemValue(FIELDNAME_END_DATE_TIME);
 			final GregorianDateTime edt = currentEndDateTime.get(0);
 
-			final Calendar newStartDateTime = Calendar.getInstance();
-			newStartDateTime.setTime(sdt.getTime());
-
-			final Calendar newEndDateTime = Calendar.getInstance();
-			newEndDateTime.setTime(edt.getTime());
-
-			bd.setStartDateTime(newStartDateTime);
-			bd.setEndDateTime(newEndDateTime);
+			bd.setStartMillis(sdt.getTimeInMillis());
+			bd.setEndMillis(edt.getTimeInMillis());
 			log.debug(TechMessage.get().MSG_CONVERSION_RESULT(doc.getUniversalID(), bd.format()));
 
 		} catch (final NotesServiceRuntimeException e) {
@@ -253,23 +653,4 @@ class NotesCalendarDAO implements INotesCalendarDAO {
 		return bd;
 	}
 
-	private Collection<CalendarEvent> inflateRecurringEvents(final DDocument doc) {
-		final Collection<CalendarEvent> docs = new ArrayList<CalendarEvent>();
-		@SuppressWarnings("unchecked")
-		final List<GregorianDateTime> recurrenceItemValue = doc.getItemValue(FIELDNAME_CALENDAR_DATE_TIME);
-		for (final GregorianDateTime entryStartDateTime : recurrenceItemValue) {
-			if (entryStartDateTime.compareTo(startDateTime) >= 0 && entryStartDateTime.compareTo(endDateTime) <= 0) {
-				final CalendarEvent event = convSingleDoc(doc);
-				final int year = entryStartDateTime.getYear();
-				final int month = entryStartDateTime.getMonth();
-				final int day = entryStartDateTime.getDay();
-				event.getStartDateTime().set(year, month, day);
-				event.getEndDateTime().set(year, month, day);
-
-				docs.add(event);
-			}
-		}
-		return docs;
-	}
-
 }
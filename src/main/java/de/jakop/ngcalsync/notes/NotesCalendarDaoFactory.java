@@ -26,6 +26,8 @@
  */
 package de.jakop.ngcalsync.notes;
 
+import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.settings.PrivacySettings;
 import de.jakop.ngcalsync.settings.Settings;
 
 /**
@@ -52,6 +54,21 @@ public class NotesCalendarDaoFactory {
 	 * @return a new {@link NotesCalendarDAO}
 	 */
 	public INotesCalendarDAO createNotesCalendarDao(final Settings settings) {
-		return new NotesCalendarDAO(openDatabaseStrategy, settings.getDominoServer(), settings.getNotesCalendarDbFilePath(), settings.getSyncStartDate(), settings.getSyncEndDate());
+		NotesStateStore stateStore = null;
+		if (settings.isNotesStateStoreEnabled()) {
+			final PrivacySettings privacySettings = settings.getPrivacySettings();
+			// without privacy settings nothing is known to be obfuscated
+			stateStore = new NotesStateStore(settings.getSettingsFile(Constants.FILENAME_NOTES_STATE),
+					privacySettings == null ? new PrivacySettings(true, true, true) : privacySettings);
+		}
+		return new NotesCalendarDAO(openDatabaseStrategy, settings.getDominoServer(), settings.getNotesCalendarDbFilePath(), settings.getSyncStartDate(), settings.getSyncEndDate(),
+				stateStore, settings.getNotesConversionThreads(), settings.isNotesViewColumns(), isTransferDescription(settings),
+				settings.getSyncMetrics());
+	}
+
+	private static boolean isTransferDescription(final Settings settings) {
+		final PrivacySettings privacySettings = settings.getPrivacySettings();
+		// read the description unless it is known not to be transferred
+		return privacySettings == null || privacySettings.isTransferDescription();
 	}
 }
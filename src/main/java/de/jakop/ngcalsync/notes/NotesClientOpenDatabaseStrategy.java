@@ -54,4 +54,10 @@ public class NotesClientOpenDatabaseStrategy implements IOpenDatabaseStrategy {
 		}
 	}
 
+	@Override
+	public DDatabase openExclusiveDatabase(final String dominoServer, final String database) {
+		// every database is opened by a session of its own anyway
+		return openDatabase(dominoServer, database);
+	}
+
 }
@@ -0,0 +1,218 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+
+/**
+ * The converted state of a Lotus Notes calendar document: the event converted from the document and,
+ * for recurring documents, the dates of all occurrences. The events in a sync window are created from
+ * this state without accessing the document again.
+ * <p>
+ * The events carry the document's universal id as their source id, the events of a recurring document
+ * together with the date of their occurrence.
+ *
+ * @author fjakop
+ */
+class NotesDocumentState {
+
+	private final String unid;
+	private final long lastModified;
+	private final CalendarEvent event;
+	private final List<Occurrence> occurrences;
+
+	/**
+	 *
+	 * @param unid universal id of the document
+	 * @param lastModified last modification of the document
+	 * @param event the converted document
+	 * @param occurrences the occurrences of a recurring document, <code>null</code> if the document does not repeat
+	 */
+	NotesDocumentState(final String unid, final long lastModified, final CalendarEvent event, final List<Occurrence> occurrences) {
+		Validate.notNull(unid);
+		Validate.notNull(event);
+		this.unid = unid;
+		this.lastModified = lastModified;
+		this.event = event;
+		this.occurrences = occurrences == null ? null : Collections.unmodifiableList(new ArrayList<Occurrence>(occurrences));
+	}
+
+	/**
+	 * @return universal id of the document
+	 */
+	String getUnid() {
+		return unid;
+	}
+
+	/**
+	 * @return last modification of the document in milliseconds
+	 */
+	long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the converted document, must not be modified
+	 */
+	CalendarEvent getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the occurrences of a recurring document, <code>null</code> if the document does not repeat
+	 */
+	List<Occurrence> getOccurrences() {
+		return occurrences;
+	}
+
+	/**
+	 * @param start in milliseconds
+	 * @param end in milliseconds (inclusive)
+	 * @return <code>true</code>, if the document starts or, if it repeats, occurs between start and end
+	 */
+	boolean occursBetween(final long start, final long end) {
+		if (occurrences == null) {
+			final long time = event.getStartMillis();
+			return time >= start && time <= end;
+		}
+		for (final Occurrence occurrence : occurrences) {
+			if (occurrence.getTime() >= start && occurrence.getTime() <= end) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the events of the document starting between start and end (both inclusive). A document
+	 * not repeating results in exactly one event.
+	 *
+	 * @param start
+	 * @param end
+	 * @return new events, which may be modified by the caller
+	 */
+	List<CalendarEvent> createEvents(final Calendar start, final Calendar end) {
+		final List<CalendarEvent> events = new ArrayList<CalendarEvent>();
+		if (occurrences == null) {
+			final CalendarEvent copy = copy(event);
+			copy.setSourceId(StringUtils.trimToNull(unid));
+			events.add(copy);
+			return events;
+		}
+		for (final Occurrence occurrence : occurrences) {
+			if (occurrence.getTime() >= start.getTimeInMillis() && occurrence.getTime() <= end.getTimeInMillis()) {
+				final CalendarEvent copy = copy(event);
+				copy.setStartDateTime(onDay(event.getStartDateTime(), occurrence));
+				copy.setEndDateTime(onDay(event.getEndDateTime(), occurrence));
+				copy.setSourceId(sourceId(occurrence));
+				events.add(copy);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * @return the document's universal id and the date of the occurrence, <code>null</code> if the document has no universal id
+	 */
+	private String sourceId(final Occurrence occurrence) {
+		if (StringUtils.isBlank(unid)) {
+			return null;
+		}
+		return String.format("%s/%04d%02d%02d", unid, Integer.valueOf(occurrence.getYear()), Integer.valueOf(occurrence.getMonth() + 1), Integer.valueOf(occurrence.getDay())); //$NON-NLS-1$
+	}
+
+	private static CalendarEvent copy(final CalendarEvent source) {
+		final CalendarEvent copy = new CalendarEvent();
+		copy.setId(source.getId());
+		copy.setTitle(source.getTitle());
+		copy.setContent(source.getContent());
+		copy.setLocation(source.getLocation());
+		copy.setPrivate(source.isPrivate());
+		copy.setEventType(source.getEventType());
+		copy.setStartMillis(source.getStartMillis());
+		copy.setEndMillis(source.getEndMillis());
+		copy.setTimeZoneId(source.getTimeZoneId());
+		copy.setLastUpdatedMillis(source.getLastUpdatedMillis());
+		return copy;
+	}
+
+	private static Calendar onDay(final Calendar time, final Occurrence occurrence) {
+		// the time is a copy, it may be modified
+		time.set(occurrence.getYear(), occurrence.getMonth(), occurrence.getDay());
+		return time;
+	}
+
+	/**
+	 * A single date of a recurring document
+	 */
+	static class Occurrence {
+
+		private final long time;
+		private final int year;
+		private final int month;
+		private final int day;
+
+		/**
+		 *
+		 * @param time start of the occurrence in milliseconds
+		 * @param year
+		 * @param month as with {@link Calendar#MONTH}
+		 * @param day
+		 */
+		Occurrence(final long time, final int year, final int month, final int day) {
+			this.time = time;
+			this.year = year;
+			this.month = month;
+			this.day = day;
+		}
+
+		long getTime() {
+			return time;
+		}
+
+		int getYear() {
+			return year;
+		}
+
+		int getMonth() {
+			return month;
+		}
+
+		int getDay() {
+			return day;
+		}
+	}
+
+}
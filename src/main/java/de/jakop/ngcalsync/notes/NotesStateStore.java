@@ -0,0 +1,402 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.notes.NotesDocumentState.Occurrence;
+import de.jakop.ngcalsync.settings.PrivacySettings;
+
+/**
+ * Local store of converted Lotus Notes documents, keyed by UNID and valid as long as the document's
+ * last modification does not change.
+ * <p>
+ * The store is an append-only file of records, each protected by a CRC32 checksum. A later record for
+ * the same UNID supersedes the earlier one. Reading stops at the first damaged record, so a corrupt
+ * store only costs conversions. The file is rewritten with the current records only, once the superseded
+ * records outnumber them or damage was detected.
+ * <p>
+ * Title, description and location are stored only if they are transferred to Google according to the
+ * {@link PrivacySettings}, the others are obfuscated before sending anyway. The fields stored are recorded in
+ * the header, a store written with other privacy settings or by an earlier version is rebuilt.
+ * <p>
+ * {@link #get(String, Calendar)} and {@link #put(NotesDocumentState)} may be called by concurrent conversions, {@link #retain(Collection, long, long)}
+ * and {@link #save()} by concurrent reads of parts of the sync period.
+ *
+ * @author fjakop
+ */
+class NotesStateStore {
+
+	private static final int MAGIC = 0x4E435353;
+	private static final int VERSION = 2;
+	private static final int FIELD_TITLE = 1;
+	private static final int FIELD_DESCRIPTION = 2;
+	private static final int FIELD_LOCATION = 4;
+	/** upper bound of a single record, anything larger is considered damage */
+	private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final File file;
+	/** the fields stored besides the times and the type */
+	private final int fields;
+
+	private final Map<String, NotesDocumentState> states = new HashMap<String, NotesDocumentState>();
+	private final List<NotesDocumentState> pending = new ArrayList<NotesDocumentState>();
+	private int recordsInFile;
+	private boolean damaged;
+
+	/**
+	 * Creates a store keeping title, description and location
+	 *
+	 * @param file
+	 */
+	NotesStateStore(final File file) {
+		this(file, new PrivacySettings(true, true, true));
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param privacySettings the fields transferred to Google are stored
+	 */
+	NotesStateStore(final File file, final PrivacySettings privacySettings) {
+		Validate.notNull(file);
+		Validate.notNull(privacySettings);
+		this.file = file;
+		fields = (privacySettings.isTransferTitle() ? FIELD_TITLE : 0) //
+				| (privacySettings.isTransferDescription() ? FIELD_DESCRIPTION : 0) //
+				| (privacySettings.isTransferLocation() ? FIELD_LOCATION : 0);
+	}
+
+	/**
+	 * Reads all intact records from the file.
+	 */
+	void load() {
+		states.clear();
+		pending.clear();
+		recordsInFile = 0;
+		damaged = false;
+		if (!file.exists()) {
+			return;
+		}
+
+		boolean read = false;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				setDamaged();
+				return;
+			}
+			if (in.readInt() != VERSION || in.readInt() != fields) {
+				// rewritten on save, so fields no longer to be stored are removed from the disk
+				log.debug(TechMessage.get().MSG_NOTES_STATE_OUTDATED(file.getAbsolutePath()));
+				damaged = true;
+				return;
+			}
+			while (true) {
+				final int length;
+				try {
+					length = in.readInt();
+				} catch (final EOFException e) {
+					// regular end of file
+					break;
+				}
+				if (length < 0 || length > MAX_RECORD_LENGTH) {
+					setDamaged();
+					break;
+				}
+				final byte[] record = new byte[length];
+				in.readFully(record);
+				if (in.readLong() != checksum(record)) {
+					setDamaged();
+					break;
+				}
+				final NotesDocumentState state = readState(record);
+				states.put(state.getUnid(), state);
+				recordsInFile++;
+			}
+			read = true;
+		} catch (final IOException e) {
+			log.debug(e.getMessage(), e);
+			if (!read) {
+				// e.g. a truncated record of an interrupted run
+				setDamaged();
+			}
+			// otherwise closing has failed after all records have been read, the store is intact
+		} catch (final RuntimeException e) {
+			// the checksum matched, but the content is invalid, e.g. written by an incompatible version
+			log.debug(e.getMessage(), e);
+			setDamaged();
+		}
+	}
+
+	private void setDamaged() {
+		log.warn(TechMessage.get().MSG_NOTES_STATE_CORRUPT(file.getAbsolutePath()));
+		damaged = true;
+	}
+
+	/**
+	 * @param unid
+	 * @param lastModified
+	 * @return the stored state of the document, if it is not modified since, otherwise <code>null</code>
+	 */
+	synchronized NotesDocumentState get(final String unid, final Calendar lastModified) {
+		if (unid == null || lastModified == null) {
+			return null;
+		}
+		final NotesDocumentState state = states.get(unid);
+		if (state == null || state.getLastModified() != lastModified.getTimeInMillis()) {
+			return null;
+		}
+		return state;
+	}
+
+	/**
+	 * Stores the state of a document, written on {@link #save()}.
+	 *
+	 * @param state
+	 */
+	synchronized void put(final NotesDocumentState state) {
+		states.put(state.getUnid(), state);
+		pending.add(state);
+	}
+
+	/**
+	 * Forgets the states of all documents not given, e.g. deleted documents or documents not in the sync window anymore.
+	 *
+	 * @param unids
+	 */
+	synchronized void retain(final Collection<String> unids) {
+		states.keySet().retainAll(unids);
+	}
+
+	/**
+	 * Forgets the states of the documents not given, which start or occur in a part of the sync window. The
+	 * states of documents in other parts are kept.
+	 *
+	 * @param unids the documents read in the part
+	 * @param start start of the part in milliseconds
+	 * @param end end of the part in milliseconds (inclusive)
+	 */
+	synchronized void retain(final Collection<String> unids, final long start, final long end) {
+		final Iterator<NotesDocumentState> iterator = states.values().iterator();
+		while (iterator.hasNext()) {
+			final NotesDocumentState state = iterator.next();
+			if (!unids.contains(state.getUnid()) && state.occursBetween(start, end)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the file of the store
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return number of stored documents
+	 */
+	synchronized int size() {
+		return states.size();
+	}
+
+	/**
+	 * Appends the states stored since loading, or rewrites the file if it is damaged or mostly consists of
+	 * superseded records.
+	 *
+	 * @throws IOException
+	 */
+	synchronized void save() throws IOException {
+		final int obsolete = recordsInFile + pending.size() - states.size();
+		if (damaged || !file.exists() || obsolete > states.size()) {
+			compact(obsolete);
+		} else if (!pending.isEmpty()) {
+			write(pending, true, file, fields);
+			recordsInFile += pending.size();
+		}
+		pending.clear();
+	}
+
+	private void compact(final int obsolete) throws IOException {
+		log.debug(TechMessage.get().MSG_COMPACTING_NOTES_STATE(states.size(), Math.max(0, obsolete)));
+
+		// write a complete copy first, so an interrupted compaction leaves the old store intact
+		final File compacted = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		write(states.values(), false, compacted, fields);
+		FileUtils.deleteQuietly(file);
+		FileUtils.moveFile(compacted, file);
+
+		recordsInFile = states.size();
+		damaged = false;
+	}
+
+	private static void write(final Collection<NotesDocumentState> records, final boolean append, final File target, final int fields) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target, append)))) {
+			if (!append) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(fields);
+			}
+			for (final NotesDocumentState state : records) {
+				final byte[] record = writeState(state, fields);
+				out.writeInt(record.length);
+				out.write(record);
+				out.writeLong(checksum(record));
+			}
+		}
+	}
+
+	private static long checksum(final byte[] record) {
+		final CRC32 crc = new CRC32();
+		crc.update(record);
+		return crc.getValue();
+	}
+
+	private static byte[] writeState(final NotesDocumentState state, final int fields) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(state.getUnid());
+		out.writeLong(state.getLastModified());
+
+		final CalendarEvent event = state.getEvent();
+		writeString(out, event.getId());
+		writeString(out, (fields & FIELD_TITLE) != 0 ? event.getTitle() : null);
+		writeString(out, (fields & FIELD_DESCRIPTION) != 0 ? event.getContent() : null);
+		writeString(out, (fields & FIELD_LOCATION) != 0 ? event.getLocation() : null);
+		out.writeBoolean(event.isPrivate());
+		out.writeInt(event.getEventType().getIntegerValue());
+		writeTime(out, event.getStartMillis());
+		writeTime(out, event.getEndMillis());
+		writeTime(out, event.getLastUpdatedMillis());
+
+		final List<Occurrence> occurrences = state.getOccurrences();
+		if (occurrences == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(occurrences.size());
+			for (final Occurrence occurrence : occurrences) {
+				out.writeLong(occurrence.getTime());
+				out.writeInt(occurrence.getYear());
+				out.writeInt(occurrence.getMonth());
+				out.writeInt(occurrence.getDay());
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static NotesDocumentState readState(final byte[] record) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		final String unid = in.readUTF();
+		final long lastModified = in.readLong();
+
+		final CalendarEvent event = new CalendarEvent();
+		event.setId(readString(in));
+		event.setTitle(readString(in));
+		event.setContent(readString(in));
+		event.setLocation(readString(in));
+		event.setPrivate(in.readBoolean());
+		event.setEventType(EventType.create(in.readInt()));
+		event.setStartMillis(readTime(in));
+		event.setEndMillis(readTime(in));
+		event.setLastUpdatedMillis(readTime(in));
+
+		List<Occurrence> occurrences = null;
+		final int count = in.readInt();
+		if (count >= 0) {
+			occurrences = new ArrayList<Occurrence>(count);
+			for (int i = 0; i < count; i++) {
+				occurrences.add(new Occurrence(in.readLong(), in.readInt(), in.readInt(), in.readInt()));
+			}
+		}
+		return new NotesDocumentState(unid, lastModified, event, occurrences);
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		// writeUTF is limited to 64k, the body of a document may be longer
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes("UTF-8"); //$NON-NLS-1$
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+
+	private static void writeTime(final DataOutputStream out, final long millis) throws IOException {
+		out.writeBoolean(millis != CalendarEvent.NO_TIME);
+		if (millis != CalendarEvent.NO_TIME) {
+			out.writeLong(millis);
+		}
+	}
+
+	private static long readTime(final DataInputStream in) throws IOException {
+		if (!in.readBoolean()) {
+			return CalendarEvent.NO_TIME;
+		}
+		return in.readLong();
+	}
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.lotus.domingo.DView;
+import de.jakop.lotus.domingo.DViewColumn;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Positions of document items in the column values of a view's entries. A column shows an item, if it is
+ * a field column of the item or its formula is just the item's name. The last modification of a document
+ * is shown by a column with the formula <code>@Modified</code>.
+ *
+ * @author fjakop
+ */
+class NotesViewColumns {
+
+	/** pseudo item name of the last modification */
+	static final String LAST_MODIFIED = "@Modified"; //$NON-NLS-1$
+
+	private static final Log log = LogFactory.getLog(NotesViewColumns.class);
+
+	private final Map<String, Integer> positions;
+
+	private NotesViewColumns(final Map<String, Integer> positions) {
+		this.positions = positions;
+	}
+
+	/**
+	 * @param view
+	 * @param itemNames the items which must be shown by the view
+	 * @return the columns of the view or <code>null</code>, if the view does not show all of the items
+	 */
+	static NotesViewColumns of(final DView view, final String... itemNames) {
+		final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+		@SuppressWarnings("unchecked")
+		final List<DViewColumn> columns = view.getColumns();
+		for (int i = 0; i < columns.size(); i++) {
+			final DViewColumn column = columns.get(i);
+			for (final String itemName : itemNames) {
+				if (positions.containsKey(itemName)) {
+					continue;
+				}
+				if (itemName.equalsIgnoreCase(StringUtils.trim(column.getItemName())) || itemName.equalsIgnoreCase(StringUtils.trim(column.getFormula()))) {
+					positions.put(itemName, Integer.valueOf(i));
+				}
+			}
+		}
+
+		final List<String> missing = new ArrayList<String>();
+		for (final String itemName : itemNames) {
+			if (!positions.containsKey(itemName)) {
+				missing.add(itemName);
+			}
+		}
+		if (!missing.isEmpty()) {
+			log.info(TechMessage.get().MSG_VIEW_COLUMNS_MISSING(view.getName(), StringUtils.join(missing, ", "))); //$NON-NLS-1$
+			return null;
+		}
+		return new NotesViewColumns(positions);
+	}
+
+	/**
+	 * @param columnValues
+	 * @param itemName
+	 * @return the item's text, never <code>null</code>
+	 */
+	String getString(final List<?> columnValues, final String itemName) {
+		final Object value = first(get(columnValues, itemName));
+		if (value == null) {
+			return StringUtils.EMPTY;
+		}
+		if (value instanceof Number) {
+			// numeric text items may be shown as numbers
+			return String.valueOf(((Number) value).intValue());
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @param columnValues
+	 * @param itemName
+	 * @return the item's first date or <code>null</code>
+	 */
+	Calendar getDate(final List<?> columnValues, final String itemName) {
+		final Object value = first(get(columnValues, itemName));
+		return value instanceof Calendar ? (Calendar) value : null;
+	}
+
+	/**
+	 * @param columnValues
+	 * @param itemName
+	 * @return all dates of the item
+	 */
+	List<Calendar> getDates(final List<?> columnValues, final String itemName) {
+		final Object value = get(columnValues, itemName);
+		final List<?> values = value instanceof List ? (List<?>) value : Collections.singletonList(value);
+		final List<Calendar> dates = new ArrayList<Calendar>();
+		for (final Object element : values) {
+			if (element instanceof Calendar) {
+				dates.add((Calendar) element);
+			}
+		}
+		return dates;
+	}
+
+	private Object get(final List<?> columnValues, final String itemName) {
+		final int position = positions.get(itemName).intValue();
+		if (columnValues == null || position >= columnValues.size()) {
+			return null;
+		}
+		return columnValues.get(position);
+	}
+
+	private static Object first(final Object value) {
+		if (value instanceof List) {
+			final List<?> values = (List<?>) value;
+			return values.isEmpty() ? null : values.get(0);
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.lotus.domingo.DDatabase;
+import de.jakop.lotus.domingo.DNotesException;
+import de.jakop.lotus.domingo.DNotesFactory;
+import de.jakop.lotus.domingo.DSession;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Keeps the Lotus Notes session and the databases opened by it for the following synchronisations, which saves
+ * creating a session and opening the database on every run. A database is checked before it is handed out again
+ * and opened again, if it has become unusable, e.g. after a network error. Databases are kept by server and path.
+ * <p>
+ * A pooled database is handed out to every caller, so it is meant for one synchronisation at a time, the
+ * synchronisations of a user never overlap. Threads converting documents at the same time open their databases
+ * by {@link #openExclusiveDatabase(String, String)}, which bypasses the pool. The pool is kept until
+ * {@link #release()}.
+ *
+ * @author fjakop
+ */
+public class PooledOpenDatabaseStrategy implements IOpenDatabaseStrategy {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private DSession session;
+	/** the open databases by server and path */
+	private final Map<String, DDatabase> databases = new HashMap<String, DDatabase>();
+
+	@Override
+	public synchronized DDatabase openDatabase(final String dominoServer, final String database) {
+		final String key = getKey(dominoServer, database);
+		final DDatabase pooled = databases.get(key);
+		if (pooled != null) {
+			if (isUsable(pooled)) {
+				log.debug(TechMessage.get().MSG_REUSING_NOTES_DATABASE(dominoServer, database));
+				return pooled;
+			}
+			log.info(TechMessage.get().MSG_REOPENING_NOTES_DATABASE(dominoServer, database));
+			databases.remove(key);
+		}
+
+		try {
+			final DDatabase db = open(getSession(), dominoServer, database);
+			databases.put(key, db);
+			return db;
+		} catch (final DNotesException e) {
+			// the session may be the cause, start over with a new one
+			session = null;
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public DDatabase openExclusiveDatabase(final String dominoServer, final String database) {
+		try {
+			return open(createSession(), dominoServer, database);
+		} catch (final DNotesException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Forgets the session and the databases, domingo releases their handles once they are no longer referenced.
+	 * Databases handed out before stay usable until their holders drop them.
+	 */
+	public synchronized void release() {
+		databases.clear();
+		session = null;
+	}
+
+	/**
+	 * @return a new Lotus Notes session
+	 */
+	DSession createSession() {
+		return DNotesFactory.getInstance().getSession();
+	}
+
+	private static DDatabase open(final DSession notesSession, final String dominoServer, final String database) throws DNotesException {
+		final DDatabase db = notesSession.getDatabase(dominoServer, database);
+		if (db.isOpen() == false) {
+			db.open();
+		}
+		return db;
+	}
+
+	/**
+	 * @return the key of a database in the pool, in the notation of Lotus Notes
+	 */
+	private static String getKey(final String dominoServer, final String database) {
+		return StringUtils.defaultString(dominoServer) + "!!" + database; //$NON-NLS-1$
+	}
+
+	private DSession getSession() {
+		if (session == null || !isValid(session)) {
+			// the databases of an invalid session are invalid, too
+			databases.clear();
+			session = createSession();
+		}
+		return session;
+	}
+
+	private boolean isUsable(final DDatabase pooled) {
+		if (!isValid(session)) {
+			return false;
+		}
+		try {
+			// asks Lotus Notes, so a broken connection is detected here and not during the synchronisation
+			return pooled.isOpen() && pooled.getFilePath() != null;
+		} catch (final RuntimeException e) {
+			log.debug(e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private boolean isValid(final DSession notesSession) {
+		try {
+			return notesSession != null && notesSession.isValid();
+		} catch (final RuntimeException e) {
+			log.debug(e.getMessage(), e);
+			return false;
+		}
+	}
+
+}
@@ -54,4 +54,12 @@ public class UserInputReceiverFactory {
 		return new GuiReceiver();
 	}
 
+	/**
+	 * Creates an {@link IUserInputReceiver} for an application running without a user, which fails on requests for input
+	 * @return {@link IUserInputReceiver} which fails on requests for input
+	 */
+	public static IUserInputReceiver createUnattendedReceiver() {
+		return new UnattendedReceiver();
+	}
+
 }
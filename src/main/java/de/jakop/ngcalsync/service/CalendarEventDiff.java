@@ -0,0 +1,312 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+
+/**
+ * Computes the events to remove from, add to and update in Google by indexing the Notes events.
+ * <p>
+ * Events are matched by their {@link CalendarEvent#getSourceId() source id} first, so a rescheduled Notes
+ * event is updated and events at the same time are told apart. Google events without a source id, e.g.
+ * created by an earlier version, are matched by their {@link CalendarEventKey} like with
+ * {@link CalendarEventEqualsPredicate}; a Notes event matching one of them is updated to record its source
+ * id. If several Google events without source id match, the Notes event is added and they are removed,
+ * since it is unknown which one belongs to it.
+ * <p>
+ * The Notes events are {@link #index(Collection) indexed} first, then each page of Google events is settled
+ * against the index as it is {@link #consume(Collection) consumed}. Only the Google events still needed are
+ * kept: those to remove or to update and those without source id matching the key of a Notes event, which
+ * are matched by {@link #finish()} after the last page. So the memory needed grows with the Notes events and
+ * the changes, not with the Google calendar. The other events of a page are released by the sink at once.
+ *
+ * @author fjakop
+ */
+class CalendarEventDiff implements ICalendarEventConsumer {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final Calendar syncLastDateTime;
+	private final ICalendarSink sink;
+
+	// index of the Notes events by source id, the first one of each source, and by key
+	private List<CalendarEvent> notesEvents;
+	private final Map<String, CalendarEvent> notesSourceIndex = new HashMap<String, CalendarEvent>();
+	private final Set<CalendarEventKey> notesKeys = new HashSet<CalendarEventKey>();
+
+	// sources matched by a Google event, the modified Notes events among them mapped to their Google event
+	private final Set<String> matchedSources = new HashSet<String>();
+	private final Map<CalendarEvent, CalendarEvent> sourceMatches = new HashMap<CalendarEvent, CalendarEvent>();
+	// Google events without source id matching the key of a Notes event, matched after the last page
+	private final Map<CalendarEventKey, List<CalendarEvent>> keyCandidates = new LinkedHashMap<CalendarEventKey, List<CalendarEvent>>();
+
+	private final List<CalendarEvent> toRemove = new ArrayList<CalendarEvent>();
+	private final List<CalendarEvent> toAdd = new ArrayList<CalendarEvent>();
+	private final Map<CalendarEvent, CalendarEvent> toUpdate = new LinkedHashMap<CalendarEvent, CalendarEvent>();
+
+	/**
+	 *
+	 * @param syncLastDateTime events modified after this time are scheduled for update
+	 */
+	CalendarEventDiff(final Calendar syncLastDateTime) {
+		this(syncLastDateTime, null);
+	}
+
+	/**
+	 *
+	 * @param syncLastDateTime events modified after this time are scheduled for update
+	 * @param sink releases the Google events no longer needed, may be <code>null</code>
+	 */
+	CalendarEventDiff(final Calendar syncLastDateTime, final ICalendarSink sink) {
+		this.syncLastDateTime = syncLastDateTime;
+		this.sink = sink;
+	}
+
+	/**
+	 *
+	 * @param notesEvents
+	 * @param googleEntries
+	 * @param syncLastDateTime events modified after this time are scheduled for update
+	 */
+	CalendarEventDiff(final Collection<CalendarEvent> notesEvents, final Collection<CalendarEvent> googleEntries, final Calendar syncLastDateTime) {
+		this(syncLastDateTime);
+		Validate.notNull(googleEntries);
+		index(notesEvents);
+		consume(googleEntries);
+		finish();
+	}
+
+	/**
+	 * Indexes the Notes events, before the first page of Google events is consumed
+	 *
+	 * @param events
+	 */
+	void index(final Collection<CalendarEvent> events) {
+		Validate.notNull(events);
+		Validate.validState(notesEvents == null);
+		notesEvents = new ArrayList<CalendarEvent>(events);
+		for (final CalendarEvent notesEvent : notesEvents) {
+			final String sourceId = notesEvent.getSourceId();
+			if (sourceId != null && !notesSourceIndex.containsKey(sourceId)) {
+				notesSourceIndex.put(sourceId, notesEvent);
+			}
+			final CalendarEventKey key = CalendarEventKey.of(notesEvent);
+			if (key != null) {
+				notesKeys.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Settles a page of Google events against the Notes events
+	 */
+	@Override
+	public void consume(final Collection<CalendarEvent> events) {
+		Validate.validState(notesEvents != null);
+		final List<CalendarEvent> settled = new ArrayList<CalendarEvent>(events.size());
+		for (final CalendarEvent googleEntry : events) {
+			final String sourceId = googleEntry.getSourceId();
+			if (sourceId != null) {
+				final CalendarEvent notesEvent = notesSourceIndex.get(sourceId);
+				// further events of the same source are left unmatched and thus removed
+				if (notesEvent == null || !matchedSources.add(sourceId)) {
+					scheduleRemoval(googleEntry);
+				} else if (notesEvent.getLastUpdatedMillis() > syncLastDateTime.getTimeInMillis()) {
+					// kept for the update
+					sourceMatches.put(notesEvent, googleEntry);
+					continue;
+				}
+				settled.add(googleEntry);
+				continue;
+			}
+			final CalendarEventKey key = CalendarEventKey.of(googleEntry);
+			if (key != null && notesKeys.contains(key)) {
+				// a later page may hold a duplicate or the Notes event may be matched by its source id
+				List<CalendarEvent> candidates = keyCandidates.get(key);
+				if (candidates == null) {
+					candidates = new ArrayList<CalendarEvent>(1);
+					keyCandidates.put(key, candidates);
+				}
+				candidates.add(googleEntry);
+				continue;
+			}
+			scheduleRemoval(googleEntry);
+			settled.add(googleEntry);
+		}
+		release(settled);
+	}
+
+	/**
+	 * Matches the Notes events not matched by their source id against the Google events without source id,
+	 * after the last page of Google events has been consumed
+	 */
+	void finish() {
+		Validate.validState(notesEvents != null);
+
+		// schedule Events existing in Notes but not in Google for addition, modified ones for update
+		final Set<CalendarEvent> matchedCandidates = new HashSet<CalendarEvent>();
+		for (final CalendarEvent notesEvent : notesEvents) {
+			final String sourceId = notesEvent.getSourceId();
+			if (sourceId != null && matchedSources.contains(sourceId)) {
+				if (notesSourceIndex.get(sourceId) != notesEvent) {
+					// the Google event of the source belongs to another Notes event
+					scheduleAddition(notesEvent);
+				} else if (sourceMatches.containsKey(notesEvent)) {
+					scheduleUpdate(notesEvent, sourceMatches.get(notesEvent));
+				} else {
+					log.debug(TechMessage.get().MSG_NO_UPDATE_SCHEDULED(CalendarEventEqualsPredicate.format(notesEvent)));
+				}
+				continue;
+			}
+
+			final CalendarEvent matchingEntry = matchByKey(notesEvent);
+			if (matchingEntry == null || !matchedCandidates.add(matchingEntry)) {
+				scheduleAddition(notesEvent);
+				continue;
+			}
+
+			// check modification and update eventually, a match by key records the source id
+			if (sourceId != null || notesEvent.getLastUpdatedMillis() > syncLastDateTime.getTimeInMillis()) {
+				scheduleUpdate(notesEvent, matchingEntry);
+			} else {
+				log.debug(TechMessage.get().MSG_NO_UPDATE_SCHEDULED(CalendarEventEqualsPredicate.format(notesEvent)));
+			}
+		}
+
+		// schedule Events existing in Google but not in Notes for removal
+		final List<CalendarEvent> settled = new ArrayList<CalendarEvent>();
+		for (final List<CalendarEvent> candidates : keyCandidates.values()) {
+			for (final CalendarEvent googleEntry : candidates) {
+				if (!matchedCandidates.contains(googleEntry)) {
+					scheduleRemoval(googleEntry);
+					settled.add(googleEntry);
+				}
+			}
+		}
+		release(settled);
+
+		notesSourceIndex.clear();
+		notesKeys.clear();
+		matchedSources.clear();
+		sourceMatches.clear();
+		keyCandidates.clear();
+	}
+
+	/**
+	 * @return the Google event without source id matching the key of the Notes event, <code>null</code> if there
+	 *         is none or more than one
+	 */
+	private CalendarEvent matchByKey(final CalendarEvent notesEvent) {
+		final CalendarEventKey key = CalendarEventKey.of(notesEvent);
+		if (key == null) {
+			return null;
+		}
+		final List<CalendarEvent> candidates = keyCandidates.get(key);
+		if (candidates == null) {
+			return null;
+		}
+		if (candidates.size() > 1) {
+			log.warn(TechMessage.get().MSG_DUPLICATE_MATCH(candidates.size(), notesEvent.format()));
+			return null;
+		}
+		return candidates.get(0);
+	}
+
+	private void scheduleRemoval(final CalendarEvent googleEntry) {
+		toRemove.add(googleEntry);
+		log.debug(TechMessage.get().MSG_SCHEDULING_FOR_REMOVAL(CalendarEventEqualsPredicate.format(googleEntry)));
+	}
+
+	private void scheduleAddition(final CalendarEvent notesEvent) {
+		toAdd.add(notesEvent);
+		log.debug(TechMessage.get().MSG_SCHEDULING_FOR_ADDITION(CalendarEventEqualsPredicate.format(notesEvent)));
+	}
+
+	private void scheduleUpdate(final CalendarEvent notesEvent, final CalendarEvent googleEntry) {
+		toUpdate.put(notesEvent, googleEntry);
+		log.debug(TechMessage.get().MSG_SCHEDULING_FOR_UPDATE(CalendarEventEqualsPredicate.format(notesEvent)));
+	}
+
+	/**
+	 * Only the id of a Google event to remove is needed, the sink may forget the rest
+	 */
+	private void release(final List<CalendarEvent> settled) {
+		if (sink != null && !settled.isEmpty()) {
+			sink.release(settled);
+		}
+	}
+
+	/**
+	 * @return Google events without a matching Notes event
+	 */
+	List<CalendarEvent> getToRemove() {
+		return toRemove;
+	}
+
+	/**
+	 * @return Notes events without a matching Google event
+	 */
+	List<CalendarEvent> getToAdd() {
+		return toAdd;
+	}
+
+	/**
+	 * @return modified Notes events mapped to their matching Google event
+	 */
+	Map<CalendarEvent, CalendarEvent> getToUpdate() {
+		return toUpdate;
+	}
+
+	/**
+	 * Appends the results of another diff, e.g. of another part of the sync period
+	 *
+	 * @param other
+	 */
+	void addAll(final CalendarEventDiff other) {
+		toRemove.addAll(other.getToRemove());
+		toAdd.addAll(other.getToAdd());
+		toUpdate.putAll(other.getToUpdate());
+	}
+
+}
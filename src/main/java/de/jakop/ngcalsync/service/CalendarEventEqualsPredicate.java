@@ -31,7 +31,6 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
 
-import de.jakop.ngcalsync.util.Dates;
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.lang3.Validate;
 
@@ -93,9 +92,9 @@ class CalendarEventEqualsPredicate implements Predicate<CalendarEvent> {
 		return new StringBuilder()//
 				.append(doc.getEventType() == null ? null : doc.getEventType().getName())//
 				.append(": ")// //$NON-NLS-1$
-				.append(doc.getStartDateTime() == null ? null : Dates.DATE_FORMAT.format(doc.getStartDateTime().getTime()))//
+				.append(CalendarEvent.format(doc.getStartMillis()))//
 				.append(" -> ")// //$NON-NLS-1$
-				.append(doc.getEndDateTime() == null ? null : Dates.DATE_FORMAT.format(doc.getEndDateTime().getTime()))//
+				.append(CalendarEvent.format(doc.getEndMillis()))//
 				.toString();
 	}
 
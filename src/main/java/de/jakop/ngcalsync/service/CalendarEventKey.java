@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import java.util.Objects;
+import java.util.TimeZone;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+
+/**
+ * Normalized match key of a {@link CalendarEvent}. Two events have equal keys exactly when
+ * {@link CalendarEventEqualsPredicate} considers them equal, so events can be matched by a
+ * hash lookup instead of scanning all candidates.
+ * <p>
+ * Like the predicate, which compares the {@link java.util.Calendar}s of timed events including their
+ * time zone, the key of a timed event contains its time zone, so the same instant in different zones
+ * does not match.
+ *
+ * @author fjakop
+ */
+final class CalendarEventKey {
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private final boolean allDay;
+	private final long start;
+	private final long end;
+	/** time zone of a timed event, <code>null</code> for all day events */
+	private final TimeZone timeZone;
+
+	private CalendarEventKey(final boolean allDay, final long start, final long end, final TimeZone timeZone) {
+		this.allDay = allDay;
+		this.start = start;
+		this.end = end;
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * @param event
+	 * @return the key of the event or <code>null</code>, if the event can never be matched (e.g. start or end are missing)
+	 */
+	static CalendarEventKey of(final CalendarEvent event) {
+		if (event == null) {
+			return null;
+		}
+
+		final long start = event.getStartMillis();
+		final long end = event.getEndMillis();
+		if (start == CalendarEvent.NO_TIME || end == CalendarEvent.NO_TIME) {
+			return null;
+		}
+
+		if (event.isAllDay()) {
+			// all day events are matched by their starting day only
+			return new CalendarEventKey(true, day(start, event.getTimeZone()), 0, null);
+		}
+		return new CalendarEventKey(false, start, end, event.getTimeZone());
+	}
+
+	/**
+	 * @return number of the day since the epoch in the time zone
+	 */
+	private static long day(final long millis, final TimeZone timeZone) {
+		final long local = millis + timeZone.getOffset(millis);
+		final long day = local / MILLIS_PER_DAY;
+		return local < 0 && local % MILLIS_PER_DAY != 0 ? day - 1 : day;
+	}
+
+	/**
+	 * @return an approximate starting time in milliseconds, equal for equal keys; for all day events it
+	 *         is the beginning of the day in UTC, which may differ from the event's start by up to a day
+	 */
+	long getPosition() {
+		return allDay ? start * MILLIS_PER_DAY : start;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = allDay ? 1231 : 1237;
+		result = 31 * result + (int) (start ^ start >>> 32);
+		result = 31 * result + (int) (end ^ end >>> 32);
+		result = 31 * result + (timeZone == null ? 0 : timeZone.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CalendarEventKey)) {
+			return false;
+		}
+		final CalendarEventKey other = (CalendarEventKey) obj;
+		return allDay == other.allDay && start == other.start && end == other.end && Objects.equals(timeZone, other.timeZone);
+	}
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import java.util.Calendar;
+import java.util.Collection;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Phase;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+
+/**
+ * Reads the Google events into a consumer and records the reading to the {@link SyncMetrics}. The time spent by
+ * the consumer, e.g. settling the events against a {@link CalendarEventDiff}, is accounted to the diff.
+ *
+ * @author fjakop
+ */
+class MeteredEventConsumer implements ICalendarEventConsumer {
+
+	private final SyncMetrics metrics;
+	private final ICalendarEventConsumer consumer;
+
+	private long consumerNanos;
+	private int events;
+
+	private MeteredEventConsumer(final SyncMetrics metrics, final ICalendarEventConsumer consumer) {
+		this.metrics = metrics;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Reads the Google events of the whole sync period.
+	 *
+	 * @param sink
+	 * @param filters
+	 * @param consumer
+	 * @param metrics
+	 */
+	static void readGoogleEvents(final ICalendarSink sink, final ICalendarEventFilter[] filters, final ICalendarEventConsumer consumer, final SyncMetrics metrics) {
+		readGoogleEvents(sink, filters, null, null, consumer, metrics);
+	}
+
+	/**
+	 * Reads the Google events of a part of the sync period.
+	 *
+	 * @param sink
+	 * @param filters
+	 * @param start start of the part, <code>null</code> for the whole sync period
+	 * @param end end of the part
+	 * @param consumer
+	 * @param metrics
+	 */
+	static void readGoogleEvents(final ICalendarSink sink, final ICalendarEventFilter[] filters, final Calendar start, final Calendar end,
+			final ICalendarEventConsumer consumer, final SyncMetrics metrics) {
+		final MeteredEventConsumer metered = new MeteredEventConsumer(metrics, consumer);
+		final long startNanos = System.nanoTime();
+		if (start == null) {
+			sink.getEvents(filters, metered);
+		} else {
+			sink.getEvents(filters, start, end, metered);
+		}
+		metrics.record(Phase.GOOGLE_READ, System.nanoTime() - startNanos - metered.consumerNanos, metered.events);
+	}
+
+	@Override
+	public void consume(final Collection<CalendarEvent> page) {
+		final long startNanos = System.nanoTime();
+		consumer.consume(page);
+		final long nanos = System.nanoTime() - startNanos;
+		metrics.record(Phase.DIFF, nanos, 0);
+		consumerNanos += nanos;
+		events += page.size();
+	}
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Phase;
+import de.jakop.ngcalsync.notes.INotesCalendarDAO;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+
+/**
+ * Compares the sync period in slices of a number of days at the same time. Each slice reads the Notes and
+ * Google events of its part of the period and computes a {@link CalendarEventDiff} of its own, the results
+ * are merged in the order of the slices.
+ * <p>
+ * The Lotus Notes DAO shares its database and state between the calls, so the slices read the Notes events one
+ * after the other, in the order they have been started. Only reading the Google events and comparing run at the
+ * same time.
+ * <p>
+ * An event belongs to the slice containing the {@link CalendarEventKey#getPosition() position} of its key, so
+ * both events of a matching pair are compared by the same slice, even if they cross the bounds of the slice.
+ * Since the position of an all day event may differ from its start by up to a day, each slice reads a day
+ * beyond its bounds and ignores the events belonging to its neighbours. Events before the first or after the
+ * last slice, e.g. Google events overlapping the start of the sync period, belong to the first or last slice.
+ * An event moved by the user into another slice can't be matched by its source id, it is removed from the
+ * old slice and added to the new one.
+ * <p>
+ * A failing slice does not stop the others, its failure is reported by {@link #getFailures()}.
+ *
+ * @author fjakop
+ */
+class PartitionedDiff {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final INotesCalendarDAO notesDao;
+	private final ICalendarSink sink;
+	private final ICalendarEventFilter[] filters;
+	private final Calendar syncLastDateTime;
+	private final SyncMetrics metrics;
+	/** lets one slice at a time read from Lotus Notes, fair to keep the order of the slices */
+	private final Lock notesLock = new ReentrantLock(true);
+
+	private final List<SynchronisationException> failures = new ArrayList<SynchronisationException>();
+
+	/**
+	 *
+	 * @param notesDao
+	 * @param sink
+	 * @param filters
+	 * @param syncLastDateTime events modified after this time are scheduled for update
+	 * @param metrics records the reading and comparing of the slices
+	 */
+	PartitionedDiff(final INotesCalendarDAO notesDao, final ICalendarSink sink, final ICalendarEventFilter[] filters, final Calendar syncLastDateTime,
+			final SyncMetrics metrics) {
+		Validate.notNull(notesDao);
+		Validate.notNull(sink);
+		Validate.notNull(metrics);
+		this.notesDao = notesDao;
+		this.sink = sink;
+		this.filters = filters;
+		this.syncLastDateTime = syncLastDateTime;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param start start of the sync period
+	 * @param end end of the sync period
+	 * @param sliceDays number of days per slice
+	 * @param threads number of slices compared at the same time
+	 * @return the merged results of all slices not failed
+	 */
+	CalendarEventDiff diff(final Calendar start, final Calendar end, final int sliceDays, final int threads) {
+		Validate.isTrue(sliceDays > 0);
+		return diff(start, end, sliceDays, threads, true, true);
+	}
+
+	/**
+	 * Compares a part of the sync period, e.g. a {@link de.jakop.ngcalsync.settings.SyncTier}. Events before or
+	 * after the part are left to its neighbours, unless the part starts or ends the sync period.
+	 *
+	 * @param start start of the part
+	 * @param end end of the part
+	 * @param sliceDays number of days per slice, 0 to compare the part in a single slice
+	 * @param threads number of slices compared at the same time
+	 * @param ownsBefore <code>true</code>, if the part starts the sync period
+	 * @param ownsAfter <code>true</code>, if the part ends the sync period
+	 * @return the merged results of all slices not failed
+	 */
+	CalendarEventDiff diff(final Calendar start, final Calendar end, final int sliceDays, final int threads, final boolean ownsBefore, final boolean ownsAfter) {
+		final CalendarEventDiff merged = new CalendarEventDiff(syncLastDateTime);
+		diff(start, end, sliceDays, threads, ownsBefore, ownsAfter, new ICalendarEventDiffConsumer() {
+
+			@Override
+			public void consume(final CalendarEventDiff diff) {
+				merged.addAll(diff);
+			}
+		});
+		return merged;
+	}
+
+	/**
+	 * Passes the results of each slice to the consumer as soon as the slice and all before are compared. No more
+	 * than <code>threads</code> slices are compared ahead of the consumer, so the events in memory are bounded by
+	 * the size of the slices instead of the sync period.
+	 *
+	 * @param start start of the part
+	 * @param end end of the part
+	 * @param sliceDays number of days per slice, 0 to compare the part in a single slice
+	 * @param threads number of slices compared at the same time
+	 * @param ownsBefore <code>true</code>, if the part starts the sync period
+	 * @param ownsAfter <code>true</code>, if the part ends the sync period
+	 * @param consumer receives the results of all slices not failed, in the order of the slices
+	 */
+	void diff(final Calendar start, final Calendar end, final int sliceDays, final int threads, final boolean ownsBefore, final boolean ownsAfter,
+			final ICalendarEventDiffConsumer consumer) {
+		Validate.isTrue(sliceDays >= 0);
+		Validate.isTrue(threads > 0);
+		Validate.notNull(consumer);
+
+		final List<Slice> slices = createSlices(start, end, sliceDays, ownsBefore, ownsAfter);
+		log.debug(TechMessage.get().MSG_COMPARING_SLICES_PARALLEL(slices.size(), threads));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "sync-slice-" + count.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			final List<Future<CalendarEventDiff>> diffs = new ArrayList<Future<CalendarEventDiff>>();
+			for (int i = 0; i < Math.min(threads, slices.size()); i++) {
+				diffs.add(executor.submit(slices.get(i)));
+			}
+
+			for (int i = 0; i < slices.size(); i++) {
+				final CalendarEventDiff diff;
+				try {
+					diff = diffs.get(i).get();
+				} catch (final ExecutionException e) {
+					final Slice slice = slices.get(i);
+					log.error(TechMessage.get().MSG_SLICE_ERROR(CalendarEvent.format(slice.start), CalendarEvent.format(slice.end)), e.getCause());
+					failures.add(toSynchronisationException(e.getCause()));
+					continue;
+				} finally {
+					// the slice is done, so the next one may be compared
+					diffs.set(i, null);
+					if (i + threads < slices.size()) {
+						diffs.add(executor.submit(slices.get(i + threads)));
+					}
+				}
+				consumer.consume(diff);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SynchronisationException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the failures of the slices not merged, in the order of the slices
+	 */
+	List<SynchronisationException> getFailures() {
+		return failures;
+	}
+
+	private List<Slice> createSlices(final Calendar start, final Calendar end, final int sliceDays, final boolean ownsBefore, final boolean ownsAfter) {
+		final List<Slice> slices = new ArrayList<Slice>();
+		final Calendar sliceStart = (Calendar) start.clone();
+		do {
+			final Calendar sliceEnd = (Calendar) sliceStart.clone();
+			sliceEnd.add(Calendar.DAY_OF_YEAR, sliceDays);
+			final boolean first = slices.isEmpty() && ownsBefore;
+			final boolean last = sliceDays == 0 || !sliceEnd.before(end);
+			if (last) {
+				sliceEnd.setTimeInMillis(end.getTimeInMillis());
+			}
+			slices.add(new Slice(first ? start : shift(sliceStart, -1), last && ownsAfter ? end : shift(sliceEnd, 1), sliceStart.getTimeInMillis(),
+					sliceEnd.getTimeInMillis(), first, last && ownsAfter));
+			sliceStart.setTimeInMillis(sliceEnd.getTimeInMillis());
+		} while (sliceStart.before(end));
+		return slices;
+	}
+
+	private static Calendar shift(final Calendar date, final int days) {
+		final Calendar shifted = (Calendar) date.clone();
+		shifted.add(Calendar.DAY_OF_YEAR, days);
+		return shifted;
+	}
+
+	private static SynchronisationException toSynchronisationException(final Throwable cause) {
+		if (cause instanceof SynchronisationException) {
+			return (SynchronisationException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new SynchronisationException((Exception) cause);
+	}
+
+	/**
+	 * Reads and compares the events of a part of the sync period
+	 */
+	private class Slice implements Callable<CalendarEventDiff> {
+
+		private final Calendar readStart;
+		private final Calendar readEnd;
+		private final long start;
+		private final long end;
+		private final boolean first;
+		private final boolean last;
+
+		Slice(final Calendar readStart, final Calendar readEnd, final long start, final long end, final boolean first, final boolean last) {
+			this.readStart = readStart;
+			this.readEnd = readEnd;
+			this.start = start;
+			this.end = end;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		public CalendarEventDiff call() {
+			final List<CalendarEvent> notesEvents;
+			notesLock.lock();
+			long startNanos = System.nanoTime();
+			try {
+				notesEvents = notesDao.getEntries(filters, readStart, readEnd);
+			} finally {
+				notesLock.unlock();
+			}
+			metrics.record(Phase.NOTES_READ, System.nanoTime() - startNanos, notesEvents.size());
+
+			startNanos = System.nanoTime();
+			final CalendarEventDiff diff = new CalendarEventDiff(syncLastDateTime, sink);
+			final List<CalendarEvent> selected = select(notesEvents);
+			diff.index(selected);
+			metrics.record(Phase.DIFF, System.nanoTime() - startNanos, 0);
+
+			MeteredEventConsumer.readGoogleEvents(sink, filters, readStart, readEnd, new ICalendarEventConsumer() {
+
+				@Override
+				public void consume(final Collection<CalendarEvent> events) {
+					diff.consume(select(events));
+				}
+			}, metrics);
+
+			startNanos = System.nanoTime();
+			diff.finish();
+			metrics.record(Phase.DIFF, System.nanoTime() - startNanos, selected.size());
+			return diff;
+		}
+
+		private List<CalendarEvent> select(final Collection<CalendarEvent> events) {
+			final List<CalendarEvent> selected = new ArrayList<CalendarEvent>(events.size());
+			for (final CalendarEvent event : events) {
+				if (belongsHere(CalendarEventKey.of(event))) {
+					selected.add(event);
+				}
+			}
+			return selected;
+		}
+
+		private boolean belongsHere(final CalendarEventKey key) {
+			if (key == null) {
+				// events which can never be matched are compared once
+				return first;
+			}
+			final long position = key.getPosition();
+			return (first || position >= start) && (last || position < end);
+		}
+	}
+
+}
@@ -26,13 +26,14 @@
  */
 package de.jakop.ngcalsync.service;
 
-import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,141 +41,246 @@ import org.apache.commons.logging.LogFactory;
 import de.jakop.ngcalsync.calendar.CalendarEvent;
 import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
-import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
 import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Counter;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Phase;
 import de.jakop.ngcalsync.notes.INotesCalendarDAO;
 import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
 import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.settings.SyncTier;
+import de.jakop.ngcalsync.sink.ICalendarSink;
 
 /**
- * Synchronizes from {@link INotesCalendarDAO} into the {@link IGoogleCalendarDAO}
+ * Synchronizes from {@link INotesCalendarDAO} into the {@link ICalendarSink}
  *
  * @author fjakop
  *
  */
 public class SyncService {
 
+	/** days per slice when streaming, if no slices are configured */
+	private static final int STREAMING_SLICE_DAYS = 7;
+
 	private final Log log = LogFactory.getLog(getClass());
 
 	/**
 	 *
 	 * @param notesDao
-	 * @param googleDao
+	 * @param sink
 	 * @param settings
 	 */
-	public void executeSync(final INotesCalendarDAO notesDao, final IGoogleCalendarDAO googleDao, final ICalendarEventFilter[] filters, final ICalendarEventObfuscator[] obfuscators,
+	public void executeSync(final INotesCalendarDAO notesDao, final ICalendarSink sink, final ICalendarEventFilter[] filters, final ICalendarEventObfuscator[] obfuscators,
 			final Settings settings) {
 
 		Validate.notNull(notesDao);
-		Validate.notNull(googleDao);
+		Validate.notNull(sink);
+		Validate.notNull(settings);
+
+		if (settings.isSyncStreaming()) {
+			final int sliceDays = settings.getSyncSliceDays() > 0 ? settings.getSyncSliceDays() : STREAMING_SLICE_DAYS;
+			stream(notesDao, sink, filters, obfuscators, settings.getSyncLastDateTime(), settings.getSyncStartDate(), settings.getSyncEndDate(), sliceDays,
+					Math.max(1, settings.getSyncSliceThreads()), true, true, settings.getSyncMetrics());
+			return;
+		}
+
+		final CalendarEventDiff diff;
+		final List<SynchronisationException> sliceFailures;
+		if (settings.getSyncSliceDays() > 0) {
+			// compare slices of the sync period at the same time, a failing slice is not synchronized
+			final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, sink, filters, settings.getSyncLastDateTime(), settings.getSyncMetrics());
+			diff = partitionedDiff.diff(settings.getSyncStartDate(), settings.getSyncEndDate(), settings.getSyncSliceDays(), Math.max(1, settings.getSyncSliceThreads()));
+			sliceFailures = partitionedDiff.getFailures();
+		} else {
+			final SyncMetrics metrics = settings.getSyncMetrics();
+			long start = System.nanoTime();
+			final Collection<CalendarEvent> notesEvents = notesDao.getEntries(filters);
+			metrics.record(Phase.NOTES_READ, System.nanoTime() - start, notesEvents.size());
+
+			// index the Notes events, then settle the Google events page by page against them
+			start = System.nanoTime();
+			diff = new CalendarEventDiff(settings.getSyncLastDateTime(), sink);
+			diff.index(notesEvents);
+			metrics.record(Phase.DIFF, System.nanoTime() - start, 0);
+			MeteredEventConsumer.readGoogleEvents(sink, filters, diff, metrics);
+			start = System.nanoTime();
+			diff.finish();
+			metrics.record(Phase.DIFF, System.nanoTime() - start, notesEvents.size());
+			sliceFailures = Collections.emptyList();
+		}
+		final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+		send(sink, diff, obfuscators, failures, settings.getSyncMetrics());
+		rethrowFailure(failures, sliceFailures);
+	}
+
+	/**
+	 * Synchronizes a tier of the sync period, the events modified since the tier's last synchronisation are updated.
+	 *
+	 * @param notesDao
+	 * @param sink
+	 * @param settings
+	 * @param tier
+	 */
+	public void executeSync(final INotesCalendarDAO notesDao, final ICalendarSink sink, final ICalendarEventFilter[] filters, final ICalendarEventObfuscator[] obfuscators,
+			final Settings settings, final SyncTier tier) {
+
+		Validate.notNull(notesDao);
+		Validate.notNull(sink);
 		Validate.notNull(settings);
+		Validate.notNull(tier);
 
-		final Collection<CalendarEvent> notesEvents = notesDao.getEntries(filters);
-		final Collection<CalendarEvent> googleEntries = googleDao.getEvents(filters);
+		// events belong to the tier containing their key, so neighbouring tiers neither add nor remove them twice
+		if (settings.isSyncStreaming()) {
+			final int sliceDays = settings.getSyncSliceDays() > 0 ? settings.getSyncSliceDays() : STREAMING_SLICE_DAYS;
+			stream(notesDao, sink, filters, obfuscators, tier.getSyncLastDateTime(), tier.getStart(), tier.getEnd(), sliceDays, Math.max(1, settings.getSyncSliceThreads()),
+					tier.isFirst(), tier.isLast(), settings.getSyncMetrics());
+			return;
+		}
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, sink, filters, tier.getSyncLastDateTime(), settings.getSyncMetrics());
+		final CalendarEventDiff diff = partitionedDiff.diff(tier.getStart(), tier.getEnd(), Math.max(0, settings.getSyncSliceDays()), Math.max(1, settings.getSyncSliceThreads()),
+				tier.isFirst(), tier.isLast());
+		final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+		send(sink, diff, obfuscators, failures, settings.getSyncMetrics());
+		rethrowFailure(failures, partitionedDiff.getFailures());
+	}
 
-		// schedule Events existing in Google but not in Notes for removal
-		final List<CalendarEvent> removeFromGoogle = getGoogleEntriesToRemove(notesEvents, googleEntries);
+	/**
+	 * Sends each slice to Google as soon as it is compared and then forgets its events, so the events in memory are
+	 * bounded by the size of the slices instead of the sync period.
+	 */
+	private void stream(final INotesCalendarDAO notesDao, final ICalendarSink sink, final ICalendarEventFilter[] filters,
+			final ICalendarEventObfuscator[] obfuscators, final Calendar syncLastDateTime, final Calendar start, final Calendar end, final int sliceDays,
+			final int threads, final boolean ownsBefore, final boolean ownsAfter, final SyncMetrics metrics) {
+		final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, sink, filters, syncLastDateTime, metrics);
+		partitionedDiff.diff(start, end, sliceDays, threads, ownsBefore, ownsAfter, new ICalendarEventDiffConsumer() {
 
-		// schedule Events existing in Notes but not in Google for addition
-		final List<CalendarEvent> addToGoogle = getGoogleEntriesToAdd(notesEvents, googleEntries);
+			@Override
+			public void consume(final CalendarEventDiff diff) {
+				send(sink, diff, obfuscators, failures, metrics);
+				// the other Google events have been released as soon as they were compared
+				sink.release(diff.getToUpdate().values());
+			}
+		});
+		rethrowFailure(failures, partitionedDiff.getFailures());
+	}
 
-		// schedule modified Events existing in Notes and Google for update
-		final Map<CalendarEvent, CalendarEvent> updateToGoogle = getGoogleEntriesToUpdate(settings, notesEvents, googleEntries);
+	/**
+	 * Sends the changes of a diff, a failing event is reported and does not stop the others
+	 */
+	private void send(final ICalendarSink sink, final CalendarEventDiff diff, final ICalendarEventObfuscator[] obfuscators,
+			final Map<CalendarEvent, SynchronisationException> failures, final SyncMetrics metrics) {
+		final List<CalendarEvent> removeFromGoogle = diff.getToRemove();
+		final List<CalendarEvent> addToGoogle = diff.getToAdd();
+		final Map<CalendarEvent, CalendarEvent> updateToGoogle = diff.getToUpdate();
 
-		// actually do it
+		long start = System.nanoTime();
 		log.info(UserMessage.get().MSG_REMOVING_EVENTS_FROM_GOOGLE(removeFromGoogle.size()));
 		for (final CalendarEvent event : removeFromGoogle) {
-			delete(googleDao, event.getId());
+			delete(sink, event, failures);
 		}
+		if (!removeFromGoogle.isEmpty()) {
+			for (final Entry<CalendarEvent, SynchronisationException> failure : sink.flush().entrySet()) {
+				logDeleteError(failure.getKey(), failure.getValue(), failures);
+			}
+		}
+		metrics.record(Phase.DELETE, System.nanoTime() - start, removeFromGoogle.size());
+		start = System.nanoTime();
 		log.info(UserMessage.get().MSG_ADDING_EVENTS_TO_GOOGLE(addToGoogle.size()));
 		for (final CalendarEvent event : addToGoogle) {
 			// obfuscate
 			for (final ICalendarEventObfuscator obfuscator : obfuscators) {
 				obfuscator.obfuscate(event);
 			}
-			insert(googleDao, event);
+			insert(sink, event);
+		}
+		if (!addToGoogle.isEmpty()) {
+			for (final Entry<CalendarEvent, SynchronisationException> failure : sink.flush().entrySet()) {
+				logInsertError(failure.getKey(), failure.getValue());
+			}
 		}
+		metrics.record(Phase.INSERT, System.nanoTime() - start, addToGoogle.size());
+		start = System.nanoTime();
 		log.info(UserMessage.get().MSG_UPDATING_EVENTS_TO_GOOGLE(updateToGoogle.size()));
-		for (final CalendarEvent event : updateToGoogle.keySet()) {
+		int updated = 0;
+		for (final Entry<CalendarEvent, CalendarEvent> entry : updateToGoogle.entrySet()) {
+			final CalendarEvent event = entry.getKey();
 			// obfuscate
 			for (final ICalendarEventObfuscator obfuscator : obfuscators) {
 				obfuscator.obfuscate(event);
 			}
-			update(googleDao, updateToGoogle.get(event).getId(), event);
+			// Notes changes the modification time for trivial reasons, e.g. reading an invitation
+			final String writtenFingerprint = entry.getValue().getFingerprint();
+			if (writtenFingerprint != null && writtenFingerprint.equals(event.computeFingerprint())) {
+				log.debug(TechMessage.get().MSG_SKIPPING_UNCHANGED_UPDATE(event.getTitle()));
+				metrics.count(Counter.UNCHANGED_UPDATES);
+				continue;
+			}
+			update(sink, entry.getValue().getId(), event, failures);
+			updated++;
 		}
-
-
-	}
-
-	private List<CalendarEvent> getGoogleEntriesToRemove(final Collection<CalendarEvent> notesEvents, final Collection<CalendarEvent> googleEntries) {
-		final List<CalendarEvent> removeFromGoogle = new ArrayList<CalendarEvent>();
-		for (final CalendarEvent baseDoc : googleEntries) {
-			if (CollectionUtils.select(notesEvents, new CalendarEventEqualsPredicate(baseDoc)).isEmpty()) {
-				removeFromGoogle.add(baseDoc);
-				log.debug(TechMessage.get().MSG_SCHEDULING_FOR_REMOVAL(CalendarEventEqualsPredicate.format(baseDoc)));
+		if (!updateToGoogle.isEmpty()) {
+			for (final Entry<CalendarEvent, SynchronisationException> failure : sink.flush().entrySet()) {
+				logUpdateError(failure.getKey(), failure.getValue(), failures);
 			}
 		}
-		return removeFromGoogle;
+		metrics.record(Phase.UPDATE, System.nanoTime() - start, updated);
 	}
 
-	private Map<CalendarEvent, CalendarEvent> getGoogleEntriesToUpdate(final Settings settings, final Collection<CalendarEvent> notesEvents,
-			final Collection<CalendarEvent> googleEntries) {
-		final Map<CalendarEvent, CalendarEvent> updateToGoogle = new HashMap<CalendarEvent, CalendarEvent>();
-		for (final CalendarEvent notesEvent : notesEvents) {
-			final Collection<CalendarEvent> matchingEntries = CollectionUtils.select(googleEntries, new CalendarEventEqualsPredicate(notesEvent));
-			if (!matchingEntries.isEmpty()) {
-				checkForDuplicates(notesEvent, matchingEntries);
-				final CalendarEvent matchingEntry = matchingEntries.iterator().next();
-				// check modification and update eventually
-				if (notesEvent.getLastUpdated().after(settings.getSyncLastDateTime())) {
-					updateToGoogle.put(notesEvent, matchingEntry);
-					log.debug(TechMessage.get().MSG_SCHEDULING_FOR_UPDATE(CalendarEventEqualsPredicate.format(notesEvent)));
-				} else {
-					log.debug(TechMessage.get().MSG_NO_UPDATE_SCHEDULED(CalendarEventEqualsPredicate.format(notesEvent)));
-				}
-			}
+	/**
+	 * Failed insertions are repeated by the next synchronisation anyway. Failed deletions, updates and slices
+	 * let the synchronisation fail after all other events are done, so the time of the last synchronisation is not
+	 * advanced and the updates are repeated.
+	 */
+	private void rethrowFailure(final Map<CalendarEvent, SynchronisationException> failures, final List<SynchronisationException> sliceFailures) {
+		if (!failures.isEmpty()) {
+			throw failures.values().iterator().next();
+		}
+		if (!sliceFailures.isEmpty()) {
+			throw sliceFailures.get(0);
 		}
-		return updateToGoogle;
 	}
 
-	private void checkForDuplicates(final CalendarEvent notesEvent, final Collection<CalendarEvent> matchingEntries) {
-		if (matchingEntries.size() > 1) {
-			throw new SynchronisationException(TechMessage.get().MSG_DUPLICATE_MATCH(matchingEntries.size(), notesEvent.format()));
+	private void insert(final ICalendarSink dao, final CalendarEvent entry) {
+		try {
+			dao.insert(entry);
+		} catch (final SynchronisationException e) {
+			logInsertError(entry, e);
 		}
 	}
 
-	private List<CalendarEvent> getGoogleEntriesToAdd(final Collection<CalendarEvent> notesEvents, final Collection<CalendarEvent> googleEntries) {
-
-		// schedule Events existing in Notes but not in Google for addition
-		final List<CalendarEvent> addToGoogle = new ArrayList<CalendarEvent>();
-		for (final CalendarEvent notesEvent : notesEvents) {
-			final Collection<CalendarEvent> matchingEntries = CollectionUtils.select(googleEntries, new CalendarEventEqualsPredicate(notesEvent));
-			if (matchingEntries.isEmpty()) {
-				addToGoogle.add(notesEvent);
-				log.debug(TechMessage.get().MSG_SCHEDULING_FOR_ADDITION(CalendarEventEqualsPredicate.format(notesEvent)));
-			} else {
-				checkForDuplicates(notesEvent, matchingEntries);
-			}
-		}
-		return addToGoogle;
+	private void logInsertError(final CalendarEvent entry, final SynchronisationException e) {
+		// TODO handle this correctly
+		log.error(TechMessage.get().MSG_INSERT_ERROR(), e);
+		log.error(entry);
 	}
 
-	private void insert(final IGoogleCalendarDAO dao, final CalendarEvent entry) {
+	private void delete(final ICalendarSink dao, final CalendarEvent entry, final Map<CalendarEvent, SynchronisationException> failures) {
 		try {
-			dao.insert(entry);
+			dao.delete(entry.getId());
 		} catch (final SynchronisationException e) {
-			// TODO handle this correctly
-			log.error(TechMessage.get().MSG_INSERT_ERROR(), e);
-			log.error(entry);
+			logDeleteError(entry, e, failures);
 		}
 	}
 
-	private void delete(final IGoogleCalendarDAO dao, final String id) {
-		dao.delete(id);
+	private void logDeleteError(final CalendarEvent entry, final SynchronisationException e, final Map<CalendarEvent, SynchronisationException> failures) {
+		log.error(TechMessage.get().MSG_DELETE_ERROR(), e);
+		log.error(entry);
+		failures.put(entry, e);
+	}
+
+	private void update(final ICalendarSink dao, final String id, final CalendarEvent entry, final Map<CalendarEvent, SynchronisationException> failures) {
+		try {
+			dao.update(id, entry);
+		} catch (final SynchronisationException e) {
+			logUpdateError(entry, e, failures);
+		}
 	}
 
-	private void update(final IGoogleCalendarDAO dao, final String id, final CalendarEvent entry) {
-		dao.update(id, entry);
+	private void logUpdateError(final CalendarEvent entry, final SynchronisationException e, final Map<CalendarEvent, SynchronisationException> failures) {
+		log.error(TechMessage.get().MSG_UPDATE_ERROR(), e);
+		log.error(entry);
+		failures.put(entry, e);
 	}
 }
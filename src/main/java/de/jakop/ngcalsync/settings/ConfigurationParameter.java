@@ -41,6 +41,14 @@ enum ConfigurationParameter {
 
 	SYNC_START("sync.start", "14d", ConfigurationDescription.get().SYNC_START()), // //$NON-NLS-1$ //$NON-NLS-2$
 
+	SYNC_SLICE_DAYS("sync.slice.days", "0", ConfigurationDescription.get().SYNC_SLICE_DAYS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SYNC_SLICE_THREADS("sync.slice.threads", "4", ConfigurationDescription.get().SYNC_SLICE_THREADS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SYNC_TIERS("sync.tiers", "", ConfigurationDescription.get().SYNC_TIERS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SYNC_STREAMING("sync.streaming", "false", ConfigurationDescription.get().SYNC_STREAMING()), // //$NON-NLS-1$ //$NON-NLS-2$
+
 	SYNC_TRANSFER_TITLE("sync.transfer.title", "false", ConfigurationDescription.get().SYNC_TRANSFER_TITLE()), // //$NON-NLS-1$ //$NON-NLS-2$
 
 	SYNC_TRANSFER_DESCRIPTION("sync.transfer.description", "false", ConfigurationDescription.get().SYNC_TRANSFER_DESCRIPTION()), // //$NON-NLS-1$ //$NON-NLS-2$
@@ -51,12 +59,38 @@ enum ConfigurationParameter {
 
 	NOTES_DOMINO_SERVER("notes.domino.server", "", ConfigurationDescription.get().NOTES_DOMINO_SERVER()), // //$NON-NLS-1$ //$NON-NLS-2$
 
+	NOTES_STATE_STORE("notes.state.store", "false", ConfigurationDescription.get().NOTES_STATE_STORE()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	NOTES_CONVERSION_THREADS("notes.conversion.threads", "1", ConfigurationDescription.get().NOTES_CONVERSION_THREADS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	NOTES_VIEW_COLUMNS("notes.view.columns", "false", ConfigurationDescription.get().NOTES_VIEW_COLUMNS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SINK_TYPE("sink.type", "google", ConfigurationDescription.get().SINK_TYPE()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SINK_ICS_FILE("sink.ics.file", "", ConfigurationDescription.get().SINK_ICS_FILE()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	SINK_LATENCY_MILLIS("sink.latency.millis", "0", ConfigurationDescription.get().SINK_LATENCY_MILLIS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
 	GOOGLE_CALENDAR_REMINDERMINUTES("google.calendar.reminderminutes", "30", ConfigurationDescription.get().GOOGLE_CALENDAR_REMINDERMINUTES()), // //$NON-NLS-1$ //$NON-NLS-2$
 
 	GOOGLE_CALENDAR_NAME("google.calendar.name", "", ConfigurationDescription.get().GOOGLE_CALENDAR_NAME()), // //$NON-NLS-1$ //$NON-NLS-2$
 
 	GOOGLE_ACCOUNT_EMAIL("google.account.email", "", ConfigurationDescription.get().GOOGLE_ACCOUNT_EMAIL()), // //$NON-NLS-1$ //$NON-NLS-2$
 
+	GOOGLE_BATCH_SIZE("google.batch.size", "50", ConfigurationDescription.get().GOOGLE_BATCH_SIZE()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_PAGE_SIZE("google.page.size", "250", ConfigurationDescription.get().GOOGLE_PAGE_SIZE()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_SYNC_INCREMENTAL("google.sync.incremental", "false", ConfigurationDescription.get().GOOGLE_SYNC_INCREMENTAL()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_MUTATION_THREADS("google.mutation.threads", "1", ConfigurationDescription.get().GOOGLE_MUTATION_THREADS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_REQUESTS_PER_SECOND("google.requests.per.second", "10", ConfigurationDescription.get().GOOGLE_REQUESTS_PER_SECOND()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_HTTP_TRANSPORT("google.http.transport", "net", ConfigurationDescription.get().GOOGLE_HTTP_TRANSPORT()), // //$NON-NLS-1$ //$NON-NLS-2$
+
+	GOOGLE_HTTP_CONNECTIONS("google.http.connections", "20", ConfigurationDescription.get().GOOGLE_HTTP_CONNECTIONS()), // //$NON-NLS-1$ //$NON-NLS-2$
+
 	PROXY_HOST("proxy.host", "", ConfigurationDescription.get().PROXY_HOST()), // //$NON-NLS-1$ //$NON-NLS-2$
 
 	PROXY_PORT("proxy.port", "", ConfigurationDescription.get().PROXY_PORT()), // //$NON-NLS-1$ //$NON-NLS-2$
@@ -44,15 +44,20 @@ import org.apache.commons.logging.Log;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.calendar.CalendarScopes;
 
 import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.google.HttpTransportFactory;
+import de.jakop.ngcalsync.google.HttpTransportType;
 import de.jakop.ngcalsync.i18n.LocalizedConfigurationStrings.ConfigurationDescription;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.metrics.HttpRequestMetrics;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.oauth.GoogleOAuth2DAO;
 import de.jakop.ngcalsync.oauth.IUserInputReceiver;
+import de.jakop.ngcalsync.sink.CalendarSinkType;
 import de.jakop.ngcalsync.util.file.IFileAccessor;
 
 /**
@@ -62,6 +67,9 @@ import de.jakop.ngcalsync.util.file.IFileAccessor;
  */
 public class Settings {
 
+	/** largest number of requests Google accepts in one batch request */
+	public static final int MAX_GOOGLE_BATCH_SIZE = 1000;
+
 	private final Log log;
 	private final IFileAccessor fileAccessor;
 	private final NotesHelper notesHelper;
@@ -69,13 +77,17 @@ public class Settings {
 	private PropertiesConfiguration configuration;
 	private PrivacySettings privacySettings;
 	private com.google.api.services.calendar.Calendar calendarService = null;
+	private HttpTransport httpTransport;
+	private JsonFactory jsonFactory;
 	private IUserInputReceiver userInputReceiver;
+	private final SyncMetrics syncMetrics = new SyncMetrics();
 
 	private Calendar syncLastDateTime;
 	private final Calendar startTime = Calendar.getInstance();
 
 	private Calendar syncEndDate;
 	private Calendar syncStartDate;
+	private List<SyncTier> syncTiers;
 
 	/**
 	 *
@@ -124,25 +136,47 @@ public class Settings {
 
 		syncStartDate = readSyncStartDate();
 		syncEndDate = readSyncEndDate();
+		syncTiers = readSyncTiers();
 
 		// letzte Synchronisierung lesen
-		final File file = fileAccessor.getFile(Constants.FILENAME_LAST_SYNC_TIME);
-		syncLastDateTime = cloneStartTime();
-		syncLastDateTime.setTimeInMillis(0);
+		syncLastDateTime = readSyncLastDateTime(fileAccessor.getFile(Constants.FILENAME_LAST_SYNC_TIME));
+		for (final SyncTier tier : syncTiers) {
+			tier.setSyncLastDateTime(readSyncLastDateTime(getSyncLastDateTimeFile(tier)));
+		}
+
+		return false;
+	}
+
+	/**
+	 * Loads the settings without a restart, e.g. in server mode, where nobody is there to restart. If
+	 * {@link #load()} has upgraded the settings or the environment, it has stopped before reading them, so they
+	 * are loaded once more from the upgraded files.
+	 *
+	 * @throws IOException
+	 * @throws ConfigurationException
+	 */
+	public void loadUpgraded() throws IOException, ConfigurationException {
+		if (load()) {
+			load();
+		}
+	}
+
+	private Calendar readSyncLastDateTime(final File file) throws IOException {
+		final Calendar lastDateTime = cloneStartTime();
+		lastDateTime.setTimeInMillis(0);
 
 		if (!file.exists()) {
-			return false;
+			return lastDateTime;
 		}
 
 		final String line = FileUtils.readFileToString(file);
 
 		if (StringUtils.isBlank(line)) {
-			return false;
+			return lastDateTime;
 		}
 
-		syncLastDateTime.setTimeInMillis(Long.parseLong(line.trim()));
-
-		return false;
+		lastDateTime.setTimeInMillis(Long.parseLong(line.trim()));
+		return lastDateTime;
 	}
 
 	/**
@@ -223,6 +257,27 @@ public class Settings {
 		return configuration.getString(ConfigurationParameter.NOTES_DOMINO_SERVER.getKey());
 	}
 
+	/**
+	 * @return <code>true</code>, if converted Lotus Notes documents are kept in a local store
+	 */
+	public boolean isNotesStateStoreEnabled() {
+		return configuration.getBoolean(ConfigurationParameter.NOTES_STATE_STORE.getKey(), false);
+	}
+
+	/**
+	 * @return number of threads converting Lotus Notes documents
+	 */
+	public int getNotesConversionThreads() {
+		return configuration.getInt(ConfigurationParameter.NOTES_CONVERSION_THREADS.getKey());
+	}
+
+	/**
+	 * @return <code>true</code>, if the events are read from the columns of the Lotus Notes calendar view
+	 */
+	public boolean isNotesViewColumns() {
+		return configuration.getBoolean(ConfigurationParameter.NOTES_VIEW_COLUMNS.getKey(), false);
+	}
+
 	/**
 	 * @return Pfad zur Kalender-Datenbank
 	 */
@@ -255,6 +310,73 @@ public class Settings {
 		return sdt;
 	}
 
+	/**
+	 * @return number of days per slice of the sync period, 0 if the period is processed as a whole
+	 */
+	public int getSyncSliceDays() {
+		return configuration.getInt(ConfigurationParameter.SYNC_SLICE_DAYS.getKey(), 0);
+	}
+
+	/**
+	 * @return <code>true</code>, if each slice of the sync period is sent to Google before the next ones are read
+	 */
+	public boolean isSyncStreaming() {
+		return configuration.getBoolean(ConfigurationParameter.SYNC_STREAMING.getKey(), false);
+	}
+
+	/**
+	 * @return number of slices of the sync period processed at the same time
+	 */
+	public int getSyncSliceThreads() {
+		return configuration.getInt(ConfigurationParameter.SYNC_SLICE_THREADS.getKey());
+	}
+
+	/**
+	 * @return the tiers of the sync period in ascending order, empty if the whole period is synchronised each time
+	 */
+	public List<SyncTier> getSyncTiers() {
+		return syncTiers;
+	}
+
+	private List<SyncTier> readSyncTiers() throws ConfigurationException {
+		final String[] tiers = configuration.getStringArray(ConfigurationParameter.SYNC_TIERS.getKey());
+		final List<SyncTier> syncTiers = new ArrayList<SyncTier>();
+
+		// the tiers follow each other from the start of the sync period, the last one ends with the period
+		Calendar tierStart = syncStartDate;
+		for (int i = 0; i < tiers.length; i++) {
+			if (StringUtils.isBlank(tiers[i])) {
+				continue;
+			}
+			final String[] parts = StringUtils.split(tiers[i], ':');
+			if (parts.length != 2) {
+				throw new ConfigurationException(UserMessage.get().MSG_UNABLE_TO_PARSE_SYNC_TIER(tiers[i]));
+			}
+			final String name = parts[0].trim();
+			final DateShift dateShift = parseDateShift(name);
+			final int intervalMinutes;
+			try {
+				intervalMinutes = Integer.parseInt(parts[1].trim());
+			} catch (final NumberFormatException e) {
+				throw new ConfigurationException(UserMessage.get().MSG_UNABLE_TO_PARSE_SYNC_TIER(tiers[i]), e);
+			}
+
+			Calendar tierEnd = cloneStartTime();
+			tierEnd.add(dateShift.periodType, dateShift.periodLength);
+			if (i == tiers.length - 1 || tierEnd.after(syncEndDate)) {
+				tierEnd = syncEndDate;
+			} else if (tierEnd.before(tierStart)) {
+				tierEnd = tierStart;
+			}
+
+			if (tierStart.before(tierEnd)) {
+				syncTiers.add(new SyncTier(name, tierStart, tierEnd, intervalMinutes, syncTiers.isEmpty(), !tierEnd.before(syncEndDate)));
+				tierStart = tierEnd;
+			}
+		}
+		return syncTiers;
+	}
+
 	/**
 	 * @return sync only events starting before this date
 	 */
@@ -299,6 +421,58 @@ public class Settings {
 		}
 	}
 
+	/**
+	 * Save last sync time of the tier to file.
+	 *
+	 * @param tier
+	 */
+	public void saveLastSyncDateTime(final SyncTier tier) {
+		try {
+			final File file = getSyncLastDateTimeFile(tier);
+			FileUtils.writeStringToFile(file, String.format("%s%n", Long.valueOf(tier.getSyncLastDateTime().getTimeInMillis()))); //$NON-NLS-1$
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private File getSyncLastDateTimeFile(final SyncTier tier) {
+		return fileAccessor.getFile(Constants.FILENAME_LAST_SYNC_TIME + "." + tier.getName()); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param name
+	 * @return the file with the given name in the settings directory
+	 */
+	public File getSettingsFile(final String name) {
+		return fileAccessor.getFile(name);
+	}
+
+	/**
+	 * @return the calendar to synchronise into
+	 * @throws IllegalArgumentException for an unknown type
+	 */
+	public CalendarSinkType getSinkType() {
+		return CalendarSinkType.create(configuration.getString(ConfigurationParameter.SINK_TYPE.getKey(), "google")); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the iCalendar file written by the ICS sink
+	 */
+	public File getSinkIcsFile() {
+		final String path = configuration.getString(ConfigurationParameter.SINK_ICS_FILE.getKey(), ""); //$NON-NLS-1$
+		if (StringUtils.isBlank(path)) {
+			return getSettingsFile(Constants.FILENAME_SINK_ICS);
+		}
+		return new File(path);
+	}
+
+	/**
+	 * @return milliseconds each request to the in-memory sink takes
+	 */
+	public int getSinkLatencyMillis() {
+		return configuration.getInt(ConfigurationParameter.SINK_LATENCY_MILLIS.getKey(), 0);
+	}
+
 	/**
 	 * @return hostname of the proxy, empty if none present
 	 */
@@ -341,6 +515,57 @@ public class Settings {
 		return Integer.parseInt(configuration.getString(ConfigurationParameter.GOOGLE_CALENDAR_REMINDERMINUTES.getKey()));
 	}
 
+	/**
+	 * @return number of changes sent to Google in one batch request, at most {@link #MAX_GOOGLE_BATCH_SIZE}; values
+	 *         less than 2 disable batching
+	 */
+	public int getGoogleBatchSize() {
+		return Math.min(configuration.getInt(ConfigurationParameter.GOOGLE_BATCH_SIZE.getKey()), MAX_GOOGLE_BATCH_SIZE);
+	}
+
+	/**
+	 * @return number of events read from Google in one request
+	 */
+	public int getGooglePageSize() {
+		return configuration.getInt(ConfigurationParameter.GOOGLE_PAGE_SIZE.getKey());
+	}
+
+	/**
+	 * @return <code>true</code>, if only the changes since the last synchronisation are to be read from Google
+	 */
+	public boolean isGoogleSyncIncremental() {
+		return configuration.getBoolean(ConfigurationParameter.GOOGLE_SYNC_INCREMENTAL.getKey(), false);
+	}
+
+	/**
+	 * @return number of changes sent to Google at the same time
+	 */
+	public int getGoogleMutationThreads() {
+		return configuration.getInt(ConfigurationParameter.GOOGLE_MUTATION_THREADS.getKey(), 1);
+	}
+
+	/**
+	 * @return maximum number of changes sent to Google per second, 0 for no limit
+	 */
+	public int getGoogleRequestsPerSecond() {
+		return configuration.getInt(ConfigurationParameter.GOOGLE_REQUESTS_PER_SECOND.getKey());
+	}
+
+	/**
+	 * @return the transport of the requests to Google
+	 * @throws IllegalArgumentException for an unknown transport
+	 */
+	public HttpTransportType getGoogleHttpTransport() {
+		return HttpTransportType.create(configuration.getString(ConfigurationParameter.GOOGLE_HTTP_TRANSPORT.getKey(), "net")); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return maximum number of connections to Google kept by the pooled transport
+	 */
+	public int getGoogleHttpConnections() {
+		return configuration.getInt(ConfigurationParameter.GOOGLE_HTTP_CONNECTIONS.getKey(), 20);
+	}
+
 	/**
 	 * @return numeric values of Lotus Notes appointment types to sync
 	 * @see de.jakop.ngcalsync.calendar.EventType
@@ -382,24 +607,18 @@ public class Settings {
 	public com.google.api.services.calendar.Calendar getGoogleCalendarService() {
 
 		if (calendarService == null) {
-			if (!StringUtils.isBlank(getProxyHost()) && !StringUtils.isBlank(getProxyPort())) {
-				System.setProperty("http.proxyHost", getProxyHost()); //$NON-NLS-1$
-				System.setProperty("http.proxyPort", getProxyPort()); //$NON-NLS-1$
-				System.setProperty("https.proxyHost", getProxyHost()); //$NON-NLS-1$
-				System.setProperty("https.proxyPort", getProxyPort()); //$NON-NLS-1$
+			if (httpTransport == null) {
+				setHttpTransport(new HttpTransportFactory().getHttpTransport(this), new JacksonFactory());
 			}
-
 			try {
-				final HttpTransport httpTransport = new NetHttpTransport();
-				final JacksonFactory jsonFactory = new JacksonFactory();
-
 				final List<String> scopes = Arrays.asList(CalendarScopes.CALENDAR);
 				final GoogleOAuth2DAO googleOAuth2DAO = new GoogleOAuth2DAO(httpTransport, jsonFactory, getVerificationCodeReceiver(),
 						fileAccessor.getFile(Constants.FILENAME_USER_SECRETS));
 				final Credential credential = googleOAuth2DAO.authorize(scopes, getGoogleAccountName());
 
-				calendarService = new com.google.api.services.calendar.Calendar.Builder(httpTransport, jsonFactory, credential)//
-						.setApplicationName(Constants.APPLICATION_NAME)//
+				calendarService = new com.google.api.services.calendar.Calendar.Builder(httpTransport, jsonFactory, new HttpRequestMetrics(syncMetrics, credential))//
+						// Google compresses its answers only for clients naming gzip in their user agent
+						.setApplicationName(Constants.APPLICATION_NAME + " (gzip)")// //$NON-NLS-1$
 						.build();
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
@@ -408,6 +627,27 @@ public class Settings {
 		return calendarService;
 	}
 
+	/**
+	 * Sets the transport used to access Google, e.g. to share its connections between the users in server mode.
+	 * Without, each instance creates its own as configured.
+	 *
+	 * @param httpTransport
+	 * @param jsonFactory
+	 */
+	public void setHttpTransport(final HttpTransport httpTransport, final JsonFactory jsonFactory) {
+		Validate.notNull(httpTransport);
+		Validate.notNull(jsonFactory);
+		this.httpTransport = httpTransport;
+		this.jsonFactory = jsonFactory;
+	}
+
+	/**
+	 * @return the metrics of the synchronisations with these settings
+	 */
+	public SyncMetrics getSyncMetrics() {
+		return syncMetrics;
+	}
+
 	/**
 	 *
 	 * @return the current {@link IUserInputReceiver}
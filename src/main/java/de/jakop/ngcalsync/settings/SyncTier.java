@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.settings;
+
+import java.util.Calendar;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A part of the sync period, which is synchronised in its own interval. The near future changes often and is
+ * synchronised often, while the far future or the past may be synchronised rarely. Each tier keeps the time of
+ * its own last synchronisation, so the events modified since then are updated by the tier's next
+ * synchronisation.
+ *
+ * @author fjakop
+ */
+public class SyncTier {
+
+	/** scheduled synchronisations start with a slight delay, so a tier is due up to a minute early */
+	private static final long DUE_TOLERANCE_MILLIS = 60 * 1000;
+
+	private final String name;
+	private final Calendar start;
+	private final Calendar end;
+	private final int intervalMinutes;
+	private final boolean first;
+	private final boolean last;
+
+	private Calendar syncLastDateTime;
+
+	/**
+	 *
+	 * @param name name of the tier, unique within the sync period
+	 * @param start start of the tier
+	 * @param end end of the tier
+	 * @param intervalMinutes minutes between the synchronisations of the tier
+	 * @param first <code>true</code>, if the tier starts the sync period
+	 * @param last <code>true</code>, if the tier ends the sync period
+	 */
+	SyncTier(final String name, final Calendar start, final Calendar end, final int intervalMinutes, final boolean first, final boolean last) {
+		Validate.notNull(name);
+		Validate.notNull(start);
+		Validate.notNull(end);
+		this.name = name;
+		this.start = start;
+		this.end = end;
+		this.intervalMinutes = intervalMinutes;
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * @return name of the tier, unique within the sync period
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return start of the tier
+	 */
+	public Calendar getStart() {
+		return start;
+	}
+
+	/**
+	 * @return end of the tier
+	 */
+	public Calendar getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return minutes between the synchronisations of the tier
+	 */
+	public int getIntervalMinutes() {
+		return intervalMinutes;
+	}
+
+	/**
+	 * @return <code>true</code>, if the tier starts the sync period and owns the events starting before
+	 */
+	public boolean isFirst() {
+		return first;
+	}
+
+	/**
+	 * @return <code>true</code>, if the tier ends the sync period and owns the events starting after
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * @return last sync start time of the tier
+	 */
+	public Calendar getSyncLastDateTime() {
+		return syncLastDateTime;
+	}
+
+	/**
+	 * @param syncLastDateTime last sync start time of the tier
+	 */
+	public void setSyncLastDateTime(final Calendar syncLastDateTime) {
+		this.syncLastDateTime = syncLastDateTime;
+	}
+
+	/**
+	 * @param now
+	 * @return <code>true</code>, if the tier's interval has passed since its last synchronisation
+	 */
+	public boolean isDue(final Calendar now) {
+		final long next = syncLastDateTime.getTimeInMillis() + intervalMinutes * 60L * 1000L;
+		return next - DUE_TOLERANCE_MILLIS <= now.getTimeInMillis();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
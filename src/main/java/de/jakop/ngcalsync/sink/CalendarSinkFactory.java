@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import org.apache.commons.lang3.Validate;
+
+import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ * Creates the {@link ICalendarSink} configured by <code>sink.type</code>
+ *
+ * @author fjakop
+ */
+public class CalendarSinkFactory {
+
+	private final GoogleCalendarDaoFactory googleCalendarDaoFactory;
+
+	// the events of the in-memory sink live as long as the application
+	private InMemoryCalendarSink memorySink;
+
+	/**
+	 *
+	 * @param googleCalendarDaoFactory creates the Google sink
+	 */
+	public CalendarSinkFactory(final GoogleCalendarDaoFactory googleCalendarDaoFactory) {
+		Validate.notNull(googleCalendarDaoFactory);
+		this.googleCalendarDaoFactory = googleCalendarDaoFactory;
+	}
+
+	/**
+	 * Creates the configured sink
+	 *
+	 * @param settings
+	 * @return a new sink, except for the in-memory sink which is the same for all synchronisations
+	 */
+	public synchronized ICalendarSink createCalendarSink(final Settings settings) {
+		switch (settings.getSinkType()) {
+			case ICS:
+				return new IcsFileCalendarSink(settings, settings.getSinkIcsFile());
+			case MEMORY:
+				if (memorySink == null) {
+					memorySink = new InMemoryCalendarSink(settings);
+				}
+				return memorySink;
+			default:
+				return googleCalendarDaoFactory.createGoogleCalendarDao(settings);
+		}
+	}
+
+}
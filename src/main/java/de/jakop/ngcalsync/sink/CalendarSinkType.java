@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.util.Locale;
+
+import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+
+/**
+ * The calendars the Lotus Notes events can be synchronized into
+ *
+ * @author fjakop
+ */
+public enum CalendarSinkType {
+	/** Google calendar */
+	GOOGLE,
+	/** a local iCalendar file */
+	ICS,
+	/** events kept in memory while the application runs, with a configurable latency per request */
+	MEMORY;
+
+	/**
+	 * Creates the {@link CalendarSinkType} for its configured name
+	 *
+	 * @param name e.g. <code>google</code>
+	 * @return the created {@link CalendarSinkType}
+	 * @throws IllegalArgumentException for an unknown name
+	 */
+	public static CalendarSinkType create(final String name) {
+		for (final CalendarSinkType type : values()) {
+			if (type.name().equalsIgnoreCase(name.trim())) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException(UserMessage.get().MSG_SINK_TYPE_NOT_RECOGNIZED(name));
+	}
+
+	@Override
+	public String toString() {
+		return name().toLowerCase(Locale.ENGLISH);
+	}
+
+}
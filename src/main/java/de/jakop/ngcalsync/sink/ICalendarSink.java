@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+
+/**
+ * The calendar the Lotus Notes events are synchronized into, e.g. Google calendar. Mutations may be batched
+ * until {@link #flush()}, events may be read for a part of the sync period, and a sink may keep the events
+ * read before to fetch only the changes since, as long as every read returns the current events.
+ *
+ * @author fjakop
+ */
+public interface ICalendarSink {
+
+	/**
+	 * Unserts a calendar event. In batch mode the insert is queued until the batch is full
+	 * or {@link #flush()} is called, with concurrent senders it is sent in the background.
+	 *
+	 * @param event
+	 * @return the id of the inserted event, <code>null</code> in batch mode or with concurrent senders
+	 */
+	public abstract String insert(CalendarEvent event);
+
+	/**
+	 * Updates a calendar event. In batch mode or with concurrent senders the update is queued.
+	 *
+	 * @param id
+	 * @param event
+	 */
+	public abstract void update(String id, CalendarEvent event);
+
+	/**
+	 * Deletes a calendar event. In batch mode or with concurrent senders the deletion is queued.
+	 *
+	 * @param id
+	 */
+	public abstract void delete(String id);
+
+	/**
+	 * Reads all calendar events
+	 *
+	 * @param filters
+	 * @return all calendar event
+	 */
+	public abstract List<CalendarEvent> getEvents(ICalendarEventFilter[] filters) throws SynchronisationException;
+
+	/**
+	 * Reads all calendar events page by page and hands each page to the consumer as soon as it is converted
+	 *
+	 * @param filters
+	 * @param consumer
+	 */
+	public abstract void getEvents(ICalendarEventFilter[] filters, ICalendarEventConsumer consumer) throws SynchronisationException;
+
+	/**
+	 * Reads the calendar events in a part of the sync period page by page and hands each page to the consumer. Different
+	 * parts may be read at the same time.
+	 *
+	 * @param filters
+	 * @param start start of the part
+	 * @param end end of the part
+	 * @param consumer
+	 */
+	public abstract void getEvents(ICalendarEventFilter[] filters, Calendar start, Calendar end, ICalendarEventConsumer consumer) throws SynchronisationException;
+
+	/**
+	 * Executes all queued mutations, waits for the ones sent in the background and reports the ones that
+	 * failed since the last flush. For a failed deletion the key is an event carrying only the id of the deleted event.
+	 *
+	 * @return the events which could not be inserted, updated or deleted, mapped to the cause
+	 */
+	public abstract Map<CalendarEvent, SynchronisationException> flush();
+
+	/**
+	 * Forgets the events read before, e.g. after their part of the sync period has been synchronized, so they
+	 * do not occupy memory any longer.
+	 *
+	 * @param events
+	 */
+	public abstract void release(Collection<CalendarEvent> events);
+
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ * Synchronizes into a local iCalendar file, which can be subscribed to by other calendar applications. The file
+ * is read when the sink is created and rewritten after each batch of mutations.
+ *
+ * @author fjakop
+ */
+class IcsFileCalendarSink extends LocalCalendarSink {
+
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private final Log log = LogFactory.getLog(getClass());
+	private final IcsFormat format = new IcsFormat();
+	private final File file;
+
+	/**
+	 *
+	 * @param settings
+	 * @param file the iCalendar file, created by the first mutation if not existing
+	 */
+	IcsFileCalendarSink(final Settings settings, final File file) {
+		super(settings);
+		Validate.notNull(file);
+		this.file = file;
+
+		if (file.exists()) {
+			try {
+				final List<CalendarEvent> events = format.parse(FileUtils.readFileToString(file, ENCODING), file.getAbsolutePath());
+				for (final CalendarEvent event : events) {
+					load(event);
+				}
+				log.debug(TechMessage.get().MSG_READ_ICS_FILE(file.getAbsolutePath(), events.size()));
+			} catch (final IOException e) {
+				throw new SynchronisationException(e);
+			}
+		}
+	}
+
+	@Override
+	protected void request() {
+		// the file is local
+	}
+
+	@Override
+	protected void store(final Collection<CalendarEvent> stored) {
+		// write a complete copy first, so an interrupted write leaves the old file intact
+		final File written = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		try {
+			FileUtils.writeStringToFile(written, format.write(stored), ENCODING);
+			FileUtils.deleteQuietly(file);
+			FileUtils.moveFile(written, file);
+		} catch (final IOException e) {
+			throw new SynchronisationException(e);
+		}
+		log.debug(TechMessage.get().MSG_WROTE_ICS_FILE(file.getAbsolutePath(), stored.size()));
+	}
+
+}
@@ -0,0 +1,311 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+
+/**
+ * Writes and reads events in the iCalendar format (RFC 5545). Only the properties synchronized are supported,
+ * the source id and the fingerprint are written as extension properties. Times are written in UTC, all day
+ * events as dates of the default time zone.
+ *
+ * @author fjakop
+ */
+class IcsFormat {
+
+	/** extension property for the source id */
+	static final String PROPERTY_SOURCE_ID = "X-NGCALSYNC-SOURCE-ID"; //$NON-NLS-1$
+	/** extension property for the fingerprint */
+	static final String PROPERTY_FINGERPRINT = "X-NGCALSYNC-FINGERPRINT"; //$NON-NLS-1$
+
+	private static final String CRLF = "\r\n"; //$NON-NLS-1$
+	private static final int MAX_LINE_LENGTH = 75;
+
+	private static final String UTC_DATE_TIME_PATTERN = "yyyyMMdd'T'HHmmss'Z'"; //$NON-NLS-1$
+	private static final String LOCAL_DATE_TIME_PATTERN = "yyyyMMdd'T'HHmmss"; //$NON-NLS-1$
+	private static final String DATE_PATTERN = "yyyyMMdd"; //$NON-NLS-1$
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	/**
+	 * @param events
+	 * @return the calendar containing the events
+	 */
+	String write(final Collection<CalendarEvent> events) {
+		final StringBuilder ics = new StringBuilder();
+		line(ics, "BEGIN:VCALENDAR"); //$NON-NLS-1$
+		line(ics, "VERSION:2.0"); //$NON-NLS-1$
+		line(ics, "PRODID:-//jakop.de//ngcalsync//EN"); //$NON-NLS-1$
+		for (final CalendarEvent event : events) {
+			line(ics, "BEGIN:VEVENT"); //$NON-NLS-1$
+			line(ics, "UID:" + escape(event.getId())); //$NON-NLS-1$
+			if (event.getLastUpdatedMillis() != CalendarEvent.NO_TIME) {
+				line(ics, "DTSTAMP:" + format(UTC_DATE_TIME_PATTERN, event.getLastUpdatedMillis())); //$NON-NLS-1$
+				line(ics, "LAST-MODIFIED:" + format(UTC_DATE_TIME_PATTERN, event.getLastUpdatedMillis())); //$NON-NLS-1$
+			}
+			if (event.isAllDay()) {
+				line(ics, "DTSTART;VALUE=DATE:" + format(DATE_PATTERN, event.getStartMillis())); //$NON-NLS-1$
+				line(ics, "DTEND;VALUE=DATE:" + format(DATE_PATTERN, event.getEndMillis())); //$NON-NLS-1$
+			} else {
+				line(ics, "DTSTART:" + format(UTC_DATE_TIME_PATTERN, event.getStartMillis())); //$NON-NLS-1$
+				line(ics, "DTEND:" + format(UTC_DATE_TIME_PATTERN, event.getEndMillis())); //$NON-NLS-1$
+			}
+			text(ics, "SUMMARY", event.getTitle()); //$NON-NLS-1$
+			text(ics, "DESCRIPTION", event.getContent()); //$NON-NLS-1$
+			text(ics, "LOCATION", event.getLocation()); //$NON-NLS-1$
+			text(ics, PROPERTY_SOURCE_ID, event.getSourceId());
+			text(ics, PROPERTY_FINGERPRINT, event.getFingerprint());
+			line(ics, "END:VEVENT"); //$NON-NLS-1$
+		}
+		line(ics, "END:VCALENDAR"); //$NON-NLS-1$
+		return ics.toString();
+	}
+
+	/**
+	 * @param ics a calendar
+	 * @param source name of the calendar for logging, e.g. the file
+	 * @return the events of the calendar, except the ones without id or start
+	 */
+	List<CalendarEvent> parse(final String ics, final String source) {
+		final List<CalendarEvent> events = new ArrayList<CalendarEvent>();
+		CalendarEvent event = null;
+		boolean hasEnd = false;
+		for (final String line : unfold(ics)) {
+			final int colon = indexOfValue(line);
+			if (colon < 0) {
+				continue;
+			}
+			final String[] nameAndParameters = line.substring(0, colon).split(";"); //$NON-NLS-1$
+			final String name = nameAndParameters[0].trim().toUpperCase(Locale.ENGLISH);
+			final String value = line.substring(colon + 1);
+
+			if ("BEGIN".equals(name) && "VEVENT".equalsIgnoreCase(value.trim())) { //$NON-NLS-1$ //$NON-NLS-2$
+				event = new CalendarEvent();
+				hasEnd = false;
+			} else if (event == null) {
+				continue;
+			} else if ("END".equals(name) && "VEVENT".equalsIgnoreCase(value.trim())) { //$NON-NLS-1$ //$NON-NLS-2$
+				if (event.getId() == null || event.getStartMillis() == CalendarEvent.NO_TIME) {
+					log.warn(TechMessage.get().MSG_ICS_EVENT_IGNORED(source, event.getId()));
+				} else {
+					if (!hasEnd) {
+						// without end, an all day event lasts the day, other events have no duration
+						event.setEndMillis(event.isAllDay() ? nextDay(event.getStartMillis()) : event.getStartMillis());
+					}
+					if (!event.isAllDay()) {
+						event.setEventType(event.getStartMillis() == event.getEndMillis() ? EventType.REMINDER : EventType.NORMAL_EVENT);
+					}
+					events.add(event);
+				}
+				event = null;
+			} else if ("UID".equals(name)) { //$NON-NLS-1$
+				event.setId(unescape(value));
+			} else if ("DTSTART".equals(name)) { //$NON-NLS-1$
+				event.setStartMillis(parseTime(nameAndParameters, value));
+				if (isDate(nameAndParameters, value)) {
+					event.setEventType(EventType.ALL_DAY_EVENT);
+				}
+			} else if ("DTEND".equals(name)) { //$NON-NLS-1$
+				event.setEndMillis(parseTime(nameAndParameters, value));
+				hasEnd = event.getEndMillis() != CalendarEvent.NO_TIME;
+			} else if ("LAST-MODIFIED".equals(name)) { //$NON-NLS-1$
+				event.setLastUpdatedMillis(parseTime(nameAndParameters, value));
+			} else if ("DTSTAMP".equals(name) && event.getLastUpdatedMillis() == CalendarEvent.NO_TIME) { //$NON-NLS-1$
+				event.setLastUpdatedMillis(parseTime(nameAndParameters, value));
+			} else if ("SUMMARY".equals(name)) { //$NON-NLS-1$
+				event.setTitle(unescape(value));
+			} else if ("DESCRIPTION".equals(name)) { //$NON-NLS-1$
+				event.setContent(unescape(value));
+			} else if ("LOCATION".equals(name)) { //$NON-NLS-1$
+				event.setLocation(unescape(value));
+			} else if (PROPERTY_SOURCE_ID.equals(name)) {
+				event.setSourceId(unescape(value));
+			} else if (PROPERTY_FINGERPRINT.equals(name)) {
+				event.setFingerprint(unescape(value));
+			}
+		}
+		return events;
+	}
+
+	private static void text(final StringBuilder ics, final String name, final String value) {
+		if (value != null) {
+			line(ics, name + ":" + escape(value)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Appends a content line, folded after {@link #MAX_LINE_LENGTH} characters
+	 */
+	private static void line(final StringBuilder ics, final String line) {
+		int start = 0;
+		int length = MAX_LINE_LENGTH;
+		while (line.length() - start > length) {
+			int end = start + length;
+			// do not split a surrogate pair
+			if (Character.isHighSurrogate(line.charAt(end - 1))) {
+				end--;
+			}
+			ics.append(line, start, end).append(CRLF).append(' ');
+			start = end;
+			// the leading space of a continuation line counts
+			length = MAX_LINE_LENGTH - 1;
+		}
+		ics.append(line, start, line.length()).append(CRLF);
+	}
+
+	private static List<String> unfold(final String ics) {
+		final List<String> lines = new ArrayList<String>();
+		for (final String line : ics.split("\r?\n")) { //$NON-NLS-1$
+			if (!lines.isEmpty() && (line.startsWith(" ") || line.startsWith("\t"))) { //$NON-NLS-1$ //$NON-NLS-2$
+				lines.set(lines.size() - 1, lines.get(lines.size() - 1) + line.substring(1));
+			} else if (!line.isEmpty()) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the index of the colon separating name and parameters from the value, parameter values may be quoted
+	 */
+	private static int indexOfValue(final String line) {
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ':' && !quoted) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String escape(final String value) {
+		final StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+				case '\\':
+				case ';':
+				case ',':
+					escaped.append('\\').append(c);
+					break;
+				case '\n':
+					escaped.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					break;
+				default:
+					escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static String unescape(final String value) {
+		final StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				final char next = value.charAt(++i);
+				unescaped.append(next == 'n' || next == 'N' ? '\n' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	private static boolean isDate(final String[] parameters, final String value) {
+		for (int i = 1; i < parameters.length; i++) {
+			if ("VALUE=DATE".equalsIgnoreCase(parameters[i].trim())) { //$NON-NLS-1$
+				return true;
+			}
+		}
+		return value.trim().length() == DATE_PATTERN.length();
+	}
+
+	/**
+	 * @return the time in UTC, in the time zone of the <code>TZID</code> parameter or in the default time zone,
+	 *         {@link CalendarEvent#NO_TIME} if unparseable
+	 */
+	private static long parseTime(final String[] parameters, final String value) {
+		final String time = value.trim();
+		final SimpleDateFormat format;
+		if (isDate(parameters, time)) {
+			format = new SimpleDateFormat(DATE_PATTERN, Locale.ENGLISH);
+		} else if (time.endsWith("Z")) { //$NON-NLS-1$
+			format = new SimpleDateFormat(UTC_DATE_TIME_PATTERN, Locale.ENGLISH);
+			format.setTimeZone(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+		} else {
+			format = new SimpleDateFormat(LOCAL_DATE_TIME_PATTERN, Locale.ENGLISH);
+			for (int i = 1; i < parameters.length; i++) {
+				if (parameters[i].trim().toUpperCase(Locale.ENGLISH).startsWith("TZID=")) { //$NON-NLS-1$
+					format.setTimeZone(TimeZone.getTimeZone(parameters[i].trim().substring(5).replace("\"", ""))); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+		try {
+			return format.parse(time).getTime();
+		} catch (final ParseException e) {
+			return CalendarEvent.NO_TIME;
+		}
+	}
+
+	private static String format(final String pattern, final long millis) {
+		final DateFormat format = new SimpleDateFormat(pattern, Locale.ENGLISH);
+		if (pattern.equals(UTC_DATE_TIME_PATTERN)) {
+			format.setTimeZone(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+		}
+		return format.format(new Date(millis));
+	}
+
+	private static long nextDay(final long millis) {
+		final Calendar nextDay = Calendar.getInstance();
+		nextDay.setTimeInMillis(millis);
+		nextDay.add(Calendar.DAY_OF_YEAR, 1);
+		return nextDay.getTimeInMillis();
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ * An in-process stand-in for a calendar server, e.g. to run load tests of the synchronisation without a Google
+ * account. Each request takes <code>sink.latency.millis</code> milliseconds, like a round trip to a server.
+ *
+ * @author fjakop
+ */
+class InMemoryCalendarSink extends LocalCalendarSink {
+
+	private final Settings settings;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 *
+	 * @param settings
+	 */
+	InMemoryCalendarSink(final Settings settings) {
+		super(settings);
+		this.settings = settings;
+	}
+
+	@Override
+	protected void request() {
+		requests.incrementAndGet();
+		final int latency = settings.getSinkLatencyMillis();
+		if (latency <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(latency);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SynchronisationException(e);
+		}
+	}
+
+	@Override
+	protected void store(final Collection<CalendarEvent> stored) {
+		// the events are kept in memory only
+	}
+
+	/**
+	 * @return number of requests since creation
+	 */
+	int getRequests() {
+		return requests.get();
+	}
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.lang3.Validate;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+import de.jakop.ngcalsync.i18n.LocalizedTechnicalStrings.TechMessage;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ * A sink keeping the events in the application, stored like Google stores them: an all day event ends on the
+ * next day, the other types become normal events or reminders, and the fingerprint of the content written is
+ * kept. Mutations are queued and executed as a batch of up to {@link #BATCH_SIZE} mutations, the events are
+ * read in pages of {@link #PAGE_SIZE} events. Each batch and each page is a request to the calendar.
+ *
+ * @author fjakop
+ */
+abstract class LocalCalendarSink implements ICalendarSink {
+
+	/** mutations per batch */
+	static final int BATCH_SIZE = 50;
+	/** events per page */
+	static final int PAGE_SIZE = 250;
+
+	private final Settings settings;
+
+	// the events by id, in the order of their insertion
+	private final Map<String, CalendarEvent> events = new LinkedHashMap<String, CalendarEvent>();
+	private final List<Mutation> queue = new ArrayList<Mutation>();
+	private final Map<CalendarEvent, SynchronisationException> failures = new LinkedHashMap<CalendarEvent, SynchronisationException>();
+
+	/**
+	 *
+	 * @param settings
+	 */
+	LocalCalendarSink(final Settings settings) {
+		Validate.notNull(settings);
+		this.settings = settings;
+	}
+
+	/**
+	 * Called once per request, before it is executed
+	 */
+	protected abstract void request();
+
+	/**
+	 * Called after a batch of mutations has been executed
+	 *
+	 * @param stored all events of the calendar
+	 */
+	protected abstract void store(Collection<CalendarEvent> stored);
+
+	/**
+	 * Adds an event read from the storage of the calendar
+	 *
+	 * @param event
+	 */
+	protected void load(final CalendarEvent event) {
+		synchronized (events) {
+			events.put(event.getId(), event);
+		}
+	}
+
+	@Override
+	public String insert(final CalendarEvent event) {
+		final String id = UUID.randomUUID().toString().replace("-", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		queue(new Mutation(id, event, true));
+		return id;
+	}
+
+	@Override
+	public void update(final String id, final CalendarEvent event) {
+		queue(new Mutation(id, event, false));
+	}
+
+	@Override
+	public void delete(final String id) {
+		queue(new Mutation(id, null, false));
+	}
+
+	@Override
+	public List<CalendarEvent> getEvents(final ICalendarEventFilter[] filters) throws SynchronisationException {
+		final List<CalendarEvent> result = new ArrayList<CalendarEvent>();
+		getEvents(filters, new ICalendarEventConsumer() {
+
+			@Override
+			public void consume(final Collection<CalendarEvent> page) {
+				result.addAll(page);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public void getEvents(final ICalendarEventFilter[] filters, final ICalendarEventConsumer consumer) throws SynchronisationException {
+		getEvents(filters, settings.getSyncStartDate(), settings.getSyncEndDate(), consumer);
+	}
+
+	@Override
+	public void getEvents(final ICalendarEventFilter[] filters, final Calendar start, final Calendar end, final ICalendarEventConsumer consumer) throws SynchronisationException {
+		// like Google, select the events overlapping the period
+		final List<CalendarEvent> selected = new ArrayList<CalendarEvent>();
+		synchronized (events) {
+			for (final CalendarEvent event : events.values()) {
+				if (event.getEndMillis() > start.getTimeInMillis() && event.getStartMillis() < end.getTimeInMillis()) {
+					selected.add(copy(event));
+				}
+			}
+		}
+		int i = 0;
+		do {
+			request();
+			consumer.consume(new ArrayList<CalendarEvent>(selected.subList(i, Math.min(i + PAGE_SIZE, selected.size()))));
+			i += PAGE_SIZE;
+		} while (i < selected.size());
+	}
+
+	@Override
+	public Map<CalendarEvent, SynchronisationException> flush() {
+		synchronized (queue) {
+			execute();
+			final Map<CalendarEvent, SynchronisationException> result = new LinkedHashMap<CalendarEvent, SynchronisationException>(failures);
+			failures.clear();
+			return result;
+		}
+	}
+
+	@Override
+	public void release(final Collection<CalendarEvent> released) {
+		// nothing is kept per read
+	}
+
+	private void queue(final Mutation mutation) {
+		synchronized (queue) {
+			queue.add(mutation);
+			if (queue.size() >= BATCH_SIZE) {
+				execute();
+			}
+		}
+	}
+
+	private void execute() {
+		if (queue.isEmpty()) {
+			return;
+		}
+		request();
+		synchronized (events) {
+			for (final Mutation mutation : queue) {
+				if (!mutation.insert && !events.containsKey(mutation.id)) {
+					failures.put(mutation.getFailedEvent(), new SynchronisationException(TechMessage.get().MSG_SINK_EVENT_NOT_FOUND(mutation.id)));
+				} else if (mutation.event == null) {
+					events.remove(mutation.id);
+				} else {
+					events.put(mutation.id, toStored(mutation.id, mutation.event));
+				}
+			}
+			queue.clear();
+			store(new ArrayList<CalendarEvent>(events.values()));
+		}
+	}
+
+	private static CalendarEvent toStored(final String id, final CalendarEvent event) {
+		final CalendarEvent stored = new CalendarEvent();
+		stored.setId(id);
+		stored.setSourceId(event.getSourceId());
+		stored.setFingerprint(event.computeFingerprint());
+		stored.setTitle(event.getTitle());
+		stored.setContent(event.getContent());
+		stored.setLocation(event.getLocation());
+		stored.setLastUpdatedMillis(System.currentTimeMillis());
+		stored.setStartMillis(event.getStartMillis());
+		if (event.isAllDay()) {
+			// the end of an all day event is the next day, calculated in the event's time zone
+			final Calendar nextDay = Calendar.getInstance(event.getTimeZone());
+			nextDay.setTimeInMillis(event.getStartMillis());
+			nextDay.add(Calendar.DAY_OF_YEAR, 1);
+			stored.setEndMillis(nextDay.getTimeInMillis());
+			stored.setEventType(EventType.ALL_DAY_EVENT);
+		} else {
+			stored.setEndMillis(event.getEndMillis());
+			stored.setEventType(event.getStartMillis() == event.getEndMillis() ? EventType.REMINDER : EventType.NORMAL_EVENT);
+		}
+		return stored;
+	}
+
+	/**
+	 * @return a copy of the stored event, so the caller cannot change the calendar
+	 */
+	static CalendarEvent copy(final CalendarEvent event) {
+		final CalendarEvent copy = new CalendarEvent();
+		copy.setId(event.getId());
+		copy.setSourceId(event.getSourceId());
+		copy.setFingerprint(event.getFingerprint());
+		copy.setTitle(event.getTitle());
+		copy.setContent(event.getContent());
+		copy.setLocation(event.getLocation());
+		copy.setLastUpdatedMillis(event.getLastUpdatedMillis());
+		copy.setStartMillis(event.getStartMillis());
+		copy.setEndMillis(event.getEndMillis());
+		copy.setEventType(event.getEventType());
+		return copy;
+	}
+
+	/**
+	 * A queued insert, update or deletion
+	 */
+	private static class Mutation {
+
+		private final String id;
+		// null for a deletion
+		private final CalendarEvent event;
+		private final boolean insert;
+
+		Mutation(final String id, final CalendarEvent event, final boolean insert) {
+			this.id = id;
+			this.event = event;
+			this.insert = insert;
+		}
+
+		CalendarEvent getFailedEvent() {
+			if (event != null) {
+				return event;
+			}
+			final CalendarEvent deleted = new CalendarEvent();
+			deleted.setId(id);
+			return deleted;
+		}
+	}
+
+}
@@ -39,6 +39,22 @@ public class DefaultFileAccessor implements IFileAccessor {
 
 	private File settingsDir;
 
+	/**
+	 * Accesses the settings directory in the user's home directory
+	 */
+	public DefaultFileAccessor() {
+		// the directory is determined on first access
+	}
+
+	/**
+	 * Accesses the given settings directory, e.g. the profile of a user in server mode
+	 *
+	 * @param settingsDir
+	 */
+	public DefaultFileAccessor(final File settingsDir) {
+		this.settingsDir = settingsDir;
+	}
+
 	/**
 	 * @return the settings directory, it will be created, if not present.
 	 */
@@ -102,6 +102,25 @@ public class StartApplicationTest {
 
 	}
 
+	/**
+	 * Argument "-server" takes the profiles' directory, "-threads" the number of threads.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParseCommandLine_ArgumentServer_HasOptionServerWithDirectory() throws Exception {
+		// Setup
+		final StartApplication main = new StartApplication();
+
+		// Run
+		final CommandLine cmd = main.parseCommandLine(new String[] { "-server", "profiles", "-threads", "4" });
+
+		// Assert
+		assertEquals(2, cmd.getOptions().length);
+		assertEquals("profiles", cmd.getOptionValue("server"));
+		assertEquals("4", cmd.getOptionValue("threads"));
+	}
+
 	/**
 	 *
 	 * @throws Exception
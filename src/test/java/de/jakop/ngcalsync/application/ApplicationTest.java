@@ -26,45 +26,66 @@
  */
 package de.jakop.ngcalsync.application;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
-import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
-import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.notes.INotesCalendarDAO;
 import de.jakop.ngcalsync.notes.NotesCalendarDaoFactory;
 import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
 import de.jakop.ngcalsync.service.SyncService;
 import de.jakop.ngcalsync.settings.PrivacySettings;
 import de.jakop.ngcalsync.settings.Settings;
+import de.jakop.ngcalsync.settings.SyncTier;
+import de.jakop.ngcalsync.sink.CalendarSinkFactory;
+import de.jakop.ngcalsync.sink.ICalendarSink;
 
 /**
  *
  * @author fjakop
  *
  */
+@SuppressWarnings("nls")
 public class ApplicationTest {
 
 	/** */
 	@Rule
 	public ExpectedException expected = ExpectedException.none();
 
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Mock
 	private Settings settings;
 	@Mock
@@ -72,20 +93,24 @@ public class ApplicationTest {
 	@Mock
 	private NotesCalendarDaoFactory notesCalendarDaoFactory;
 	@Mock
-	private GoogleCalendarDaoFactory googleCalendarDaoFactory;
+	private CalendarSinkFactory calendarSinkFactory;
 	@Mock
 	private INotesCalendarDAO notesCalendarDao;
 	@Mock
-	private IGoogleCalendarDAO googleCalendarDao;
+	private ICalendarSink calendarSink;
+	private SyncMetrics metrics;
 
 
 	/** */
 	@Before
 	public void before() throws Exception {
 		MockitoAnnotations.initMocks(this);
+		metrics = new SyncMetrics();
 
 		doReturn(notesCalendarDao).when(notesCalendarDaoFactory).createNotesCalendarDao(settings);
-		doReturn(googleCalendarDao).when(googleCalendarDaoFactory).createGoogleCalendarDao(settings);
+		doReturn(calendarSink).when(calendarSinkFactory).createCalendarSink(settings);
+		doReturn(new File(folder.getRoot(), Constants.FILENAME_SYNC_METRICS)).when(settings).getSettingsFile(Constants.FILENAME_SYNC_METRICS);
+		doReturn(metrics).when(settings).getSyncMetrics();
 	}
 
 	/**
@@ -123,7 +148,7 @@ public class ApplicationTest {
 	 * @throws Exception
 	 */
 	@Test
-	public void testGoogleCalendarDaoFactoryIsNull_ThrowException() throws Exception {
+	public void testCalendarSinkFactoryIsNull_ThrowException() throws Exception {
 		expected.expect(NullPointerException.class);
 		new Application(mock(Settings.class), service, notesCalendarDaoFactory, null);
 	}
@@ -136,13 +161,89 @@ public class ApplicationTest {
 	 */
 	@Test
 	public void testSynchronize() throws Exception {
-		final Application application = new Application(settings, service, notesCalendarDaoFactory, googleCalendarDaoFactory);
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
 		doReturn(mock(PrivacySettings.class)).when(settings).getPrivacySettings();
 
 		application.synchronize();
 
-		verify(service, times(1)).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(googleCalendarDao), (ICalendarEventFilter[]) Matchers.any(),
+		verify(service, times(1)).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(calendarSink), (ICalendarEventFilter[]) Matchers.any(),
 				(ICalendarEventObfuscator[]) Matchers.any(), Matchers.eq(settings));
+		verify(notesCalendarDao, times(1)).close();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSynchronize_Fails_MetricsAreWritten() throws Exception {
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
+		doReturn(mock(PrivacySettings.class)).when(settings).getPrivacySettings();
+		doThrow(new SynchronisationException("failure")).when(service).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(calendarSink),
+				(ICalendarEventFilter[]) Matchers.any(), (ICalendarEventObfuscator[]) Matchers.any(), Matchers.eq(settings));
+
+		try {
+			application.synchronize();
+			fail();
+		} catch (final SynchronisationException e) {
+			// expected
+		}
+
+		final List<String> lines = FileUtils.readLines(new File(folder.getRoot(), Constants.FILENAME_SYNC_METRICS));
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).contains("\"successful\":false"));
+		assertFalse(metrics.isLastRunSuccessful());
+		verify(notesCalendarDao, times(1)).close();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSynchronize_Tiers_OnlyDueTiersAreSynchronized() throws Exception {
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
+		doReturn(mock(PrivacySettings.class)).when(settings).getPrivacySettings();
+		final SyncTier dueTier = createTier(true);
+		final SyncTier notDueTier = createTier(false);
+		doReturn(Arrays.asList(dueTier, notDueTier)).when(settings).getSyncTiers();
+
+		application.synchronize(false);
+
+		verify(service, times(1)).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(calendarSink), (ICalendarEventFilter[]) Matchers.any(),
+				(ICalendarEventObfuscator[]) Matchers.any(), Matchers.eq(settings), Matchers.eq(dueTier));
+		verify(dueTier, times(1)).setSyncLastDateTime(Matchers.any(Calendar.class));
+		verify(settings, times(1)).saveLastSyncDateTime(dueTier);
+		verify(service, never()).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(calendarSink), (ICalendarEventFilter[]) Matchers.any(),
+				(ICalendarEventObfuscator[]) Matchers.any(), Matchers.eq(settings), Matchers.eq(notDueTier));
+		verify(settings, never()).saveLastSyncDateTime();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSynchronize_AllTiers_TierFails_OtherTiersAreSynchronizedBeforeException() throws Exception {
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
+		doReturn(mock(PrivacySettings.class)).when(settings).getPrivacySettings();
+		final SyncTier failingTier = createTier(false);
+		final SyncTier tier = createTier(false);
+		doReturn(Arrays.asList(failingTier, tier)).when(settings).getSyncTiers();
+
+		final SynchronisationException failure = new SynchronisationException("failure");
+		doThrow(failure).when(service).executeSync(Matchers.eq(notesCalendarDao), Matchers.eq(calendarSink), (ICalendarEventFilter[]) Matchers.any(),
+				(ICalendarEventObfuscator[]) Matchers.any(), Matchers.eq(settings), Matchers.eq(failingTier));
+
+		try {
+			application.synchronize();
+			fail();
+		} catch (final SynchronisationException e) {
+			assertSame(failure, e);
+		}
+
+		verify(settings, never()).saveLastSyncDateTime(failingTier);
+		verify(settings, times(1)).saveLastSyncDateTime(tier);
 	}
 
 	/**
@@ -151,7 +252,7 @@ public class ApplicationTest {
 	 */
 	@Test
 	public void testReloadSettings_Success() throws Exception {
-		final Application application = new Application(settings, service, notesCalendarDaoFactory, googleCalendarDaoFactory);
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
 
 		application.reloadSettings();
 
@@ -165,7 +266,7 @@ public class ApplicationTest {
 	 */
 	@Test
 	public void testReloadSettings_ThrowsConfigurationException_ThrowsRuntimeException() throws Exception {
-		final Application application = new Application(settings, service, notesCalendarDaoFactory, googleCalendarDaoFactory);
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
 
 		doThrow(new ConfigurationException()).when(settings).load();
 
@@ -183,7 +284,7 @@ public class ApplicationTest {
 	 */
 	@Test
 	public void testReloadSettings_ThrowsIOException_ThrowsRuntimeException() throws Exception {
-		final Application application = new Application(settings, service, notesCalendarDaoFactory, googleCalendarDaoFactory);
+		final Application application = new Application(settings, service, notesCalendarDaoFactory, calendarSinkFactory);
 
 		doThrow(new IOException()).when(settings).load();
 
@@ -195,4 +296,12 @@ public class ApplicationTest {
 		verifyNoMoreInteractions(settings);
 	}
 
+	private static SyncTier createTier(final boolean due) {
+		final SyncTier tier = mock(SyncTier.class);
+		doReturn(Calendar.getInstance()).when(tier).getStart();
+		doReturn(Calendar.getInstance()).when(tier).getEnd();
+		doReturn(Boolean.valueOf(due)).when(tier).isDue(Matchers.any(Calendar.class));
+		return tier;
+	}
+
 }
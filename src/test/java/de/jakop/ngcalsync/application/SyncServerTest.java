@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.quartz.CronTrigger;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.settings.NotesHelper;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class SyncServerTest {
+
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private NotesHelper notesHelper;
+	private SyncServer server;
+
+	/** */
+	@Before
+	public void before() {
+		notesHelper = mock(NotesHelper.class);
+		doReturn(Boolean.TRUE).when(notesHelper).isNotesInSystemPath();
+		doReturn(Boolean.TRUE).when(notesHelper).isNotesInClassPath();
+	}
+
+	/** */
+	@After
+	public void after() {
+		if (server != null) {
+			server.shutdown();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetProfiles_SubdirectoriesWithSettings_SortedByName() throws Exception {
+		createProfile("bob", "");
+		createProfile("alice", "");
+		folder.newFolder("nobody");
+		folder.newFile("readme.txt");
+
+		final List<File> profiles = new SyncServer(folder.getRoot(), 1, notesHelper).getProfiles();
+
+		assertEquals(2, profiles.size());
+		assertEquals("alice", profiles.get(0).getName());
+		assertEquals("bob", profiles.get(1).getName());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testStart_EachProfileIsScheduled_InvalidProfileIsSkipped() throws Exception {
+		createProfile("alice", "");
+		createProfile("bob", "sync.recurrence=0 */30 * * * ?");
+		createProfile("carol", "sync.recurrence=never");
+
+		server = new SyncServer(folder.getRoot(), 2, notesHelper);
+		server.start();
+
+		assertEquals(2, server.getApplications().size());
+		final Scheduler scheduler = server.getScheduler();
+		assertTrue(scheduler.isStarted());
+		// the outdated profile is upgraded to the default recurrence
+		assertEquals(SchedulerFacade.DEFAULT_CRON_EXPRESSION, getCronExpression(scheduler, "alice"));
+		assertEquals("0 */30 * * * ?", getCronExpression(scheduler, "bob"));
+		assertEquals(2, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("ngcalsync.syncGroup")).size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testStart_EachProfileHasItsOwnMetrics() throws Exception {
+		createProfile("alice", "");
+		createProfile("bob", "");
+
+		server = new SyncServer(folder.getRoot(), 2, notesHelper);
+		server.start();
+
+		final List<Application> applications = server.getApplications();
+		assertNotSame(applications.get(0).getSyncMetrics(), applications.get(1).getSyncMetrics());
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName alice = new ObjectName("de.jakop.ngcalsync:type=SyncMetrics,profile=\"alice\"");
+		final ObjectName bob = new ObjectName("de.jakop.ngcalsync:type=SyncMetrics,profile=\"bob\"");
+		assertTrue(mBeanServer.isRegistered(alice));
+		assertTrue(mBeanServer.isRegistered(bob));
+
+		server.shutdown();
+
+		assertFalse(mBeanServer.isRegistered(alice));
+		assertFalse(mBeanServer.isRegistered(bob));
+	}
+
+	private String getCronExpression(final Scheduler scheduler, final String profile) throws Exception {
+		final List<? extends Trigger> triggers = scheduler.getTriggersOfJob(new JobKey("ngcalsync.syncJob." + profile, "ngcalsync.syncGroup"));
+		assertEquals(1, triggers.size());
+		return ((CronTrigger) triggers.get(0)).getCronExpression();
+	}
+
+	private void createProfile(final String name, final String settings) throws Exception {
+		final File profile = folder.newFolder(name);
+		FileUtils.writeStringToFile(new File(profile, Constants.FILENAME_SYNC_PROPERTIES), settings);
+	}
+
+}
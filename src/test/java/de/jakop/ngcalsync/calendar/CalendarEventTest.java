@@ -28,9 +28,12 @@ package de.jakop.ngcalsync.calendar;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 
 import org.junit.Test;
 
@@ -139,4 +142,90 @@ public class CalendarEventTest {
 
 	}
 
+	/**
+	 *
+	 */
+	@Test
+	public void testSetGetDateTimes_CalendarsAreCopied() {
+		final Calendar startDateTime = Calendar.getInstance(TimeZone.getTimeZone("America/New_York"));
+		startDateTime.setTimeInMillis(1000000);
+		final Calendar endDateTime = Calendar.getInstance();
+		endDateTime.setTimeInMillis(2000000);
+
+		final CalendarEvent calendarEvent = new CalendarEvent();
+		calendarEvent.setStartDateTime(startDateTime);
+		calendarEvent.setEndDateTime(endDateTime);
+
+		// modifying the given calendar does not change the event
+		startDateTime.setTimeInMillis(0);
+		assertEquals(1000000, calendarEvent.getStartMillis());
+		assertEquals(2000000, calendarEvent.getEndMillis());
+
+		// modifying the returned calendar does not change the event
+		final Calendar returned = calendarEvent.getStartDateTime();
+		assertNotSame(returned, calendarEvent.getStartDateTime());
+		returned.add(Calendar.DAY_OF_YEAR, 1);
+		assertEquals(1000000, calendarEvent.getStartDateTime().getTimeInMillis());
+
+		// the time zone is the one of the starting time
+		assertEquals("America/New_York", calendarEvent.getTimeZoneId());
+		assertEquals("America/New_York", calendarEvent.getEndDateTime().getTimeZone().getID());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSetGetMillis() {
+		final CalendarEvent calendarEvent = new CalendarEvent();
+		assertEquals(CalendarEvent.NO_TIME, calendarEvent.getStartMillis());
+		assertNull(calendarEvent.getStartDateTime());
+		assertNull(calendarEvent.getEndDateTime());
+		assertNull(calendarEvent.getLastUpdated());
+		assertEquals(TimeZone.getDefault().getID(), calendarEvent.getTimeZone().getID());
+
+		calendarEvent.setStartMillis(1000);
+		calendarEvent.setEndMillis(2000);
+		calendarEvent.setLastUpdatedMillis(500);
+
+		assertEquals(1000, calendarEvent.getStartDateTime().getTimeInMillis());
+		assertEquals(2000, calendarEvent.getEndDateTime().getTimeInMillis());
+		assertEquals(500, calendarEvent.getLastUpdated().getTimeInMillis());
+
+		calendarEvent.setStartDateTime(null);
+		assertEquals(CalendarEvent.NO_TIME, calendarEvent.getStartMillis());
+		assertNull(calendarEvent.getTimeZoneId());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testComputeFingerprint_ChangesWithContent() {
+		final CalendarEvent calendarEvent = new CalendarEvent();
+		calendarEvent.setTitle("title");
+		calendarEvent.setStartMillis(1000);
+		calendarEvent.setEndMillis(2000);
+		final String fingerprint = calendarEvent.computeFingerprint();
+		assertEquals(16, fingerprint.length());
+
+		// the modification time is not part of the content
+		calendarEvent.setLastUpdatedMillis(500);
+		assertEquals(fingerprint, calendarEvent.computeFingerprint());
+
+		calendarEvent.setContent("");
+		assertFalse(fingerprint.equals(calendarEvent.computeFingerprint()));
+		calendarEvent.setContent(null);
+		assertEquals(fingerprint, calendarEvent.computeFingerprint());
+
+		calendarEvent.setEndMillis(3000);
+		assertFalse(fingerprint.equals(calendarEvent.computeFingerprint()));
+		calendarEvent.setEndMillis(2000);
+
+		// moving text between fields changes the fingerprint
+		calendarEvent.setTitle("tit");
+		calendarEvent.setContent("le");
+		assertFalse(fingerprint.equals(calendarEvent.computeFingerprint()));
+	}
+
 }
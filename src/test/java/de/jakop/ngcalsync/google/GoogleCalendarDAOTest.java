@@ -32,17 +32,25 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -50,15 +58,28 @@ import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.Calendar.Events.Insert;
 
+import de.jakop.ngcalsync.Constants;
 import de.jakop.ngcalsync.calendar.CalendarEvent;
 import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
 import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.google.GoogleCalendarDAOTest.BatchTest;
 import de.jakop.ngcalsync.google.GoogleCalendarDAOTest.GetEventsTest;
 import de.jakop.ngcalsync.google.GoogleCalendarDAOTest.InsertTest;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.settings.Settings;
 
 /**
@@ -71,13 +92,21 @@ import de.jakop.ngcalsync.settings.Settings;
  */
 @SuppressWarnings("nls")
 @RunWith(Suite.class)
-@SuiteClasses({ InsertTest.class, GetEventsTest.class })
+@SuiteClasses({ InsertTest.class, GetEventsTest.class, BatchTest.class })
 public class GoogleCalendarDAOTest {
 
 	private static void mockCalendarList(final com.google.api.services.calendar.Calendar.CalendarList calendarList) throws IOException {
+		mockCalendarList(calendarList, "mycal");
+	}
+
+	private static com.google.api.services.calendar.Calendar.CalendarList.List mockCalendarList(final com.google.api.services.calendar.Calendar.CalendarList calendarList,
+			final String summary) throws IOException {
 		// CalendarList creates a list with all Google calendars
 		final com.google.api.services.calendar.Calendar.CalendarList.List list = mock(com.google.api.services.calendar.Calendar.CalendarList.List.class);
 		doReturn(list).when(calendarList).list();
+		doReturn(list).when(list).setMaxResults(Integer.valueOf(250));
+		doReturn(list).when(list).setPageToken(Matchers.any(String.class));
+		doReturn(list).when(list).setFields(GoogleCalendarDAO.CALENDAR_LIST_FIELDS);
 
 		final com.google.api.services.calendar.model.CalendarList modelCalendarList = new com.google.api.services.calendar.model.CalendarList();
 		doReturn(modelCalendarList).when(list).execute();
@@ -88,22 +117,11 @@ public class GoogleCalendarDAOTest {
 		final com.google.api.services.calendar.model.CalendarListEntry calendarListEntry = new com.google.api.services.calendar.model.CalendarListEntry();
 		entries.add(calendarListEntry);
 
-		calendarListEntry.setSummary("mycal");
-		calendarListEntry.setId("mycal-id");
-	}
-
-	private static void mockCalendars(final com.google.api.services.calendar.Calendar.Calendars calendars) throws IOException {
-		// Calendars create Get
-		final com.google.api.services.calendar.Calendar.Calendars.Get get = mock(com.google.api.services.calendar.Calendar.Calendars.Get.class);
-		doReturn(get).when(calendars).get(Matchers.eq("mycal-id"));
-
-		// Get creates model.Calendar (necessary for the retrieval of the correct Google calendar)
-		final com.google.api.services.calendar.model.Calendar modelCalendar = new com.google.api.services.calendar.model.Calendar();
-		doReturn(modelCalendar).when(get).execute();
-		modelCalendar.setId("myModelCal-id");
+		calendarListEntry.setSummary(summary);
+		calendarListEntry.setId("myModelCal-id");
+		return list;
 	}
 
-
 	/**
 	 * Tests the getEntries' logic
 	 *
@@ -115,6 +133,10 @@ public class GoogleCalendarDAOTest {
 		@Rule
 		public ExpectedException expected = ExpectedException.none();
 
+		/** */
+		@Rule
+		public TemporaryFolder folder = new TemporaryFolder();
+
 		private final Calendar now = Calendar.getInstance();
 		private final Calendar after = Calendar.getInstance();
 
@@ -127,26 +149,24 @@ public class GoogleCalendarDAOTest {
 		@Before
 		public void before() throws Exception {
 			settings = mock(Settings.class);
+			doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
 			calendar = mock(com.google.api.services.calendar.Calendar.class);
 
 			after.setTimeInMillis(now.getTimeInMillis() + 1);
 
 			// Settings creates Calendar (service)
 			doReturn(calendar).when(settings).getGoogleCalendarService();
+			doReturn(new File(folder.getRoot(), Constants.FILENAME_GOOGLE_CALENDAR_IDS)).when(settings).getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS);
 			doReturn("mycal").when(settings).getGoogleCalendarName();
 			doReturn(now).when(settings).getSyncStartDate();
 			doReturn(after).when(settings).getSyncEndDate();
 
 			// Calendar (Service) creates
 			// --> CalendarList
-			// --> Calendars
 			// --> Events
 			final com.google.api.services.calendar.Calendar.CalendarList calendarList = mock(com.google.api.services.calendar.Calendar.CalendarList.class);
 			doReturn(calendarList).when(calendar).calendarList();
 
-			final com.google.api.services.calendar.Calendar.Calendars calendars = mock(com.google.api.services.calendar.Calendar.Calendars.class);
-			doReturn(calendars).when(calendar).calendars();
-
 			final com.google.api.services.calendar.Calendar.Events events = mock(com.google.api.services.calendar.Calendar.Events.class);
 			doReturn(events).when(calendar).events();
 
@@ -160,7 +180,6 @@ public class GoogleCalendarDAOTest {
 		public void testGetEvents_NoMatches_Success() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			mockEvents(calendar.events(), now, after);
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -179,7 +198,6 @@ public class GoogleCalendarDAOTest {
 		public void testGetEvents_HasMatches_Success() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			final com.google.api.services.calendar.model.Events modelEvents = mockEvents(calendar.events(), now, after);
 
 			final ArrayList<com.google.api.services.calendar.model.Event> items = new ArrayList<com.google.api.services.calendar.model.Event>();
@@ -201,6 +219,10 @@ public class GoogleCalendarDAOTest {
 			event1.setLocation("myLocation");
 			event1.setId("myId");
 			event1.setUpdated(new DateTime(after.getTime()));
+			final Map<String, String> properties = new HashMap<String, String>();
+			properties.put(GoogleCalendarDAO.PROPERTY_SOURCE_ID, "myUnid");
+			properties.put(GoogleCalendarDAO.PROPERTY_FINGERPRINT, "0123456789abcdef");
+			event1.setExtendedProperties(new com.google.api.services.calendar.model.Event.ExtendedProperties().setPrivate(properties));
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
 
@@ -214,6 +236,8 @@ public class GoogleCalendarDAOTest {
 			assertEquals("myContent", result.getContent());
 			assertEquals("myLocation", result.getLocation());
 			assertEquals("myId", result.getId());
+			assertEquals("myUnid", result.getSourceId());
+			assertEquals("0123456789abcdef", result.getFingerprint());
 			assertEquals(now, result.getStartDateTime());
 			assertEquals(after, result.getEndDateTime());
 			assertEquals(after, result.getLastUpdated());
@@ -230,7 +254,6 @@ public class GoogleCalendarDAOTest {
 		public void testGetEvents_HasMatches_AllDayEvent_Success() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			final com.google.api.services.calendar.model.Events modelEvents = mockEvents(calendar.events(), now, after);
 
 			final ArrayList<com.google.api.services.calendar.model.Event> items = new ArrayList<com.google.api.services.calendar.model.Event>();
@@ -286,7 +309,6 @@ public class GoogleCalendarDAOTest {
 		public void testGetEvents_HasMatches_Reminder_Success() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			final com.google.api.services.calendar.model.Events modelEvents = mockEvents(calendar.events(), now, after);
 
 			final ArrayList<com.google.api.services.calendar.model.Event> items = new ArrayList<com.google.api.services.calendar.model.Event>();
@@ -327,6 +349,133 @@ public class GoogleCalendarDAOTest {
 
 		}
 
+		/**
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testGetEvents_MultiplePages_AllPagesAreRead() throws Exception {
+
+			mockCalendarList(calendar.calendarList());
+			final com.google.api.services.calendar.model.Events page1 = mockEvents(calendar.events(), now, after);
+			page1.setItems(Arrays.asList(createModelEvent("id1"), createModelEvent("id2")));
+			page1.setNextPageToken("page2");
+
+			final com.google.api.services.calendar.model.Events page2 = new com.google.api.services.calendar.model.Events();
+			page2.setItems(Arrays.asList(createModelEvent("id3")));
+			final com.google.api.services.calendar.Calendar.Events.List list = calendar.events().list("myModelCal-id");
+			doReturn(page1).doReturn(page2).when(list).execute();
+
+			final List<Integer> pageSizes = new ArrayList<Integer>();
+			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
+			dao.getEvents(null, new ICalendarEventConsumer() {
+
+				@Override
+				public void consume(final Collection<CalendarEvent> events) {
+					pageSizes.add(Integer.valueOf(events.size()));
+				}
+			});
+
+			assertEquals(Arrays.asList(Integer.valueOf(2), Integer.valueOf(1)), pageSizes);
+			verify(list, times(1)).setPageToken(null);
+			verify(list, times(1)).setPageToken("page2");
+			verify(list, times(2)).setFields(GoogleCalendarDAO.EVENTS_FIELDS);
+		}
+
+		/**
+		 * The partial response holds every field converted, compared by patches or merged into the mirror.
+		 */
+		@Test
+		public void testEventFields_ContainAllFieldsRead() {
+			final List<String> fields = Arrays.asList(GoogleCalendarDAO.EVENT_FIELDS.split(","));
+			for (final String field : new String[] { "id", "status", "summary", "description", "location", "updated", "start", "end", "reminders",
+					"extendedProperties/private" }) {
+				assertTrue(field, fields.contains(field));
+			}
+			assertTrue(GoogleCalendarDAO.EVENTS_FIELDS.contains("nextPageToken"));
+			assertTrue(GoogleCalendarDAO.EVENTS_FIELDS.contains("nextSyncToken"));
+		}
+
+		/**
+		 * The calendar id is looked up once and then taken from the cache, even by a new DAO.
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testGetEvents_CalendarIdIsCached_CalendarListIsReadOnce() throws Exception {
+
+			mockCalendarList(calendar.calendarList());
+			mockEvents(calendar.events(), now, after);
+
+			new GoogleCalendarDAO(settings).getEvents(null);
+			new GoogleCalendarDAO(settings).getEvents(null);
+
+			verify(calendar.calendarList(), times(1)).list();
+			assertEquals("myModelCal-id", new GoogleCalendarIdCache(settings.getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS)).get("/mycal"));
+		}
+
+		/**
+		 * The calendar list is paged through until the calendar is found.
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testGetEvents_CalendarOnSecondPage_IsFound() throws Exception {
+
+			final com.google.api.services.calendar.Calendar.CalendarList.List list = mockCalendarList(calendar.calendarList(), "mycal");
+			final com.google.api.services.calendar.model.CalendarList page1 = new com.google.api.services.calendar.model.CalendarList();
+			page1.setItems(Arrays.asList(new com.google.api.services.calendar.model.CalendarListEntry().setSummary("othercal").setId("othercal-id")));
+			page1.setNextPageToken("page2");
+			final com.google.api.services.calendar.model.CalendarList page2 = list.execute();
+			doReturn(page1).doReturn(page2).when(list).execute();
+			mockEvents(calendar.events(), now, after);
+
+			new GoogleCalendarDAO(settings).getEvents(null);
+
+			verify(list, times(1)).setPageToken("page2");
+			verify(calendar.events(), times(1)).list("myModelCal-id");
+		}
+
+		/**
+		 * A cached calendar id unknown to Google is forgotten and the calendar is looked up again.
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testGetEvents_CachedCalendarIdIsStale_CalendarIsLookedUpAgain() throws Exception {
+
+			final GoogleCalendarIdCache cache = new GoogleCalendarIdCache(settings.getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS));
+			cache.put("/mycal", "stale-id");
+			mockCalendarList(calendar.calendarList());
+			final com.google.api.services.calendar.Calendar.Events events = calendar.events();
+			mockEvents(events, now, after);
+
+			final com.google.api.services.calendar.Calendar.Events.List staleList = mock(com.google.api.services.calendar.Calendar.Events.List.class);
+			doReturn(staleList).when(events).list("stale-id");
+			doReturn(staleList).when(staleList).setTimeMin(Matchers.any(DateTime.class));
+			doReturn(staleList).when(staleList).setTimeMax(Matchers.any(DateTime.class));
+			doReturn(staleList).when(staleList).setMaxResults(Integer.valueOf(250));
+			doReturn(staleList).when(staleList).setPageToken(Matchers.any(String.class));
+			doReturn(staleList).when(staleList).setOrderBy(Matchers.eq("starttime"));
+			doReturn(staleList).when(staleList).setSingleEvents(Boolean.TRUE);
+			doReturn(staleList).when(staleList).setFields(GoogleCalendarDAO.EVENTS_FIELDS);
+			doThrow(new GoogleJsonResponseException(new HttpResponseException.Builder(404, "Not Found", new HttpHeaders()), null)).when(staleList).execute();
+
+			new GoogleCalendarDAO(settings).getEvents(null);
+
+			verify(events, times(1)).list("myModelCal-id");
+			assertEquals("myModelCal-id", new GoogleCalendarIdCache(settings.getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS)).get("/mycal"));
+		}
+
+		private com.google.api.services.calendar.model.Event createModelEvent(final String id) {
+			final com.google.api.services.calendar.model.Event event = new com.google.api.services.calendar.model.Event();
+			event.setId(id);
+			event.setStart(new com.google.api.services.calendar.model.EventDateTime().setDateTime(new DateTime(now.getTime())));
+			event.setEnd(new com.google.api.services.calendar.model.EventDateTime().setDateTime(new DateTime(after.getTime())));
+			event.setUpdated(new DateTime(after.getTime()));
+			return event;
+		}
+
 		private static com.google.api.services.calendar.model.Events mockEvents(final com.google.api.services.calendar.Calendar.Events events, final Calendar start, final Calendar end)
 				throws IOException {
 			final com.google.api.services.calendar.Calendar.Events.List list = mock(com.google.api.services.calendar.Calendar.Events.List.class);
@@ -343,9 +492,12 @@ public class GoogleCalendarDAOTest {
 
 			doReturn(list).when(list).setTimeMin(Matchers.eq(new DateTime(start.getTime(), start.getTimeZone())));
 			doReturn(list).when(list).setTimeMax(Matchers.eq(new DateTime(end.getTime(), end.getTimeZone())));
-			doReturn(list).when(list).setMaxResults(Integer.valueOf(65535));
+			// the page size is not configured in the mocked settings, so the default is used
+			doReturn(list).when(list).setMaxResults(Integer.valueOf(250));
+			doReturn(list).when(list).setPageToken(Matchers.any(String.class));
 			doReturn(list).when(list).setOrderBy(Matchers.eq("starttime"));
 			doReturn(list).when(list).setSingleEvents(Boolean.TRUE);
+			doReturn(list).when(list).setFields(GoogleCalendarDAO.EVENTS_FIELDS);
 
 			final com.google.api.services.calendar.model.Events modelEvents = new com.google.api.services.calendar.model.Events();
 			doReturn(modelEvents).when(list).execute();
@@ -366,6 +518,10 @@ public class GoogleCalendarDAOTest {
 		@Rule
 		public ExpectedException expected = ExpectedException.none();
 
+		/** */
+		@Rule
+		public TemporaryFolder folder = new TemporaryFolder();
+
 		private final Calendar now = Calendar.getInstance();
 		private final Calendar after = Calendar.getInstance();
 
@@ -379,34 +535,35 @@ public class GoogleCalendarDAOTest {
 		@Before
 		public void before() {
 			settings = mock(Settings.class);
+			doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
 			calendar = mock(com.google.api.services.calendar.Calendar.class);
 			myEvent = mock(CalendarEvent.class);
 			after.setTimeInMillis(now.getTimeInMillis() + 1);
 
 			// create an event to be inserted
-			doReturn(now).when(myEvent).getStartDateTime();
-			doReturn(after).when(myEvent).getEndDateTime();
+			doReturn(Long.valueOf(now.getTimeInMillis())).when(myEvent).getStartMillis();
+			doReturn(Long.valueOf(after.getTimeInMillis())).when(myEvent).getEndMillis();
+			doReturn(now.getTimeZone()).when(myEvent).getTimeZone();
 			doReturn("myTitle").when(myEvent).getTitle();
 			doReturn("myContent").when(myEvent).getContent();
 			doReturn("myLocation").when(myEvent).getLocation();
 			doReturn("myId").when(myEvent).getId();
+			doReturn("myUnid/20120502").when(myEvent).getSourceId();
+			doReturn("fedcba9876543210").when(myEvent).computeFingerprint();
 
 			doReturn(new Integer(15)).when(settings).getReminderMinutes();
 			doReturn("mycal").when(settings).getGoogleCalendarName();
 
 			// Settings creates Calendar (service)
 			doReturn(calendar).when(settings).getGoogleCalendarService();
+			doReturn(new File(folder.getRoot(), Constants.FILENAME_GOOGLE_CALENDAR_IDS)).when(settings).getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS);
 
 			// Calendar (Service) creates
 			// --> CalendarList
-			// --> Calendars
 			// --> Events
 			final com.google.api.services.calendar.Calendar.CalendarList calendarList = mock(com.google.api.services.calendar.Calendar.CalendarList.class);
 			doReturn(calendarList).when(calendar).calendarList();
 
-			final com.google.api.services.calendar.Calendar.Calendars calendars = mock(com.google.api.services.calendar.Calendar.Calendars.class);
-			doReturn(calendars).when(calendar).calendars();
-
 			final com.google.api.services.calendar.Calendar.Events events = mock(com.google.api.services.calendar.Calendar.Events.class);
 			doReturn(events).when(calendar).events();
 		}
@@ -419,7 +576,6 @@ public class GoogleCalendarDAOTest {
 		public void testInsert_Success() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			mockEvents_checkConversion(calendar.events(), myEvent);
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -439,19 +595,14 @@ public class GoogleCalendarDAOTest {
 
 			// Calendar (Service) creates
 			// --> CalendarList
-			// --> Calendars
 			// --> Events
 			final com.google.api.services.calendar.Calendar.CalendarList calendarList = mock(com.google.api.services.calendar.Calendar.CalendarList.class);
 			doReturn(calendarList).when(calendar).calendarList();
 
-			final com.google.api.services.calendar.Calendar.Calendars calendars = mock(com.google.api.services.calendar.Calendar.Calendars.class);
-			doReturn(calendars).when(calendar).calendars();
-
 			final com.google.api.services.calendar.Calendar.Events events = mock(com.google.api.services.calendar.Calendar.Events.class);
 			doReturn(events).when(calendar).events();
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			mockEvents_InsertThrowsIOException(calendar.events());
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -470,7 +621,6 @@ public class GoogleCalendarDAOTest {
 		public void testInsert_Insert_ExecuteThrowsIOException() throws Exception {
 
 			mockCalendarList(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			mockEvents_InsertExecuteThrowsIOException(calendar.events());
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -489,7 +639,6 @@ public class GoogleCalendarDAOTest {
 		public void testInsert_CalendarList_List_ThrowsIOException() throws Exception {
 
 			mockCalendarList_listThrowsIOException(calendar.calendarList());
-			mockCalendars(calendar.calendars());
 			//			mockEvents_checkConversion(calendar.events());
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -507,8 +656,7 @@ public class GoogleCalendarDAOTest {
 		@Test
 		public void testInsert_CalendarList_List_CalendarIsNull() throws Exception {
 
-			mockCalendarList(calendar.calendarList());
-			mockCalendars_GetExecuteReturnsNull(calendar.calendars());
+			mockCalendarList(calendar.calendarList(), "othercal");
 			//			mockEvents_checkConversion(calendar.events());
 
 			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
@@ -527,14 +675,18 @@ public class GoogleCalendarDAOTest {
 					assertEquals(2, invocation.getArguments().length);
 					final com.google.api.services.calendar.model.Event event = (com.google.api.services.calendar.model.Event) invocation.getArguments()[1];
 					assertEquals(sourceEvent.getContent(), event.getDescription());
-					assertEquals(sourceEvent.getEndDateTime().getTimeInMillis(), event.getEnd().getDateTime().getValue());
+					assertEquals(sourceEvent.getEndMillis(), event.getEnd().getDateTime().getValue());
 					assertEquals(sourceEvent.getLocation(), event.getLocation());
-					assertEquals(sourceEvent.getStartDateTime().getTimeInMillis(), event.getStart().getDateTime().getValue());
+					assertEquals(sourceEvent.getStartMillis(), event.getStart().getDateTime().getValue());
 					assertEquals(sourceEvent.getTitle(), event.getSummary());
+					assertEquals(sourceEvent.getSourceId(), event.getExtendedProperties().getPrivate().get(GoogleCalendarDAO.PROPERTY_SOURCE_ID));
+					assertEquals(sourceEvent.computeFingerprint(), event.getExtendedProperties().getPrivate().get(GoogleCalendarDAO.PROPERTY_FINGERPRINT));
 					return insert;
 				}
 			}).when(events).insert(Matchers.eq("myModelCal-id"), Matchers.any(com.google.api.services.calendar.model.Event.class));
 
+			doReturn(insert).when(insert).setFields(GoogleCalendarDAO.MUTATION_FIELDS);
+
 			final com.google.api.services.calendar.model.Event modelEvent = new com.google.api.services.calendar.model.Event();
 			doReturn(modelEvent).when(insert).execute();
 			modelEvent.setId("myModelEvent-id");
@@ -547,18 +699,10 @@ public class GoogleCalendarDAOTest {
 		private static void mockEvents_InsertExecuteThrowsIOException(final com.google.api.services.calendar.Calendar.Events events) throws IOException {
 			final com.google.api.services.calendar.Calendar.Events.Insert insert = mock(com.google.api.services.calendar.Calendar.Events.Insert.class);
 			doReturn(insert).when(events).insert(Matchers.eq("myModelCal-id"), Matchers.any(com.google.api.services.calendar.model.Event.class));
+			doReturn(insert).when(insert).setFields(GoogleCalendarDAO.MUTATION_FIELDS);
 			doThrow(new IOException("IOException from insert.execute()")).when(insert).execute();
 		}
 
-		private void mockCalendars_GetExecuteReturnsNull(final com.google.api.services.calendar.Calendar.Calendars calendars) throws IOException {
-			// Calendars create Get
-			final com.google.api.services.calendar.Calendar.Calendars.Get get = mock(com.google.api.services.calendar.Calendar.Calendars.Get.class);
-			doReturn(get).when(calendars).get(Matchers.eq("mycal-id"));
-
-			// Get creates model.Calendar but does not find a calendar with given id
-			doReturn(null).when(get).execute();
-		}
-
 
 		private static void mockCalendarList_listThrowsIOException(final com.google.api.services.calendar.Calendar.CalendarList calendarList) throws IOException {
 			// CalendarList creates a list with all Google calendars
@@ -567,4 +711,117 @@ public class GoogleCalendarDAOTest {
 
 	}
 
+	/**
+	 * Tests sending mutations in batches
+	 *
+	 * @author fjakop
+	 */
+	public static class BatchTest {
+
+		private static final String BOUNDARY = "batch_boundary";
+
+		/** */
+		@Rule
+		public TemporaryFolder folder = new TemporaryFolder();
+
+		private final List<String> batchResponses = new ArrayList<String>();
+		private int batches;
+
+		private Settings settings;
+
+		/** */
+		@Before
+		public void before() {
+			final MockHttpTransport transport = new MockHttpTransport() {
+
+				@Override
+				public LowLevelHttpRequest buildRequest(final String method, final String url) {
+					return new MockLowLevelHttpRequest(url) {
+
+						@Override
+						public MockLowLevelHttpResponse execute() {
+							if (url.contains("/calendarList")) {
+								return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(
+										"{\"items\":[{\"id\":\"myModelCal-id\",\"summary\":\"mycal\"}]}");
+							}
+							return new MockLowLevelHttpResponse().setContentType("multipart/mixed; boundary=" + BOUNDARY).setContent(batchResponses.get(batches++));
+						}
+					};
+				}
+			};
+
+			settings = mock(Settings.class);
+			doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
+			doReturn(new com.google.api.services.calendar.Calendar.Builder(transport, new JacksonFactory(), null).setApplicationName("test").build()).when(settings)
+					.getGoogleCalendarService();
+			doReturn(new File(folder.getRoot(), Constants.FILENAME_GOOGLE_CALENDAR_IDS)).when(settings).getSettingsFile(Constants.FILENAME_GOOGLE_CALENDAR_IDS);
+			doReturn("mycal").when(settings).getGoogleCalendarName();
+			doReturn(Integer.valueOf(2)).when(settings).getGoogleBatchSize();
+		}
+
+		/**
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testFlush_ServerErrorInBatch_MutationIsSentAgain() throws Exception {
+			batchResponses.add(createBatchResponse(createPart(200, "{\"id\":\"a\"}"), createPart(503, createError(503, "backendError"))));
+			batchResponses.add(createBatchResponse(createPart(200, "{\"id\":\"b\"}")));
+
+			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
+			dao.insert(createEvent("a"));
+			dao.insert(createEvent("b"));
+
+			assertTrue(dao.flush().isEmpty());
+			assertEquals(2, batches);
+		}
+
+		/**
+		 *
+		 * @throws Exception
+		 */
+		@Test
+		public void testFlush_ForbiddenInBatch_FailsWithoutRetry() throws Exception {
+			batchResponses.add(createBatchResponse(createPart(200, "{\"id\":\"a\"}"), createPart(403, createError(403, "forbidden"))));
+
+			final IGoogleCalendarDAO dao = new GoogleCalendarDAO(settings);
+			final CalendarEvent forbidden = createEvent("b");
+			dao.insert(createEvent("a"));
+			dao.insert(forbidden);
+
+			final Map<CalendarEvent, SynchronisationException> failures = dao.flush();
+			assertEquals(1, failures.size());
+			assertTrue(failures.containsKey(forbidden));
+			assertEquals(1, batches);
+		}
+
+		private static CalendarEvent createEvent(final String title) {
+			final CalendarEvent event = new CalendarEvent();
+			event.setTitle(title);
+			event.setSourceId(title);
+			event.setEventType(EventType.NORMAL_EVENT);
+			event.setStartMillis(0);
+			event.setEndMillis(3600000);
+			return event;
+		}
+
+		private static String createError(final int code, final String reason) {
+			return "{\"error\":{\"errors\":[{\"domain\":\"global\",\"reason\":\"" + reason + "\",\"message\":\"" + reason + "\"}],\"code\":" + code
+					+ ",\"message\":\"" + reason + "\"}}";
+		}
+
+		private static String createPart(final int statusCode, final String body) {
+			return "Content-Type: application/http\r\n\r\nHTTP/1.1 " + statusCode + " Status\r\nContent-Type: application/json; charset=UTF-8\r\nContent-Length: "
+					+ body.length() + "\r\n\r\n" + body + "\r\n";
+		}
+
+		private static String createBatchResponse(final String... parts) {
+			final StringBuilder response = new StringBuilder();
+			for (final String part : parts) {
+				response.append("--").append(BOUNDARY).append("\r\n").append(part);
+			}
+			return response.append("--").append(BOUNDARY).append("--\r\n").toString();
+		}
+	}
+
 }
@@ -27,10 +27,16 @@
 package de.jakop.ngcalsync.google;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import org.junit.Test;
 
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.settings.Settings;
 
 /**
@@ -38,6 +44,7 @@ import de.jakop.ngcalsync.settings.Settings;
  * @author fjakop
  *
  */
+@SuppressWarnings("nls")
 public class GoogleCalendarDaoFactoryTest {
 
 	/**
@@ -46,7 +53,30 @@ public class GoogleCalendarDaoFactoryTest {
 	 */
 	@Test
 	public void testCreateDao() throws Exception {
-		final IGoogleCalendarDAO dao = new GoogleCalendarDaoFactory().createGoogleCalendarDao(mock(Settings.class));
+		final IGoogleCalendarDAO dao = new GoogleCalendarDaoFactory().createGoogleCalendarDao(createSettings("alice", 0));
 		assertEquals(GoogleCalendarDAO.class, dao.getClass());
 	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetRateLimit_SameAccount_Shared() throws Exception {
+		final GoogleCalendarDaoFactory factory = new GoogleCalendarDaoFactory();
+
+		final TokenBucket rateLimit = factory.getRateLimit(createSettings("alice", 10));
+		assertNotNull(rateLimit);
+		assertSame(rateLimit, factory.getRateLimit(createSettings("alice", 10)));
+		assertNotSame(rateLimit, factory.getRateLimit(createSettings("bob", 10)));
+		assertNull(factory.getRateLimit(createSettings("alice", 0)));
+	}
+
+	private static Settings createSettings(final String account, final int requestsPerSecond) {
+		final Settings settings = mock(Settings.class);
+		doReturn(account).when(settings).getGoogleAccountName();
+		doReturn(Integer.valueOf(requestsPerSecond)).when(settings).getGoogleRequestsPerSecond();
+		doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
+		return settings;
+	}
 }
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class GoogleCalendarIdCacheTest {
+
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGet_NoFile_IsUnknown() throws Exception {
+		assertNull(new GoogleCalendarIdCache(new File(folder.getRoot(), "ids.properties")).get("me@example.com/mycal"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testPutAndRemove_AreWrittenToFile() throws Exception {
+		final File file = new File(folder.getRoot(), "ids.properties");
+		final GoogleCalendarIdCache cache = new GoogleCalendarIdCache(file);
+
+		cache.put("me@example.com/mycal", "mycal-id");
+		cache.put("me@example.com/othercal", "othercal-id");
+		assertEquals("mycal-id", new GoogleCalendarIdCache(file).get("me@example.com/mycal"));
+
+		cache.remove("me@example.com/mycal");
+		final GoogleCalendarIdCache reloaded = new GoogleCalendarIdCache(file);
+		assertNull(reloaded.get("me@example.com/mycal"));
+		assertEquals("othercal-id", reloaded.get("me@example.com/othercal"));
+	}
+
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class GoogleEventMirrorTest {
+
+	private File eventsFile;
+	private File syncTokenFile;
+	private File journalFile;
+
+	/** */
+	@Before
+	public void before() throws Exception {
+		eventsFile = File.createTempFile(getClass().getName() + ".events.", null);
+		syncTokenFile = File.createTempFile(getClass().getName() + ".synctoken.", null);
+		journalFile = File.createTempFile(getClass().getName() + ".journal.", null);
+		FileUtils.deleteQuietly(journalFile);
+	}
+
+	/** */
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(eventsFile);
+		FileUtils.deleteQuietly(syncTokenFile);
+		FileUtils.deleteQuietly(journalFile);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000), createEvent("id2", 3000, 4000)));
+		mirror.setSyncToken("token");
+		mirror.save();
+
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+
+		assertEquals("token", loaded.getSyncToken());
+		final List<Event> events = loaded.getEvents(new DateTime(0), new DateTime(5000));
+		assertEquals(2, events.size());
+		assertEquals("id1", events.get(0).getId());
+		assertEquals(1000, events.get(0).getStart().getDateTime().getValue());
+		assertEquals("id2", events.get(1).getId());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad_CalendarIdIsKept() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.setCalendarId("calendar1");
+		mirror.setSyncToken("token");
+		mirror.save();
+
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+		assertEquals("calendar1", loaded.getCalendarId());
+
+		loaded.clear();
+		assertNull(loaded.getCalendarId());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_Unreadable_MirrorIsEmptyWithoutToken() throws Exception {
+		FileUtils.writeStringToFile(eventsFile, "{ no json");
+		FileUtils.writeStringToFile(syncTokenFile, "token");
+
+		final GoogleEventMirror mirror = createMirror();
+		mirror.load();
+
+		assertNull(mirror.getSyncToken());
+		assertTrue(mirror.getEvents(new DateTime(0), new DateTime(5000)).isEmpty());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSave_Loaded_ChangesAreAppendedToJournal() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000), createEvent("id2", 3000, 4000)));
+		mirror.setSyncToken("token1");
+		mirror.save();
+		final String snapshot = FileUtils.readFileToString(eventsFile);
+
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+		final Event cancelled = new Event();
+		cancelled.setId("id1");
+		cancelled.setStatus("cancelled");
+		loaded.merge(Arrays.asList(cancelled));
+		loaded.setSyncToken("token2");
+		loaded.save();
+
+		assertEquals(snapshot, FileUtils.readFileToString(eventsFile));
+		assertEquals(1, FileUtils.readLines(journalFile).size());
+
+		final GoogleEventMirror replayed = createMirror();
+		replayed.load();
+		assertEquals("token2", replayed.getSyncToken());
+		final List<Event> events = replayed.getEvents(new DateTime(0), new DateTime(5000));
+		assertEquals(1, events.size());
+		assertEquals("id2", events.get(0).getId());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_TornJournalLine_IsCutOff() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000)));
+		mirror.setSyncToken("token1");
+		mirror.save();
+		mirror.merge(Arrays.asList(createEvent("id2", 3000, 4000)));
+		mirror.setSyncToken("token2");
+		mirror.save();
+		final long journalLength = journalFile.length();
+		FileUtils.writeStringToFile(journalFile, "{\"items\":[{\"id\":\"id3\"", true);
+
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+
+		assertEquals("token2", loaded.getSyncToken());
+		assertEquals(2, loaded.getEvents(new DateTime(0), new DateTime(5000)).size());
+		assertEquals(journalLength, journalFile.length());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSave_JournalLongerThanSnapshot_IsCompacted() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000), createEvent("id2", 1000, 2000), createEvent("id3", 1000, 2000)));
+		mirror.setSyncToken("token3");
+		mirror.save();
+
+		boolean journaled = false;
+		for (int i = 4; i < 20; i++) {
+			mirror.merge(Arrays.asList(createEvent("id" + i, 1000, 2000)));
+			mirror.setSyncToken("token" + i);
+			mirror.save();
+			if (journalFile.exists()) {
+				journaled = true;
+			} else if (journaled) {
+				break;
+			}
+		}
+
+		assertTrue(journaled);
+		assertFalse(journalFile.exists());
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+		assertEquals(mirror.getSyncToken(), loaded.getSyncToken());
+		assertEquals(mirror.getEvents(new DateTime(0), new DateTime(5000)).size(), loaded.getEvents(new DateTime(0), new DateTime(5000)).size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSave_Cleared_WritesSnapshot() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000), createEvent("id2", 1000, 2000), createEvent("id3", 1000, 2000)));
+		mirror.setSyncToken("token1");
+		mirror.save();
+		mirror.merge(Arrays.asList(createEvent("id4", 3000, 4000)));
+		mirror.save();
+		assertTrue(journalFile.exists());
+
+		mirror.clear();
+		mirror.merge(Arrays.asList(createEvent("id5", 1000, 2000)));
+		mirror.setSyncToken("token2");
+		mirror.save();
+
+		assertFalse(journalFile.exists());
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+		assertEquals("token2", loaded.getSyncToken());
+		final List<Event> events = loaded.getEvents(new DateTime(0), new DateTime(5000));
+		assertEquals(1, events.size());
+		assertEquals("id5", events.get(0).getId());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testMerge_CancelledEventsAreRemoved() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(createEvent("id1", 1000, 2000), createEvent("id2", 3000, 4000)));
+
+		final Event cancelled = new Event();
+		cancelled.setId("id1");
+		cancelled.setStatus("cancelled");
+		mirror.merge(Arrays.asList(cancelled, createEvent("id2", 3500, 4000)));
+
+		final List<Event> events = mirror.getEvents(new DateTime(0), new DateTime(5000));
+		assertEquals(1, events.size());
+		assertEquals(3500, events.get(0).getStart().getDateTime().getValue());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetEvents_SelectsOverlappingEvents() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.merge(Arrays.asList(//
+				createEvent("before", 0, 1000), //
+				createEvent("overlapsStart", 500, 1500), //
+				createEvent("inside", 1200, 1800), //
+				createEvent("overlapsEnd", 1900, 2500), //
+				createEvent("after", 2000, 3000)));
+
+		final List<Event> events = mirror.getEvents(new DateTime(1000), new DateTime(2000));
+
+		assertEquals(3, events.size());
+		assertEquals("overlapsStart", events.get(0).getId());
+		assertEquals("inside", events.get(1).getId());
+		assertEquals("overlapsEnd", events.get(2).getId());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testMerge_EventsOutsideWindowAreNotKept() throws Exception {
+		final GoogleEventMirror mirror = createMirror();
+		mirror.setWindow(1000, 2000);
+		mirror.merge(Arrays.asList(createEvent("before", 0, 1000), createEvent("inside", 1200, 1800), createEvent("after", 2000, 3000)));
+		mirror.setSyncToken("token1");
+		mirror.save();
+
+		// an event moved out of the window is forgotten
+		mirror.merge(Arrays.asList(createEvent("inside", 2500, 2600)));
+		mirror.setSyncToken("token2");
+		mirror.save();
+
+		final GoogleEventMirror loaded = createMirror();
+		loaded.load();
+		assertEquals("token2", loaded.getSyncToken());
+		assertTrue(loaded.getEvents(new DateTime(0), new DateTime(5000)).isEmpty());
+		assertTrue(loaded.covers(1000, 2000));
+		assertFalse(loaded.covers(1000, 2001));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_SnapshotWithoutWindow_MirrorIsEmptyWithoutToken() throws Exception {
+		FileUtils.writeStringToFile(eventsFile, "{\"items\":[]}");
+		FileUtils.writeStringToFile(syncTokenFile, "token\n");
+
+		final GoogleEventMirror mirror = createMirror();
+		mirror.load();
+
+		assertNull(mirror.getSyncToken());
+	}
+
+	private GoogleEventMirror createMirror() {
+		return new GoogleEventMirror(eventsFile, syncTokenFile, journalFile, new JacksonFactory());
+	}
+
+	private static Event createEvent(final String id, final long start, final long end) {
+		final Event event = new Event();
+		event.setId(id);
+		event.setStart(new EventDateTime().setDateTime(new DateTime(start)));
+		event.setEnd(new EventDateTime().setDateTime(new DateTime(end)));
+		return event;
+	}
+
+}
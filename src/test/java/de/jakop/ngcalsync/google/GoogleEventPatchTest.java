@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.api.client.util.Data;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Event.ExtendedProperties;
+import com.google.api.services.calendar.model.Event.Reminders;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.EventReminder;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class GoogleEventPatchTest {
+
+	/** */
+	@Test
+	public void testOf_Unchanged_Null() {
+		final Event current = createEvent(15);
+		// Google drops an empty description
+		current.setDescription(null);
+		final Event target = createEvent(15);
+		target.setDescription("");
+
+		assertNull(GoogleEventPatch.of(current, target));
+	}
+
+	/** */
+	@Test
+	public void testOf_SummaryChanged_OnlySummaryPatched() {
+		final Event target = createEvent(15);
+		target.setSummary("other");
+
+		final Event patch = GoogleEventPatch.of(createEvent(15), target);
+
+		assertNotNull(patch);
+		assertEquals("other", patch.getSummary());
+		assertNull(patch.getDescription());
+		assertNull(patch.getLocation());
+		assertNull(patch.getStart());
+		assertNull(patch.getEnd());
+		assertNull(patch.getReminders());
+	}
+
+	/** */
+	@Test
+	public void testOf_LocationRemoved_ExplicitNull() {
+		final Event target = createEvent(15);
+		target.setLocation(null);
+
+		final Event patch = GoogleEventPatch.of(createEvent(15), target);
+
+		assertTrue(Data.isNull(patch.getLocation()));
+	}
+
+	/** */
+	@Test
+	public void testAll_ClearedFields_ExplicitNull() {
+		final Event target = createEvent(15);
+		target.setDescription(null);
+		target.setLocation(null);
+
+		final Event patch = GoogleEventPatch.all(target);
+
+		assertEquals(target.getSummary(), patch.getSummary());
+		assertTrue(Data.isNull(patch.getDescription()));
+		assertTrue(Data.isNull(patch.getLocation()));
+		assertTrue(Data.isNull(patch.getStart().getDate()));
+		assertEquals(target.getStart().getDateTime(), patch.getStart().getDateTime());
+		assertEquals(target.getReminders(), patch.getReminders());
+	}
+
+	/** */
+	@Test
+	public void testOf_ReminderChanged_RemindersPatched() {
+		final Event patch = GoogleEventPatch.of(createEvent(15), createEvent(30));
+
+		assertEquals(Integer.valueOf(30), patch.getReminders().getOverrides().get(0).getMinutes());
+		assertNull(patch.getStart());
+	}
+
+	/** */
+	@Test
+	public void testOf_AllDay_ComparedByDate() {
+		final Calendar day = Calendar.getInstance();
+		day.set(2012, 4, 2, 0, 0, 0);
+		final Event current = createEvent(15);
+		current.setStart(new EventDateTime().setDate(DateTime.parseRfc3339("2012-05-02")));
+		final Event target = createEvent(15);
+		target.setStart(new EventDateTime().setDate(new DateTime(day.getTime())));
+
+		assertNull(GoogleEventPatch.of(current, target));
+
+		// turning the event into a timed one removes the date
+		target.setStart(new EventDateTime().setDateTime(new DateTime(day.getTime())));
+		final Event patch = GoogleEventPatch.of(current, target);
+		assertTrue(Data.isNull(patch.getStart().getDate()));
+		assertEquals(day.getTimeInMillis(), patch.getStart().getDateTime().getValue());
+	}
+
+	/** */
+	@Test
+	public void testOf_PrivatePropertyChanged_OnlyChangedPropertyPatched() {
+		final Event current = createEvent(15);
+		final Map<String, String> currentProperties = new HashMap<String, String>();
+		currentProperties.put("other", "value");
+		current.setExtendedProperties(new ExtendedProperties().setPrivate(currentProperties));
+		final Event target = createEvent(15);
+		target.setExtendedProperties(new ExtendedProperties().setPrivate(Collections.singletonMap("ngcalsync.sourceId", "unid1")));
+
+		final Event patch = GoogleEventPatch.of(current, target);
+
+		assertEquals(Collections.singletonMap("ngcalsync.sourceId", "unid1"), patch.getExtendedProperties().getPrivate());
+		assertNull(patch.getSummary());
+
+		currentProperties.put("ngcalsync.sourceId", "unid1");
+		assertNull(GoogleEventPatch.of(current, target));
+	}
+
+	private static Event createEvent(final int reminderMinutes) {
+		final Event event = new Event();
+		event.setSummary("summary");
+		event.setDescription("description");
+		event.setLocation("location");
+		event.setStart(new EventDateTime().setDateTime(new DateTime(1000)));
+		event.setEnd(new EventDateTime().setDateTime(new DateTime(2000)));
+		final Reminders reminders = new Reminders();
+		reminders.setUseDefault(Boolean.FALSE);
+		reminders.setOverrides(Arrays.asList(new EventReminder().setMinutes(Integer.valueOf(reminderMinutes)).setMethod("popup")));
+		event.setReminders(reminders);
+		return event;
+	}
+
+}
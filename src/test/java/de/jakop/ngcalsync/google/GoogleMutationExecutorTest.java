@@ -0,0 +1,158 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class GoogleMutationExecutorTest {
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubmit_ServerErrorAndRateLimit_Retried() throws Exception {
+		final AbstractGoogleClientRequest<?> request = mock(AbstractGoogleClientRequest.class);
+		doThrow(createException(503, null)).doThrow(createException(403, "rateLimitExceeded")).doReturn(null).when(request).execute();
+
+		final SyncMetrics metrics = new SyncMetrics();
+		final GoogleMutationExecutor executor = new GoogleMutationExecutor(2, 0, 1, metrics);
+		executor.submit(request, new CalendarEvent());
+
+		assertTrue(executor.await().isEmpty());
+		verify(request, times(3)).execute();
+		metrics.finish(true);
+		assertEquals(Long.valueOf(2), metrics.getLastRunCounters().get("google_retries"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubmit_Forbidden_FailsWithoutRetry() throws Exception {
+		final AbstractGoogleClientRequest<?> failing = mock(AbstractGoogleClientRequest.class);
+		doThrow(createException(403, "forbidden")).when(failing).execute();
+		final AbstractGoogleClientRequest<?> succeeding = mock(AbstractGoogleClientRequest.class);
+		final CalendarEvent failingEvent = new CalendarEvent();
+
+		final GoogleMutationExecutor executor = new GoogleMutationExecutor(2, 0, 1, new SyncMetrics());
+		executor.submit(failing, failingEvent);
+		executor.submit(succeeding, new CalendarEvent());
+		final Map<CalendarEvent, SynchronisationException> failures = executor.await();
+
+		assertEquals(1, failures.size());
+		assertTrue(failures.get(failingEvent).getCause() instanceof GoogleJsonResponseException);
+		verify(failing, times(1)).execute();
+		verify(succeeding, times(1)).execute();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubmit_PersistentServerError_GivesUp() throws Exception {
+		final AbstractGoogleClientRequest<?> request = mock(AbstractGoogleClientRequest.class);
+		doThrow(createException(500, null)).when(request).execute();
+		final CalendarEvent event = new CalendarEvent();
+
+		final GoogleMutationExecutor executor = new GoogleMutationExecutor(1, 0, 1, new SyncMetrics());
+		executor.submit(request, event);
+
+		assertEquals(Arrays.asList(event), Arrays.asList(executor.await().keySet().toArray()));
+		verify(request, times(GoogleMutationExecutor.MAX_ATTEMPTS)).execute();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubmit_RateLimit_RequestsAreDelayed() throws Exception {
+		final GoogleMutationExecutor executor = new GoogleMutationExecutor(4, 100, 1, new SyncMetrics());
+		final long start = System.nanoTime();
+		// the first 100 requests pass at once, the next 20 take 200 ms
+		for (int i = 0; i < 120; i++) {
+			final AbstractGoogleClientRequest<?> request = mock(AbstractGoogleClientRequest.class);
+			doReturn(null).when(request).execute();
+			executor.submit(request, new CalendarEvent());
+		}
+		assertTrue(executor.await().isEmpty());
+
+		assertTrue((System.nanoTime() - start) / 1000000 >= 150);
+	}
+
+	/** */
+	@Test
+	public void testIsRetryable() {
+		assertTrue(GoogleMutationExecutor.isRetryable(createException(500, null)));
+		assertTrue(GoogleMutationExecutor.isRetryable(createException(429, null)));
+		assertTrue(GoogleMutationExecutor.isRetryable(createException(403, "userRateLimitExceeded")));
+		assertFalse(GoogleMutationExecutor.isRetryable(createException(403, "forbidden")));
+		assertFalse(GoogleMutationExecutor.isRetryable(createException(404, null)));
+		assertFalse(GoogleMutationExecutor.isRetryable(new IOException()));
+	}
+
+	private static GoogleJsonResponseException createException(final int statusCode, final String reason) {
+		final GoogleJsonError details = new GoogleJsonError();
+		details.setCode(statusCode);
+		if (reason != null) {
+			final ErrorInfo error = new ErrorInfo();
+			error.setReason(reason);
+			details.setErrors(Arrays.asList(error));
+		}
+		return new GoogleJsonResponseException(new HttpResponseException.Builder(statusCode, "status " + statusCode, new HttpHeaders()), details);
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnRouteParams;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class HttpTransportFactoryTest {
+
+	private Settings settings;
+
+	/** */
+	@Before
+	public void before() {
+		settings = mock(Settings.class);
+		doReturn(HttpTransportType.NET).when(settings).getGoogleHttpTransport();
+		doReturn(Integer.valueOf(4)).when(settings).getGoogleHttpConnections();
+		doReturn("").when(settings).getProxyHost();
+		doReturn("").when(settings).getProxyPort();
+		doReturn("").when(settings).getProxyUserName();
+		doReturn("").when(settings).getProxyPassword();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetHttpTransport_Net_IsNetTransport() throws Exception {
+		assertEquals(NetHttpTransport.class, new HttpTransportFactory().getHttpTransport(settings).getClass());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetHttpTransport_PooledWithProxy_ProxyAndPoolAreConfigured() throws Exception {
+		doReturn(HttpTransportType.POOLED).when(settings).getGoogleHttpTransport();
+		doReturn("proxy.example.com").when(settings).getProxyHost();
+		doReturn("3128").when(settings).getProxyPort();
+		doReturn("user").when(settings).getProxyUserName();
+		doReturn("secret").when(settings).getProxyPassword();
+
+		final HttpTransport transport = new HttpTransportFactory().getHttpTransport(settings);
+
+		assertEquals(ApacheHttpTransport.class, transport.getClass());
+		final DefaultHttpClient client = (DefaultHttpClient) ((ApacheHttpTransport) transport).getHttpClient();
+		assertEquals(new HttpHost("proxy.example.com", 3128), ConnRouteParams.getDefaultProxy(client.getParams()));
+		assertEquals(4, ConnManagerParams.getMaxTotalConnections(client.getParams()));
+		assertEquals(4, ConnManagerParams.getMaxConnectionsPerRoute(client.getParams())
+				.getMaxForRoute(new HttpRoute(new HttpHost("www.googleapis.com", 443, "https"))));
+		assertNotNull(client.getCredentialsProvider().getCredentials(new AuthScope("proxy.example.com", 3128)));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetHttpTransport_SameConfiguration_IsShared() throws Exception {
+		final HttpTransportFactory factory = new HttpTransportFactory();
+		final HttpTransport transport = factory.getHttpTransport(settings);
+
+		assertSame(transport, factory.getHttpTransport(settings));
+
+		doReturn("proxy.example.com").when(settings).getProxyHost();
+		doReturn("3128").when(settings).getProxyPort();
+		assertNotSame(transport, factory.getHttpTransport(settings));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetHttpTransport_OtherProxyPassword_IsNotShared() throws Exception {
+		doReturn(HttpTransportType.POOLED).when(settings).getGoogleHttpTransport();
+		doReturn("proxy.example.com").when(settings).getProxyHost();
+		doReturn("3128").when(settings).getProxyPort();
+		doReturn("alice").when(settings).getProxyUserName();
+		doReturn("secret1").when(settings).getProxyPassword();
+		final HttpTransportFactory factory = new HttpTransportFactory();
+		final HttpTransport transport = factory.getHttpTransport(settings);
+
+		doReturn("secret2").when(settings).getProxyPassword();
+		assertNotSame(transport, factory.getHttpTransport(settings));
+
+		doReturn("secret1").when(settings).getProxyPassword();
+		assertSame(transport, factory.getHttpTransport(settings));
+	}
+
+}
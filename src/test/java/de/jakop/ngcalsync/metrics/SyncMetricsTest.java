@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.jakop.ngcalsync.metrics.SyncMetrics.Counter;
+import de.jakop.ngcalsync.metrics.SyncMetrics.Phase;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class SyncMetricsTest {
+
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** */
+	@Test
+	public void testFinish_RecordedMetrics_AreLastRunsMetrics() {
+		final SyncMetrics metrics = new SyncMetrics();
+
+		metrics.start();
+		metrics.record(Phase.NOTES_READ, TimeUnit.MILLISECONDS.toNanos(20), 100);
+		metrics.record(Phase.NOTES_READ, TimeUnit.MILLISECONDS.toNanos(22), 10);
+		metrics.record(Phase.INSERT, TimeUnit.MILLISECONDS.toNanos(5), 3);
+		metrics.count(Counter.GOOGLE_REQUESTS);
+		metrics.count(Counter.GOOGLE_BYTES, 512);
+		metrics.finish(true);
+
+		// a new run does not change the last one's metrics
+		metrics.start();
+		metrics.count(Counter.GOOGLE_REQUESTS);
+
+		assertEquals(1, metrics.getRuns());
+		assertTrue(metrics.isLastRunSuccessful());
+		final Map<String, Long> phaseMillis = metrics.getLastRunPhaseMillis();
+		assertEquals(Long.valueOf(42), phaseMillis.get("notes_read"));
+		assertEquals(Long.valueOf(5), phaseMillis.get("insert"));
+		assertEquals(Long.valueOf(0), phaseMillis.get("update"));
+		assertEquals(Long.valueOf(110), metrics.getLastRunPhaseEvents().get("notes_read"));
+		assertEquals(Long.valueOf(1), metrics.getLastRunCounters().get("google_requests"));
+		assertEquals(Long.valueOf(512), metrics.getLastRunCounters().get("google_bytes"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testAppend_WritesOneJsonLinePerRun() throws Exception {
+		final SyncMetrics metrics = new SyncMetrics();
+		final File file = new File(folder.getRoot(), "metrics.jsonl");
+
+		metrics.start();
+		metrics.record(Phase.DIFF, 0, 7);
+		metrics.count(Counter.NOTES_DOCUMENT_OPENS, 3);
+		metrics.finish(true);
+		metrics.append(file);
+		metrics.start();
+		metrics.finish(false);
+		metrics.append(file);
+
+		final List<String> lines = FileUtils.readLines(file);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("{\"start\":"));
+		assertTrue(lines.get(0), lines.get(0).contains("\"successful\":true"));
+		assertTrue(lines.get(0), lines.get(0).contains("\"diff\":{\"millis\":0,\"events\":7}"));
+		assertTrue(lines.get(0), lines.get(0).contains("\"notes_document_opens\":3"));
+		assertTrue(lines.get(1), lines.get(1).contains("\"successful\":false"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testAppend_FileTooLarge_IsRolledOver() throws Exception {
+		final SyncMetrics metrics = new SyncMetrics();
+		final File file = new File(folder.getRoot(), "metrics.jsonl");
+		final File backup = new File(folder.getRoot(), "metrics.jsonl.1");
+		final String previous = StringUtils.repeat('x', (int) SyncMetrics.MAX_FILE_BYTES + 1);
+		FileUtils.writeStringToFile(file, previous);
+		FileUtils.writeStringToFile(backup, "oldest");
+
+		metrics.start();
+		metrics.finish(true);
+		metrics.append(file);
+
+		assertEquals(previous, FileUtils.readFileToString(backup));
+		assertEquals(1, FileUtils.readLines(file).size());
+	}
+
+}
@@ -27,14 +27,22 @@
 package de.jakop.ngcalsync.notes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -44,9 +52,11 @@ import org.mockito.MockitoAnnotations;
 import de.jakop.lotus.domingo.DDatabase;
 import de.jakop.lotus.domingo.DDocument;
 import de.jakop.lotus.domingo.DView;
+import de.jakop.lotus.domingo.DViewColumn;
 import de.jakop.lotus.domingo.DViewEntry;
 import de.jakop.lotus.domingo.util.GregorianDateTime;
 import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
 
 /**
@@ -70,6 +80,7 @@ public class NotesCalendarDAOTest {
 	public void before() {
 		MockitoAnnotations.initMocks(this);
 		when(openDatabaseStrategy.openDatabase(Matchers.anyString(), Matchers.anyString())).thenReturn(database);
+		when(openDatabaseStrategy.openExclusiveDatabase(Matchers.anyString(), Matchers.anyString())).thenReturn(database);
 		when(database.getView(Matchers.eq("Calendar"))).thenReturn(view);
 
 	}
@@ -130,4 +141,314 @@ public class NotesCalendarDAOTest {
 		assertEquals(starts.get(1).getTime(), entries.get(0).getStartDateTime().getTime());
 		assertEquals(starts.get(2).getTime(), entries.get(1).getStartDateTime().getTime());
 	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testStateStore_UnchangedDocumentIsNotConvertedAgain() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+
+		final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+		final GregorianDateTime endDateTime = new GregorianDateTime(Calendar.getInstance());
+		startDateTime.set(2012, 4, 2, 2, 22);
+		endDateTime.set(2012, 4, 2, 3, 0);
+		final Calendar lastModified = Calendar.getInstance();
+
+		final DDocument document = mock(DDocument.class);
+		when(document.getUniversalID()).thenReturn("unid1");
+		when(document.getLastModified()).thenReturn(lastModified);
+		when(document.getItemValueString("Form")).thenReturn("Appointment");
+		when(document.getItemValueString("AppointmentType")).thenReturn("3");
+		when(document.getItemValueString("Subject")).thenReturn("mySubject");
+		when(document.getItemValue("EndDateTime")).thenReturn(Arrays.asList(endDateTime));
+		when(document.getItemValue("StartDateTime")).thenReturn(Arrays.asList(startDateTime));
+
+		final DViewEntry viewEntry = mock(DViewEntry.class);
+		when(viewEntry.getDocument()).thenReturn(document);
+
+		final File file = File.createTempFile(getClass().getName(), null);
+		FileUtils.deleteQuietly(file);
+		try {
+			for (int run = 0; run < 2; run++) {
+				when(view.getAllEntriesByKey(start, end, false)).thenReturn(Arrays.asList(viewEntry).iterator());
+				final INotesCalendarDAO dao = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, new NotesStateStore(file), 1);
+				final List<CalendarEvent> entries = dao.getEntries(new ICalendarEventFilter[] {});
+
+				assertEquals(1, entries.size());
+				assertEquals("mySubject", entries.get(0).getTitle());
+				assertEquals(startDateTime.getTime(), entries.get(0).getStartDateTime().getTime());
+			}
+		} finally {
+			FileUtils.deleteQuietly(file);
+		}
+
+		verify(document, times(1)).getItemValueString("Subject");
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelConversion_ThreadsAreKeptUntilClose() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+
+		final List<DViewEntry> viewEntries = new ArrayList<DViewEntry>();
+		for (int i = 0; i < 10; i++) {
+			final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+			final GregorianDateTime endDateTime = new GregorianDateTime(Calendar.getInstance());
+			startDateTime.set(2012, 4, 2 + i, 10, 0);
+			endDateTime.set(2012, 4, 2 + i, 11, 0);
+
+			final String unid = "unid" + i;
+			final DDocument document = mock(DDocument.class);
+			when(document.getUniversalID()).thenReturn(unid);
+			when(document.getItemValueString("Form")).thenReturn("Appointment");
+			when(document.getItemValueString("AppointmentType")).thenReturn("3");
+			when(document.getItemValue("EndDateTime")).thenReturn(Arrays.asList(endDateTime));
+			when(document.getItemValue("StartDateTime")).thenReturn(Arrays.asList(startDateTime));
+			when(database.getDocumentByUNID(unid)).thenReturn(document);
+
+			final DViewEntry viewEntry = mock(DViewEntry.class);
+			when(viewEntry.getUniversalID()).thenReturn(unid);
+			viewEntries.add(viewEntry);
+		}
+
+		final NotesCalendarDAO dao = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 2);
+		for (int run = 0; run < 3; run++) {
+			when(view.getAllEntriesByKey(start, end, false)).thenReturn(viewEntries.iterator());
+			assertEquals(10, dao.getEntries(new ICalendarEventFilter[] {}).size());
+		}
+		dao.close();
+
+		// the DAO's database and one of its own per conversion thread, not per call
+		verify(openDatabaseStrategy, times(1)).openDatabase(Matchers.anyString(), Matchers.anyString());
+		verify(openDatabaseStrategy, atMost(2)).openExclusiveDatabase(Matchers.anyString(), Matchers.anyString());
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("notes-conversion-")) {
+				thread.join(5000);
+				assertFalse(thread.isAlive());
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelConversion_SameResultAsSequential() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+
+		final List<DViewEntry> viewEntries = new ArrayList<DViewEntry>();
+		final List<DDocument> documents = new ArrayList<DDocument>();
+		for (int i = 0; i < 20; i++) {
+			final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+			final GregorianDateTime endDateTime = new GregorianDateTime(Calendar.getInstance());
+			// events on the same day to check the order of equal start times
+			startDateTime.set(2012, 4, 2 + i / 2, 10, 0);
+			endDateTime.set(2012, 4, 2 + i / 2, 11, 0);
+
+			final String unid = "unid" + i;
+			final DDocument document = mock(DDocument.class);
+			when(document.getUniversalID()).thenReturn(unid);
+			// every fifth document is no appointment
+			when(document.getItemValueString("Form")).thenReturn(i % 5 == 4 ? "Memo" : "Appointment");
+			when(document.getItemValueString("AppointmentType")).thenReturn("3");
+			when(document.getItemValueString("Subject")).thenReturn("subject" + i);
+			when(document.getItemValue("EndDateTime")).thenReturn(Arrays.asList(endDateTime));
+			when(document.getItemValue("StartDateTime")).thenReturn(Arrays.asList(startDateTime));
+			when(database.getDocumentByUNID(unid)).thenReturn(document);
+			documents.add(document);
+
+			final DViewEntry viewEntry = mock(DViewEntry.class);
+			when(viewEntry.getDocument()).thenReturn(document);
+			when(viewEntry.getUniversalID()).thenReturn(unid);
+			viewEntries.add(viewEntry);
+			if (i % 3 == 0) {
+				// documents may appear more than once in the view
+				viewEntries.add(viewEntry);
+			}
+		}
+
+		when(view.getAllEntriesByKey(start, end, false)).thenReturn(viewEntries.iterator());
+		final List<CalendarEvent> sequential = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 1).getEntries(new ICalendarEventFilter[] {});
+
+		when(view.getAllEntriesByKey(start, end, false)).thenReturn(viewEntries.iterator());
+		final List<CalendarEvent> parallel = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 4).getEntries(new ICalendarEventFilter[] {});
+
+		assertEquals(16, sequential.size());
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).getTitle(), parallel.get(i).getTitle());
+			assertEquals(sequential.get(i).getStartDateTime().getTime(), parallel.get(i).getStartDateTime().getTime());
+		}
+		for (int i = 0; i < documents.size(); i++) {
+			// appointments are converted once sequential and once parallel
+			verify(documents.get(i), times(i % 5 == 4 ? 0 : 2)).getItemValueString("Subject");
+		}
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testViewColumns_DocumentOnlyOpenedForBody() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+
+		mockViewColumns();
+
+		final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+		final GregorianDateTime endDateTime = new GregorianDateTime(Calendar.getInstance());
+		startDateTime.set(2012, 4, 2, 2, 22);
+		endDateTime.set(2012, 4, 2, 3, 0);
+		final Calendar lastModified = Calendar.getInstance();
+
+		final DDocument document = mock(DDocument.class);
+		when(document.getItemValueString("Body")).thenReturn(" myBody ");
+		final DViewEntry viewEntry = mock(DViewEntry.class);
+		when(viewEntry.getUniversalID()).thenReturn("unid1");
+		when(viewEntry.getDocument()).thenReturn(document);
+		when(viewEntry.getColumnValues()).thenReturn(Arrays.<Object> asList("Appointment", "mySubject", "myLocation", "myRoom", "1", Double.valueOf(3), startDateTime,
+				endDateTime, "", "", lastModified));
+
+		when(view.getAllEntriesByKey(start, end, false)).thenReturn(Arrays.asList(viewEntry, viewEntry).iterator());
+		List<CalendarEvent> entries = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 1, true, false).getEntries(new ICalendarEventFilter[] {});
+
+		assertEquals(1, entries.size());
+		final CalendarEvent event = entries.get(0);
+		assertEquals("unid1", event.getId());
+		assertEquals("mySubject", event.getTitle());
+		assertEquals("", event.getContent());
+		assertEquals("L: myLocation R: myRoom", event.getLocation());
+		assertTrue(event.isPrivate());
+		assertEquals(EventType.MEETING, event.getEventType());
+		assertEquals(startDateTime.getTime(), event.getStartDateTime().getTime());
+		assertEquals(endDateTime.getTime(), event.getEndDateTime().getTime());
+		assertEquals(lastModified.getTime(), event.getLastUpdated().getTime());
+		verify(viewEntry, never()).getDocument();
+
+		when(view.getAllEntriesByKey(start, end, false)).thenReturn(Arrays.asList(viewEntry).iterator());
+		entries = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 1, true, true).getEntries(new ICalendarEventFilter[] {});
+
+		assertEquals("myBody", entries.get(0).getContent());
+		verify(document, times(1)).getItemValueString("Body");
+		verify(document, never()).getItemValueString("Subject");
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testViewColumns_StateStore_UnchangedRepeatingDocumentOpenedOnce() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+		mockViewColumns();
+
+		final List<GregorianDateTime> starts = new ArrayList<GregorianDateTime>();
+		for (int day = 2; day <= 20; day++) {
+			final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+			startDateTime.set(2012, 4, day, 9, 0);
+			starts.add(startDateTime);
+		}
+		final GregorianDateTime endDateTime = new GregorianDateTime(Calendar.getInstance());
+		endDateTime.set(2012, 4, 2, 9, 15);
+		final Calendar lastModified = Calendar.getInstance();
+
+		final DDocument document = mock(DDocument.class);
+		when(document.getItemValueString("Body")).thenReturn("myBody");
+		final DViewEntry viewEntry = mock(DViewEntry.class);
+		when(viewEntry.getUniversalID()).thenReturn("unid1");
+		when(viewEntry.getDocument()).thenReturn(document);
+		when(viewEntry.getColumnValues()).thenReturn(Arrays.<Object> asList("Appointment", "standup", "", "", "", Double.valueOf(3), starts.get(0), endDateTime, "1",
+				starts, lastModified));
+
+		final File file = File.createTempFile(getClass().getName(), null);
+		FileUtils.deleteQuietly(file);
+		try {
+			for (int run = 0; run < 2; run++) {
+				// a repeating document has a view entry per occurrence
+				final List<DViewEntry> viewEntries = new ArrayList<DViewEntry>();
+				for (int i = 0; i < starts.size(); i++) {
+					viewEntries.add(viewEntry);
+				}
+				when(view.getAllEntriesByKey(start, end, false)).thenReturn(viewEntries.iterator());
+				final INotesCalendarDAO dao = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, new NotesStateStore(file), 1, true, true);
+				final List<CalendarEvent> entries = dao.getEntries(new ICalendarEventFilter[] {});
+
+				assertEquals(starts.size(), entries.size());
+				assertEquals("myBody", entries.get(0).getContent());
+				assertEquals(starts.get(5).getTime(), entries.get(5).getStartDateTime().getTime());
+			}
+		} finally {
+			FileUtils.deleteQuietly(file);
+		}
+
+		verify(viewEntry, times(1)).getDocument();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testViewColumns_ColumnsMissing_DocumentsAreRead() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		final Calendar end = Calendar.getInstance();
+		start.set(2012, 4, 1);
+		end.set(2012, 4, 30);
+		when(view.getColumns()).thenReturn(new ArrayList<DViewColumn>());
+
+		final GregorianDateTime startDateTime = new GregorianDateTime(Calendar.getInstance());
+		startDateTime.set(2012, 4, 2, 2, 22);
+		final DDocument document = mock(DDocument.class);
+		when(document.getItemValueString("Form")).thenReturn("Appointment");
+		when(document.getItemValueString("AppointmentType")).thenReturn("3");
+		when(document.getItemValueString("Subject")).thenReturn("mySubject");
+		when(document.getItemValue("EndDateTime")).thenReturn(Arrays.asList(startDateTime));
+		when(document.getItemValue("StartDateTime")).thenReturn(Arrays.asList(startDateTime));
+		final DViewEntry viewEntry = mock(DViewEntry.class);
+		when(viewEntry.getDocument()).thenReturn(document);
+		when(view.getAllEntriesByKey(start, end, false)).thenReturn(Arrays.asList(viewEntry).iterator());
+
+		final List<CalendarEvent> entries = new NotesCalendarDAO(openDatabaseStrategy, "", "", start, end, null, 1, true, false).getEntries(new ICalendarEventFilter[] {});
+
+		assertEquals(1, entries.size());
+		assertEquals("mySubject", entries.get(0).getTitle());
+		verify(viewEntry, never()).getColumnValues();
+	}
+	private void mockViewColumns() {
+		final List<String> items = Arrays.asList("Form", "Subject", "Location", "Room", "OrgConfidential", "AppointmentType", "StartDateTime", "EndDateTime", "Repeats",
+				"CalendarDateTime", "@Modified");
+		final List<DViewColumn> columns = new ArrayList<DViewColumn>();
+		for (final String item : items) {
+			final DViewColumn column = mock(DViewColumn.class);
+			if (item.startsWith("@")) {
+				when(column.getFormula()).thenReturn(item);
+			} else {
+				when(column.getItemName()).thenReturn(item);
+			}
+			columns.add(column);
+		}
+		when(view.getColumns()).thenReturn(columns);
+	}
+
 }
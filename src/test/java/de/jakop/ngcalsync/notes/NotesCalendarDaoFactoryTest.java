@@ -27,10 +27,12 @@
 package de.jakop.ngcalsync.notes;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import org.junit.Test;
 
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.settings.Settings;
 
 /**
@@ -46,7 +48,9 @@ public class NotesCalendarDaoFactoryTest {
 	 */
 	@Test
 	public void testCreateDao() throws Exception {
-		final INotesCalendarDAO dao = new NotesCalendarDaoFactory(mock(IOpenDatabaseStrategy.class)).createNotesCalendarDao(mock(Settings.class));
+		final Settings settings = mock(Settings.class);
+		doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
+		final INotesCalendarDAO dao = new NotesCalendarDaoFactory(mock(IOpenDatabaseStrategy.class)).createNotesCalendarDao(settings);
 		assertEquals(NotesCalendarDAO.class, dao.getClass());
 	}
 }
@@ -0,0 +1,321 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.notes.NotesDocumentState.Occurrence;
+import de.jakop.ngcalsync.settings.PrivacySettings;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class NotesStateStoreTest {
+
+	private File file;
+
+	/** */
+	@Before
+	public void before() throws Exception {
+		file = File.createTempFile(getClass().getName(), null);
+		FileUtils.deleteQuietly(file);
+	}
+
+	/** */
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(file);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.put(createState("unid2", 2000, Arrays.asList(new Occurrence(5000, 2012, 4, 2))));
+		store.save();
+
+		final NotesStateStore loaded = new NotesStateStore(file);
+		loaded.load();
+
+		assertEquals(2, loaded.size());
+		final NotesDocumentState state1 = loaded.get("unid1", createCalendar(1000));
+		assertNotNull(state1);
+		assertNull(state1.getOccurrences());
+		assertEquals("title unid1", state1.getEvent().getTitle());
+		assertEquals(EventType.MEETING, state1.getEvent().getEventType());
+		assertEquals(10000, state1.getEvent().getStartDateTime().getTimeInMillis());
+		assertNull(state1.getEvent().getLocation());
+
+		final NotesDocumentState state2 = loaded.get("unid2", createCalendar(2000));
+		assertEquals(1, state2.getOccurrences().size());
+		assertEquals(2012, state2.getOccurrences().get(0).getYear());
+		assertEquals(4, state2.getOccurrences().get(0).getMonth());
+		assertEquals(2, state2.getOccurrences().get(0).getDay());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSave_FieldsNotTransferred_NotStored() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file, new PrivacySettings(false, false, true));
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.save();
+
+		final String content = FileUtils.readFileToString(file, "ISO-8859-1");
+		assertFalse(content.contains("title unid1"));
+		assertFalse(content.contains("content"));
+
+		final NotesStateStore loaded = new NotesStateStore(file, new PrivacySettings(false, false, true));
+		loaded.load();
+		final NotesDocumentState state = loaded.get("unid1", createCalendar(1000));
+		assertNull(state.getEvent().getTitle());
+		assertNull(state.getEvent().getContent());
+		assertEquals(EventType.MEETING, state.getEvent().getEventType());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_OtherPrivacySettings_StoreIsRebuilt() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.save();
+
+		final NotesStateStore loaded = new NotesStateStore(file, new PrivacySettings(true, false, true));
+		loaded.load();
+		assertEquals(0, loaded.size());
+		loaded.put(createState("unid2", 2000, null));
+		loaded.save();
+
+		assertFalse(FileUtils.readFileToString(file, "ISO-8859-1").contains("content"));
+		final NotesStateStore reloaded = new NotesStateStore(file, new PrivacySettings(true, false, true));
+		reloaded.load();
+		assertEquals(1, reloaded.size());
+		assertEquals("title unid2", reloaded.get("unid2", createCalendar(2000)).getEvent().getTitle());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testGet_ModifiedDocument_NotServed() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+
+		assertNull(store.get("unid1", createCalendar(1001)));
+		assertNull(store.get("unid1", null));
+		assertNull(store.get("unid2", createCalendar(1000)));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_DamagedRecord_LaterRecordsAreDropped() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.save();
+		final long intactLength = file.length();
+		store.put(createState("unid2", 2000, null));
+		store.save();
+
+		// flip a byte in the second record
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(intactLength + 10);
+			final int b = raf.read();
+			raf.seek(intactLength + 10);
+			raf.write(b ^ 0xff);
+		} finally {
+			raf.close();
+		}
+
+		final NotesStateStore loaded = new NotesStateStore(file);
+		loaded.load();
+		assertEquals(1, loaded.size());
+		assertNotNull(loaded.get("unid1", createCalendar(1000)));
+
+		// the damaged store is rewritten on save
+		loaded.save();
+		assertEquals(intactLength, file.length());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_Truncated_IntactRecordsAreKept() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.put(createState("unid2", 2000, null));
+		store.save();
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(file.length() - 3);
+		} finally {
+			raf.close();
+		}
+
+		final NotesStateStore loaded = new NotesStateStore(file);
+		loaded.load();
+		assertEquals(1, loaded.size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSave_ObsoleteRecords_Compacted() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		store.put(createState("unid1", 1000, null));
+		store.save();
+		final long singleRecordLength = file.length();
+
+		// superseded records are appended until they outnumber the current ones
+		store.put(createState("unid1", 1001, null));
+		store.save();
+		assertTrue(file.length() > singleRecordLength);
+		store.put(createState("unid1", 1002, null));
+		store.save();
+		assertEquals(singleRecordLength, file.length());
+
+		store.retain(Collections.<String> emptyList());
+		store.save();
+
+		final NotesStateStore loaded = new NotesStateStore(file);
+		loaded.load();
+		assertEquals(0, loaded.size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetain_Window_DocumentsOutsideAreKept() throws Exception {
+		final NotesStateStore store = new NotesStateStore(file);
+		store.load();
+		// starts at 10000
+		store.put(createState("unid1", 1000, null));
+		store.put(createState("unid2", 1000, null));
+		// occurs at 50000
+		store.put(createState("unid3", 1000, Arrays.asList(new Occurrence(50000, 2012, 4, 1))));
+
+		store.retain(Arrays.asList("unid1"), 0, 20000);
+		assertNotNull(store.get("unid1", createCalendar(1000)));
+		assertNull(store.get("unid2", createCalendar(1000)));
+		assertNotNull(store.get("unid3", createCalendar(1000)));
+
+		store.retain(Collections.<String> emptyList(), 40000, 60000);
+		assertNotNull(store.get("unid1", createCalendar(1000)));
+		assertNull(store.get("unid3", createCalendar(1000)));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateEvents_OccurrencesInWindow() throws Exception {
+		final NotesDocumentState state = createState("unid1", 1000, Arrays.asList(//
+				new Occurrence(1000, 2012, 4, 1), //
+				new Occurrence(2000, 2012, 4, 2), //
+				new Occurrence(3000, 2012, 4, 3)));
+
+		final List<CalendarEvent> events = state.createEvents(createCalendar(1500), createCalendar(3000));
+
+		assertEquals(2, events.size());
+		assertEquals(2, events.get(0).getStartDateTime().get(Calendar.DAY_OF_MONTH));
+		assertEquals(3, events.get(1).getEndDateTime().get(Calendar.DAY_OF_MONTH));
+		assertEquals("unid1/20120502", events.get(0).getSourceId());
+		assertEquals("unid1/20120503", events.get(1).getSourceId());
+		// the stored event is not modified
+		assertEquals(10000, state.getEvent().getStartDateTime().getTimeInMillis());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateEvents_NotRepeating_SourceIdIsUnid() throws Exception {
+		final List<CalendarEvent> events = createState("unid1", 1000, null).createEvents(createCalendar(0), createCalendar(30000));
+
+		assertEquals(1, events.size());
+		assertEquals("unid1", events.get(0).getSourceId());
+	}
+
+	private static NotesDocumentState createState(final String unid, final long lastModified, final List<Occurrence> occurrences) {
+		final CalendarEvent event = new CalendarEvent();
+		event.setId(unid);
+		event.setTitle("title " + unid);
+		event.setContent("content");
+		event.setEventType(EventType.MEETING);
+		event.setStartDateTime(createCalendar(10000));
+		event.setEndDateTime(createCalendar(20000));
+		event.setLastUpdated(createCalendar(lastModified));
+		return new NotesDocumentState(unid, lastModified, event, occurrences);
+	}
+
+	private static Calendar createCalendar(final long millis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis);
+		return calendar;
+	}
+
+}
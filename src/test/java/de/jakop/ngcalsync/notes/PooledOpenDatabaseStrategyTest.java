@@ -0,0 +1,177 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.notes;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jakop.lotus.domingo.DDatabase;
+import de.jakop.lotus.domingo.DNotesRuntimeException;
+import de.jakop.lotus.domingo.DSession;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class PooledOpenDatabaseStrategyTest {
+
+	private PooledOpenDatabaseStrategy strategy;
+	private DSession session;
+	private DDatabase database;
+	private DDatabase reopenedDatabase;
+
+	/**
+	 * @throws Exception
+	 */
+	@Before
+	public void before() throws Exception {
+		session = mockSession();
+		database = mockDatabase();
+		reopenedDatabase = mockDatabase();
+		doReturn(database).doReturn(reopenedDatabase).when(session).getDatabase("server", "mail/user.nsf");
+		doReturn(reopenedDatabase).when(session).getDatabase("otherserver", "mail/user.nsf");
+
+		strategy = spy(new PooledOpenDatabaseStrategy());
+		doReturn(session).when(strategy).createSession();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenDatabase_Usable_IsReused() throws Exception {
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+
+		verify(strategy, times(1)).createSession();
+		verify(session, times(1)).getDatabase("server", "mail/user.nsf");
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenDatabase_Broken_IsOpenedAgain() throws Exception {
+		strategy.openDatabase("server", "mail/user.nsf");
+		doThrow(new DNotesRuntimeException("connection lost")).when(database).getFilePath();
+
+		assertSame(reopenedDatabase, strategy.openDatabase("server", "mail/user.nsf"));
+		verify(strategy, times(1)).createSession();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenDatabase_OtherServer_IsOpenedAgain() throws Exception {
+		strategy.openDatabase("server", "mail/user.nsf");
+
+		assertSame(reopenedDatabase, strategy.openDatabase("otherserver", "mail/user.nsf"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenDatabase_SamePathOnTwoServers_BothArePooled() throws Exception {
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		assertSame(reopenedDatabase, strategy.openDatabase("otherserver", "mail/user.nsf"));
+
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		assertSame(reopenedDatabase, strategy.openDatabase("otherserver", "mail/user.nsf"));
+		verify(session, times(1)).getDatabase("server", "mail/user.nsf");
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenExclusiveDatabase_OwnSession_NotPooled() throws Exception {
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		final DSession exclusiveSession = mockSession();
+		final DDatabase exclusiveDatabase = mockDatabase();
+		doReturn(exclusiveDatabase).when(exclusiveSession).getDatabase("server", "mail/user.nsf");
+		doReturn(exclusiveSession).when(strategy).createSession();
+
+		assertSame(exclusiveDatabase, strategy.openExclusiveDatabase("server", "mail/user.nsf"));
+		assertSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		verify(strategy, times(2)).createSession();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testRelease_DatabaseIsOpenedByNewSession() throws Exception {
+		strategy.openDatabase("server", "mail/user.nsf");
+
+		strategy.release();
+
+		assertNotSame(database, strategy.openDatabase("server", "mail/user.nsf"));
+		verify(strategy, times(2)).createSession();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenDatabase_SessionInvalid_NewSessionIsCreated() throws Exception {
+		strategy.openDatabase("server", "mail/user.nsf");
+		doReturn(Boolean.FALSE).when(session).isValid();
+		final DSession newSession = mockSession();
+		doReturn(reopenedDatabase).when(newSession).getDatabase("server", "mail/user.nsf");
+		doReturn(newSession).when(strategy).createSession();
+
+		assertSame(reopenedDatabase, strategy.openDatabase("server", "mail/user.nsf"));
+		verify(strategy, times(2)).createSession();
+	}
+
+	private static DSession mockSession() {
+		final DSession notesSession = mock(DSession.class);
+		doReturn(Boolean.TRUE).when(notesSession).isValid();
+		return notesSession;
+	}
+
+	private static DDatabase mockDatabase() {
+		final DDatabase db = mock(DDatabase.class);
+		doReturn(Boolean.TRUE).when(db).isOpen();
+		doReturn("mail/user.nsf").when(db).getFilePath();
+		return db;
+	}
+
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.sink.ICalendarSink;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class CalendarEventDiffTest {
+
+	private final Calendar lastSync = createCalendar(1000);
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_NoEvents_NothingScheduled() throws Exception {
+		final CalendarEventDiff diff = new CalendarEventDiff(new ArrayList<CalendarEvent>(), new ArrayList<CalendarEvent>(), lastSync);
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertTrue(diff.getToRemove().isEmpty());
+		assertTrue(diff.getToUpdate().isEmpty());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_AddRemoveAndUpdate() throws Exception {
+		final CalendarEvent notesUnchanged = createEvent(EventType.MEETING, 10000, 20000, 500);
+		final CalendarEvent notesModified = createEvent(EventType.MEETING, 30000, 40000, 1500);
+		final CalendarEvent notesNew = createEvent(EventType.MEETING, 50000, 60000, 1500);
+
+		final CalendarEvent googleUnchanged = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500);
+		final CalendarEvent googleModified = createEvent(EventType.NORMAL_EVENT, 30000, 40000, 500);
+		final CalendarEvent googleObsolete = createEvent(EventType.NORMAL_EVENT, 30000, 50000, 500);
+
+		final CalendarEventDiff diff = new CalendarEventDiff(//
+				Arrays.asList(notesUnchanged, notesModified, notesNew), //
+				Arrays.asList(googleUnchanged, googleModified, googleObsolete), lastSync);
+
+		assertEquals(Arrays.asList(notesNew), diff.getToAdd());
+		assertEquals(Arrays.asList(googleObsolete), diff.getToRemove());
+		assertEquals(1, diff.getToUpdate().size());
+		assertSame(googleModified, diff.getToUpdate().get(notesModified));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_AllDayEventsMatchByStartDay() throws Exception {
+		final Calendar notesStart = createCalendar(0);
+		notesStart.set(2012, Calendar.MARCH, 1, 8, 0, 0);
+		final Calendar googleStart = createCalendar(0);
+		googleStart.set(2012, Calendar.MARCH, 1, 0, 0, 0);
+
+		final CalendarEvent notesEvent = createEvent(EventType.ALL_DAY_EVENT, notesStart.getTimeInMillis(), notesStart.getTimeInMillis(), 500);
+		final CalendarEvent googleEvent = createEvent(EventType.ANNIVERSARY, googleStart.getTimeInMillis(), googleStart.getTimeInMillis() + 86400000L, 500);
+		final CalendarEvent googleTimedEvent = createEvent(EventType.NORMAL_EVENT, notesStart.getTimeInMillis(), notesStart.getTimeInMillis(), 500);
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), Arrays.asList(googleEvent, googleTimedEvent), lastSync);
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertEquals(Arrays.asList(googleTimedEvent), diff.getToRemove());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_EventsWithoutDates_NeverMatch() throws Exception {
+		final CalendarEvent notesEvent = new CalendarEvent();
+		final CalendarEvent googleEvent = new CalendarEvent();
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), Arrays.asList(googleEvent), lastSync);
+
+		assertEquals(Arrays.asList(notesEvent), diff.getToAdd());
+		assertEquals(Arrays.asList(googleEvent), diff.getToRemove());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_DuplicateMatch_EventsAreReplaced() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 10000, 20000, 500);
+		final List<CalendarEvent> googleEvents = Arrays.asList(//
+				createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500), //
+				createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500));
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), googleEvents, lastSync);
+
+		assertEquals(Arrays.asList(notesEvent), diff.getToAdd());
+		assertEquals(googleEvents, diff.getToRemove());
+		assertTrue(diff.getToUpdate().isEmpty());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_DuplicateMatchAcrossPages_EventsAreReplaced() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 10000, 20000, 500);
+		final CalendarEventDiff diff = new CalendarEventDiff(lastSync);
+		diff.index(Arrays.asList(notesEvent));
+		diff.consume(Arrays.asList(createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500)));
+		diff.consume(Arrays.asList(createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500)));
+
+		diff.finish();
+
+		assertEquals(Arrays.asList(notesEvent), diff.getToAdd());
+		assertEquals(2, diff.getToRemove().size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_SourceId_RescheduledEventIsUpdated() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 30000, 40000, 1500, "unid1");
+		final CalendarEvent googleEvent = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500, "unid1");
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), Arrays.asList(googleEvent), lastSync);
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertTrue(diff.getToRemove().isEmpty());
+		assertSame(googleEvent, diff.getToUpdate().get(notesEvent));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_SourceId_SameTimeEventsAreToldApart() throws Exception {
+		final CalendarEvent notesEvent1 = createEvent(EventType.MEETING, 10000, 20000, 1500, "unid1");
+		final CalendarEvent notesEvent2 = createEvent(EventType.MEETING, 10000, 20000, 500, "unid2");
+		final CalendarEvent googleEvent1 = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500, "unid1");
+		final CalendarEvent googleEvent2 = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500, "unid2");
+		// a second Google event of the same source, e.g. inserted twice
+		final CalendarEvent googleEvent3 = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500, "unid2");
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent1, notesEvent2), Arrays.asList(googleEvent2, googleEvent1, googleEvent3), lastSync);
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertEquals(Arrays.asList(googleEvent3), diff.getToRemove());
+		assertEquals(1, diff.getToUpdate().size());
+		assertSame(googleEvent1, diff.getToUpdate().get(notesEvent1));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_SourceId_GoogleEventOfOtherSourceIsNotMatchedByTime() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 10000, 20000, 500, "unid1");
+		final CalendarEvent googleEvent = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500, "unid2");
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), Arrays.asList(googleEvent), lastSync);
+
+		assertEquals(Arrays.asList(notesEvent), diff.getToAdd());
+		assertEquals(Arrays.asList(googleEvent), diff.getToRemove());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_GoogleEventWithoutSourceId_UpdatedToRecordIt() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 10000, 20000, 500, "unid1");
+		final CalendarEvent googleEvent = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500);
+
+		final CalendarEventDiff diff = new CalendarEventDiff(Arrays.asList(notesEvent), Arrays.asList(googleEvent), lastSync);
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertTrue(diff.getToRemove().isEmpty());
+		assertSame(googleEvent, diff.getToUpdate().get(notesEvent));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_GoogleEventsConsumedInPages() throws Exception {
+		final CalendarEvent notesEvent = createEvent(EventType.MEETING, 30000, 40000, 500);
+		final CalendarEvent googleObsolete = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500);
+		final CalendarEvent googleMatching = createEvent(EventType.NORMAL_EVENT, 30000, 40000, 500);
+
+		final CalendarEventDiff diff = new CalendarEventDiff(lastSync);
+		diff.index(Arrays.asList(notesEvent));
+		diff.consume(Arrays.asList(googleObsolete));
+		diff.consume(Arrays.asList(googleMatching));
+		diff.finish();
+
+		assertTrue(diff.getToAdd().isEmpty());
+		assertTrue(diff.getToUpdate().isEmpty());
+		assertEquals(Arrays.asList(googleObsolete), diff.getToRemove());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testConsume_SettledGoogleEventsAreReleasedPageByPage() throws Exception {
+		final CalendarEvent notesModified = createEvent(EventType.MEETING, 30000, 40000, 1500, "unid1");
+		final CalendarEvent notesUnchanged = createEvent(EventType.MEETING, 50000, 60000, 500, "unid2");
+		final CalendarEvent notesLegacy = createEvent(EventType.MEETING, 70000, 80000, 500);
+		final CalendarEvent googleModified = createEvent(EventType.NORMAL_EVENT, 30000, 40000, 500, "unid1");
+		final CalendarEvent googleUnchanged = createEvent(EventType.NORMAL_EVENT, 50000, 60000, 500, "unid2");
+		final CalendarEvent googleObsolete = createEvent(EventType.NORMAL_EVENT, 10000, 20000, 500);
+		final CalendarEvent googleLegacy = createEvent(EventType.NORMAL_EVENT, 70000, 80000, 500);
+
+		final ICalendarSink sink = mock(ICalendarSink.class);
+		final CalendarEventDiff diff = new CalendarEventDiff(lastSync, sink);
+		diff.index(Arrays.asList(notesModified, notesUnchanged, notesLegacy));
+		diff.consume(Arrays.asList(googleModified, googleUnchanged, googleObsolete, googleLegacy));
+
+		// the modified event is kept for its update, the one without source id until all pages are consumed
+		verify(sink).release(Arrays.asList(googleUnchanged, googleObsolete));
+
+		diff.finish();
+
+		verifyNoMoreInteractions(sink);
+		assertTrue(diff.getToAdd().isEmpty());
+		assertEquals(Arrays.asList(googleObsolete), diff.getToRemove());
+		assertSame(googleModified, diff.getToUpdate().get(notesModified));
+		assertEquals(1, diff.getToUpdate().size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_MatchesLikePredicate() throws Exception {
+		final List<CalendarEvent> events = new ArrayList<CalendarEvent>();
+		final EventType[] types = EventType.values();
+		for (int i = 0; i < 40; i++) {
+			events.add(createEvent(types[i % types.length], i % 7 * 43200000L, i % 7 * 43200000L + i % 3 * 3600000L, 500));
+		}
+
+		for (final CalendarEvent notesEvent : events) {
+			for (final CalendarEvent googleEvent : events) {
+				final boolean predicateMatch = new CalendarEventEqualsPredicate(notesEvent).evaluate(googleEvent);
+				final boolean keyMatch = CalendarEventKey.of(notesEvent).equals(CalendarEventKey.of(googleEvent));
+				assertEquals(predicateMatch, keyMatch);
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_SameInstantInOtherTimeZone_MatchesLikePredicate() throws Exception {
+		final CalendarEvent berlin = createEvent(EventType.MEETING, 3600000L, 7200000L, 500);
+		berlin.setTimeZoneId("Europe/Berlin");
+		final CalendarEvent berlinToo = createEvent(EventType.MEETING, 3600000L, 7200000L, 500);
+		berlinToo.setTimeZoneId("Europe/Berlin");
+		final CalendarEvent london = createEvent(EventType.MEETING, 3600000L, 7200000L, 500);
+		london.setTimeZoneId("Europe/London");
+
+		assertTrue(new CalendarEventEqualsPredicate(berlin).evaluate(berlinToo));
+		assertEquals(CalendarEventKey.of(berlin), CalendarEventKey.of(berlinToo));
+		assertEquals(CalendarEventKey.of(berlin).hashCode(), CalendarEventKey.of(berlinToo).hashCode());
+
+		assertFalse(new CalendarEventEqualsPredicate(berlin).evaluate(london));
+		assertFalse(CalendarEventKey.of(berlin).equals(CalendarEventKey.of(london)));
+	}
+
+	private static CalendarEvent createEvent(final EventType type, final long start, final long end, final long lastUpdated, final String sourceId) {
+		final CalendarEvent event = createEvent(type, start, end, lastUpdated);
+		event.setSourceId(sourceId);
+		return event;
+	}
+
+	private static CalendarEvent createEvent(final EventType type, final long start, final long end, final long lastUpdated) {
+		final CalendarEvent event = new CalendarEvent();
+		event.setEventType(type);
+		event.setStartDateTime(createCalendar(start));
+		event.setEndDateTime(createCalendar(end));
+		event.setLastUpdated(createCalendar(lastUpdated));
+		return event;
+	}
+
+	private static Calendar createCalendar(final long millis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis);
+		return calendar;
+	}
+
+}
@@ -344,8 +344,8 @@ public class CalendarEventEqualsPredicateTest {
 	public void testFormat() throws Exception {
 		final Calendar date = Calendar.getInstance();
 		date.set(0, 0, 0, 0, 0, 0);
-		when(event.getStartDateTime()).thenReturn(date);
-		when(event.getEndDateTime()).thenReturn(date);
+		when(event.getStartMillis()).thenReturn(Long.valueOf(date.getTimeInMillis()));
+		when(event.getEndMillis()).thenReturn(Long.valueOf(date.getTimeInMillis()));
 		when(event.getEventType()).thenReturn(EventType.REMINDER);
 
 		assertEquals("LocalizedUserStrings.REMINDER: 31.12.0002 00:00 -> 31.12.0002 00:00", CalendarEventEqualsPredicate.format(event));
@@ -356,10 +356,8 @@ public class CalendarEventEqualsPredicateTest {
 	 */
 	@Test
 	public void testFormat_ValuesAreNull() throws Exception {
-		final Calendar date = Calendar.getInstance();
-		date.set(0, 0, 0, 0, 0, 0);
-		when(event.getStartDateTime()).thenReturn(null);
-		when(event.getEndDateTime()).thenReturn(null);
+		when(event.getStartMillis()).thenReturn(Long.valueOf(CalendarEvent.NO_TIME));
+		when(event.getEndMillis()).thenReturn(Long.valueOf(CalendarEvent.NO_TIME));
 		when(event.getEventType()).thenReturn(null);
 
 		assertEquals("null: null -> null", CalendarEventEqualsPredicate.format(event));
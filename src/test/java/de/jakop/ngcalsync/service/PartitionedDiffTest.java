@@ -0,0 +1,285 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.filter.ICalendarEventFilter;
+import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.notes.INotesCalendarDAO;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class PartitionedDiffTest {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	private final Calendar lastSync = createCalendar(2012, Calendar.MAY, 1, 0);
+	private final Calendar start = createCalendar(2012, Calendar.JUNE, 1, 0);
+	private final Calendar end = createCalendar(2012, Calendar.JUNE, 29, 0);
+
+	private final List<CalendarEvent> notesEvents = new ArrayList<CalendarEvent>();
+	private final List<CalendarEvent> googleEvents = new ArrayList<CalendarEvent>();
+
+	private INotesCalendarDAO notesDao;
+	private IGoogleCalendarDAO googleDao;
+
+	/** */
+	@Before
+	public void before() {
+		notesDao = mock(INotesCalendarDAO.class);
+		googleDao = mock(IGoogleCalendarDAO.class);
+
+		// like the calendar view, Notes selects events by their start
+		doAnswer(new Answer<List<CalendarEvent>>() {
+			@Override
+			public List<CalendarEvent> answer(final InvocationOnMock invocation) throws Throwable {
+				final long from = ((Calendar) invocation.getArguments()[1]).getTimeInMillis();
+				final long to = ((Calendar) invocation.getArguments()[2]).getTimeInMillis();
+				final List<CalendarEvent> selected = new ArrayList<CalendarEvent>();
+				for (final CalendarEvent event : notesEvents) {
+					if (event.getStartMillis() >= from && event.getStartMillis() <= to) {
+						selected.add(event);
+					}
+				}
+				return selected;
+			}
+		}).when(notesDao).getEntries((ICalendarEventFilter[]) Matchers.any(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+
+		// Google selects events overlapping the period
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				final long from = ((Calendar) invocation.getArguments()[1]).getTimeInMillis();
+				final long to = ((Calendar) invocation.getArguments()[2]).getTimeInMillis();
+				final List<CalendarEvent> selected = new ArrayList<CalendarEvent>();
+				for (final CalendarEvent event : googleEvents) {
+					if (event.getEndMillis() > from && event.getStartMillis() < to) {
+						selected.add(event);
+					}
+				}
+				((ICalendarEventConsumer) invocation.getArguments()[3]).consume(selected);
+				return null;
+			}
+		}).when(googleDao).getEvents((ICalendarEventFilter[]) Matchers.any(), Matchers.any(Calendar.class), Matchers.any(Calendar.class),
+				Matchers.any(ICalendarEventConsumer.class));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_EventsCrossingSlices_MatchedOnce() throws Exception {
+		// the first slice ends on June 8th
+		final long boundary = createCalendar(2012, Calendar.JUNE, 8, 0).getTimeInMillis();
+		final CalendarEvent notesCrossing = createEvent(EventType.MEETING, boundary - HOUR, boundary + HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent googleCrossing = createEvent(EventType.NORMAL_EVENT, boundary - HOUR, boundary + HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesAllDay = createEvent(EventType.ALL_DAY_EVENT, boundary, boundary, lastSync.getTimeInMillis() + 1);
+		final CalendarEvent googleAllDay = createEvent(EventType.ALL_DAY_EVENT, boundary, boundary + 24 * HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesNew = createEvent(EventType.MEETING, boundary + 10 * 24 * HOUR, boundary + 11 * 24 * HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent googleObsolete = createEvent(EventType.NORMAL_EVENT, boundary - 2 * HOUR, boundary + 2 * HOUR, lastSync.getTimeInMillis());
+		notesEvents.addAll(Arrays.asList(notesCrossing, notesAllDay, notesNew));
+		googleEvents.addAll(Arrays.asList(googleCrossing, googleAllDay, googleObsolete));
+
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, googleDao, null, lastSync, new SyncMetrics());
+		final CalendarEventDiff diff = partitionedDiff.diff(start, end, 7, 2);
+
+		assertTrue(partitionedDiff.getFailures().isEmpty());
+		assertEquals(Arrays.asList(notesNew), diff.getToAdd());
+		assertEquals(Arrays.asList(googleObsolete), diff.getToRemove());
+		assertEquals(1, diff.getToUpdate().size());
+		assertSame(googleAllDay, diff.getToUpdate().get(notesAllDay));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_EventsOutsideOfSlices_BelongToFirstAndLastSlice() throws Exception {
+		final CalendarEvent googleBefore = createEvent(EventType.NORMAL_EVENT, start.getTimeInMillis() - HOUR, start.getTimeInMillis() + HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesAtEnd = createEvent(EventType.MEETING, end.getTimeInMillis(), end.getTimeInMillis() + HOUR, lastSync.getTimeInMillis());
+		googleEvents.add(googleBefore);
+		notesEvents.add(notesAtEnd);
+
+		final CalendarEventDiff diff = new PartitionedDiff(notesDao, googleDao, null, lastSync, new SyncMetrics()).diff(start, end, 7, 4);
+
+		assertEquals(Arrays.asList(notesAtEnd), diff.getToAdd());
+		assertEquals(Arrays.asList(googleBefore), diff.getToRemove());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_PartOfPeriod_EventsOutsideAreLeftToNeighbours() throws Exception {
+		final long partStart = createCalendar(2012, Calendar.JUNE, 8, 0).getTimeInMillis();
+		final long partEnd = createCalendar(2012, Calendar.JUNE, 15, 0).getTimeInMillis();
+		final CalendarEvent googleBefore = createEvent(EventType.NORMAL_EVENT, partStart - HOUR, partStart + HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesAtEnd = createEvent(EventType.MEETING, partEnd, partEnd + HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesAllDay = createEvent(EventType.ALL_DAY_EVENT, partStart, partStart, lastSync.getTimeInMillis() + 1);
+		final CalendarEvent googleAllDay = createEvent(EventType.ALL_DAY_EVENT, partStart, partStart + 24 * HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesInside = createEvent(EventType.MEETING, partStart + 24 * HOUR, partStart + 25 * HOUR, lastSync.getTimeInMillis());
+		googleEvents.addAll(Arrays.asList(googleBefore, googleAllDay));
+		notesEvents.addAll(Arrays.asList(notesAtEnd, notesAllDay, notesInside));
+
+		final CalendarEventDiff diff = new PartitionedDiff(notesDao, googleDao, null, lastSync, new SyncMetrics()).diff(at(partStart), at(partEnd), 0, 1, false, false);
+
+		assertEquals(Arrays.asList(notesInside), diff.getToAdd());
+		assertTrue(diff.getToRemove().isEmpty());
+		assertSame(googleAllDay, diff.getToUpdate().get(notesAllDay));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_SliceFails_OtherSlicesAreMerged() throws Exception {
+		final CalendarEvent notesFirst = createEvent(EventType.MEETING, start.getTimeInMillis() + HOUR, start.getTimeInMillis() + 2 * HOUR, lastSync.getTimeInMillis());
+		final CalendarEvent notesLast = createEvent(EventType.MEETING, end.getTimeInMillis() - 2 * HOUR, end.getTimeInMillis() - HOUR, lastSync.getTimeInMillis());
+		notesEvents.addAll(Arrays.asList(notesFirst, notesLast));
+
+		final SynchronisationException failure = new SynchronisationException("read failure");
+		final INotesCalendarDAO failingDao = mock(INotesCalendarDAO.class);
+		doAnswer(new Answer<List<CalendarEvent>>() {
+			@Override
+			public List<CalendarEvent> answer(final InvocationOnMock invocation) throws Throwable {
+				if (((Calendar) invocation.getArguments()[2]).getTimeInMillis() >= end.getTimeInMillis()) {
+					throw failure;
+				}
+				return notesDao.getEntries(null, (Calendar) invocation.getArguments()[1], (Calendar) invocation.getArguments()[2]);
+			}
+		}).when(failingDao).getEntries((ICalendarEventFilter[]) Matchers.any(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(failingDao, googleDao, null, lastSync, new SyncMetrics());
+		final CalendarEventDiff diff = partitionedDiff.diff(start, end, 7, 2);
+
+		assertEquals(Arrays.asList(notesFirst), diff.getToAdd());
+		assertEquals(Arrays.asList(failure), partitionedDiff.getFailures());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_NotesIsReadByOneSliceAtATime() throws Exception {
+		final AtomicInteger reading = new AtomicInteger();
+		final AtomicInteger maxReading = new AtomicInteger();
+		doAnswer(new Answer<List<CalendarEvent>>() {
+			@Override
+			public List<CalendarEvent> answer(final InvocationOnMock invocation) throws Throwable {
+				final int current = reading.incrementAndGet();
+				maxReading.set(Math.max(maxReading.get(), current));
+				Thread.sleep(20);
+				reading.decrementAndGet();
+				return new ArrayList<CalendarEvent>();
+			}
+		}).when(notesDao).getEntries((ICalendarEventFilter[]) Matchers.any(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, googleDao, null, lastSync, new SyncMetrics());
+		partitionedDiff.diff(start, end, 1, 4);
+
+		assertTrue(partitionedDiff.getFailures().isEmpty());
+		assertEquals(1, maxReading.get());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiff_Consumer_ReceivesSlicesInOrder() throws Exception {
+		final List<CalendarEvent> expected = new ArrayList<CalendarEvent>();
+		for (int week = 0; week < 4; week++) {
+			final long eventStart = start.getTimeInMillis() + (week * 7 + 1) * 24 * HOUR;
+			expected.add(createEvent(EventType.MEETING, eventStart, eventStart + HOUR, lastSync.getTimeInMillis()));
+		}
+		notesEvents.addAll(expected);
+		Collections.reverse(notesEvents);
+
+		final List<CalendarEvent> consumed = new ArrayList<CalendarEvent>();
+		final PartitionedDiff partitionedDiff = new PartitionedDiff(notesDao, googleDao, null, lastSync, new SyncMetrics());
+		partitionedDiff.diff(start, end, 7, 2, true, true, new ICalendarEventDiffConsumer() {
+
+			@Override
+			public void consume(final CalendarEventDiff diff) {
+				assertEquals(1, diff.getToAdd().size());
+				consumed.addAll(diff.getToAdd());
+			}
+		});
+
+		assertTrue(partitionedDiff.getFailures().isEmpty());
+		assertEquals(expected, consumed);
+	}
+
+	private static CalendarEvent createEvent(final EventType type, final long start, final long end, final long lastUpdated) {
+		final CalendarEvent event = new CalendarEvent();
+		event.setEventType(type);
+		event.setStartMillis(start);
+		event.setEndMillis(end);
+		event.setLastUpdatedMillis(lastUpdated);
+		return event;
+	}
+
+	private static Calendar at(final long millis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis);
+		return calendar;
+	}
+
+	private static Calendar createCalendar(final int year, final int month, final int day, final int hour) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month, day, hour, 0, 0);
+		return calendar;
+	}
+
+}
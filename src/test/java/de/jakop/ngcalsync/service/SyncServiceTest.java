@@ -26,8 +26,13 @@
  */
 package de.jakop.ngcalsync.service;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -35,6 +40,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -45,12 +51,16 @@ import org.junit.rules.ExpectedException;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import de.jakop.ngcalsync.calendar.CalendarEvent;
 import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
 import de.jakop.ngcalsync.exception.SynchronisationException;
 import de.jakop.ngcalsync.filter.ICalendarEventFilter;
 import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
 import de.jakop.ngcalsync.notes.INotesCalendarDAO;
 import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
 import de.jakop.ngcalsync.settings.NotesHelper;
@@ -85,7 +95,9 @@ public class SyncServiceTest {
 	@Before
 	public void before() {
 		MockitoAnnotations.initMocks(this);
-		settings = new Settings(mock(IFileAccessor.class), mock(Log.class), mock(NotesHelper.class));
+		settings = spy(new Settings(mock(IFileAccessor.class), mock(Log.class), mock(NotesHelper.class)));
+		doReturn(Integer.valueOf(0)).when(settings).getSyncSliceDays();
+		doReturn(Boolean.FALSE).when(settings).isSyncStreaming();
 		after.setTimeInMillis(now.getTimeInMillis() + 1);
 	}
 
@@ -132,7 +144,7 @@ public class SyncServiceTest {
 		new SyncService().executeSync(notesDAO, googleDAO, filters, null, settings);
 
 		verify(notesDAO, times(1)).getEntries(filters);
-		verify(googleDAO, times(1)).getEvents(filters);
+		verify(googleDAO, times(1)).getEvents(Matchers.eq(filters), Matchers.any(ICalendarEventConsumer.class));
 	}
 
 	/**
@@ -149,12 +161,12 @@ public class SyncServiceTest {
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(new ArrayList<CalendarEvent>()).when(googleDAO).getEvents(null);
+		mockGoogleEvents(new ArrayList<CalendarEvent>());
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] { obfuscator1, obfuscator2 }, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verify(obfuscator1, times(1)).obfuscate(event1);
 		verify(obfuscator1, times(1)).obfuscate(event2);
@@ -168,7 +180,8 @@ public class SyncServiceTest {
 	 * @throws Exception
 	 */
 	@Test
-	public void testExecuteSync_DuplicateEventsMatch_NotAllowed() throws Exception {
+	public void testExecuteSync_DuplicateEventsMatch_EventsAreReplaced() throws Exception {
+		settings.setSyncLastDateTime(now);
 
 		final CalendarEvent event1 = new CalendarEvent();
 		event1.setStartDateTime(now);
@@ -178,16 +191,67 @@ public class SyncServiceTest {
 		event2.setStartDateTime(now);
 		event2.setEndDateTime(now);
 
-		final List<CalendarEvent> events = Arrays.asList(event1, event2);
+		final CalendarEvent googleEvent1 = new CalendarEvent();
+		googleEvent1.setId("google1");
+		googleEvent1.setStartDateTime(now);
+		googleEvent1.setEndDateTime(now);
 
-		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(events).when(googleDAO).getEvents(null);
+		final CalendarEvent googleEvent2 = new CalendarEvent();
+		googleEvent2.setId("google2");
+		googleEvent2.setStartDateTime(now);
+		googleEvent2.setEndDateTime(now);
 
-		thrown.expect(SynchronisationException.class);
-		new SyncService().executeSync(notesDAO, googleDAO, null, null, settings);
+		doReturn(Arrays.asList(event1, event2)).when(notesDAO).getEntries(null);
+		mockGoogleEvents(Arrays.asList(googleEvent1, googleEvent2));
 
-		verifyNoMoreInteractions(notesDAO);
-		verifyNoMoreInteractions(googleDAO);
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+
+		// it is unknown which Google event belongs to which Notes event
+		verify(googleDAO, times(1)).insert(event1);
+		verify(googleDAO, times(1)).insert(event2);
+		verify(googleDAO, times(1)).delete("google1");
+		verify(googleDAO, times(1)).delete("google2");
+		verify(googleDAO, times(0)).update(Matchers.anyString(), (CalendarEvent) Matchers.anyObject());
+
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_SameTimeEventsWithSourceIds_MatchedById() throws Exception {
+		settings.setSyncLastDateTime(now);
+
+		final CalendarEvent event1 = new CalendarEvent();
+		event1.setSourceId("unid1");
+		event1.setStartDateTime(now);
+		event1.setEndDateTime(now);
+
+		final CalendarEvent event2 = new CalendarEvent();
+		event2.setSourceId("unid2");
+		event2.setStartDateTime(now);
+		event2.setEndDateTime(now);
+
+		final CalendarEvent googleEvent1 = new CalendarEvent();
+		googleEvent1.setId("google1");
+		googleEvent1.setSourceId("unid1");
+		googleEvent1.setStartDateTime(now);
+		googleEvent1.setEndDateTime(now);
+
+		final CalendarEvent googleEvent2 = new CalendarEvent();
+		googleEvent2.setId("google2");
+		googleEvent2.setSourceId("unid2");
+		googleEvent2.setStartDateTime(now);
+		googleEvent2.setEndDateTime(now);
+
+		doReturn(Arrays.asList(event1, event2)).when(notesDAO).getEntries(null);
+		mockGoogleEvents(Arrays.asList(googleEvent2, googleEvent1));
+
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+
+		verify(googleDAO, times(0)).insert((CalendarEvent) Matchers.anyObject());
+		verify(googleDAO, times(0)).delete(Matchers.anyString());
 
 	}
 
@@ -222,12 +286,12 @@ public class SyncServiceTest {
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(events).when(googleDAO).getEvents(null);
+		mockGoogleEvents(events);
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] { obfuscator1, obfuscator2 }, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verify(obfuscator1, times(1)).obfuscate(event1);
 		verify(obfuscator1, times(0)).obfuscate(event2);
@@ -248,12 +312,12 @@ public class SyncServiceTest {
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(new ArrayList<CalendarEvent>()).when(googleDAO).getEvents(null);
+		mockGoogleEvents(new ArrayList<CalendarEvent>());
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verify(googleDAO, times(1)).insert(event1);
 		verify(googleDAO, times(1)).insert(event2);
@@ -273,27 +337,27 @@ public class SyncServiceTest {
 		final CalendarEvent event1 = mock(CalendarEvent.class);
 		final CalendarEvent event2 = mock(CalendarEvent.class);
 
-		doReturn(now).when(event1).getStartDateTime();
-		doReturn(now).when(event1).getEndDateTime();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getStartMillis();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getEndMillis();
 		doReturn(EventType.MEETING).when(event1).getEventType();
 
 
-		doReturn(after).when(event1).getLastUpdated();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event1).getLastUpdatedMillis();
 
-		doReturn(after).when(event2).getStartDateTime();
-		doReturn(after).when(event2).getEndDateTime();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getStartMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getEndMillis();
 		doReturn(EventType.NORMAL_EVENT).when(event2).getEventType();
-		doReturn(now).when(event2).getLastUpdated();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event2).getLastUpdatedMillis();
 
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(events).when(googleDAO).getEvents(null);
+		mockGoogleEvents(events);
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verify(googleDAO, times(1)).update(Matchers.anyString(), Matchers.eq(event1));
 
@@ -302,6 +366,52 @@ public class SyncServiceTest {
 
 	}
 
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_ModifiedButContentUnchanged_UpdateSkipped() throws Exception {
+		settings.setSyncLastDateTime(now);
+
+		final CalendarEvent notesEvent1 = new CalendarEvent();
+		notesEvent1.setSourceId("unid1");
+		notesEvent1.setTitle("title");
+		notesEvent1.setStartMillis(1000);
+		notesEvent1.setEndMillis(2000);
+		notesEvent1.setLastUpdatedMillis(after.getTimeInMillis());
+
+		final CalendarEvent notesEvent2 = new CalendarEvent();
+		notesEvent2.setSourceId("unid2");
+		notesEvent2.setTitle("title");
+		notesEvent2.setStartMillis(3000);
+		notesEvent2.setEndMillis(4000);
+		notesEvent2.setLastUpdatedMillis(after.getTimeInMillis());
+
+		final CalendarEvent googleEvent1 = new CalendarEvent();
+		googleEvent1.setId("google1");
+		googleEvent1.setSourceId("unid1");
+		googleEvent1.setFingerprint(notesEvent1.computeFingerprint());
+
+		final CalendarEvent googleEvent2 = new CalendarEvent();
+		googleEvent2.setId("google2");
+		googleEvent2.setSourceId("unid2");
+		googleEvent2.setFingerprint(notesEvent1.computeFingerprint());
+
+		doReturn(Arrays.asList(notesEvent1, notesEvent2)).when(notesDAO).getEntries(null);
+		mockGoogleEvents(Arrays.asList(googleEvent1, googleEvent2));
+
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+
+		verify(googleDAO, times(0)).update("google1", notesEvent1);
+		verify(googleDAO, times(1)).update("google2", notesEvent2);
+		final SyncMetrics metrics = settings.getSyncMetrics();
+		metrics.finish(true);
+		assertEquals(Long.valueOf(1), metrics.getLastRunPhaseEvents().get("update"));
+		assertEquals(Long.valueOf(1), metrics.getLastRunCounters().get("unchanged_updates"));
+
+	}
+
 	/**
 	 *
 	 * @throws Exception
@@ -316,12 +426,12 @@ public class SyncServiceTest {
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(new ArrayList<CalendarEvent>()).when(notesDAO).getEntries(null);
-		doReturn(events).when(googleDAO).getEvents(null);
+		mockGoogleEvents(events);
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verify(googleDAO, times(1)).delete(event1.getId());
 		verify(googleDAO, times(1)).delete(event2.getId());
@@ -341,28 +451,202 @@ public class SyncServiceTest {
 		final CalendarEvent event1 = mock(CalendarEvent.class);
 		final CalendarEvent event2 = mock(CalendarEvent.class);
 
-		doReturn(now).when(event1).getStartDateTime();
-		doReturn(now).when(event1).getEndDateTime();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getStartMillis();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getEndMillis();
 		doReturn(EventType.MEETING).when(event1).getEventType();
-		doReturn(now).when(event1).getLastUpdated();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getLastUpdatedMillis();
 
-		doReturn(after).when(event2).getStartDateTime();
-		doReturn(after).when(event2).getEndDateTime();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getStartMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getEndMillis();
 		doReturn(EventType.NORMAL_EVENT).when(event2).getEventType();
-		doReturn(now).when(event2).getLastUpdated();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event2).getLastUpdatedMillis();
 
 		final List<CalendarEvent> events = Arrays.asList(event1, event2);
 
 		doReturn(events).when(notesDAO).getEntries(null);
-		doReturn(events).when(googleDAO).getEvents(null);
+		mockGoogleEvents(events);
 
 		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
 
 		verify(notesDAO, times(1)).getEntries(null);
-		verify(googleDAO, times(1)).getEvents(null);
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
 
 		verifyNoMoreInteractions(googleDAO);
 
 	}
 
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_BatchedInsertFails_SyncContinues() throws Exception {
+		final CalendarEvent event1 = mock(CalendarEvent.class);
+		final CalendarEvent event2 = mock(CalendarEvent.class);
+
+		doReturn(Arrays.asList(event1, event2)).when(notesDAO).getEntries(null);
+		mockGoogleEvents(new ArrayList<CalendarEvent>());
+		doReturn(Collections.singletonMap(event1, new SynchronisationException("batch failure"))).when(googleDAO).flush();
+
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+
+		verify(googleDAO, times(1)).insert(event1);
+		verify(googleDAO, times(1)).insert(event2);
+		verify(googleDAO, times(1)).flush();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_BatchedDeleteFails_ThrowsException() throws Exception {
+		final CalendarEvent event1 = mock(CalendarEvent.class);
+		doReturn("id1").when(event1).getId();
+
+		doReturn(new ArrayList<CalendarEvent>()).when(notesDAO).getEntries(null);
+		mockGoogleEvents(Arrays.asList(event1));
+		doReturn(Collections.singletonMap(event1, new SynchronisationException("batch failure"))).when(googleDAO).flush();
+
+		thrown.expect(SynchronisationException.class);
+		thrown.expectMessage("batch failure");
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_UpdateFails_OtherEventsAreSyncedBeforeException() throws Exception {
+		settings.setSyncLastDateTime(now);
+
+		final CalendarEvent event1 = mock(CalendarEvent.class);
+		final CalendarEvent event2 = mock(CalendarEvent.class);
+		final CalendarEvent event3 = mock(CalendarEvent.class);
+		final Calendar later = Calendar.getInstance();
+		later.setTimeInMillis(after.getTimeInMillis() + 1);
+
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getStartMillis();
+		doReturn(Long.valueOf(now.getTimeInMillis())).when(event1).getEndMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event1).getLastUpdatedMillis();
+		doReturn("id1").when(event1).getId();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getStartMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getEndMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event2).getLastUpdatedMillis();
+		doReturn("id2").when(event2).getId();
+		doReturn(Long.valueOf(later.getTimeInMillis())).when(event3).getStartMillis();
+		doReturn(Long.valueOf(later.getTimeInMillis())).when(event3).getEndMillis();
+		doReturn(Long.valueOf(after.getTimeInMillis())).when(event3).getLastUpdatedMillis();
+
+		doReturn(Arrays.asList(event1, event2, event3)).when(notesDAO).getEntries(null);
+		mockGoogleEvents(Arrays.asList(event1, event2));
+		doThrow(new SynchronisationException("update failure")).when(googleDAO).update("id1", event1);
+
+		try {
+			new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+			fail();
+		} catch (final SynchronisationException e) {
+			assertEquals("update failure", e.getMessage());
+		}
+
+		verify(googleDAO, times(1)).update("id1", event1);
+		verify(googleDAO, times(1)).update("id2", event2);
+		verify(googleDAO, times(1)).insert(event3);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_Partitioned_SliceFails_OtherSlicesAreSyncedBeforeException() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		start.setTimeInMillis(now.getTimeInMillis() - 1);
+		final Calendar end = Calendar.getInstance();
+		end.setTimeInMillis(start.getTimeInMillis());
+		end.add(Calendar.DAY_OF_YEAR, 14);
+		doReturn(start).when(settings).getSyncStartDate();
+		doReturn(end).when(settings).getSyncEndDate();
+		doReturn(Integer.valueOf(7)).when(settings).getSyncSliceDays();
+		doReturn(Integer.valueOf(2)).when(settings).getSyncSliceThreads();
+
+		final CalendarEvent event1 = new CalendarEvent();
+		event1.setStartDateTime(now);
+		event1.setEndDateTime(after);
+
+		// the first slice is read, the second fails
+		doAnswer(new Answer<List<CalendarEvent>>() {
+			@Override
+			public List<CalendarEvent> answer(final InvocationOnMock invocation) throws Throwable {
+				if (invocation.getArguments()[1] == start) {
+					return Arrays.asList(event1);
+				}
+				throw new SynchronisationException("slice failure");
+			}
+		}).when(notesDAO).getEntries((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+
+		try {
+			new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+			fail();
+		} catch (final SynchronisationException e) {
+			assertEquals("slice failure", e.getMessage());
+		}
+
+		verify(notesDAO, times(0)).getEntries((ICalendarEventFilter[]) Matchers.isNull());
+		// the Notes events are read first, so the failing slice does not read Google
+		verify(googleDAO, times(1)).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(Calendar.class), Matchers.any(Calendar.class),
+				Matchers.any(ICalendarEventConsumer.class));
+		verify(googleDAO, times(1)).insert(event1);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_Streaming_EachSliceIsSentAndReleased() throws Exception {
+		final Calendar start = Calendar.getInstance();
+		start.setTimeInMillis(now.getTimeInMillis() - 1);
+		final Calendar end = Calendar.getInstance();
+		end.setTimeInMillis(start.getTimeInMillis());
+		end.add(Calendar.DAY_OF_YEAR, 14);
+		doReturn(start).when(settings).getSyncStartDate();
+		doReturn(end).when(settings).getSyncEndDate();
+		doReturn(Integer.valueOf(1)).when(settings).getSyncSliceThreads();
+		doReturn(Boolean.TRUE).when(settings).isSyncStreaming();
+		settings.setSyncLastDateTime(now);
+
+		final CalendarEvent event1 = new CalendarEvent();
+		event1.setStartDateTime(now);
+		event1.setEndDateTime(after);
+		doAnswer(new Answer<List<CalendarEvent>>() {
+			@Override
+			public List<CalendarEvent> answer(final InvocationOnMock invocation) throws Throwable {
+				if (invocation.getArguments()[1] == start) {
+					return Arrays.asList(event1);
+				}
+				return new ArrayList<CalendarEvent>();
+			}
+		}).when(notesDAO).getEntries((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+
+		new SyncService().executeSync(notesDAO, googleDAO, null, new ICalendarEventObfuscator[] {}, settings);
+
+		// without configured slices, the period is streamed in weeks
+		verify(notesDAO, times(2)).getEntries((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(Calendar.class), Matchers.any(Calendar.class));
+		verify(googleDAO, times(1)).insert(event1);
+		verify(googleDAO, times(2)).release(Matchers.<CalendarEvent> anyCollection());
+	}
+
+	private void mockGoogleEvents(final List<CalendarEvent> events) {
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				((ICalendarEventConsumer) invocation.getArguments()[1]).consume(events);
+				return null;
+			}
+		}).when(googleDAO).getEvents((ICalendarEventFilter[]) Matchers.isNull(), Matchers.any(ICalendarEventConsumer.class));
+	}
+
 }
@@ -40,6 +40,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
+import java.util.List;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
@@ -55,6 +56,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import de.jakop.ngcalsync.Constants;
+import de.jakop.ngcalsync.google.HttpTransportType;
 import de.jakop.ngcalsync.i18n.LocalizedUserStrings.UserMessage;
 import de.jakop.ngcalsync.rule.TestdataRule;
 import de.jakop.ngcalsync.util.file.IFileAccessor;
@@ -193,6 +195,21 @@ public class SettingsTest {
 		verifyAllParametersAreSetWithDefaults();
 	}
 
+	/**
+	 * Verifies that upgraded settings are read without a restart.
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoadUpgraded_FileIsUpgraded_SettingsAreRead() throws Exception {
+		final Settings settings = new Settings(fileAccessor, log, notesHelper);
+
+		settings.loadUpgraded();
+
+		verifyAllParametersAreSetWithDefaults();
+		assertNotNull(settings.getSyncStartDate());
+		assertNotNull(settings.getSyncEndDate());
+	}
+
 	/**
 	 * Verifies that no message is logged if configuration is up to date.
 	 * @throws Exception
@@ -243,6 +260,8 @@ public class SettingsTest {
 		assertEquals("", settings.getProxyPort());
 		assertEquals("", settings.getProxyUserName());
 		assertEquals("", settings.getProxyPassword());
+		assertEquals(HttpTransportType.NET, settings.getGoogleHttpTransport());
+		assertEquals(20, settings.getGoogleHttpConnections());
 
 		final PrivacySettings privacySettings = settings.getPrivacySettings();
 		assertFalse(privacySettings.isTransferDescription());
@@ -443,6 +462,71 @@ public class SettingsTest {
 		assertEquals(1287, settings.getSyncLastDateTime().getTimeInMillis());
 	}
 
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_SyncTiers_DivideSyncPeriod() throws Exception {
+
+		final File tierFile = File.createTempFile(getClass().getName() + ".lastsync.tier.", null);
+		final File missingFile = new File(tierFile.getPath() + ".missing");
+		try {
+			FileUtils.writeStringToFile(tierFile, "1287");
+			doReturn(tierFile).when(fileAccessor).getFile(Constants.FILENAME_LAST_SYNC_TIME + ".7d");
+			doReturn(missingFile).when(fileAccessor).getFile(Constants.FILENAME_LAST_SYNC_TIME + ".0d");
+			doReturn(missingFile).when(fileAccessor).getFile(Constants.FILENAME_LAST_SYNC_TIME + ".6m");
+
+			// #1 for creating the default config file
+			loadSettings(true);
+
+			final PropertiesConfiguration propertiesConfiguration = new PropertiesConfiguration(settingsFile);
+			propertiesConfiguration.setProperty("sync.tiers", "0d:1440, 7d:15, 6m:60");
+			propertiesConfiguration.save();
+
+			// #2 for testing (no restart)
+			final Settings settings = loadSettings(false);
+
+			final Calendar today = Calendar.getInstance();
+			today.setTimeInMillis(settings.getProgramStartTime().getTimeInMillis());
+			final Calendar nextWeek = (Calendar) today.clone();
+			nextWeek.add(Calendar.DAY_OF_YEAR, 7);
+
+			final List<SyncTier> tiers = settings.getSyncTiers();
+			assertEquals(3, tiers.size());
+			assertTier(tiers.get(0), "0d", settings.getSyncStartDate(), today, 1440, true, false);
+			assertTier(tiers.get(1), "7d", today, nextWeek, 15, false, false);
+			// the last tier ends with the sync period
+			assertTier(tiers.get(2), "6m", nextWeek, settings.getSyncEndDate(), 60, false, true);
+
+			assertEquals(0, tiers.get(0).getSyncLastDateTime().getTimeInMillis());
+			assertEquals(1287, tiers.get(1).getSyncLastDateTime().getTimeInMillis());
+		} finally {
+			FileUtils.deleteQuietly(tierFile);
+		}
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoad_UnparseableSyncTier_ThrowsException() throws Exception {
+
+		// #1 for creating the default config file
+		loadSettings(true);
+
+		final PropertiesConfiguration propertiesConfiguration = new PropertiesConfiguration(settingsFile);
+		propertiesConfiguration.setProperty("sync.tiers", "7d");
+		propertiesConfiguration.save();
+
+		thrown.expect(ConfigurationException.class);
+		thrown.expectMessage(UserMessage.get().MSG_UNABLE_TO_PARSE_SYNC_TIER("7d"));
+
+		// #2 for testing (no restart)
+		loadSettings(false);
+	}
+
 	/**
 	 *
 	 * @throws Exception
@@ -458,6 +542,26 @@ public class SettingsTest {
 		assertEquals("WARN", settings.getPopupThresholdLevel());
 	}
 
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetGoogleBatchSize_AboveGoogleLimit_Capped() throws Exception {
+
+		// #1 for creating the default config file
+		loadSettings(true);
+
+		final PropertiesConfiguration propertiesConfiguration = new PropertiesConfiguration(settingsFile);
+		propertiesConfiguration.setProperty("google.batch.size", "5000");
+		propertiesConfiguration.save();
+
+		// #2 for testing (no restart)
+		final Settings settings = loadSettings(false);
+
+		assertEquals(Settings.MAX_GOOGLE_BATCH_SIZE, settings.getGoogleBatchSize());
+	}
+
 	private void verifyAllParametersAreSetWithDefaults() throws ConfigurationException {
 
 		final PropertiesConfiguration configuration = new PropertiesConfiguration();
@@ -470,6 +574,16 @@ public class SettingsTest {
 		}
 	}
 
+	private static void assertTier(final SyncTier tier, final String name, final Calendar start, final Calendar end, final int intervalMinutes, final boolean first,
+			final boolean last) {
+		assertEquals(name, tier.getName());
+		assertEquals(start.getTimeInMillis(), tier.getStart().getTimeInMillis());
+		assertEquals(end.getTimeInMillis(), tier.getEnd().getTimeInMillis());
+		assertEquals(intervalMinutes, tier.getIntervalMinutes());
+		assertEquals(Boolean.valueOf(first), Boolean.valueOf(tier.isFirst()));
+		assertEquals(Boolean.valueOf(last), Boolean.valueOf(tier.isLast()));
+	}
+
 	private Settings loadSettings(final boolean shouldExit) throws IOException, ConfigurationException {
 		final Settings settings = new Settings(fileAccessor, log, notesHelper);
 		final boolean restart = settings.load();
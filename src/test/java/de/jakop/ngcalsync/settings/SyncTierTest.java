@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.settings;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class SyncTierTest {
+
+	/** */
+	@Test
+	public void testIsDue_IntervalPassed_IsDue() {
+		final SyncTier tier = createTier(15, 1000000);
+
+		assertFalse(tier.isDue(at(1000000 + 10 * 60 * 1000)));
+		assertTrue(tier.isDue(at(1000000 + 15 * 60 * 1000)));
+		assertTrue(tier.isDue(at(1000000 + 60 * 60 * 1000)));
+	}
+
+	/** */
+	@Test
+	public void testIsDue_ScheduledSyncStartsLate_IsDueAtNextSchedule() {
+		// the last synchronisation started some seconds after its schedule
+		final SyncTier tier = createTier(15, 1000000 + 5000);
+
+		assertTrue(tier.isDue(at(1000000 + 15 * 60 * 1000)));
+	}
+
+	/** */
+	@Test
+	public void testIsDue_NeverSynchronized_IsDue() {
+		final SyncTier tier = createTier(1440, 0);
+
+		assertTrue(tier.isDue(Calendar.getInstance()));
+	}
+
+	private static SyncTier createTier(final int intervalMinutes, final long syncLastDateTime) {
+		final SyncTier tier = new SyncTier("7d", Calendar.getInstance(), Calendar.getInstance(), intervalMinutes, false, false);
+		tier.setSyncLastDateTime(at(syncLastDateTime));
+		return tier;
+	}
+
+	private static Calendar at(final long millis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis);
+		return calendar;
+	}
+
+}
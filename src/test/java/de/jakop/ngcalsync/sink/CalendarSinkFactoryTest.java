@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.jakop.ngcalsync.google.GoogleCalendarDaoFactory;
+import de.jakop.ngcalsync.google.IGoogleCalendarDAO;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class CalendarSinkFactoryTest {
+
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateCalendarSink_Google_CreatedByGoogleFactory() throws Exception {
+		final Settings settings = mock(Settings.class);
+		doReturn(CalendarSinkType.GOOGLE).when(settings).getSinkType();
+		final GoogleCalendarDaoFactory googleCalendarDaoFactory = mock(GoogleCalendarDaoFactory.class);
+		final IGoogleCalendarDAO dao = mock(IGoogleCalendarDAO.class);
+		doReturn(dao).when(googleCalendarDaoFactory).createGoogleCalendarDao(settings);
+
+		assertSame(dao, new CalendarSinkFactory(googleCalendarDaoFactory).createCalendarSink(settings));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateCalendarSink_Ics() throws Exception {
+		final Settings settings = mock(Settings.class);
+		doReturn(CalendarSinkType.ICS).when(settings).getSinkType();
+		doReturn(new File(folder.getRoot(), "Calendar.ics")).when(settings).getSinkIcsFile();
+
+		final ICalendarSink sink = new CalendarSinkFactory(new GoogleCalendarDaoFactory()).createCalendarSink(settings);
+		assertEquals(IcsFileCalendarSink.class, sink.getClass());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateCalendarSink_Memory_SameForAllSynchronisations() throws Exception {
+		final Settings settings = mock(Settings.class);
+		doReturn(CalendarSinkType.MEMORY).when(settings).getSinkType();
+
+		final CalendarSinkFactory factory = new CalendarSinkFactory(new GoogleCalendarDaoFactory());
+		final ICalendarSink sink = factory.createCalendarSink(settings);
+		assertEquals(InMemoryCalendarSink.class, sink.getClass());
+		assertSame(sink, factory.createCalendarSink(settings));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSinkType_Create() throws Exception {
+		assertEquals(CalendarSinkType.ICS, CalendarSinkType.create(" ICS"));
+		assertEquals(CalendarSinkType.MEMORY, CalendarSinkType.create("memory"));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSinkType_CreateUnknown_NotAllowed() throws Exception {
+		CalendarSinkType.create("caldav");
+	}
+
+}
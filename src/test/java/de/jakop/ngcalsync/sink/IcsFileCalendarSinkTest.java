@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.calendar.ICalendarEventConsumer;
+import de.jakop.ngcalsync.exception.SynchronisationException;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class IcsFileCalendarSinkTest {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	/** */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Settings settings = mock(Settings.class);
+	private final Calendar start = createCalendar(2012, Calendar.JUNE, 1, 0);
+	private final Calendar end = createCalendar(2012, Calendar.JULY, 1, 0);
+
+	private File file;
+
+	/** */
+	@Before
+	public void before() {
+		file = new File(folder.getRoot(), "Calendar.ics");
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFlush_EventsAreReadByNextSink() throws Exception {
+		final CalendarEvent meeting = new CalendarEvent();
+		meeting.setEventType(EventType.MEETING);
+		meeting.setSourceId("unid1");
+		meeting.setTitle("Review; planning, \\ more");
+		meeting.setContent(StringUtils.repeat("A long description\nwith lines ", 10));
+		meeting.setLocation("Room 1");
+		meeting.setStartMillis(createCalendar(2012, Calendar.JUNE, 5, 10).getTimeInMillis());
+		meeting.setEndMillis(meeting.getStartMillis() + HOUR);
+
+		final CalendarEvent allDay = new CalendarEvent();
+		allDay.setEventType(EventType.ANNIVERSARY);
+		allDay.setSourceId("unid2");
+		allDay.setStartMillis(createCalendar(2012, Calendar.JUNE, 6, 0).getTimeInMillis());
+		allDay.setEndMillis(allDay.getStartMillis());
+
+		final IcsFileCalendarSink sink = new IcsFileCalendarSink(settings, file);
+		final String meetingId = sink.insert(meeting);
+		final String allDayId = sink.insert(allDay);
+		assertTrue(sink.flush().isEmpty());
+
+		for (final String line : FileUtils.readLines(file, "UTF-8")) {
+			assertTrue(line, line.length() <= 75);
+		}
+
+		final List<CalendarEvent> events = read(new IcsFileCalendarSink(settings, file));
+		assertEquals(2, events.size());
+
+		final CalendarEvent readMeeting = events.get(0);
+		assertEquals(meetingId, readMeeting.getId());
+		assertEquals(EventType.NORMAL_EVENT, readMeeting.getEventType());
+		assertEquals(meeting.getTitle(), readMeeting.getTitle());
+		assertEquals(meeting.getContent(), readMeeting.getContent());
+		assertEquals(meeting.getLocation(), readMeeting.getLocation());
+		assertEquals(meeting.getStartMillis(), readMeeting.getStartMillis());
+		assertEquals(meeting.getEndMillis(), readMeeting.getEndMillis());
+		assertEquals("unid1", readMeeting.getSourceId());
+		assertEquals(meeting.computeFingerprint(), readMeeting.getFingerprint());
+
+		final CalendarEvent readAllDay = events.get(1);
+		assertEquals(allDayId, readAllDay.getId());
+		assertEquals(EventType.ALL_DAY_EVENT, readAllDay.getEventType());
+		assertNull(readAllDay.getTitle());
+		assertEquals(allDay.getStartMillis(), readAllDay.getStartMillis());
+		assertEquals(createCalendar(2012, Calendar.JUNE, 7, 0).getTimeInMillis(), readAllDay.getEndMillis());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpdateAndDelete() throws Exception {
+		final CalendarEvent event = new CalendarEvent();
+		event.setTitle("old");
+		event.setStartMillis(createCalendar(2012, Calendar.JUNE, 5, 10).getTimeInMillis());
+		event.setEndMillis(event.getStartMillis() + HOUR);
+		final CalendarEvent other = new CalendarEvent();
+		other.setStartMillis(event.getStartMillis());
+		other.setEndMillis(event.getEndMillis());
+
+		final IcsFileCalendarSink sink = new IcsFileCalendarSink(settings, file);
+		final String id = sink.insert(event);
+		final String otherId = sink.insert(other);
+		sink.flush();
+
+		event.setTitle("new");
+		sink.update(id, event);
+		sink.delete(otherId);
+		sink.delete("unknown");
+		final Map<CalendarEvent, SynchronisationException> failures = sink.flush();
+
+		assertEquals(1, failures.size());
+		assertEquals("unknown", failures.keySet().iterator().next().getId());
+		final List<CalendarEvent> events = read(new IcsFileCalendarSink(settings, file));
+		assertEquals(1, events.size());
+		assertEquals("new", events.get(0).getTitle());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRead_FileOfOtherApplication() throws Exception {
+		FileUtils.writeStringToFile(file, "BEGIN:VCALENDAR\r\n" + //
+				"VERSION:2.0\r\n" + //
+				"BEGIN:VTIMEZONE\r\n" + //
+				"TZID:Europe/Berlin\r\n" + //
+				"END:VTIMEZONE\r\n" + //
+				"BEGIN:VEVENT\r\n" + //
+				"UID:event1\r\n" + //
+				"DTSTART;TZID=Europe/Berlin:20120605T100000\r\n" + //
+				"DTEND;TZID=Europe/Berlin:20120605T110000\r\n" + //
+				"SUMMARY:Folded\r\n" + //
+				"  title\r\n" + //
+				"END:VEVENT\r\n" + //
+				"BEGIN:VEVENT\r\n" + //
+				"UID:event2\r\n" + //
+				"DTSTART:20120606\r\n" + //
+				"END:VEVENT\r\n" + //
+				"BEGIN:VEVENT\r\n" + //
+				"SUMMARY:without id\r\n" + //
+				"DTSTART:20120606T100000Z\r\n" + //
+				"END:VEVENT\r\n" + //
+				"END:VCALENDAR\r\n", "UTF-8");
+
+		final List<CalendarEvent> events = read(new IcsFileCalendarSink(settings, file));
+
+		assertEquals(2, events.size());
+		final Calendar berlin = Calendar.getInstance(TimeZone.getTimeZone("Europe/Berlin"));
+		berlin.clear();
+		berlin.set(2012, Calendar.JUNE, 5, 10, 0, 0);
+		assertEquals("Folded title", events.get(0).getTitle());
+		assertEquals(berlin.getTimeInMillis(), events.get(0).getStartMillis());
+		assertEquals(berlin.getTimeInMillis() + HOUR, events.get(0).getEndMillis());
+		assertEquals(EventType.ALL_DAY_EVENT, events.get(1).getEventType());
+		assertEquals(createCalendar(2012, Calendar.JUNE, 7, 0).getTimeInMillis(), events.get(1).getEndMillis());
+	}
+
+	private List<CalendarEvent> read(final ICalendarSink sink) {
+		final List<CalendarEvent> events = new ArrayList<CalendarEvent>();
+		sink.getEvents(null, start, end, new ICalendarEventConsumer() {
+
+			@Override
+			public void consume(final Collection<CalendarEvent> page) {
+				events.addAll(page);
+			}
+		});
+		return events;
+	}
+
+	private static Calendar createCalendar(final int year, final int month, final int day, final int hour) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month, day, hour, 0, 0);
+		return calendar;
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2012, Frank Jakop
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.jakop.ngcalsync.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jakop.ngcalsync.calendar.CalendarEvent;
+import de.jakop.ngcalsync.calendar.EventType;
+import de.jakop.ngcalsync.metrics.SyncMetrics;
+import de.jakop.ngcalsync.notes.INotesCalendarDAO;
+import de.jakop.ngcalsync.obfuscator.ICalendarEventObfuscator;
+import de.jakop.ngcalsync.service.SyncService;
+import de.jakop.ngcalsync.settings.Settings;
+
+/**
+ *
+ * @author fjakop
+ *
+ */
+@SuppressWarnings("nls")
+public class InMemoryCalendarSinkTest {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	private final Settings settings = mock(Settings.class);
+	private final Calendar start = Calendar.getInstance();
+	private final Calendar end = Calendar.getInstance();
+
+	/** */
+	@Before
+	public void before() {
+		start.add(Calendar.DAY_OF_YEAR, -14);
+		end.add(Calendar.MONTH, 3);
+		doReturn(start).when(settings).getSyncStartDate();
+		doReturn(end).when(settings).getSyncEndDate();
+		doReturn(new SyncMetrics()).when(settings).getSyncMetrics();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMutations_ExecutedInBatches() throws Exception {
+		final InMemoryCalendarSink sink = new InMemoryCalendarSink(settings);
+		for (int i = 0; i <= LocalCalendarSink.BATCH_SIZE; i++) {
+			sink.insert(createEvent("unid" + i, start.getTimeInMillis() + i * HOUR));
+		}
+		assertEquals(1, sink.getRequests());
+
+		assertTrue(sink.flush().isEmpty());
+		assertEquals(2, sink.getRequests());
+
+		assertEquals(LocalCalendarSink.BATCH_SIZE + 1, sink.getEvents(null).size());
+		assertEquals(3, sink.getRequests());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRequest_TakesLatency() throws Exception {
+		doReturn(Integer.valueOf(20)).when(settings).getSinkLatencyMillis();
+		final InMemoryCalendarSink sink = new InMemoryCalendarSink(settings);
+
+		final long startMillis = System.currentTimeMillis();
+		sink.getEvents(null);
+		assertTrue(System.currentTimeMillis() - startMillis >= 20);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteSync_SecondSynchronisation_ChangesNothing() throws Exception {
+		final Calendar lastSync = Calendar.getInstance();
+		doReturn(lastSync).when(settings).getSyncLastDateTime();
+		final List<CalendarEvent> notesEvents = new ArrayList<CalendarEvent>();
+		for (int i = 0; i < 10; i++) {
+			final CalendarEvent event = createEvent("unid" + i, lastSync.getTimeInMillis() + i * 24 * HOUR);
+			event.setLastUpdatedMillis(lastSync.getTimeInMillis() - HOUR);
+			notesEvents.add(event);
+		}
+		final INotesCalendarDAO notesDao = mock(INotesCalendarDAO.class);
+		doReturn(notesEvents).when(notesDao).getEntries(null);
+		final InMemoryCalendarSink sink = new InMemoryCalendarSink(settings);
+
+		new SyncService().executeSync(notesDao, sink, null, new ICalendarEventObfuscator[] {}, settings);
+		final List<CalendarEvent> synchronized1 = sink.getEvents(null);
+		final int requests = sink.getRequests();
+		new SyncService().executeSync(notesDao, sink, null, new ICalendarEventObfuscator[] {}, settings);
+
+		// the second synchronisation only reads
+		assertEquals(requests + 1, sink.getRequests());
+		final List<CalendarEvent> synchronized2 = sink.getEvents(null);
+		assertEquals(10, synchronized2.size());
+		for (int i = 0; i < synchronized2.size(); i++) {
+			assertEquals(synchronized1.get(i).getId(), synchronized2.get(i).getId());
+			assertEquals("unid" + i, synchronized2.get(i).getSourceId());
+		}
+	}
+
+	private static CalendarEvent createEvent(final String sourceId, final long startMillis) {
+		final CalendarEvent event = new CalendarEvent();
+		event.setEventType(EventType.MEETING);
+		event.setSourceId(sourceId);
+		event.setTitle("Meeting");
+		event.setStartMillis(startMillis);
+		event.setEndMillis(startMillis + HOUR);
+		return event;
+	}
+
+}
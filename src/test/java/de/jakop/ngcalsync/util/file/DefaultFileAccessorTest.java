@@ -73,4 +73,17 @@ public class DefaultFileAccessorTest {
 		assertEquals(expected, accessor.getFile("foo"));
 	}
 
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetFile_GivenSettingsDir_IsUsed() throws Exception {
+
+		final File settingsDir = new File(System.getProperty("user.home"), "profiles/alice");
+
+		final DefaultFileAccessor accessor = new DefaultFileAccessor(settingsDir);
+		assertEquals(new File(settingsDir, "foo"), accessor.getFile("foo"));
+	}
+
 }